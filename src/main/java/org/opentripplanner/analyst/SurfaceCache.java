@@ -2,31 +2,82 @@ package org.opentripplanner.analyst;
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
-import com.google.common.collect.Lists;
-import com.google.common.collect.Queues;
-
+import com.google.common.cache.RemovalCause;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import gnu.trove.set.TLongSet;
+import gnu.trove.set.hash.TLongHashSet;
+import org.locationtech.jts.geom.Coordinate;
+import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.graph.Vertex;
 import org.opentripplanner.routing.spt.ShortestPathTree;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.lang.ref.WeakReference;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.List;
 import java.util.Map;
-import java.util.Queue;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
 
 /**
  * Caches travel time surfaces, which are derived from shortest path trees.
+ *
+ * Surfaces added together with the search they were made from follow the realtime street data of their graph
+ * (rentable vehicles, parking zones, traffic). Each of them records the cells of a coarse grid in which it reached
+ * vertices. When the graph reports a change in one of those cells, the surface is marked stale and recomputed in the
+ * background, while the stale one is still served. A surface which has been stale for longer than
+ * {@link #MAX_STALENESS_MILLIS} is not served before its recomputation ends.
+ *
+ * Graphs are only referenced weakly, so that the graph of a reloaded router can be garbage collected. The surfaces of
+ * a collected graph are still served, but no longer recomputed.
+ *
  * TODO add LRU behavior upon get
  * TODO extend to store any type by moving the IDs into the cache
  * TODO use a disk-backed MapDB to avoid eating memory
  */
 public class SurfaceCache {
 
+    private static final Logger LOG = LoggerFactory.getLogger(SurfaceCache.class);
+
     public static final int NONE = -1;
+
+    /** Staleness of a surface which is up to date with its graph */
+    public static final long FRESH = 0;
+
+    public static final long MAX_STALENESS_MILLIS = 60 * 1000;
+
+    /** Size in degrees of the cells of the grid on which influence and changes are recorded, about 500 meters */
+    static final double INFLUENCE_CELL_DEGREES = 0.005;
+
     public final Cache<Integer, TimeSurface> cache;
 
+    /** Recomputation state of the cached surfaces which were added with their search */
+    private final Map<Integer, LiveSurface> liveSurfaces = new ConcurrentHashMap<>();
+
+    /** Graphs whose changes are listened to, Graph does not override equals so they are compared by identity */
+    private final Set<Graph> observedGraphs = Collections.newSetFromMap(new WeakHashMap<>());
+
+    private final ExecutorService recomputationExecutor = Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder().setNameFormat("SurfaceCache-%d").setDaemon(true).build());
+
     public SurfaceCache (int capacity) {
         this.cache = CacheBuilder.newBuilder()
-        	       		.maximumSize(100)
-        	       		.build();
+                .maximumSize(100)
+                .<Integer, TimeSurface>removalListener(notification -> {
+                    if (notification.getCause() != RemovalCause.REPLACED) {
+                        liveSurfaces.remove(notification.getKey());
+                    }
+                })
+                .build();
     }
 
     public int add(TimeSurface surface) {
@@ -34,8 +85,192 @@ public class SurfaceCache {
     	return surface.id;
     }
 
+    /**
+     * Add a surface which will be recomputed with the given search whenever realtime street data of the graph changes
+     * where the surface reached vertices.
+     *
+     * @param search repeats the search the surface was made from on the given graph, returns null if it fails. It
+     *               should not hold on to the graph itself, which would then never be released.
+     */
+    public int add(TimeSurface surface, Graph graph, Function<Graph, ShortestPathTree> search) {
+        synchronized (observedGraphs) {
+            if (observedGraphs.add(graph)) {
+                graph.addRealtimeStreetDataListener(changedVertices -> invalidate(graph, changedVertices));
+            }
+        }
+        liveSurfaces.put(surface.id, new LiveSurface(surface, graph, search));
+        return add(surface);
+    }
+
+    /**
+     * Get a surface, waiting for its recomputation if it has been stale for too long.
+     */
     public TimeSurface get(int id) {
+        LiveSurface liveSurface = liveSurfaces.get(id);
+        if (liveSurface != null && liveSurface.getStalenessMillis() > MAX_STALENESS_MILLIS) {
+            liveSurface.awaitRecomputation();
+        }
         return this.cache.getIfPresent(id);
     }
 
+    /**
+     * @return how long ago the data the surface was computed from changed, {@link #FRESH} if it did not
+     */
+    public long getStalenessMillis(int id) {
+        LiveSurface liveSurface = liveSurfaces.get(id);
+        return liveSurface == null ? FRESH : liveSurface.getStalenessMillis();
+    }
+
+    /** Called concurrently by graph writers of different regions, the live surfaces synchronize themselves */
+    private void invalidate(Graph graph, Collection<Vertex> changedVertices) {
+        TLongSet changedCells = null;
+        if (changedVertices != null) {
+            changedCells = new TLongHashSet();
+            for (Vertex vertex : changedVertices) {
+                // a change next to a reached cell may be reached as well
+                long cell = cellOf(vertex.getCoordinate());
+                for (int dx = -1; dx <= 1; dx++) {
+                    for (int dy = -1; dy <= 1; dy++) {
+                        changedCells.add(cell + ((long) dx << 32) + dy);
+                    }
+                }
+            }
+            if (changedCells.isEmpty()) {
+                return;
+            }
+        }
+        int invalidated = 0;
+        for (LiveSurface liveSurface : liveSurfaces.values()) {
+            if (liveSurface.graph.get() == graph && liveSurface.isInfluencedBy(changedCells)) {
+                liveSurface.invalidate();
+                invalidated++;
+            }
+        }
+        if (invalidated > 0) {
+            LOG.info("Recomputing {} travel time surfaces after realtime street data changed", invalidated);
+        }
+    }
+
+    /** Cells are identified by their column in the high half of a long and their row in the low half */
+    static long cellOf(Coordinate coordinate) {
+        long column = (long) Math.floor(coordinate.x / INFLUENCE_CELL_DEGREES);
+        long row = (long) Math.floor(coordinate.y / INFLUENCE_CELL_DEGREES);
+        return (column << 32) + row;
+    }
+
+    static TLongSet influenceOf(TimeSurface surface) {
+        TLongSet cells = new TLongHashSet();
+        for (Vertex vertex : surface.times.keySet()) {
+            cells.add(cellOf(vertex.getCoordinate()));
+        }
+        return cells;
+    }
+
+    private class LiveSurface {
+
+        private final int id;
+
+        private final WeakReference<Graph> graph;
+
+        private final Function<Graph, ShortestPathTree> search;
+
+        /** Cells in which the latest surface reached vertices */
+        private volatile TLongSet influence;
+
+        /** When the data of the latest surface first changed, FRESH if it did not */
+        private volatile long staleSince = FRESH;
+
+        private Future<?> recomputation;
+
+        private boolean running;
+
+        private boolean changedWhileRunning;
+
+        LiveSurface(TimeSurface surface, Graph graph, Function<Graph, ShortestPathTree> search) {
+            this.id = surface.id;
+            this.graph = new WeakReference<>(graph);
+            this.search = search;
+            this.influence = influenceOf(surface);
+        }
+
+        boolean isInfluencedBy(TLongSet changedCells) {
+            if (changedCells == null) {
+                return true;
+            }
+            TLongSet cells = influence;
+            TLongSet smaller = cells.size() < changedCells.size() ? cells : changedCells;
+            TLongSet larger = smaller == cells ? changedCells : cells;
+            return !smaller.forEach(cell -> !larger.contains(cell));
+        }
+
+        long getStalenessMillis() {
+            long since = staleSince;
+            return since == FRESH ? FRESH : Math.max(1, System.currentTimeMillis() - since);
+        }
+
+        synchronized void invalidate() {
+            if (staleSince == FRESH) {
+                staleSince = System.currentTimeMillis();
+            }
+            if (recomputation == null) {
+                recomputation = recomputationExecutor.submit(this::recompute);
+            } else if (running) {
+                // the running search may have missed this change
+                changedWhileRunning = true;
+            }
+        }
+
+        void awaitRecomputation() {
+            Future<?> pending;
+            synchronized (this) {
+                pending = recomputation;
+            }
+            if (pending == null) {
+                return;
+            }
+            try {
+                pending.get(MAX_STALENESS_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException | TimeoutException e) {
+                LOG.warn("Serving stale travel time surface {}", id, e);
+            }
+        }
+
+        private void recompute() {
+            synchronized (this) {
+                running = true;
+                changedWhileRunning = false;
+            }
+            TimeSurface surface = null;
+            try {
+                Graph currentGraph = graph.get();
+                if (currentGraph == null) {
+                    // the router was reloaded, there is nothing left to recompute the surface on
+                    liveSurfaces.remove(id, this);
+                } else {
+                    ShortestPathTree spt = search.apply(currentGraph);
+                    TimeSurface replaced = cache.getIfPresent(id);
+                    if (spt != null && replaced != null) {
+                        surface = new TimeSurface(spt, replaced);
+                    }
+                }
+            } catch (RuntimeException e) {
+                LOG.error("Could not recompute travel time surface {}", id, e);
+            }
+            synchronized (this) {
+                running = false;
+                recomputation = null;
+                if (surface != null && liveSurfaces.get(id) == this) {
+                    influence = influenceOf(surface);
+                    cache.put(id, surface);
+                }
+                if (changedWhileRunning) {
+                    recomputation = recomputationExecutor.submit(this::recompute);
+                } else if (surface != null) {
+                    staleSince = FRESH;
+                }
+            }
+        }
+    }
 }
@@ -57,6 +57,21 @@ public class TimeSurface implements Serializable {
     
     /** Create a time surface, optionally making a sample grid */
     public TimeSurface(ShortestPathTree spt, boolean makeSampleGrid) {
+        this(spt, makeSampleGrid, makeUniqueId());
+    }
+
+    /**
+     * Create a time surface replacing one made from an earlier search for the same request, keeping its ID, request
+     * parameters and cutoff.
+     */
+    public TimeSurface(ShortestPathTree spt, TimeSurface replaced) {
+        this(spt, replaced.sampleGrid != null, replaced.id);
+        params = replaced.params;
+        cutoffMinutes = replaced.cutoffMinutes;
+        description = replaced.description;
+    }
+
+    private TimeSurface(ShortestPathTree spt, boolean makeSampleGrid, int id) {
 
         params = spt.getOptions().parameters;
         walkSpeed = spt.getOptions().walkSpeed;
@@ -83,7 +98,7 @@ public class TimeSurface implements Serializable {
         GenericLocation from = spt.getOptions().from;
         this.lon = from.lng;
         this.lat = from.lat;
-        this.id = makeUniqueId();
+        this.id = id;
         this.dateTime = spt.getOptions().dateTime;
         long t1 = System.currentTimeMillis();
         LOG.info("Made TimeSurface from SPT in {} msec.", (int) (t1 - t0));
@@ -170,7 +185,7 @@ public class TimeSurface implements Serializable {
         return times.get(v);
     }
 
-    private synchronized int makeUniqueId() {
+    private static synchronized int makeUniqueId() {
         int id = nextId++;
         return id;
     }
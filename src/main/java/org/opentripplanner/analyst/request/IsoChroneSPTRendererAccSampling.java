@@ -86,16 +86,19 @@ public class IsoChroneSPTRendererAccSampling implements IsoChroneSPTRenderer {
         isolineBuilder.setDebug(isoChroneRequest.includeDebugGeometry);
 
         List<IsochroneData> isochrones = new ArrayList<IsochroneData>();
-        for (Integer cutoffSec : isoChroneRequest.cutoffSecList) {
-            WTWD z0 = new WTWD();
-            z0.w = 1.0;
-            z0.wTime = cutoffSec;
-            z0.d = offRoadDistanceMeters;
-            IsochroneData isochrone = new IsochroneData(cutoffSec,
-                    isolineBuilder.computeIsoline(z0));
-            if (isoChroneRequest.includeDebugGeometry)
-                isochrone.debugGeometry = isolineBuilder.getDebugGeometry();
-            isochrones.add(isochrone);
+        // The builder marks the edges of the grid it processes, and rent-vehicle grids are shared between requests
+        synchronized (sampleGrid) {
+            for (Integer cutoffSec : isoChroneRequest.cutoffSecList) {
+                WTWD z0 = new WTWD();
+                z0.w = 1.0;
+                z0.wTime = cutoffSec;
+                z0.d = offRoadDistanceMeters;
+                IsochroneData isochrone = new IsochroneData(cutoffSec,
+                        isolineBuilder.computeIsoline(z0));
+                if (isoChroneRequest.includeDebugGeometry)
+                    isochrone.debugGeometry = isolineBuilder.getDebugGeometry();
+                isochrones.add(isochrone);
+            }
         }
 
         long t1 = System.currentTimeMillis();
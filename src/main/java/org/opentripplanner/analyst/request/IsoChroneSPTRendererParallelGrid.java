@@ -0,0 +1,58 @@
+package org.opentripplanner.analyst.request;
+
+import org.opentripplanner.analyst.core.IsochroneData;
+import org.opentripplanner.common.geometry.GridIsolineBuilder;
+import org.opentripplanner.common.geometry.TimeDistanceGrid;
+import org.opentripplanner.routing.core.RoutingRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compute isochrones out of a shortest path tree request (parallelGrid isoline algorithm).
+ *
+ * The SPT is sampled the same way as for the AccSampling algorithm, but onto a dense primitive
+ * grid filled in parallel, and isolines are extracted from it by parallel marching squares. No
+ * debug geometry is produced.
+ */
+public class IsoChroneSPTRendererParallelGrid implements IsoChroneSPTRenderer {
+
+    private static final Logger LOG = LoggerFactory
+            .getLogger(IsoChroneSPTRendererParallelGrid.class);
+
+    private SampleGridRenderer sampleGridRenderer;
+
+    public IsoChroneSPTRendererParallelGrid(SampleGridRenderer sampleGridRenderer) {
+        this.sampleGridRenderer = sampleGridRenderer;
+    }
+
+    @Override
+    public List<IsochroneData> getIsochrones(IsoChroneRequest isoChroneRequest,
+            RoutingRequest sptRequest) {
+
+        // 1. Create a time and distance grid from the SPT
+        SampleGridRequest tgRequest = new SampleGridRequest();
+        tgRequest.maxTimeSec = isoChroneRequest.maxTimeSec;
+        tgRequest.precisionMeters = isoChroneRequest.precisionMeters;
+        tgRequest.offRoadDistanceMeters = isoChroneRequest.offRoadDistanceMeters;
+        tgRequest.coordinateOrigin = isoChroneRequest.coordinateOrigin;
+        tgRequest.maxDistanceMeters = isoChroneRequest.maxDistanceMeters;
+        TimeDistanceGrid grid = sampleGridRenderer.getTimeDistanceGrid(tgRequest, sptRequest);
+
+        // 2. Compute isolines
+        long t0 = System.currentTimeMillis();
+        GridIsolineBuilder isolineBuilder = new GridIsolineBuilder(grid);
+        List<IsochroneData> isochrones = new ArrayList<IsochroneData>();
+        for (Integer cutoffSec : isoChroneRequest.cutoffSecList) {
+            isochrones.add(new IsochroneData(cutoffSec,
+                    isolineBuilder.computeIsoline(cutoffSec, isoChroneRequest.offRoadDistanceMeters)));
+        }
+
+        long t1 = System.currentTimeMillis();
+        LOG.info("Computed {} isochrones in {}msec", isochrones.size(), (int) (t1 - t0));
+
+        return isochrones;
+    }
+}
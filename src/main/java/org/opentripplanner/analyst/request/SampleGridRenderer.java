@@ -1,14 +1,19 @@
 package org.opentripplanner.analyst.request;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import org.apache.commons.math3.util.FastMath;
 import org.locationtech.jts.geom.Coordinate;
 import org.opentripplanner.common.geometry.AccumulativeGridSampler;
 import org.opentripplanner.common.geometry.AccumulativeGridSampler.AccumulativeMetric;
 import org.opentripplanner.common.geometry.IsolineBuilder;
+import org.opentripplanner.common.geometry.ParallelGridSampler;
 import org.opentripplanner.common.geometry.SparseMatrixZSampleGrid;
 import org.opentripplanner.common.geometry.SphericalDistanceLibrary;
+import org.opentripplanner.common.geometry.TimeDistanceGrid;
 import org.opentripplanner.common.geometry.ZSampleGrid;
 import org.opentripplanner.common.geometry.ZSampleGrid.ZSamplePoint;
+import org.opentripplanner.common.model.GenericLocation;
 import org.opentripplanner.routing.algorithm.AStar;
 import org.opentripplanner.routing.core.RoutingRequest;
 import org.opentripplanner.routing.core.State;
@@ -18,11 +23,14 @@ import org.opentripplanner.routing.graph.Graph;
 import org.opentripplanner.routing.spt.SPTWalker;
 import org.opentripplanner.routing.spt.SPTWalker.SPTVisitor;
 import org.opentripplanner.routing.spt.ShortestPathTree;
+import org.opentripplanner.updater.vehicle_sharing.vehicles_positions.SharedVehiclesSnapshotLabel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
 
 import static org.apache.commons.math3.util.FastMath.toRadians;
 
@@ -33,6 +41,11 @@ import static org.apache.commons.math3.util.FastMath.toRadians;
  * (a regular grid of samples covering the whole SPT area) using an accumulative grid sampling
  * process.
  * 
+ * When renting vehicles is allowed, a location counts as reached only once the rented vehicle has
+ * been dropped off, which is possible where the parking zones of the vehicle allow it. Such grids
+ * depend on the realtime street data of the graph rather than on timetables, so they are cached
+ * per origin cell until that data changes.
+ * 
  * @see ZSampleGrid
  * @see AccumulativeGridSampler
  * 
@@ -42,8 +55,26 @@ public class SampleGridRenderer {
 
     private static final Logger LOG = LoggerFactory.getLogger(SampleGridRenderer.class);
 
+    private static final int RENT_VEHICLE_CACHE_SIZE = 100;
+
+    /** m/s, off-road walk speed */
+    private static final double OFF_ROAD_WALK_SPEED_MPS = 1.00;
+
+    /**
+     * Stands for the origin in the requests used as cache keys, whose origin cell is part of the key instead.
+     * Requests compare their origins by identity.
+     */
+    private static final GenericLocation CELL_ORIGIN = new GenericLocation();
+
     private Graph graph;
 
+    private final Cache<RentVehicleGridKey, ZSampleGrid<WTWD>> rentVehicleSampleGrids = CacheBuilder.newBuilder()
+            .maximumSize(RENT_VEHICLE_CACHE_SIZE)
+            .build();
+
+    /** Version of the realtime street data of the graph when the cache was last cleared */
+    private long rentVehicleSampleGridsVersion = -1;
+
     public SampleGridRenderer(Graph graph) {
         this.graph = graph;
     }
@@ -54,19 +85,61 @@ public class SampleGridRenderer {
      * @return
      */
     public ZSampleGrid<WTWD> getSampleGrid(SampleGridRequest spgRequest, RoutingRequest sptRequest) {
+        if (sptRequest.rentingAllowed) {
+            return getRentVehicleSampleGrid(spgRequest, sptRequest);
+        }
+        return computeSampleGrid(spgRequest, sptRequest);
+    }
+
+    /**
+     * Get the sample grid of a search from the center of the grid cell containing the origin, at the start of the
+     * minute of the departure. Since the grid has the precision of a cell anyway, all the requests from the same cell
+     * share one grid, which is computed again only after rentable vehicles, parking zones or traffic are updated.
+     */
+    private ZSampleGrid<WTWD> getRentVehicleSampleGrid(SampleGridRequest spgRequest, RoutingRequest sptRequest) {
+        long version = graph.getRealtimeStreetDataVersion();
+        synchronized (this) {
+            if (version != rentVehicleSampleGridsVersion) {
+                // grids of older versions can never be requested again
+                rentVehicleSampleGrids.invalidateAll();
+                rentVehicleSampleGridsVersion = version;
+            }
+        }
+
+        Coordinate origin = sptRequest.from.getCoordinate();
+        double dY = Math.toDegrees(spgRequest.precisionMeters / SphericalDistanceLibrary.RADIUS_OF_EARTH_IN_M);
+        int cellY = (int) Math.floor(origin.y / dY);
+        double centerY = (cellY + 0.5) * dY;
+        double dX = dY / FastMath.cos(toRadians(centerY));
+        int cellX = (int) Math.floor(origin.x / dX);
+        Coordinate center = new Coordinate((cellX + 0.5) * dX, centerY);
+
+        RoutingRequest cellRequest = sptRequest.clone();
+        cellRequest.from = new GenericLocation(center.y, center.x);
+        cellRequest.dateTime = sptRequest.dateTime - sptRequest.dateTime % 60;
+        SampleGridRequest cellGridRequest = new SampleGridRequest();
+        cellGridRequest.precisionMeters = spgRequest.precisionMeters;
+        cellGridRequest.offRoadDistanceMeters = spgRequest.offRoadDistanceMeters;
+        cellGridRequest.maxTimeSec = spgRequest.maxTimeSec;
+        cellGridRequest.coordinateOrigin = spgRequest.coordinateOrigin;
+        cellGridRequest.maxDistanceMeters = spgRequest.maxDistanceMeters;
+
+        RentVehicleGridKey key = new RentVehicleGridKey(cellX, cellY, version, cellGridRequest, cellRequest);
+        try {
+            return rentVehicleSampleGrids.get(key, () -> computeSampleGrid(cellGridRequest, cellRequest));
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private ZSampleGrid<WTWD> computeSampleGrid(SampleGridRequest spgRequest, RoutingRequest sptRequest) {
 
         final double offRoadDistanceMeters = spgRequest.offRoadDistanceMeters;
-        final double offRoadWalkSpeedMps = 1.00; // m/s, off-road walk speed
+        final double offRoadWalkSpeedMps = OFF_ROAD_WALK_SPEED_MPS;
 
         // 1. Compute the Shortest Path Tree.
         long t0 = System.currentTimeMillis();
-        long tOvershot = (long) (2 * offRoadDistanceMeters / offRoadWalkSpeedMps);
-        sptRequest.worstTime = (sptRequest.dateTime + (sptRequest.arriveBy ? -spgRequest.maxTimeSec
-                - tOvershot : spgRequest.maxTimeSec + tOvershot));
-        sptRequest.batch = (true);
-        sptRequest.setRoutingContext(graph);
-        // TODO swap in different state dominance logic (earliest arrival, pareto, etc.)
-        final ShortestPathTree spt = new AStar().getShortestPathTree(sptRequest);
+        final ShortestPathTree spt = computeSPT(spgRequest, sptRequest);
 
         // 3. Create a sample grid based on the SPT.
         long t1 = System.currentTimeMillis();
@@ -91,6 +164,65 @@ public class SampleGridRenderer {
         return sampleGrid;
     }
 
+    /**
+     * Compute a dense time and distance grid from a SPT request, sampled in parallel. The grid
+     * covers the same samples as the one of {@link #getSampleGrid}, but only keeps their time and
+     * off-road distance. Rent-vehicle grids are not cached.
+     *
+     * @see ParallelGridSampler
+     */
+    public TimeDistanceGrid getTimeDistanceGrid(SampleGridRequest spgRequest, RoutingRequest sptRequest) {
+
+        final double offRoadDistanceMeters = spgRequest.offRoadDistanceMeters;
+
+        // 1. Compute the Shortest Path Tree.
+        long t0 = System.currentTimeMillis();
+        final ShortestPathTree spt = computeSPT(spgRequest, sptRequest);
+
+        // 2. Sample the SPT on a dense grid.
+        long t1 = System.currentTimeMillis();
+        Coordinate coordinateOrigin = spgRequest.coordinateOrigin;
+        if (coordinateOrigin == null)
+            coordinateOrigin = sptRequest.from.getCoordinate();
+        final double gridSizeMeters = spgRequest.precisionMeters;
+        final double cosLat = FastMath.cos(toRadians(coordinateOrigin.y));
+        double dY = Math.toDegrees(gridSizeMeters / SphericalDistanceLibrary.RADIUS_OF_EARTH_IN_M);
+        double dX = dY / cosLat;
+
+        ParallelGridSampler gridSampler = new ParallelGridSampler(coordinateOrigin, dX, dY, cosLat,
+                gridSizeMeters, offRoadDistanceMeters, OFF_ROAD_WALK_SPEED_MPS);
+        sampleSPT(spt, gridSampler, gridSizeMeters, spgRequest.maxDistanceMeters, spgRequest.maxTimeSec);
+        sptRequest.cleanup();
+        TimeDistanceGrid grid = gridSampler.close();
+
+        long t2 = System.currentTimeMillis();
+        LOG.info("Computed SPT in {}msec, {}msec for parallel sampling ({} msec total)", (int) (t1 - t0),
+                (int) (t2 - t1), (int) (t2 - t0));
+
+        return grid;
+    }
+
+    private ShortestPathTree computeSPT(SampleGridRequest spgRequest, RoutingRequest sptRequest) {
+        long tOvershot = (long) (2 * spgRequest.offRoadDistanceMeters / OFF_ROAD_WALK_SPEED_MPS);
+        sptRequest.worstTime = (sptRequest.dateTime + (sptRequest.arriveBy ? -spgRequest.maxTimeSec
+                - tOvershot : spgRequest.maxTimeSec + tOvershot));
+        sptRequest.batch = (true);
+        sptRequest.setRoutingContext(graph);
+        // TODO swap in different state dominance logic (earliest arrival, pareto, etc.)
+        return new AStar().getShortestPathTree(sptRequest);
+    }
+
+    /**
+     * Sample a SPT using a SPTWalker into a ParallelGridSampler, keeping the earliest time of each
+     * sampling point as in {@link #sampleSPT(ShortestPathTree, ZSampleGrid, double, double, double, double, int, double)}.
+     * The sampler is left open.
+     */
+    public static void sampleSPT(final ShortestPathTree spt, final ParallelGridSampler gridSampler,
+                                 final double gridSizeMeters, final double maxDistanceMeters, final int maxTimeSec) {
+        walkReachedStreets(spt, gridSizeMeters, maxDistanceMeters, maxTimeSec,
+                (c, s0, s1, d0, d1, t0, t1) -> gridSampler.addSamplingPoint(c, Math.min(t0, t1)));
+    }
+
     /**
      * Sample a SPT using a SPTWalker and an AccumulativeGridSampler.
      */
@@ -101,10 +233,45 @@ public class SampleGridRenderer {
         AccumulativeMetric<WTWD> accMetric = new WTWDAccumulativeMetric(cosLat, offRoadDistanceMeters, offRoadWalkSpeedMps, gridSizeMeters);
         final AccumulativeGridSampler<WTWD> gridSampler = new AccumulativeGridSampler<WTWD>(sampleGrid, accMetric);
 
+        walkReachedStreets(spt, gridSizeMeters, maxDistanceMeters, maxTimeSec, (c, s0, s1, d0, d1, t0, t1) -> {
+            WTWD z = new WTWD();
+            z.w = 1.0;
+            z.d = 0.0;
+            if (t0 < t1) {
+                z.wTime = t0;
+                z.wBoardings = s0.getNumBoardings();
+                z.wWalkDist = s0.getTraverseDistanceInMeters() + d0;
+            } else {
+                z.wTime = t1;
+                z.wBoardings = s1.getNumBoardings();
+                z.wWalkDist = s1.getTraverseDistanceInMeters() + d1;
+            }
+            gridSampler.addSamplingPoint(c, z, offRoadWalkSpeedMps);
+        });
+        gridSampler.close();
+    }
+
+    /** A point along a street edge, reached from either end of the edge, at least one of them within the limits */
+    private interface ReachedPointVisitor {
+        /**
+         * @param t0 time at the point when coming from s0, infinite if it is further than the maximum distance
+         * @param t1 time at the point when coming from s1, infinite if it is further than the maximum distance
+         */
+        void visit(Coordinate c, State s0, State s1, double d0, double d1, double t0, double t1);
+    }
+
+    /**
+     * Walk the street edges of a SPT, splitting them into points at half the grid size, and pass the points reached
+     * within the maximum time and distance to the visitor.
+     */
+    private static void walkReachedStreets(final ShortestPathTree spt, final double gridSizeMeters,
+                                           final double maxDistanceMeters, final int maxTimeSec,
+                                           final ReachedPointVisitor visitor) {
         // At which distance we split edges along the geometry during sampling.
         // For best results, this should be slighly lower than the grid size.
         double walkerSplitDistanceMeters = gridSizeMeters * 0.5;
 
+        // A location is not reached until the rented vehicle, if any, has been dropped off
         SPTWalker johnny = new SPTWalker(spt);
         johnny.walk(new SPTVisitor() {
             @Override
@@ -114,8 +281,6 @@ public class SampleGridRenderer {
 
             @Override
             public final void visit(Edge e, Coordinate c, State s0, State s1, double d0, double d1, double speedAlongEdge) {
-                if (s0.isCurrentlyRentingVehicle())
-                    return;
                 double wd0 = s0.getTraverseDistanceInMeters() + d0;
                 double wd1 = s0.getTraverseDistanceInMeters() + d1;
                 double t0 = wd0 > maxDistanceMeters ? Double.POSITIVE_INFINITY : s0.getActiveTime()
@@ -123,25 +288,77 @@ public class SampleGridRenderer {
                 double t1 = wd1 > maxDistanceMeters ? Double.POSITIVE_INFINITY : s1.getActiveTime()
                         + d1 / speedAlongEdge;
                 if (t0 < maxTimeSec || t1 < maxTimeSec) {
-                    if (!Double.isInfinite(t0) || !Double.isInfinite(t1)) {
-                        WTWD z = new WTWD();
-                        z.w = 1.0;
-                        z.d = 0.0;
-                        if (t0 < t1) {
-                            z.wTime = t0;
-                            z.wBoardings = s0.getNumBoardings();
-                            z.wWalkDist = s0.getTraverseDistanceInMeters() + d0;
-                        } else {
-                            z.wTime = t1;
-                            z.wBoardings = s1.getNumBoardings();
-                            z.wWalkDist = s1.getTraverseDistanceInMeters() + d1;
-                        }
-                        gridSampler.addSamplingPoint(c, z, offRoadWalkSpeedMps);
-                    }
+                    visitor.visit(c, s0, s1, d0, d1, t0, t1);
                 }
             }
-        }, walkerSplitDistanceMeters);
-        gridSampler.close();
+        }, walkerSplitDistanceMeters, state -> !state.isCurrentlyRentingVehicle());
+    }
+
+    /**
+     * Identifies the grid of a rent-vehicle search. The request is a copy made for the key only, with the origin
+     * replaced by {@link #CELL_ORIGIN}, so that its equality covers all the routing parameters except the origin.
+     */
+    private static final class RentVehicleGridKey {
+
+        private final int cellX;
+
+        private final int cellY;
+
+        private final long version;
+
+        private final int precisionMeters;
+
+        private final int offRoadDistanceMeters;
+
+        private final int maxTimeSec;
+
+        private final int maxDistanceMeters;
+
+        private final Coordinate coordinateOrigin;
+
+        private final SharedVehiclesSnapshotLabel snapshotLabel;
+
+        private final RoutingRequest request;
+
+        RentVehicleGridKey(int cellX, int cellY, long version, SampleGridRequest spgRequest,
+                           RoutingRequest sptRequest) {
+            this.cellX = cellX;
+            this.cellY = cellY;
+            this.version = version;
+            this.precisionMeters = spgRequest.precisionMeters;
+            this.offRoadDistanceMeters = spgRequest.offRoadDistanceMeters;
+            this.maxTimeSec = spgRequest.maxTimeSec;
+            this.maxDistanceMeters = spgRequest.maxDistanceMeters;
+            this.coordinateOrigin = spgRequest.coordinateOrigin;
+            this.snapshotLabel = sptRequest.getAcceptedSharedVehiclesSnapshotLabel();
+            this.request = sptRequest.clone();
+            this.request.from = CELL_ORIGIN;
+            this.request.batch = true;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof RentVehicleGridKey)) {
+                return false;
+            }
+            RentVehicleGridKey other = (RentVehicleGridKey) o;
+            return cellX == other.cellX
+                    && cellY == other.cellY
+                    && version == other.version
+                    && precisionMeters == other.precisionMeters
+                    && offRoadDistanceMeters == other.offRoadDistanceMeters
+                    && maxTimeSec == other.maxTimeSec
+                    && maxDistanceMeters == other.maxDistanceMeters
+                    && Objects.equals(coordinateOrigin, other.coordinateOrigin)
+                    && snapshotLabel.equals(other.snapshotLabel)
+                    && request.equals(other.request);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(cellX, cellY, version, precisionMeters, offRoadDistanceMeters, maxTimeSec,
+                    maxDistanceMeters, coordinateOrigin, snapshotLabel, request);
+        }
     }
 
     /**
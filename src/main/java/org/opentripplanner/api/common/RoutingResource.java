@@ -363,6 +363,19 @@ public abstract class RoutingResource {
     @QueryParam("showIntermediateStops")
     protected Boolean showIntermediateStops;
 
+    /**
+     * Whether turn-by-turn walk steps should be returned in the response. Clients which only draw itineraries on a map
+     * can skip them.
+     */
+    @QueryParam("showWalkSteps")
+    protected Boolean showWalkSteps;
+
+    /**
+     * Whether encoded leg geometries should be returned in the response.
+     */
+    @QueryParam("showLegGeometry")
+    protected Boolean showLegGeometry;
+
     /**
      * Prevents unnecessary transfers by adding a cost for boarding a vehicle. This is the cost that
      * is used when boarding while walking.
@@ -507,6 +520,13 @@ public abstract class RoutingResource {
     @QueryParam("reverseOptimizationEnabled")
     protected Boolean reverseOptimizationEnabled;
 
+    /**
+     * If true, the transit part of depart-after trips is planned with RAPTOR rounds instead of A*, which is faster for
+     * trips with several transfers. Realtime updates of the timetables are not taken into account when choosing trips.
+     */
+    @QueryParam("useRaptor")
+    protected Boolean useRaptor;
+
     @QueryParam("boardSlack")
     private Integer boardSlack;
 
@@ -532,6 +552,12 @@ public abstract class RoutingResource {
     @QueryParam("remainingWeightMultiplier")
     protected Double remainingWeightMultiplier;
 
+    /**
+     * How much heavier than the best itinerary (as a fraction of its weight) further itineraries may be.
+     */
+    @QueryParam("maxWeightSlackOverBest")
+    protected Double maxWeightSlackOverBest;
+
     @QueryParam("kickscooterRangeGroups")
     protected ArrayList<Double> kickscooterRangeGroups;
     /*
@@ -736,6 +762,12 @@ public abstract class RoutingResource {
         if (showIntermediateStops != null)
             request.showIntermediateStops = showIntermediateStops;
 
+        if (showWalkSteps != null)
+            request.showWalkSteps = showWalkSteps;
+
+        if (showLegGeometry != null)
+            request.showLegGeometry = showLegGeometry;
+
         if (intermediatePlaces != null)
             request.setIntermediatePlacesFromStrings(intermediatePlaces);
 
@@ -866,6 +898,9 @@ public abstract class RoutingResource {
             request.reverseOptimizationEnabled = reverseOptimizationEnabled;
         }
 
+        if (useRaptor != null)
+            request.useRaptor = useRaptor;
+
         if (ignoreRealtimeUpdates != null)
             request.ignoreRealtimeUpdates = ignoreRealtimeUpdates;
 
@@ -875,6 +910,9 @@ public abstract class RoutingResource {
         if (remainingWeightMultiplier != null)
             request.remainingWeighMultiplier = remainingWeightMultiplier;
 
+        if (maxWeightSlackOverBest != null)
+            request.maxWeightSlackOverBest = maxWeightSlackOverBest;
+
         if (differRangeGroups != null)
             request.routingStateDiffOptions.differRangeGroups = differRangeGroups;
 
@@ -0,0 +1,35 @@
+package org.opentripplanner.api.model;
+
+import org.opentripplanner.api.model.error.PlannerError;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Travel times and prices from each of N origins to each of M destinations, indexed [origin][destination] in the
+ * order in which the points were requested.
+ */
+public class TravelMatrix {
+
+    /** Duration and price between points which cannot be reached from each other within the time limit */
+    public static final int UNREACHABLE = -1;
+
+    /** Travel durations in seconds, {@link #UNREACHABLE} if there is no way between two points */
+    public long[][] durations;
+
+    /** Prices of renting vehicles on the way, {@link #UNREACHABLE} if there is no way between two points */
+    public double[][] prices;
+
+    /** The error (if any) that prevented computing the whole matrix */
+    public PlannerError error;
+
+    /** Indices of the origins for which the search failed, their rows are reported as {@link #UNREACHABLE} */
+    public List<Integer> failedOrigins = new ArrayList<>();
+
+    public TravelMatrix() { }
+
+    public TravelMatrix(int origins, int destinations) {
+        durations = new long[origins][destinations];
+        prices = new double[origins][destinations];
+    }
+}
@@ -36,6 +36,8 @@ public class DebugOutput {
     public long renderingTime;
     public long totalTime;
     public boolean timedOut;
+    /* Number of states not explored by each search because they could not get close enough to the best itinerary */
+    public List<Integer> prunedStates = Lists.newArrayList();
 
     /**
      * Record the time when we first began calculating a path for this request
@@ -58,6 +60,11 @@ public class DebugOutput {
         foundPaths.add(System.currentTimeMillis());
     }
 
+    /** Record how many states a search did not explore because of the weight of already found itineraries. */
+    public void prunedStates(int count) {
+        prunedStates.add(count);
+    }
+
     /** Record the time when we finished calculating paths for this request. */
     public void finishedCalculating() {
         finishedCalculating = System.currentTimeMillis();
@@ -37,11 +37,13 @@ import org.opentripplanner.routing.spt.GraphPath;
 import org.opentripplanner.routing.trippattern.TripTimes;
 import org.opentripplanner.routing.vertextype.*;
 import org.opentripplanner.util.PolylineEncoder;
+import org.opentripplanner.util.monitoring.Metrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -58,6 +60,16 @@ public abstract class GraphPathToTripPlanConverter {
      * Generates a TripPlan from a set of paths
      */
     public static TripPlan generatePlan(List<GraphPath> paths, RoutingRequest request, StreetVertexIndexService streetIndex) {
+        TripPlan plan = generateEmptyPlan(paths, request);
+        generateItineraries(paths, request, streetIndex, plan, plan::addItinerary);
+        request.rctx.debugOutput.finishedRendering();
+        return plan;
+    }
+
+    /**
+     * Generates a TripPlan between the endpoints of a set of paths, without any itineraries
+     */
+    public static TripPlan generateEmptyPlan(List<GraphPath> paths, RoutingRequest request) {
 
         Locale requestedLocale = request.locale;
 
@@ -80,53 +92,61 @@ public abstract class GraphPathToTripPlanConverter {
         from.orig = request.from.name;
         to.orig = request.to.name;
 
-        TripPlan plan = new TripPlan(from, to, request.getDateTime());
+        return new TripPlan(from, to, request.getDateTime());
+    }
 
-        // Convert GraphPaths to Itineraries, keeping track of the best non-transit (e.g. walk/bike-only) option time
+    /**
+     * Converts paths into the itineraries of a plan one at a time, handing each itinerary to the consumer before the
+     * next one is generated, so that it can be written out and forgotten. Transit itineraries with more walking than
+     * the best non-transit one are skipped.
+     */
+    public static void generateItineraries(List<GraphPath> paths, RoutingRequest request,
+                                           StreetVertexIndexService streetIndex, TripPlan plan,
+                                           Consumer<Itinerary> consumer) {
+        // The time spent by the consumer (e.g. writing the itinerary to the client) is not part of the conversion
+        long conversionStartNanos = System.nanoTime();
+        long consumerNanos = 0;
+        // Keep track of the best non-transit (e.g. walk/bike-only) option time, only times are needed for that
         long bestNonTransitTime = Long.MAX_VALUE;
-        List<Itinerary> itineraries = new LinkedList<>();
         for (GraphPath path : paths) {
-            Itinerary itinerary = generateItinerary(path, request.showIntermediateStops, request.disableAlertFiltering, requestedLocale, streetIndex);
-            itinerary = adjustItinerary(request, itinerary);
-            if (itinerary.transitTime == 0 && itinerary.walkTime < bestNonTransitTime) {
-                bestNonTransitTime = itinerary.walkTime;
+            Itinerary times = new Itinerary();
+            calculateTimes(times, path.states);
+            if (times.transitTime == 0 && times.walkTime < bestNonTransitTime) {
+                bestNonTransitTime = times.walkTime;
             }
-            itineraries.add(itinerary);
         }
 
-        // Filter and add itineraries to plan
-        for (Itinerary itinerary : itineraries) {
+        for (GraphPath path : paths) {
+            Itinerary itinerary = generateItinerary(path, request.showIntermediateStops, request.showWalkSteps,
+                    request.showLegGeometry, request.disableAlertFiltering, request.locale, streetIndex);
+            itinerary = adjustItinerary(request, itinerary);
             // If this is a transit option whose walk/bike time is greater than that of the walk/bike-only option,
             // do not include in plan
             if (itinerary.transitTime > 0 && itinerary.walkTime > bestNonTransitTime) continue;
 
-            plan.addItinerary(itinerary);
-        }
-
-        if (plan != null) {
-            for (Itinerary i : plan.itinerary) {
-                /* Communicate the fact that the only way we were able to get a response was by removing a slope limit. */
-                i.tooSloped = request.rctx.slopeRestrictionRemoved;
-                /* fix up from/to on first/last legs */
-                if (i.legs.size() == 0) {
-                    LOG.warn("itinerary has no legs");
-                    continue;
-                }
-                Leg firstLeg = i.legs.get(0);
+            /* Communicate the fact that the only way we were able to get a response was by removing a slope limit. */
+            itinerary.tooSloped = request.rctx.slopeRestrictionRemoved;
+            /* fix up from/to on first/last legs */
+            if (itinerary.legs.size() == 0) {
+                LOG.warn("itinerary has no legs");
+            } else {
+                Leg firstLeg = itinerary.legs.get(0);
                 firstLeg.from.orig = plan.from.orig;
-                Leg lastLeg = i.legs.get(i.legs.size() - 1);
+                Leg lastLeg = itinerary.legs.get(itinerary.legs.size() - 1);
                 lastLeg.to.orig = plan.to.orig;
 
-                for (Leg leg : i.legs) {
+                for (Leg leg : itinerary.legs) {
                     if (leg.mode != TraverseMode.WALK && !leg.isTransitLeg() && Objects.isNull(leg.vehicleDescription)) {
                         LOG.warn("Returning leg without vehicle description for leg: from {} to {}, mode: {} (request: {})",
                                 leg.from.name, leg.to.name, leg.mode, request);
                     }
                 }
             }
+            long consumerStartNanos = System.nanoTime();
+            consumer.accept(itinerary);
+            consumerNanos += System.nanoTime() - consumerStartNanos;
         }
-        request.rctx.debugOutput.finishedRendering();
-        return plan;
+        Metrics.ITINERARY_CONVERSION_DURATION.recordSince(conversionStartNanos + consumerNanos);
     }
 
     /**
@@ -157,6 +177,18 @@ public abstract class GraphPathToTripPlanConverter {
     public static Itinerary generateItinerary(GraphPath path, boolean showIntermediateStops,
                                               boolean disableAlertFiltering, Locale requestedLocale,
                                               StreetVertexIndexService streetIndex) {
+        return generateItinerary(path, showIntermediateStops, true, true, disableAlertFiltering, requestedLocale,
+                streetIndex);
+    }
+
+    /**
+     * @param showWalkSteps   Whether to include walk steps in the legs or not
+     * @param showLegGeometry Whether to include encoded geometries of the legs or not
+     * @see #generateItinerary(GraphPath, boolean, boolean, Locale, StreetVertexIndexService)
+     */
+    public static Itinerary generateItinerary(GraphPath path, boolean showIntermediateStops, boolean showWalkSteps,
+                                              boolean showLegGeometry, boolean disableAlertFiltering,
+                                              Locale requestedLocale, StreetVertexIndexService streetIndex) {
         Itinerary itinerary = new Itinerary();
 
         State lastState = path.states.getLast();
@@ -176,10 +208,13 @@ public abstract class GraphPathToTripPlanConverter {
         }
 
         for (LegStateSplit legStates : legsStates) {
-            itinerary.addLeg(generateLeg(graph, legStates, showIntermediateStops, disableAlertFiltering, requestedLocale, streetIndex));
+            itinerary.addLeg(generateLeg(graph, legStates, showIntermediateStops, showLegGeometry, disableAlertFiltering,
+                    requestedLocale, streetIndex));
         }
 
-        addWalkSteps(graph, itinerary.legs, legsStates, requestedLocale);
+        if (showWalkSteps) {
+            addWalkSteps(graph, itinerary.legs, legsStates, requestedLocale);
+        }
 
         fixupLegs(itinerary.legs, legsStates);
 
@@ -216,15 +251,6 @@ public abstract class GraphPathToTripPlanConverter {
         itinerary.itineraryType = generateItineraryType(itinerary.legs);
         itinerary.usedNotRecommendedRoute = path.states.stream().anyMatch(s -> s.usedNotRecommendedRoute);
 
-        String googleMapsURL = "https://www.google.pl/maps/dir/";
-        List<Place> places = itinerary.legs.stream().map(leg -> leg.from).collect(Collectors.toList());
-        places.add(itinerary.legs.get(itinerary.legs.size() - 1).to);
-
-        googleMapsURL = places.stream().map(place -> "'" + place.lat + "," + place.lon + "'/").reduce(googleMapsURL, (s1, s2) -> s1 + s2);
-
-//        TODO this probably should be removed
-        System.out.println(googleMapsURL + "     TODO please remove me");
-
         return itinerary;
     }
 
@@ -385,10 +411,11 @@ public abstract class GraphPathToTripPlanConverter {
      *
      * @param legStateSplit         Split containing list of states the leg is based on
      * @param showIntermediateStops Whether to include intermediate stops in the leg or not
+     * @param showLegGeometry       Whether to include the encoded geometry of the leg or not
      * @return The generated leg
      */
     private static Leg generateLeg(Graph graph, LegStateSplit legStateSplit, boolean showIntermediateStops,
-                                   boolean disableAlertFiltering, Locale requestedLocale,
+                                   boolean showLegGeometry, boolean disableAlertFiltering, Locale requestedLocale,
                                    StreetVertexIndexService streetIndex) {
         Leg leg = new Leg();
         List<Edge> edges = new ArrayList<>(legStateSplit.getStates().size() - 1);
@@ -411,7 +438,9 @@ public abstract class GraphPathToTripPlanConverter {
 
         addPlaces(leg, states, edges, showIntermediateStops, requestedLocale, streetIndex);
 
-        addLegGeometryToLeg(leg, edges, legStateSplit);
+        if (showLegGeometry) {
+            addLegGeometryToLeg(leg, edges, legStateSplit);
+        }
 
         leg.interlineWithPreviousLeg = states.get(0).getBackEdge() instanceof PatternInterlineDwell;
 
@@ -15,6 +15,7 @@ import org.locationtech.jts.geom.MultiPolygon;
 import org.opengis.feature.simple.SimpleFeatureType;
 import org.opentripplanner.analyst.core.IsochroneData;
 import org.opentripplanner.analyst.request.IsoChroneRequest;
+import org.opentripplanner.analyst.request.IsoChroneSPTRenderer;
 import org.opentripplanner.api.common.RoutingResource;
 import org.opentripplanner.common.model.GenericLocation;
 import org.opentripplanner.routing.core.RoutingRequest;
@@ -50,6 +51,12 @@ import java.util.zip.ZipOutputStream;
  * http://localhost:8080/otp-rest-servlet/ws/isochrone?routerId=bordeaux&algorithm=accSampling&fromPlace=47.059,-0.880&date=2013/10/01&time=12:00:00&maxWalkDistance=1000&mode=WALK,TRANSIT&cutoffSec=1800&cutoffSec=3600
  * </code>
  * 
+ * The algorithm is either accSampling (the default) or parallelGrid, which samples the shortest
+ * path tree onto a dense grid and extracts isolines from it in parallel. It is faster on large areas.
+ * Its polygons are close to those of accSampling but not identical: the grid border is closed
+ * independently of the sampling order and times are rounded to whole seconds, so the outer edges of
+ * the polygons differ slightly.
+ * 
  * @author laurent
  */
 @Path("/routers/{routerId}/isochrone")
@@ -81,6 +88,14 @@ public class LIsochrone extends RoutingResource {
     @QueryParam("coordinateOrigin")
     private String coordinateOrigin = null;
 
+    @QueryParam("algorithm")
+    @DefaultValue(ALGORITHM_ACC_SAMPLING)
+    private String algorithm;
+
+    private static final String ALGORITHM_ACC_SAMPLING = "accSampling";
+
+    private static final String ALGORITHM_PARALLEL_GRID = "parallelGrid";
+
     private static final SimpleFeatureType contourSchema = makeContourSchema();
 
     @GET
@@ -166,6 +181,8 @@ public class LIsochrone extends RoutingResource {
             throw new IllegalArgumentException("Too small precisionMeters: " + precisionMeters);
         if (offRoadDistanceMeters < 10)
             throw new IllegalArgumentException("Too small offRoadDistanceMeters: " + offRoadDistanceMeters);
+        if (!ALGORITHM_ACC_SAMPLING.equals(algorithm) && !ALGORITHM_PARALLEL_GRID.equals(algorithm))
+            throw new IllegalArgumentException("Unknown algorithm: " + algorithm);
 
         IsoChroneRequest isoChroneRequest = new IsoChroneRequest(cutoffSecList);
         isoChroneRequest.includeDebugGeometry = debug;
@@ -180,7 +197,9 @@ public class LIsochrone extends RoutingResource {
         isoChroneRequest.maxTimeSec = Objects.requireNonNullElseGet(maxTimeSec, () -> isoChroneRequest.maxCutoffSec);
 
         Router router = otpServer.getRouter(routerId);
-        return router.isoChroneSPTRenderer.getIsochrones(isoChroneRequest, sptRequest);
+        IsoChroneSPTRenderer renderer = ALGORITHM_PARALLEL_GRID.equals(algorithm)
+                ? router.parallelGridIsoChroneSPTRenderer : router.isoChroneSPTRenderer;
+        return renderer.getIsochrones(isoChroneRequest, sptRequest);
     }
 
     static SimpleFeatureType makeContourSchema() {
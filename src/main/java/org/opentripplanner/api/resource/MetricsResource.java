@@ -0,0 +1,23 @@
+package org.opentripplanner.api.resource;
+
+import org.opentripplanner.util.monitoring.Metrics;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+
+/**
+ * Exposes the metrics of this server (searches, graph updates, Hasura fetches) to be scraped by Prometheus.
+ */
+@Path("/metrics")
+public class MetricsResource {
+
+    /** Content type of the Prometheus text exposition format */
+    private static final String PROMETHEUS_TEXT = "text/plain; version=0.0.4; charset=utf-8";
+
+    @GET
+    @Produces(PROMETHEUS_TEXT)
+    public String getMetrics() {
+        return Metrics.REGISTRY.toPrometheusText();
+    }
+}
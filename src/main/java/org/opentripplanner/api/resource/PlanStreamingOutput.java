@@ -0,0 +1,133 @@
+package org.opentripplanner.api.resource;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.opentripplanner.api.model.TripPlan;
+import org.opentripplanner.api.model.error.PlannerError;
+import org.opentripplanner.routing.core.RoutingRequest;
+import org.opentripplanner.routing.services.StreetVertexIndexService;
+import org.opentripplanner.routing.spt.GraphPath;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.ws.rs.core.StreamingOutput;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Writes a planner {@link Response} as JSON while its itineraries are being generated. Each itinerary is converted
+ * from its path, written to the output and forgotten before the next one is converted, so a large multi-itinerary
+ * answer is never held in memory as a whole and the client starts receiving it as soon as the first itinerary is ready.
+ *
+ * The output is the same as the JSON serialization of a {@link Response} with the plan set, except when converting
+ * an itinerary fails: then the itineraries written so far are kept and the error is reported next to them.
+ *
+ * Jersey does not call {@link #write} at all if the client went away or a filter failed before the entity was
+ * written, so the output should also be closed at the end of the request, e.g. through Jersey's CloseableService.
+ */
+public class PlanStreamingOutput implements StreamingOutput, Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PlanStreamingOutput.class);
+
+    private final ObjectMapper mapper;
+
+    private final Response response;
+
+    private final List<GraphPath> paths;
+
+    private final RoutingRequest request;
+
+    private final StreetVertexIndexService streetIndex;
+
+    private final Runnable onFinished;
+
+    private final AtomicBoolean finished = new AtomicBoolean();
+
+    /**
+     * @param response   all fields of the response except for the plan
+     * @param paths      paths to write as the itineraries of the plan, null if there is no plan
+     * @param onFinished called once, when the response is written, writing it failed or the output is closed without
+     *                   being written, e.g. to clean up the request
+     */
+    public PlanStreamingOutput(ObjectMapper mapper, Response response, List<GraphPath> paths, RoutingRequest request,
+                               StreetVertexIndexService streetIndex, Runnable onFinished) {
+        this.mapper = mapper;
+        this.response = response;
+        this.paths = paths;
+        this.request = request;
+        this.streetIndex = streetIndex;
+        this.onFinished = onFinished;
+    }
+
+    @Override
+    public void write(OutputStream output) throws IOException {
+        try (JsonGenerator generator = mapper.getFactory().createGenerator(output)) {
+            // Fields in the same order as in Response
+            generator.writeStartObject();
+            writeField(generator, "requestParameters", response.getRequestParameters());
+            PlannerError error = response.getError();
+            if (paths != null && !paths.isEmpty()) {
+                error = writePlan(generator);
+            }
+            writeField(generator, "error", error);
+            writeField(generator, "debugOutput", response.debugOutput);
+            writeField(generator, "elevationMetadata", response.elevationMetadata);
+            generator.writeEndObject();
+        } finally {
+            close();
+        }
+    }
+
+    /** Runs the callback passed to the constructor, unless it has already been run */
+    @Override
+    public void close() {
+        if (finished.compareAndSet(false, true)) {
+            onFinished.run();
+        }
+    }
+
+    /**
+     * @return error which happened while converting paths to itineraries, or null
+     */
+    private PlannerError writePlan(JsonGenerator generator) throws IOException {
+        TripPlan plan = GraphPathToTripPlanConverter.generateEmptyPlan(paths, request);
+        PlannerError error = null;
+        generator.writeFieldName("plan");
+        generator.writeStartObject();
+        writeField(generator, "date", plan.date);
+        writeField(generator, "from", plan.from);
+        writeField(generator, "to", plan.to);
+        generator.writeArrayFieldStart("itineraries");
+        try {
+            GraphPathToTripPlanConverter.generateItineraries(paths, request, streetIndex, plan, itinerary -> {
+                try {
+                    mapper.writeValue(generator, itinerary);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            // The client went away, there is no point in writing anything more
+            throw e.getCause();
+        } catch (Exception e) {
+            LOG.warn("Error while generating itineraries: ", e);
+            error = new PlannerError(e);
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+        request.rctx.debugOutput.finishedRendering();
+        return error;
+    }
+
+    private void writeField(JsonGenerator generator, String name, Object value) throws IOException {
+        // Null fields are skipped, as in the responses serialized by Jersey
+        if (value != null) {
+            generator.writeFieldName(name);
+            mapper.writeValue(generator, value);
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package org.opentripplanner.api.resource;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.opentripplanner.analyst.core.Sample;
+import org.opentripplanner.api.common.RoutingResource;
+import org.opentripplanner.api.model.TravelMatrix;
+import org.opentripplanner.api.model.error.PlannerError;
+import org.opentripplanner.common.model.GenericLocation;
+import org.opentripplanner.routing.algorithm.AStar;
+import org.opentripplanner.routing.algorithm.profile.OptimizationProfile;
+import org.opentripplanner.routing.algorithm.profile.OptimizationProfileFactory;
+import org.opentripplanner.routing.core.RoutingRequest;
+import org.opentripplanner.routing.core.State;
+import org.opentripplanner.routing.graph.Vertex;
+import org.opentripplanner.routing.spt.ShortestPathTree;
+import org.opentripplanner.standalone.Router;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Computes travel times and prices between many origins and many destinations at once. Instead of planning a trip for
+ * each pair of points, one batch (one-to-many) search is done from each origin and all destinations are evaluated in
+ * its shortest path tree. Searches from different origins are run in parallel.
+ *
+ * All query parameters of the trip planner are accepted (modes, renting vehicles, reluctances...) except for fromPlace
+ * and toPlace, which are replaced by lists of origins and destinations.
+ */
+@Path("routers/{routerId}/planMatrix")
+public class PlannerMatrixResource extends RoutingResource {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PlannerMatrixResource.class);
+
+    /** Limits the size of a single matrix, so that one request cannot keep all threads busy for a long time */
+    private static final int MAX_POINTS = 100;
+
+    private static final int DEFAULT_MAX_TRAVEL_TIME_SEC = 2 * 60 * 60;
+
+    private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(),
+            new ThreadFactoryBuilder().setNameFormat("PlannerMatrix-%d").setDaemon(true).build());
+
+    /** Origins of the trips, each in the same "lat,lon" format as fromPlace */
+    @QueryParam("origins")
+    protected List<String> origins;
+
+    /** Destinations of the trips, each in the same "lat,lon" format as toPlace */
+    @QueryParam("destinations")
+    protected List<String> destinations;
+
+    /** Destinations which cannot be reached within this many seconds are reported as unreachable */
+    @QueryParam("maxTravelTimeSec")
+    protected Integer maxTravelTimeSec;
+
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public TravelMatrix planMatrix() {
+        TravelMatrix matrix = new TravelMatrix();
+        try {
+            List<GenericLocation> originLocations = parseLocations(origins, "origins");
+            List<GenericLocation> destinationLocations = parseLocations(destinations, "destinations");
+            RoutingRequest request = super.buildRequest();
+            Router router = otpServer.getRouter(request.routerId);
+
+            List<Sample> samples = new ArrayList<>(destinationLocations.size());
+            for (GenericLocation destination : destinationLocations) {
+                samples.add(router.graph.getSampleFactory().getSample(destination.lng, destination.lat));
+            }
+
+            matrix = new TravelMatrix(originLocations.size(), destinationLocations.size());
+            List<Future<?>> rows = new ArrayList<>(originLocations.size());
+            try {
+                for (int i = 0; i < originLocations.size(); i++) {
+                    RoutingRequest originRequest = batchRequest(request, originLocations.get(i));
+                    long[] durations = matrix.durations[i];
+                    double[] prices = matrix.prices[i];
+                    rows.add(EXECUTOR.submit(() -> evaluateRow(originRequest, router, samples, durations, prices)));
+                }
+                for (int i = 0; i < rows.size(); i++) {
+                    try {
+                        rows.get(i).get();
+                    } catch (ExecutionException e) {
+                        // The other rows are still valid, so only this one is reported as failed
+                        LOG.warn("Error while computing travel matrix row from {}: ", origins.get(i), e.getCause());
+                        Arrays.fill(matrix.durations[i], TravelMatrix.UNREACHABLE);
+                        Arrays.fill(matrix.prices[i], TravelMatrix.UNREACHABLE);
+                        matrix.failedOrigins.add(i);
+                    }
+                }
+            } finally {
+                // Has no effect on finished rows, but does not leave searches running for an aborted request
+                for (Future<?> row : rows) {
+                    row.cancel(true);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            matrix.error = new PlannerError(e);
+        } catch (Exception e) {
+            if (!PlannerError.isPlanningError(e.getClass()))
+                LOG.warn("Error while computing travel matrix: ", e);
+            matrix.error = new PlannerError(e);
+        }
+        return matrix;
+    }
+
+    private List<GenericLocation> parseLocations(List<String> places, String name) {
+        if (places == null || places.isEmpty()) {
+            throw new IllegalArgumentException("At least one of " + name + " is required");
+        }
+        if (places.size() > MAX_POINTS) {
+            throw new IllegalArgumentException("At most " + MAX_POINTS + " " + name + " are allowed");
+        }
+        List<GenericLocation> locations = new ArrayList<>(places.size());
+        for (String place : places) {
+            GenericLocation location = GenericLocation.fromOldStyleString(place);
+            if (!location.hasCoordinate()) {
+                throw new IllegalArgumentException("Coordinates expected in " + name + ": " + place);
+            }
+            locations.add(location);
+        }
+        return locations;
+    }
+
+    /**
+     * A one-to-many search from the given origin, which explores the graph up to the maximum travel time
+     */
+    private RoutingRequest batchRequest(RoutingRequest request, GenericLocation origin) {
+        RoutingRequest originRequest = request.clone();
+        originRequest.batch = true;
+        originRequest.arriveBy = false;
+        originRequest.from = origin;
+        originRequest.to = null;
+        originRequest.worstTime = originRequest.dateTime
+                + Optional.ofNullable(maxTravelTimeSec).orElse(DEFAULT_MAX_TRAVEL_TIME_SEC);
+        OptimizationProfile optimizationProfile = Optional.ofNullable(originRequest.getOptimizationProfile())
+                .orElseGet(() -> OptimizationProfileFactory.getDefaultOptimizationProfile(originRequest));
+        originRequest.dominanceFunction = optimizationProfile.getDominanceFunction();
+        return originRequest;
+    }
+
+    private static void evaluateRow(RoutingRequest request, Router router, List<Sample> samples, long[] durations,
+                                    double[] prices) {
+        Arrays.fill(durations, TravelMatrix.UNREACHABLE);
+        Arrays.fill(prices, TravelMatrix.UNREACHABLE);
+        try {
+            request.setRoutingContext(router.graph);
+            ShortestPathTree spt = new AStar().getShortestPathTree(request, request.timeouts[0]);
+            for (int j = 0; j < samples.size(); j++) {
+                Sample sample = samples.get(j);
+                if (sample == null) {
+                    continue;
+                }
+                State s0 = bestFinalState(spt, sample.v0);
+                State s1 = bestFinalState(spt, sample.v1);
+                long t0 = s0 == null ? Long.MAX_VALUE : (long) (s0.getActiveTime() + sample.d0 / request.walkSpeed);
+                long t1 = s1 == null ? Long.MAX_VALUE : (long) (s1.getActiveTime() + sample.d1 / request.walkSpeed);
+                State best = t0 <= t1 ? s0 : s1;
+                if (best != null) {
+                    durations[j] = Math.min(t0, t1);
+                    prices[j] = best.getTraversalPrice().doubleValue();
+                }
+            }
+        } finally {
+            request.cleanup();
+        }
+    }
+
+    /**
+     * @return the state reaching the vertex with the lowest weight, ignoring states which did not finish renting
+     * a vehicle
+     */
+    private static State bestFinalState(ShortestPathTree spt, Vertex vertex) {
+        if (vertex == null) {
+            return null;
+        }
+        List<State> states = spt.getStates(vertex);
+        if (states == null) {
+            return null;
+        }
+        State best = null;
+        for (State state : states) {
+            if (state.isFinal() && (best == null || state.weight < best.weight)) {
+                best = state;
+            }
+        }
+        return best;
+    }
+}
@@ -1,7 +1,10 @@
 package org.opentripplanner.api.resource;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.glassfish.grizzly.http.server.Request;
+import org.glassfish.jersey.server.CloseableService;
 import org.opentripplanner.api.common.RoutingResource;
+import org.opentripplanner.api.model.JSONObjectMapperProvider;
 import org.opentripplanner.api.model.TripPlan;
 import org.opentripplanner.api.model.error.PlannerError;
 import org.opentripplanner.routing.core.RoutingRequest;
@@ -37,12 +40,53 @@ public class PlannerResource extends RoutingResource {
 
     private static final Logger LOG = LoggerFactory.getLogger(PlannerResource.class);
 
+    private static final ObjectMapper MAPPER = new JSONObjectMapperProvider().getContext(Response.class);
+
+    /**
+     * JSON responses are written while the itineraries are generated, see {@link PlanStreamingOutput}. The request is
+     * cleaned up when the output is written, or at the end of the request if Jersey never writes it.
+     */
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public javax.ws.rs.core.Response planJson(@Context UriInfo uriInfo, @Context Request grizzlyRequest,
+                                              @Context CloseableService closeableService) {
+        Response response = new Response(uriInfo);
+        Planning planning = findPaths(response, grizzlyRequest);
+        PlanStreamingOutput output = new PlanStreamingOutput(MAPPER, response, planning.paths, planning.request,
+                planning.router == null ? null : planning.router.graph.streetIndex, () -> finish(planning, response));
+        closeableService.add(output);
+        return javax.ws.rs.core.Response.ok(output, MediaType.APPLICATION_JSON_TYPE).build();
+    }
+
     // We inject info about the incoming request so we can include the incoming query
     // parameters in the outgoing response. This is a TriMet requirement.
     // Jersey uses @Context to inject internal types and @InjectParam or @Resource for DI objects.
     @GET
-    @Produces({ MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML + Q, MediaType.TEXT_XML + Q })
+    @Produces({ MediaType.APPLICATION_XML + Q, MediaType.TEXT_XML + Q })
     public Response plan(@Context UriInfo uriInfo, @Context Request grizzlyRequest) {
+        // Create response object, containing a copy of all request parameters. Maybe they should be in the debug section of the response.
+        Response response = new Response(uriInfo);
+        Planning planning = findPaths(response, grizzlyRequest);
+        try {
+            if (planning.paths != null) {
+                /* Convert the internal GraphPaths to a TripPlan object that is included in an OTP web service Response. */
+                TripPlan plan = GraphPathToTripPlanConverter.generatePlan(planning.paths, planning.request,
+                        planning.router.graph.streetIndex);
+                response.setPlan(plan);
+            }
+        } catch (Exception e) {
+            setError(response, e);
+        } finally {
+            finish(planning, response);
+        }
+        return response;
+    }
+
+    /**
+     * Builds the routing request and finds paths for it, recording any errors in the response. Fills in all fields of
+     * the response except for the plan.
+     */
+    private Planning findPaths(Response response, Request grizzlyRequest) {
 
         /*
          * TODO: add Lang / Locale parameter, and thus get localized content (Messages & more...)
@@ -52,43 +96,33 @@ public class PlannerResource extends RoutingResource {
          *       out so it's used here too...
          */
 
-        // Create response object, containing a copy of all request parameters. Maybe they should be in the debug section of the response.
-        Response response = new Response(uriInfo);
-        RoutingRequest request = null;
-        Router router = null;
-        List<GraphPath> paths = null;
+        Planning planning = new Planning();
         try {
 
             /* Fill in request fields from query parameters via shared superclass method, catching any errors. */
-            request = super.buildRequest();
-            router = otpServer.getRouter(request.routerId);
+            planning.request = super.buildRequest();
+            planning.router = otpServer.getRouter(planning.request.routerId);
 
             /* Find some good GraphPaths through the OTP Graph. */
-            GraphPathFinder gpFinder = new GraphPathFinder(router); // we could also get a persistent router-scoped GraphPathFinder but there's no setup cost here
-            paths = gpFinder.graphPathFinderEntryPoint(request);
-
-            /* Convert the internal GraphPaths to a TripPlan object that is included in an OTP web service Response. */
-            TripPlan plan = GraphPathToTripPlanConverter.generatePlan(paths, request, router.graph.streetIndex);
-            response.setPlan(plan);
+            GraphPathFinder gpFinder = new GraphPathFinder(planning.router); // we could also get a persistent router-scoped GraphPathFinder but there's no setup cost here
+            planning.paths = gpFinder.graphPathFinderEntryPoint(planning.request);
 
         } catch (Exception e) {
-            PlannerError error = new PlannerError(e);
-            if(!PlannerError.isPlanningError(e.getClass()))
-                LOG.warn("Error while planning path: ", e);
-            response.setError(error);
-        } finally {
-            if (request != null) {
-                if (request.rctx != null) {
-                    response.debugOutput = request.rctx.debugOutput;
-                }
-                request.cleanup(); // TODO verify that this cleanup step is being done on Analyst web services
-            }
+            setError(response, e);
+        }
+
+        RoutingRequest request = planning.request;
+        Router router = planning.router;
+        if (request != null && request.rctx != null) {
+            response.debugOutput = request.rctx.debugOutput;
         }
 
         /* Populate up the elevation metadata */
-        response.elevationMetadata = new ElevationMetadata();
-        response.elevationMetadata.ellipsoidToGeoidDifference = router.graph.ellipsoidToGeoidDifference;
-        response.elevationMetadata.geoidElevation = request.geoidElevation;
+        if (request != null && router != null) {
+            response.elevationMetadata = new ElevationMetadata();
+            response.elevationMetadata.ellipsoidToGeoidDifference = router.graph.ellipsoidToGeoidDifference;
+            response.elevationMetadata.geoidElevation = request.geoidElevation;
+        }
 
         /* Log this request if such logging is enabled. */
         if (request != null && router != null && router.requestLogger != null) {
@@ -111,8 +145,8 @@ public class PlannerResource extends RoutingResource {
             sb.append(' ');
             sb.append(request.to.lng);
             sb.append(' ');
-            if (paths != null) {
-                for (GraphPath path : paths) {
+            if (planning.paths != null) {
+                for (GraphPath path : planning.paths) {
                     sb.append(path.getDuration());
                     sb.append(' ');
                     sb.append(path.getTrips().size());
@@ -121,7 +155,30 @@ public class PlannerResource extends RoutingResource {
             }
             router.requestLogger.info(sb.toString());
         }
-        return response;
+        return planning;
+    }
+
+    private static void setError(Response response, Exception e) {
+        PlannerError error = new PlannerError(e);
+        if(!PlannerError.isPlanningError(e.getClass()))
+            LOG.warn("Error while planning path: ", e);
+        response.setError(error);
+    }
+
+    /** Called once the response is complete, the temporary vertices of the request are no longer needed. */
+    private static void finish(Planning planning, Response response) {
+        if (planning.request != null) {
+            if (planning.request.rctx != null) {
+                response.debugOutput = planning.request.rctx.debugOutput;
+            }
+            planning.request.cleanup(); // TODO verify that this cleanup step is being done on Analyst web services
+        }
     }
 
+    /** Result of finding paths, any of the fields may be null if it failed. */
+    private static class Planning {
+        RoutingRequest request;
+        Router router;
+        List<GraphPath> paths;
+    }
 }
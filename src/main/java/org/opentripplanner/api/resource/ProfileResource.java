@@ -77,6 +77,7 @@ public class ProfileResource {
             @QueryParam("egressModes")  @DefaultValue("WALK")         QualifiedModeSet egressModes,
             @QueryParam("directModes")  @DefaultValue("WALK,BICYCLE") QualifiedModeSet directModes,
             @QueryParam("transitModes") @DefaultValue("TRANSIT")      TraverseModeSet transitModes,
+            @QueryParam("parallelism")  @DefaultValue("1")     int parallelism,
             @QueryParam("banAgency") String banAgency)
             throws Exception {
 
@@ -94,6 +95,7 @@ public class ProfileResource {
         QueryParameter.checkRangeInclusive(bikeSafe,  0, 1000);
         QueryParameter.checkRangeInclusive(bikeSlope, 0, 1000);
         QueryParameter.checkRangeInclusive(bikeTime,  0, 1000);
+        QueryParameter.checkRangeInclusive(parallelism, 1, 64);
 
         ProfileRequest req = new ProfileRequest();
         req.fromLat      = from.lat;
@@ -126,6 +128,7 @@ public class ProfileResource {
         req.bikeSlope    = bikeSlope;
         req.bikeTime     = bikeTime;
         req.suboptimalMinutes = suboptimalMinutes;
+        req.parallelism  = parallelism;
 
         if (req.analyst) {
             if (surfaceCache == null) {
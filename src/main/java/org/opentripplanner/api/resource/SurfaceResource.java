@@ -7,6 +7,7 @@ import org.geotools.geometry.Envelope2D;
 import org.opentripplanner.analyst.PointSet;
 import org.opentripplanner.analyst.ResultSet;
 import org.opentripplanner.analyst.SampleSet;
+import org.opentripplanner.analyst.SurfaceCache;
 import org.opentripplanner.analyst.TimeSurface;
 import org.opentripplanner.analyst.core.IsochroneData;
 import org.opentripplanner.analyst.core.SlippyTile;
@@ -24,6 +25,7 @@ import org.opentripplanner.api.parameter.Style;
 import org.opentripplanner.common.geometry.DelaunayIsolineBuilder;
 import org.opentripplanner.routing.algorithm.EarliestArrivalSearch;
 import org.opentripplanner.routing.core.RoutingRequest;
+import org.opentripplanner.routing.graph.Graph;
 import org.opentripplanner.routing.spt.ShortestPathTree;
 import org.opentripplanner.standalone.Router;
 import org.slf4j.Logger;
@@ -58,6 +60,8 @@ public class SurfaceResource extends RoutingResource {
 
     private static final Logger LOG = LoggerFactory.getLogger(TimeSurface.class);
 
+    private static final String OTPA_SURFACE_STALENESS = "OTPA-Surface-Staleness";
+
     @Context
     UriInfo uriInfo;
 
@@ -72,12 +76,9 @@ public class SurfaceResource extends RoutingResource {
            
             // routerId is optional -- select default graph if not set
             Router router = otpServer.getRouter(routerId);
-            req.setRoutingContext(router.graph);
-        	
-            EarliestArrivalSearch sptService = new EarliestArrivalSearch();
-            sptService.maxDuration = (60 * cutoffMinutes);
-            ShortestPathTree spt = sptService.getShortestPathTree(req);
-            req.cleanup();
+            Graph graph = router.graph;
+
+            ShortestPathTree spt = search(req, graph, cutoffMinutes);
             if (spt != null) {
                 TimeSurface surface = new TimeSurface(spt);
                 surface.params = Maps.newHashMap();
@@ -86,7 +87,8 @@ public class SurfaceResource extends RoutingResource {
                     surface.params.put(e.getKey(), e.getValue().get(0));
                 }
                 surface.cutoffMinutes = cutoffMinutes;
-                otpServer.surfaceCache.add(surface);
+                // the surface is recomputed when vehicles or traffic change where it reaches
+                otpServer.surfaceCache.add(surface, graph, currentGraph -> search(req, currentGraph, cutoffMinutes));
                 return Response.ok().entity(new TimeSurfaceShort(surface)).build(); // .created(URI)
             } else {
                 return Response.noContent().entity("NO SPT").build();
@@ -97,6 +99,20 @@ public class SurfaceResource extends RoutingResource {
 
     }
 
+    /** Search on a copy of the request, so that the search can be repeated when the graph changes */
+    private static ShortestPathTree search(RoutingRequest request, Graph graph, int cutoffMinutes) {
+        RoutingRequest req = request.clone();
+        req.rctx = null;
+        req.setRoutingContext(graph);
+        EarliestArrivalSearch sptService = new EarliestArrivalSearch();
+        sptService.maxDuration = (60 * cutoffMinutes);
+        try {
+            return sptService.getShortestPathTree(req);
+        } finally {
+            req.cleanup();
+        }
+    }
+
     /** List all the available surfaces. */
     @GET
     public Response getTimeSurfaceList () {
@@ -108,7 +124,7 @@ public class SurfaceResource extends RoutingResource {
     public Response getTimeSurfaceList (@PathParam("surfaceId") Integer surfaceId) {
         TimeSurface surface = otpServer.surfaceCache.get(surfaceId);
         if (surface == null) return Response.status(Response.Status.NOT_FOUND).entity("Invalid surface ID.").build();
-        return Response.ok().entity(new TimeSurfaceShort(surface)).build();
+        return withStaleness(Response.ok().entity(new TimeSurfaceShort(surface)), surface);
         // DEBUG return Response.ok().entity(surface).build();
     }
 
@@ -137,12 +153,12 @@ public class SurfaceResource extends RoutingResource {
         final ResultSet indicator = new ResultSet(samples, surf, detail, detail);
         if (indicator == null) return badServer("Could not compute indicator as requested.");
 
-        return Response.ok().entity(new StreamingOutput() {
+        return withStaleness(Response.ok().entity(new StreamingOutput() {
             @Override
             public void write(OutputStream output) throws IOException, WebApplicationException {
                 indicator.writeJson(output);
             }
-        }).build();
+        }), surf);
 
     }
 
@@ -158,13 +174,13 @@ public class SurfaceResource extends RoutingResource {
         List<IsochroneData> isochrones = getIsochronesAccumulative(surf, spacing, nMax);
         // NOTE that cutoffMinutes in the surface must be properly set for the following call to work
         final FeatureCollection fc = LIsochrone.makeContourFeatures(isochrones);
-        return Response.ok().entity(new StreamingOutput() {
+        return withStaleness(Response.ok().entity(new StreamingOutput() {
             @Override
             public void write(OutputStream output) throws IOException {
                 FeatureJSON fj = new FeatureJSON();
                 fj.writeFeatureCollection(fc, output);
             }
-        }).build();
+        }), surf);
     }
 
     @Path("/{surfaceId}/isotiles/{z}/{x}/{y}.png")
@@ -185,7 +201,8 @@ public class SurfaceResource extends RoutingResource {
                 new RenderRequest(imageFormat, Layer.TRAVELTIME, Style.COLOR30, true, false);
         // TODO why can't the renderer be static?
         Router router = otpServer.getRouter(surfA.routerId);
-        return router.renderer.getResponse(tileRequest, surfA, null, renderRequest);
+        return withStaleness(Response.fromResponse(
+                router.renderer.getResponse(tileRequest, surfA, null, renderRequest)), surfA);
     }
     /**
      * Renders a raster tile for showing the difference between two TimeSurfaces.
@@ -226,7 +243,21 @@ public class SurfaceResource extends RoutingResource {
         RenderRequest renderRequest = new RenderRequest(imageFormat, Layer.DIFFERENCE, Style.DIFFERENCE, true, false);
         // TODO why can't the renderer be static?
         Router router = otpServer.getRouter(surfA.routerId);
-        return router.renderer.getResponse(tileRequest, surfA, surfB, renderRequest);
+        return withStaleness(Response.fromResponse(
+                router.renderer.getResponse(tileRequest, surfA, surfB, renderRequest)), surfA, surfB);
+    }
+
+    /**
+     * Tell how many seconds ago the vehicles or traffic the surfaces were computed from changed, 0 if they did not.
+     * Surfaces are recomputed in the background and never served when more than
+     * {@link SurfaceCache#MAX_STALENESS_MILLIS} stale, unless their recomputation fails.
+     */
+    private Response withStaleness(Response.ResponseBuilder response, TimeSurface... surfaces) {
+        long stalenessMillis = SurfaceCache.FRESH;
+        for (TimeSurface surface : surfaces) {
+            stalenessMillis = Math.max(stalenessMillis, otpServer.surfaceCache.getStalenessMillis(surface.id));
+        }
+        return response.header(OTPA_SURFACE_STALENESS, (stalenessMillis + 999) / 1000).build();
     }
 
     private Response badRequest(String message) {
@@ -296,7 +327,8 @@ public class SurfaceResource extends RoutingResource {
 
         TileRequest tileRequest = new TileRequest(bbox, width, height);
         RenderRequest renderRequest = new RenderRequest(format, Layer.TRAVELTIME, Style.GRAY, false, false);
-        return router.renderer.getResponse(tileRequest, surface, null, renderRequest);
+        return withStaleness(Response.fromResponse(
+                router.renderer.getResponse(tileRequest, surface, null, renderRequest)), surface);
     }
 
 
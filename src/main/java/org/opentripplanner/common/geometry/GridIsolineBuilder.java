@@ -0,0 +1,161 @@
+package org.opentripplanner.common.geometry;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.Polygon;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Compute isolines of a {@link TimeDistanceGrid} by marching squares, rows being processed in
+ * parallel.
+ *
+ * Each square of the grid is split along its lower-left to upper-right diagonal, as in the
+ * triangulation of a {@link SparseMatrixZSampleGrid}, and the cutting and interpolation rules are
+ * those of the WTWD isoline metric: a sample is inside when its off-road distance is within the
+ * maximum and its time is before the cutoff, and crossings are interpolated on distance when one
+ * end is too far off-road, on time otherwise. Isolines are thus the same as those of a
+ * {@link DelaunayIsolineBuilder} on the same samples.
+ *
+ * In each triangle crossed by the isoline, the segment going from the edge leaving the inside to
+ * the edge entering it keeps the inside on its left. Linking these edges forms closed rings, CCW
+ * around shells and CW around holes, which are then traced one after the other.
+ */
+public class GridIsolineBuilder {
+
+    private static final int HORIZONTAL = 0;
+
+    private static final int VERTICAL = 1;
+
+    private static final int DIAGONAL = 2;
+
+    private final TimeDistanceGrid grid;
+
+    private GeometryFactory geometryFactory = new GeometryFactory();
+
+    public GridIsolineBuilder(TimeDistanceGrid grid) {
+        this.grid = grid;
+    }
+
+    /**
+     * @param cutoffSec Time of the isoline, in seconds.
+     * @param offRoadDistanceMeters Samples farther off-road are never inside.
+     */
+    public Geometry computeIsoline(int cutoffSec, double offRoadDistanceMeters) {
+        List<LinearRing> rings = new ArrayList<LinearRing>();
+        if (grid.width > 1 && grid.height > 1) {
+            // For each edge leaving the inside, the edge through which the isoline enters it again
+            int[] nextEdge = new int[3 * grid.width * grid.height];
+            Arrays.fill(nextEdge, -1);
+            IntStream.range(0, grid.height - 1).parallel()
+                    .forEach(y -> marchRow(y, cutoffSec, offRoadDistanceMeters, nextEdge));
+            traceRings(nextEdge, cutoffSec, offRoadDistanceMeters, rings);
+        }
+        List<Polygon> polygons = DelaunayIsolineBuilder.punchHoles(geometryFactory, rings);
+        return geometryFactory
+                .createGeometryCollection(polygons.toArray(new Geometry[polygons.size()]));
+    }
+
+    private void marchRow(int y, int cutoffSec, double offRoadDistanceMeters, int[] nextEdge) {
+        for (int x = 0; x < grid.width - 1; x++) {
+            int p00 = grid.index(x, y);
+            int p10 = p00 + 1;
+            int p01 = p00 + grid.width;
+            int p11 = p01 + 1;
+            if (!grid.isSet(p00) || !grid.isSet(p11))
+                continue;
+            // Samples at both ends of the diagonal are shared by the two triangles
+            boolean in00 = isInside(p00, cutoffSec, offRoadDistanceMeters);
+            boolean in11 = isInside(p11, cutoffSec, offRoadDistanceMeters);
+            if (grid.isSet(p10)) {
+                marchTriangle(in00, isInside(p10, cutoffSec, offRoadDistanceMeters), in11,
+                        edge(p00, HORIZONTAL), edge(p10, VERTICAL), edge(p00, DIAGONAL), nextEdge);
+            }
+            if (grid.isSet(p01)) {
+                marchTriangle(in00, in11, isInside(p01, cutoffSec, offRoadDistanceMeters),
+                        edge(p00, DIAGONAL), edge(p01, HORIZONTAL), edge(p00, VERTICAL), nextEdge);
+            }
+        }
+    }
+
+    /**
+     * Link the edges of a triangle crossed by the isoline. A, B and C are in CCW order, and the
+     * edges given in the same order. Each edge is left by the isoline in one triangle only, so
+     * triangles can be processed concurrently.
+     */
+    private static void marchTriangle(boolean inA, boolean inB, boolean inC, int eAB, int eBC,
+            int eCA, int[] nextEdge) {
+        if (inA == inB && inB == inC)
+            return;
+        int exit = inA && !inB ? eAB : inB && !inC ? eBC : eCA;
+        int entry = !inA && inB ? eAB : !inB && inC ? eBC : eCA;
+        nextEdge[exit] = entry;
+    }
+
+    private void traceRings(int[] nextEdge, int cutoffSec, double offRoadDistanceMeters,
+            List<LinearRing> rings) {
+        boolean[] traced = new boolean[nextEdge.length];
+        for (int start = 0; start < nextEdge.length; start++) {
+            if (nextEdge[start] < 0 || traced[start])
+                continue;
+            List<Coordinate> polyPoints = new ArrayList<Coordinate>();
+            int e = start;
+            do {
+                traced[e] = true;
+                polyPoints.add(crossing(e, cutoffSec, offRoadDistanceMeters));
+                e = nextEdge[e];
+                // Rings are only left open along triangles missing at the border of the grid
+            } while (e >= 0 && !traced[e]);
+            // Close the polyline
+            polyPoints.add(polyPoints.get(0));
+            if (polyPoints.size() > 5) {
+                // If the ring is smaller than 4 points do not add it,
+                // that will remove too small islands or holes.
+                rings.add(geometryFactory.createLinearRing(polyPoints
+                        .toArray(new Coordinate[polyPoints.size()])));
+            }
+        }
+    }
+
+    /**
+     * @return The point where the isoline crosses the edge.
+     */
+    private Coordinate crossing(int edge, int cutoffSec, double offRoadDistanceMeters) {
+        int a = edge / 3;
+        int type = edge % 3;
+        int b = type == HORIZONTAL ? a + 1 : type == VERTICAL ? a + grid.width : a + grid.width + 1;
+        double xA = grid.getX(a % grid.width);
+        double yA = grid.getY(a / grid.width);
+        double xB = grid.getX(b % grid.width);
+        double yB = grid.getY(b / grid.width);
+        double k = interpolate(a, b, cutoffSec, offRoadDistanceMeters);
+        return new Coordinate(xA * (1.0 - k) + xB * k, yA * (1.0 - k) + yB * k);
+    }
+
+    private boolean isInside(int index, int cutoffSec, double offRoadDistanceMeters) {
+        return grid.distances[index] <= offRoadDistanceMeters && grid.times[index] < cutoffSec;
+    }
+
+    private double interpolate(int a, int b, int cutoffSec, double offRoadDistanceMeters) {
+        double dA = grid.distances[a];
+        double dB = grid.distances[b];
+        if (dA > offRoadDistanceMeters || dB > offRoadDistanceMeters) {
+            // Interpolate on d
+            return dA == dB ? 0.5 : (offRoadDistanceMeters - dA) / (dB - dA);
+        }
+        // Interpolate on t
+        double tA = grid.times[a];
+        double tB = grid.times[b];
+        return tA == tB ? 0.5 : (cutoffSec - tA) / (tB - tA);
+    }
+
+    /** Edges are identified by their lower-left sample and their type */
+    private static int edge(int index, int type) {
+        return 3 * index + type;
+    }
+}
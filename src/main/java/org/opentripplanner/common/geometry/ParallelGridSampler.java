@@ -0,0 +1,251 @@
+package org.opentripplanner.common.geometry;
+
+import gnu.trove.list.array.TDoubleArrayList;
+import org.locationtech.jts.geom.Coordinate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import static org.apache.commons.math3.util.FastMath.sqrt;
+import static org.apache.commons.math3.util.FastMath.toRadians;
+
+/**
+ * Fill-in a {@link TimeDistanceGrid} from a loosely-defined set of timed sampling points, in
+ * parallel.
+ *
+ * This is the primitive counterpart of an {@link AccumulativeGridSampler} using the WTWD metric of
+ * the sample grid renderer: each sampling point is cumulated on the 4 corners of its cell,
+ * weighted by the inverse of the squared distance to the corner plus the grid size, with the
+ * off-road walk to the corner added to its time. The grid is then closed by layers of samples
+ * taking the minimum time and distance of their neighbors plus one cell of off-road walk, as long
+ * as the distance stays below the maximum off-road distance.
+ *
+ * Sampling points are first collected, then cumulated by fork-join tasks, each into their own
+ * arrays which are summed at the end. Closing is done layer after layer, each sample of a layer
+ * being computed from the previous layers only, so unlike the accumulative sampler the result
+ * does not depend on the order in which samples are processed.
+ */
+public class ParallelGridSampler {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ParallelGridSampler.class);
+
+    /** Below this number of sampling points per task, splitting the work costs more than it saves */
+    private static final int MIN_POINTS_PER_TASK = 10000;
+
+    private static final int NOT_CLOSED = -1;
+
+    private final Coordinate center;
+
+    private final double dX, dY;
+
+    private final double cosLat, gridSizeMeters, offRoadDistanceMeters, offRoadSpeed;
+
+    private final TDoubleArrayList xs = new TDoubleArrayList();
+
+    private final TDoubleArrayList ys = new TDoubleArrayList();
+
+    private final TDoubleArrayList times = new TDoubleArrayList();
+
+    private TimeDistanceGrid grid;
+
+    /**
+     * @param center Center position of the grid, the sample of index (0, 0).
+     * @param dX X grid size, in degrees.
+     * @param dY Y grid size, in degrees.
+     * @param offRoadSpeed The off-road speed to assume, in meters per second.
+     */
+    public ParallelGridSampler(Coordinate center, double dX, double dY, double cosLat,
+            double gridSizeMeters, double offRoadDistanceMeters, double offRoadSpeed) {
+        this.center = center;
+        this.dX = dX;
+        this.dY = dY;
+        this.cosLat = cosLat;
+        this.gridSizeMeters = gridSizeMeters;
+        this.offRoadDistanceMeters = offRoadDistanceMeters;
+        this.offRoadSpeed = offRoadSpeed;
+    }
+
+    public final void addSamplingPoint(Coordinate C0, double time) {
+        if (grid != null)
+            throw new IllegalStateException("Can't add a sample after closing.");
+        xs.add(C0.x);
+        ys.add(C0.y);
+        times.add(time);
+    }
+
+    /**
+     * Cumulate all the sampling points onto the grid and close it.
+     *
+     * @return The grid, covering all the sampling points and the closing samples around them.
+     */
+    public final TimeDistanceGrid close() {
+        if (grid != null)
+            return grid;
+        int n = xs.size();
+        if (n == 0) {
+            grid = new TimeDistanceGrid(0, 0, 0, 0, dX, dY, center);
+            return grid;
+        }
+
+        // Same indexing as SparseMatrixZSampleGrid.getLowerLeftIndex
+        int[] lowerLeftX = new int[n];
+        int[] lowerLeftY = new int[n];
+        int xMin = Integer.MAX_VALUE, xMax = Integer.MIN_VALUE;
+        int yMin = Integer.MAX_VALUE, yMax = Integer.MIN_VALUE;
+        for (int i = 0; i < n; i++) {
+            lowerLeftX[i] = (int) Math.round((xs.get(i) - center.x - dX / 2) / dX);
+            lowerLeftY[i] = (int) Math.round((ys.get(i) - center.y - dY / 2) / dY);
+            xMin = Math.min(xMin, lowerLeftX[i]);
+            xMax = Math.max(xMax, lowerLeftX[i] + 1);
+            yMin = Math.min(yMin, lowerLeftY[i]);
+            yMax = Math.max(yMax, lowerLeftY[i] + 1);
+        }
+        // Closing layers stop once a cell of off-road walk farther than the maximum off-road distance
+        int margin = (int) Math.ceil(offRoadDistanceMeters / gridSizeMeters) + 3;
+        grid = new TimeDistanceGrid(xMin - margin, yMin - margin, xMax - xMin + 1 + 2 * margin,
+                yMax - yMin + 1 + 2 * margin, dX, dY, center);
+
+        long t0 = System.currentTimeMillis();
+        int[] rounds = accumulate(lowerLeftX, lowerLeftY);
+        long t1 = System.currentTimeMillis();
+        int closing = closeGrid(rounds);
+        long t2 = System.currentTimeMillis();
+        LOG.info("Sampled {} points in {}msec, added {} closing samples in {}msec.", n,
+                (int) (t1 - t0), closing, (int) (t2 - t1));
+        return grid;
+    }
+
+    /**
+     * @return The closing round of each sample, 0 for the samples set by sampling points and
+     *         NOT_CLOSED for the others.
+     */
+    private int[] accumulate(int[] lowerLeftX, int[] lowerLeftY) {
+        int n = xs.size();
+        int cells = grid.width * grid.height;
+        int nTasks = Math.max(1, Math.min(ForkJoinPool.getCommonPoolParallelism(),
+                n / MIN_POINTS_PER_TASK));
+        double[][] weights = new double[nTasks][];
+        double[][] weightedTimes = new double[nTasks][];
+        float[][] distances = new float[nTasks][];
+        IntStream.range(0, nTasks).parallel().forEach(task -> {
+            double[] w = new double[cells];
+            double[] wt = new double[cells];
+            float[] d = new float[cells];
+            Arrays.fill(d, Float.POSITIVE_INFINITY);
+            int end = (int) ((long) n * (task + 1) / nTasks);
+            for (int i = (int) ((long) n * task / nTasks); i < end; i++) {
+                double x0 = xs.get(i);
+                double y0 = ys.get(i);
+                double t = times.get(i);
+                for (int corner = 0; corner < 4; corner++) {
+                    int x = lowerLeftX[i] + (corner & 1);
+                    int y = lowerLeftY[i] + (corner >> 1);
+                    double dLat = toRadians(y0 - (y * dY + center.y));
+                    double dLon = toRadians(x0 - (x * dX + center.x)) * cosLat;
+                    double ds = SphericalDistanceLibrary.RADIUS_OF_EARTH_IN_M
+                            * sqrt(dLat * dLat + dLon * dLon);
+                    double ws = 1 / ((ds + gridSizeMeters) * (ds + gridSizeMeters));
+                    int index = grid.index(x - grid.xMin, y - grid.yMin);
+                    w[index] += ws;
+                    wt[index] += ws * (t + ds / offRoadSpeed);
+                    if (ds < d[index])
+                        d[index] = (float) ds;
+                }
+            }
+            weights[task] = w;
+            weightedTimes[task] = wt;
+            distances[task] = d;
+        });
+
+        int[] rounds = new int[cells];
+        IntStream.range(0, grid.height).parallel().forEach(y -> {
+            for (int index = y * grid.width; index < (y + 1) * grid.width; index++) {
+                double w = 0, wt = 0;
+                float d = Float.POSITIVE_INFINITY;
+                for (int task = 0; task < nTasks; task++) {
+                    w += weights[task][index];
+                    wt += weightedTimes[task][index];
+                    d = Math.min(d, distances[task][index]);
+                }
+                if (w > 0) {
+                    grid.times[index] = (int) Math.round(wt / w);
+                    grid.distances[index] = d;
+                    rounds[index] = 0;
+                } else {
+                    rounds[index] = NOT_CLOSED;
+                }
+            }
+        });
+        return rounds;
+    }
+
+    /**
+     * Surround the samples by layers of closing samples, until the off-road distance is reached.
+     *
+     * @return The number of closing samples added.
+     */
+    private int closeGrid(int[] rounds) {
+        boolean[] expanding = new boolean[rounds.length];
+        for (int index = 0; index < rounds.length; index++) {
+            expanding[index] = rounds[index] == 0;
+        }
+        int total = 0;
+        for (int round = 1; ; round++) {
+            final int r = round;
+            int added = IntStream.range(0, grid.height).parallel()
+                    .map(y -> closeRow(y, r, rounds, expanding)).sum();
+            LOG.debug("Round {} : {} closing samples", round, added);
+            if (added == 0)
+                return total;
+            total += added;
+        }
+    }
+
+    /**
+     * Samples of a round are only computed from samples of previous rounds. Those written
+     * concurrently for the same round are skipped whatever their state, as their round is either
+     * NOT_CLOSED or the current one.
+     */
+    private int closeRow(int y, int round, int[] rounds, boolean[] expanding) {
+        int added = 0;
+        int[] neighbors = new int[4];
+        for (int x = 0; x < grid.width; x++) {
+            int index = grid.index(x, y);
+            if (rounds[index] != NOT_CLOSED)
+                continue;
+            int nNeighbors = 0;
+            if (x > 0)
+                neighbors[nNeighbors++] = index - 1;
+            if (x < grid.width - 1)
+                neighbors[nNeighbors++] = index + 1;
+            if (y > 0)
+                neighbors[nNeighbors++] = index - grid.width;
+            if (y < grid.height - 1)
+                neighbors[nNeighbors++] = index + grid.width;
+            boolean close = false;
+            double tMin = Double.MAX_VALUE;
+            double dMin = Double.MAX_VALUE;
+            for (int i = 0; i < nNeighbors; i++) {
+                int neighbor = neighbors[i];
+                int neighborRound = rounds[neighbor];
+                if (neighborRound == NOT_CLOSED || neighborRound >= round)
+                    continue;
+                if (neighborRound == round - 1 && expanding[neighbor])
+                    close = true;
+                tMin = Math.min(tMin, grid.times[neighbor]);
+                dMin = Math.min(dMin, grid.distances[neighbor]);
+            }
+            if (!close)
+                continue;
+            grid.times[index] = (int) Math.round(tMin + gridSizeMeters / offRoadSpeed);
+            grid.distances[index] = (float) (dMin + gridSizeMeters);
+            expanding[index] = dMin <= offRoadDistanceMeters;
+            rounds[index] = round;
+            added++;
+        }
+        return added;
+    }
+}
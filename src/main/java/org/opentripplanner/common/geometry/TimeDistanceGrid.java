@@ -0,0 +1,95 @@
+package org.opentripplanner.common.geometry;
+
+import org.locationtech.jts.geom.Coordinate;
+
+import java.util.Arrays;
+
+/**
+ * A dense regular grid of travel times and off-road distances, stored in flat primitive arrays.
+ *
+ * Sample (x, y) of the grid is at the same position as sample (xMin + x, yMin + y) of a
+ * {@link SparseMatrixZSampleGrid} with the same center and cell size, so both can describe the same
+ * sampling. Samples are stored row by row, from the bottom row up.
+ *
+ * @see ParallelGridSampler
+ * @see GridIsolineBuilder
+ */
+public class TimeDistanceGrid {
+
+    /** Time of a sample which has not been set */
+    public static final int UNREACHED = Integer.MAX_VALUE;
+
+    public final int width;
+
+    public final int height;
+
+    /** Index of the first column relative to the center of the grid */
+    public final int xMin;
+
+    /** Index of the first row relative to the center of the grid */
+    public final int yMin;
+
+    public final double dX;
+
+    public final double dY;
+
+    private final Coordinate center;
+
+    /** Time in seconds of each sample, {@link #UNREACHED} if not set */
+    final int[] times;
+
+    /** Minimum off-road distance in meters of each sample, positive infinity if not set */
+    final float[] distances;
+
+    TimeDistanceGrid(int xMin, int yMin, int width, int height, double dX, double dY, Coordinate center) {
+        this.xMin = xMin;
+        this.yMin = yMin;
+        this.width = width;
+        this.height = height;
+        this.dX = dX;
+        this.dY = dY;
+        this.center = center;
+        this.times = new int[width * height];
+        this.distances = new float[width * height];
+        Arrays.fill(times, UNREACHED);
+        Arrays.fill(distances, Float.POSITIVE_INFINITY);
+    }
+
+    public Coordinate getCenter() {
+        return center;
+    }
+
+    public final int index(int x, int y) {
+        return y * width + x;
+    }
+
+    public final boolean isSet(int index) {
+        return distances[index] != Float.POSITIVE_INFINITY;
+    }
+
+    public final int getTime(int x, int y) {
+        return times[index(x, y)];
+    }
+
+    public final float getDistance(int x, int y) {
+        return distances[index(x, y)];
+    }
+
+    public final double getX(int x) {
+        return (xMin + x) * dX + center.x;
+    }
+
+    public final double getY(int y) {
+        return (yMin + y) * dY + center.y;
+    }
+
+    public int size() {
+        int size = 0;
+        for (int i = 0; i < distances.length; i++) {
+            if (isSet(i)) {
+                size++;
+            }
+        }
+        return size;
+    }
+}
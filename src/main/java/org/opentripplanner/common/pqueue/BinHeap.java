@@ -104,6 +104,19 @@ public class BinHeap<T> {
     	size=0;
     } 
 
+    /**
+     * Empties the queue and drops all references to its elements (including ones left behind by extract_min), so
+     * that a queue which is reused between searches does not keep their elements reachable.
+     */
+    public void clear() {
+        Arrays.fill(elem, null);
+        size = 0;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
     public void insert(T e, double p) {
         int i;
         size += 1;
@@ -36,7 +36,8 @@ import java.util.zip.ZipFile;
 
 /**
  * This makes a Graph out of various inputs like GTFS and OSM.
- * It is modular: GraphBuilderModules are placed in a list and run in sequence.
+ * It is modular: GraphBuilderModules are placed in a list and run in sequence, or concurrently where the stages they
+ * declare allow it (see {@link GraphBuilderModuleRunner}).
  */
 public class GraphBuilder implements Runnable {
 
@@ -62,6 +63,8 @@ public class GraphBuilder implements Runnable {
 
     private boolean _alwaysRebuild = true;
 
+    private boolean parallelModules;
+
     private List<RoutingRequest> modeList;
 
     private String baseGraph = null;
@@ -80,6 +83,7 @@ public class GraphBuilder implements Runnable {
         transitLineStopTimesFile = new File(path, "godziny.csv");
         timePredictionFile = new File(path,"prediction.csv");
         graph.stopClusterMode = builderParams.stopClusterMode;
+        parallelModules = builderParams.parallelModules;
     }
 
     public void addModule(GraphBuilderModule loader) {
@@ -94,6 +98,10 @@ public class GraphBuilder implements Runnable {
         _alwaysRebuild = alwaysRebuild;
     }
 
+    public void setParallelModules(boolean parallelModules) {
+        this.parallelModules = parallelModules;
+    }
+
     public void setBaseGraph(String baseGraph) {
         this.baseGraph = baseGraph;
         try {
@@ -156,8 +164,13 @@ public class GraphBuilder implements Runnable {
         }
 
         HashMap<Class<?>, Object> extra = new HashMap<Class<?>, Object>();
-        for (GraphBuilderModule load : _graphBuilderModules)
-            load.buildGraph(graph, extra);
+        GraphBuilderModuleRunner moduleRunner = new GraphBuilderModuleRunner(_graphBuilderModules);
+        if (parallelModules) {
+            int threads = Math.min(_graphBuilderModules.size(), Runtime.getRuntime().availableProcessors());
+            moduleRunner.runInParallel(graph, extra, Math.max(threads, 1));
+        } else {
+            moduleRunner.runSequentially(graph, extra);
+        }
 
         graph.summarizeBuilderAnnotations();
         if (serializeGraph) {
@@ -292,6 +305,7 @@ public class GraphBuilder implements Runnable {
             }
             GtfsModule gtfsModule = new GtfsModule(gtfsBundles);
             gtfsModule.setFareServiceFactory(builderParams.fareServiceFactory);
+            gtfsModule.setLoaderThreads(builderParams.gtfsLoaderThreads);
             graphBuilder.addModule(gtfsModule);
             if (hasOSM) {
                 if (builderParams.matchBusRoutesToStreets) {
@@ -0,0 +1,164 @@
+package org.opentripplanner.graph_builder;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.opentripplanner.graph_builder.services.GraphBuilderModule;
+import org.opentripplanner.routing.graph.Graph;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs the modules of a {@link GraphBuilder}, logging the time taken by each of them and the heap used once it is done.
+ *
+ * The modules are given in the order in which they run one after the other. When they run in parallel, a module only
+ * waits for the modules configured before it which it conflicts with, according to their declared
+ * {@link GraphBuilderModule#provides()} and {@link GraphBuilderModule#getPrerequisites()}: a module does not read or
+ * modify a stage while an earlier module is still modifying it, nor modify a stage an earlier module is still reading.
+ * A module which did not declare its stages waits for all the modules before it, and all the modules after it wait for
+ * it. The graph is thus the same as when running the modules one after the other, save for the ids of its elements.
+ */
+class GraphBuilderModuleRunner {
+
+    private static final Logger LOG = LoggerFactory.getLogger(GraphBuilderModuleRunner.class);
+
+    private static final long MB = 1024 * 1024;
+
+    private final List<GraphBuilderModule> modules;
+
+    /** For each module, the indices of the modules before it which it waits for */
+    private final List<Set<Integer>> dependencies;
+
+    GraphBuilderModuleRunner(List<GraphBuilderModule> modules) {
+        this.modules = modules;
+        this.dependencies = new ArrayList<>(modules.size());
+        for (int i = 0; i < modules.size(); i++) {
+            Set<Integer> waitFor = new TreeSet<>();
+            for (int j = 0; j < i; j++) {
+                if (conflicts(modules.get(j), modules.get(i))) {
+                    waitFor.add(j);
+                }
+            }
+            dependencies.add(waitFor);
+        }
+    }
+
+    /** @return the indices of the modules configured before the given one which it has to wait for. */
+    Set<Integer> getDependencies(int module) {
+        return Collections.unmodifiableSet(dependencies.get(module));
+    }
+
+    /** Run the modules in the order in which they were configured. */
+    void runSequentially(Graph graph, HashMap<Class<?>, Object> extra) {
+        long startTime = System.currentTimeMillis();
+        List<StageReport> reports = new ArrayList<>(modules.size());
+        for (GraphBuilderModule module : modules) {
+            reports.add(runModule(module, graph, extra, startTime));
+        }
+        logSummary(reports, startTime);
+    }
+
+    /** Run the modules on a pool of the given size, each one as soon as the modules it depends on are done. */
+    void runInParallel(Graph graph, HashMap<Class<?>, Object> extra, int threads) {
+        long startTime = System.currentTimeMillis();
+        ExecutorService executor = Executors.newFixedThreadPool(threads,
+                new ThreadFactoryBuilder().setNameFormat("GraphBuilder-%d").build());
+        List<CompletableFuture<StageReport>> stages = new ArrayList<>(modules.size());
+        try {
+            for (int i = 0; i < modules.size(); i++) {
+                GraphBuilderModule module = modules.get(i);
+                CompletableFuture<?>[] before = dependencies.get(i).stream()
+                        .map(stages::get)
+                        .toArray(CompletableFuture[]::new);
+                stages.add(CompletableFuture.allOf(before)
+                        .thenApplyAsync(ignored -> runModule(module, graph, extra, startTime), executor));
+            }
+            CompletableFuture.allOf(stages.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Graph building failed", e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+        List<StageReport> reports = new ArrayList<>(stages.size());
+        for (CompletableFuture<StageReport> stage : stages) {
+            reports.add(stage.join());
+        }
+        logSummary(reports, startTime);
+    }
+
+    static boolean conflicts(GraphBuilderModule earlier, GraphBuilderModule later) {
+        if (!isDeclared(earlier) || !isDeclared(later)) {
+            return true;
+        }
+        return intersects(earlier.provides(), later.getPrerequisites())
+                || intersects(earlier.provides(), later.provides())
+                || intersects(earlier.getPrerequisites(), later.provides());
+    }
+
+    private static boolean isDeclared(GraphBuilderModule module) {
+        return module.provides() != null && module.getPrerequisites() != null;
+    }
+
+    private static boolean intersects(Collection<String> a, Collection<String> b) {
+        return a.stream().anyMatch(b::contains);
+    }
+
+    private static StageReport runModule(GraphBuilderModule module, Graph graph, HashMap<Class<?>, Object> extra,
+                                         long startTime) {
+        StageReport report = new StageReport(module.getClass().getSimpleName());
+        report.startMillis = System.currentTimeMillis() - startTime;
+        LOG.info("Running graph builder module {}", report.name);
+        module.buildGraph(graph, extra);
+        report.durationMillis = System.currentTimeMillis() - startTime - report.startMillis;
+        report.heapUsedMB = usedHeap() / MB;
+        LOG.info("Graph builder module {} took {} s, {} MB of heap used", report.name,
+                String.format("%.1f", report.durationMillis / 1000.0), report.heapUsedMB);
+        return report;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void logSummary(List<StageReport> reports, long startTime) {
+        long elapsedMillis = System.currentTimeMillis() - startTime;
+        long totalMillis = reports.stream().mapToLong(r -> r.durationMillis).sum();
+        LOG.info("Graph builder modules took {} s of module time in {} s:",
+                String.format("%.1f", totalMillis / 1000.0), String.format("%.1f", elapsedMillis / 1000.0));
+        for (StageReport report : reports) {
+            LOG.info("  {}: started at {} s, took {} s, {} MB of heap used when done", report.name,
+                    String.format("%.1f", report.startMillis / 1000.0),
+                    String.format("%.1f", report.durationMillis / 1000.0), report.heapUsedMB);
+        }
+    }
+
+    private static class StageReport {
+
+        private final String name;
+
+        private long startMillis;
+
+        private long durationMillis;
+
+        /** Heap used by the whole build once the module was done, including that of modules running concurrently */
+        private long heapUsedMB;
+
+        private StageReport(String name) {
+            this.name = name;
+        }
+    }
+}
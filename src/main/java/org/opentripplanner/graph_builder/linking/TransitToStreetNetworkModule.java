@@ -17,12 +17,15 @@ public class TransitToStreetNetworkModule implements GraphBuilderModule {
 
     private static final Logger LOG = LoggerFactory.getLogger(TransitToStreetNetworkModule.class);
 
+    @Override
     public List<String> provides() {
-        return Arrays.asList("street to transit", "linking");
+        // Linking splits the streets
+        return Arrays.asList("streets", "street to transit", "linking");
     }
 
+    @Override
     public List<String> getPrerequisites() {
-        return Arrays.asList("streets"); // why not "transit" ?
+        return Arrays.asList("streets", "transit");
     }
 
     @Override
@@ -29,11 +29,13 @@ import org.locationtech.jts.geom.Geometry;
 public class CheckGeometryModule implements GraphBuilderModule {
 
     /** An set of ids which identifies what stages this graph builder provides (i.e. streets, elevation, transit) */
+    @Override
     public List<String> provides() {
         return Collections.emptyList();
     }
 
     /** A list of ids of stages which must be provided before this stage */
+    @Override
     public List<String> getPrerequisites() {
         return Arrays.asList("streets");
     }
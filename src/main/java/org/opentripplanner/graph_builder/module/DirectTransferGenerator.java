@@ -33,12 +33,15 @@ public class DirectTransferGenerator implements GraphBuilderModule {
 
     final double radiusMeters;
 
+    @Override
     public List<String> provides() {
         return Arrays.asList("linking");
     }
 
+    @Override
     public List<String> getPrerequisites() {
-        return Arrays.asList("street to transit");
+        // Transfers are found by searching the streets, with their elevation
+        return Arrays.asList("streets", "street to transit", "elevation");
     }
 
     public DirectTransferGenerator (double radiusMeters) {
@@ -7,7 +7,10 @@ import com.fasterxml.jackson.databind.ObjectWriter;
 import org.opentripplanner.graph_builder.services.GraphBuilderModule;
 import org.opentripplanner.routing.graph.Graph;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 
 /**
  * A graph builder that will embed the JSON graph builder and router configuration into the Graph.
@@ -36,6 +39,16 @@ public class EmbedConfig implements GraphBuilderModule {
         }
     }
 
+    @Override
+    public List<String> provides() {
+        return Arrays.asList("config");
+    }
+
+    @Override
+    public List<String> getPrerequisites() {
+        return Collections.emptyList();
+    }
+
     @Override
     public void checkInputs() {
 
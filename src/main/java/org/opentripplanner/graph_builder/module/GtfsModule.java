@@ -11,6 +11,10 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.onebusaway.csv_entities.EntityHandler;
 import org.onebusaway.gtfs.impl.GtfsRelationalDaoImpl;
@@ -42,6 +46,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import static org.opentripplanner.calendar.impl.CalendarServiceDataFactoryImpl.createCalendarSrvDataWithoutDatesForLocalizedSrvId;
 import static org.opentripplanner.gtfs.mapping.GTFSToOtpTransitServiceMapper.mapGtfsDaoToOTPTransitService;
@@ -50,7 +55,7 @@ public class GtfsModule implements GraphBuilderModule {
 
     private static final Logger LOG = LoggerFactory.getLogger(GtfsModule.class);
 
-    private EntityHandler counter = new EntityCounter();
+    public static final int DEFAULT_LOADER_THREADS = 2;
 
     private FareServiceFactory fareServiceFactory;
 
@@ -64,16 +69,29 @@ public class GtfsModule implements GraphBuilderModule {
 
     int nextAgencyId = 1; // used for generating agency IDs to resolve ID conflicts
 
+    /** Completed once the agencies of the last feed started loading were checked for conflicting ids */
+    private CompletableFuture<Void> agenciesChecked = CompletableFuture.completedFuture(null);
+
     public List<GtfsBundle> gtfsBundles;
 
+    /**
+     * How many feeds are read at the same time. Each of them is held in memory, fully parsed and mapped, until it is
+     * added to the graph.
+     */
+    private int loaderThreads = DEFAULT_LOADER_THREADS;
+
     public GtfsModule(List<GtfsBundle> bundles) { this.gtfsBundles = bundles; }
 
+    @Override
     public List<String> provides() {
         List<String> result = new ArrayList<String>();
         result.add("transit");
+        // stops are added before the hops connecting them, so they must not be taken for edgeless vertices meanwhile
+        result.add("vertices");
         return result;
     }
 
+    @Override
     public List<String> getPrerequisites() {
         return Collections.emptyList();
     }
@@ -82,6 +100,10 @@ public class GtfsModule implements GraphBuilderModule {
         fareServiceFactory = factory;
     }
 
+    public void setLoaderThreads(int loaderThreads) {
+        this.loaderThreads = loaderThreads;
+    }
+
     @Override
     public void buildGraph(Graph graph, HashMap<Class<?>, Object> extra) {
         // we're about to add another agency to the graph, so clear the cached timezone
@@ -94,21 +116,39 @@ public class GtfsModule implements GraphBuilderModule {
         MultiCalendarServiceImpl calendarService = new MultiCalendarServiceImpl();
         GtfsStopContext stopContext = new GtfsStopContext();
 
-        try {
-            for (GtfsBundle gtfsBundle : gtfsBundles) {
-                // apply global defaults to individual GTFSBundles (if globals have been set)
-                if (cacheDirectory != null && gtfsBundle.cacheDirectory == null) {
-                    gtfsBundle.cacheDirectory = cacheDirectory;
-                }
+        for (GtfsBundle gtfsBundle : gtfsBundles) {
+            // apply global defaults to individual GTFSBundles (if globals have been set)
+            if (cacheDirectory != null && gtfsBundle.cacheDirectory == null) {
+                gtfsBundle.cacheDirectory = cacheDirectory;
+            }
 
-                if (useCached != null && gtfsBundle.useCached == null) {
-                    gtfsBundle.useCached = useCached;
-                }
+            if (useCached != null && gtfsBundle.useCached == null) {
+                gtfsBundle.useCached = useCached;
+            }
 
-                OtpTransitService transitService = mapGtfsDaoToOTPTransitService(loadBundle(gtfsBundle));
+            // Feeds without an id in their feed info are numbered in the configured order, not as they are read
+            gtfsBundle.getFeedId();
+        }
+
+        /* The feeds are read and mapped in parallel, while they are added to the graph one after the other, in their
+         * configured order. A feed is only read once the one a pool size before it was added to the graph, so that
+         * no more feeds than there are threads wait in memory. */
+        int threads = Math.max(1, Math.min(gtfsBundles.size(), loaderThreads));
+        ExecutorService executor = Executors.newFixedThreadPool(threads,
+                new ThreadFactoryBuilder().setNameFormat("GtfsLoader-%d").build());
+        List<CompletableFuture<OtpTransitService>> transitServices = new ArrayList<>(gtfsBundles.size());
+        try {
+            for (int i = 0; i < gtfsBundles.size(); i++) {
+                while (transitServices.size() < Math.min(i + threads, gtfsBundles.size())) {
+                    transitServices.add(loadAsync(gtfsBundles.get(transitServices.size()), executor));
+                }
+                GtfsBundle gtfsBundle = gtfsBundles.get(i);
+                OtpTransitService transitService = transitServices.get(i).join();
+                transitServices.set(i, null);
                 graph.addTransitRoutes(transitService.getAllRoutes());
                 graph.addTransitStops(transitService.getAllStops());
-                transitService.getAllStopTimes().stream().forEach(stopTime -> graph.addTransitStopTime(stopTime));
+                transitService.getAllStopTimes().stream()
+                        .forEach(stopTime -> graph.addTransitStopLine(stopTime.getStop(), stopTime.getTrip().getRoute()));
 
                 GtfsContext context = GtfsLibrary
                         .createContext(gtfsBundle.getFeedId(), transitService, calendarService);
@@ -138,8 +178,13 @@ public class GtfsModule implements GraphBuilderModule {
                     hf.createParentStationTransfers();
                 }
             }
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } finally {
+            executor.shutdown();
         }
 
         // We need to save the calendar service data so we can use it later
@@ -151,6 +196,8 @@ public class GtfsModule implements GraphBuilderModule {
 
         graph.hasTransit = true;
         graph.calculateTransitCenter();
+        // a module running in parallel may have looked up the time zone before the agencies were added
+        graph.clearTimeZone();
 
     }
 
@@ -158,8 +205,33 @@ public class GtfsModule implements GraphBuilderModule {
      * Private Methods
      ****/
 
-    private GtfsMutableRelationalDao loadBundle(GtfsBundle gtfsBundle)
-            throws IOException {
+    /**
+     * Read and map a feed on the given executor. The agencies of the feeds are checked for conflicting ids one feed
+     * after the other, in the order in which they are loaded, so that the same ids are generated whatever the number
+     * of threads.
+     */
+    private CompletableFuture<OtpTransitService> loadAsync(GtfsBundle gtfsBundle, ExecutorService executor) {
+        CompletableFuture<Void> previousAgencies = agenciesChecked;
+        CompletableFuture<Void> agencies = new CompletableFuture<>();
+        agenciesChecked = agencies;
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return mapGtfsDaoToOTPTransitService(loadBundle(gtfsBundle, previousAgencies, agencies));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            } finally {
+                // Let the next feed go on even if this one failed before its agencies were checked
+                agencies.complete(null);
+            }
+        }, executor);
+    }
+
+    /**
+     * @param previousAgencies completed once the agencies of the previous feed were checked
+     * @param agencies completed by this method once the agencies of this feed were checked
+     */
+    private GtfsMutableRelationalDao loadBundle(GtfsBundle gtfsBundle, CompletableFuture<Void> previousAgencies,
+                                                CompletableFuture<Void> agencies) throws IOException {
 
         StoreImpl store = new StoreImpl(new GtfsRelationalDaoImpl());
         store.open();
@@ -174,7 +246,7 @@ public class GtfsModule implements GraphBuilderModule {
         reader.setDefaultAgencyId(gtfsFeedId.getId());
 
         if (LOG.isDebugEnabled())
-            reader.addEntityHandler(counter);
+            reader.addEntityHandler(new EntityCounter());
 
         if (gtfsBundle.getDefaultBikesAllowed())
             reader.addEntityHandler(new EntityBikeability(true));
@@ -187,6 +259,7 @@ public class GtfsModule implements GraphBuilderModule {
             // set the agencyId here. Each feed ("bundle") is loaded by a separate reader, so there is no risk of
             // agency mappings accumulating.
             if (entityClass == Agency.class) {
+                previousAgencies.join();
                 for (Agency agency : reader.getAgencies()) {
                     String agencyId = agency.getId();
                     LOG.info("This Agency has the ID {}", agencyId);
@@ -206,6 +279,7 @@ public class GtfsModule implements GraphBuilderModule {
                     }
                     if (agencyId != null) agencyIdsSeen.add(gtfsFeedId.getId() + agencyId);
                 }
+                agencies.complete(null);
             }
         }
 
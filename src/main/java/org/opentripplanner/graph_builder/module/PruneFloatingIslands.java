@@ -1,7 +1,6 @@
 package org.opentripplanner.graph_builder.module;
 
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 
@@ -42,16 +41,25 @@ public class PruneFloatingIslands implements GraphBuilderModule {
 
     private StreetLinkerModule transitToStreetNetwork;
 
+    @Override
     public List<String> provides() {
-        return Collections.emptyList();
+        // removes all the edgeless vertices of the graph, not only those of the streets
+        if (transitToStreetNetwork != null) {
+            return Arrays.asList("streets", "vertices", "street to transit", "linking");
+        }
+        return Arrays.asList("streets", "vertices");
     }
 
+    @Override
     public List<String> getPrerequisites() {
         /**this module can run after the street module only but if
          * the street linker did not run then it couldn't identifies island with stops.
          * so if the need is to distinguish between island with stops or without stops
          * as explained before this module should run after the streets and the linker modules.
          */
+        if (transitToStreetNetwork != null) {
+            return Arrays.asList("streets", "transit");
+        }
         return Arrays.asList("streets");
     }
 
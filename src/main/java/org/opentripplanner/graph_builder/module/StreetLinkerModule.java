@@ -30,14 +30,17 @@ public class StreetLinkerModule implements GraphBuilderModule {
 
     private Boolean addExtraEdgesToAreas = true;
 
+    @Override
     public List<String> provides() {
-        return Arrays.asList("street to transit", "linking");
+        // Linking splits the streets
+        return Arrays.asList("streets", "street to transit", "linking");
     }
 
+    @Override
     public List<String> getPrerequisites() {
-        return Arrays.asList("streets"); // don't include transit, because we also link P+Rs and bike rental stations,
-        // which you could have without transit. However, if you have transit, this module should be run after it
-        // is loaded.
+        // Transit is only waited for when it is loaded before, as we also link P+Rs and bike rental stations, which you
+        // could have without transit.
+        return Arrays.asList("streets", "transit");
     }
 
     @Override
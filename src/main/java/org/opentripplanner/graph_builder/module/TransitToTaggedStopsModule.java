@@ -40,12 +40,14 @@ public class TransitToTaggedStopsModule implements GraphBuilderModule {
     private double searchRadiusM = 250;
     private double searchRadiusLat = SphericalDistanceLibrary.metersToDegrees(searchRadiusM);
 
+    @Override
     public List<String> provides() {
         return Arrays.asList("street to transit", "linking");
     }
 
+    @Override
     public List<String> getPrerequisites() {
-        return Arrays.asList("streets"); // why not "transit" ?
+        return Arrays.asList("streets", "transit");
     }
 
     @Override
@@ -30,10 +30,13 @@ import org.opentripplanner.routing.impl.DefaultStreetVertexIndexFactory;
 public class BusRouteStreetMatcher implements GraphBuilderModule {
     private static final Logger log = LoggerFactory.getLogger(BusRouteStreetMatcher.class);
 
+    @Override
     public List<String> provides() {
-        return Arrays.asList("edge matching");
+        // The geometry of the bus patterns is replaced by the matched streets
+        return Arrays.asList("edge matching", "transit");
     }
 
+    @Override
     public List<String> getPrerequisites() {
         return Arrays.asList("streets", "transit");
     }
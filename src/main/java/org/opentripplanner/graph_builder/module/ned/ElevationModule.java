@@ -73,10 +73,12 @@ public class ElevationModule implements GraphBuilderModule {
         this.elevationUnitMultiplier = elevationUnitMultiplier;
     }
 
+    @Override
     public List<String> provides() {
         return Arrays.asList("elevation");
     }
 
+    @Override
     public List<String> getPrerequisites() {
         return Arrays.asList("streets");
     }
@@ -105,10 +105,12 @@ public class OpenStreetMapModule implements GraphBuilderModule {
      */
     public boolean staticBikeParkAndRide;
 
+    @Override
     public List<String> provides() {
         return Arrays.asList("streets", "turns");
     }
 
+    @Override
     public List<String> getPrerequisites() {
         return Collections.emptyList();
     }
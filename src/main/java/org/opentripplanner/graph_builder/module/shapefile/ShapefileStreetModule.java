@@ -47,10 +47,12 @@ public class ShapefileStreetModule implements GraphBuilderModule {
 
     public StreetEdgeFactory edgeFactory = new DefaultStreetEdgeFactory();
 
+    @Override
     public List<String> provides() {
         return Arrays.asList("streets");
     }
 
+    @Override
     public List<String> getPrerequisites() {
         return Collections.emptyList();
     }
@@ -5,8 +5,10 @@ import org.opentripplanner.routing.edgetype.StreetEdge;
 import org.opentripplanner.routing.graph.Graph;
 
 import java.io.File;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 
@@ -46,6 +48,16 @@ public class TrafficPredictionBuilderModule implements GraphBuilderModule {
             }
         }
     }
+    @Override
+    public List<String> provides() {
+        return Arrays.asList("traffic predictions");
+    }
+
+    @Override
+    public List<String> getPrerequisites() {
+        return Arrays.asList("streets");
+    }
+
     @Override
     public void checkInputs() {
 
@@ -8,7 +8,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Set;
 
 @AllArgsConstructor
@@ -32,6 +35,16 @@ public class AvailableTicketsBuilderModule implements GraphBuilderModule {
         availableTickets.forEach(transitTicket -> graph.getAvailableTransitTickets().add(transitTicket));
     }
 
+    @Override
+    public List<String> provides() {
+        return Arrays.asList("transit tickets");
+    }
+
+    @Override
+    public List<String> getPrerequisites() {
+        return Collections.emptyList();
+    }
+
     @Override
     public void checkInputs() {
 
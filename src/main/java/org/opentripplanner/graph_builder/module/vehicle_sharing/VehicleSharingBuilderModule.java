@@ -8,6 +8,8 @@ import org.opentripplanner.hasura_client.ParkingZonesGetter;
 import org.opentripplanner.routing.edgetype.StreetEdge;
 import org.opentripplanner.routing.edgetype.rentedgetype.CityGovDropoffStation;
 import org.opentripplanner.routing.edgetype.rentedgetype.DropoffVehicleEdge;
+import org.opentripplanner.routing.edgetype.rentedgetype.ParkingZoneInfo;
+import org.opentripplanner.routing.edgetype.rentedgetype.VehicleDropoffIndex;
 import org.opentripplanner.routing.graph.Graph;
 import org.opentripplanner.routing.graph.Vertex;
 import org.opentripplanner.routing.vertextype.CityGovVehicleDropoffStationVertex;
@@ -18,6 +20,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 
@@ -60,9 +63,9 @@ public class VehicleSharingBuilderModule implements GraphBuilderModule {
     @Override
     public void buildGraph(Graph graph, HashMap<Class<?>, Object> extra) {
         if (sharedVehiclesApiUrl == null) {
-            LOG.info("Creating vehicle dropoff edges without parking zones");
-            createDropoffVehicleEdgesWithoutParkingZones(graph);
-            LOG.info("Finished creating vehicle dropoff edges without parking zones");
+            LOG.info("Creating vehicle dropoff index without parking zones");
+            createVehicleDropoffIndexWithoutParkingZones(graph);
+            LOG.info("Finished creating vehicle dropoff index without parking zones");
         } else {
             if (cityGovHasuraApiUrl == null || cityGovHasuraApiPassword == null) {
                 LOG.info("Creating vehicle dropoff edges with just parking zones");
@@ -73,16 +76,20 @@ public class VehicleSharingBuilderModule implements GraphBuilderModule {
                 LOG.info("Creating city government vehicle dropoff stations");
                 createCityGovVehicleDropoffStations(graph);
             }
-            LOG.info("Creating vehicle dropoff edges");
-            createDropoffVehicleEdges(graph);
-            LOG.info("Finished creating vehicle dropoff edges");
+            LOG.info("Creating vehicle dropoff index");
+            createVehicleDropoffIndex(graph);
+            LOG.info("Finished creating vehicle dropoff index, {} distinct parking zones",
+                    graph.vehicleDropoffIndex.getDistinctParkingZonesCount());
         }
     }
 
-    private void createDropoffVehicleEdgesWithoutParkingZones(Graph graph) {
+    private void createVehicleDropoffIndexWithoutParkingZones(Graph graph) {
+        ParkingZoneInfo noParkingZones = new ParkingZoneInfo(emptyList(), emptyList(), emptyList());
+        VehicleDropoffIndex index = new VehicleDropoffIndex();
         graph.getVertices().stream()
-                .filter(vertex -> vertex.getIncoming().stream().anyMatch(e -> e instanceof StreetEdge))
-                .forEach(DropoffVehicleEdge::new);
+                .filter(this::canDropoffVehicleHere)
+                .forEach(vertex -> index.allowDropoff(vertex, noParkingZones));
+        graph.vehicleDropoffIndex = index;
     }
 
     private void createParkingZonesCalculatorWithNoCityGovForbiddenParkingZones(Graph graph) {
@@ -98,15 +105,22 @@ public class VehicleSharingBuilderModule implements GraphBuilderModule {
                 cityGovForbiddenGeometryParkingZones);
     }
 
-    private void createDropoffVehicleEdges(Graph graph) {
+    /**
+     * Instead of adding a dropoff edge to each street vertex, we remember in which vertices vehicles may be dropped off
+     * and the search creates dropoff transitions on the fly, only for states which are renting a vehicle.
+     */
+    private void createVehicleDropoffIndex(Graph graph) {
+        VehicleDropoffIndex index = new VehicleDropoffIndex();
         graph.getVertices().stream()
-                .filter(vertex -> vertex.getIncoming().stream().anyMatch(e -> e instanceof StreetEdge))
+                .filter(this::canDropoffVehicleHere)
                 .filter(vertex -> !(vertex instanceof CityGovVehicleDropoffStationVertex))
-                .forEach(vertex -> createDropoffVehicleEdge(graph, vertex));
+                .forEach(vertex -> index.allowDropoff(vertex,
+                        graph.parkingZonesCalculator.getParkingZonesForLocation(vertex)));
+        graph.vehicleDropoffIndex = index;
     }
 
-    private void createDropoffVehicleEdge(Graph graph, Vertex vertex) {
-        new DropoffVehicleEdge(vertex, graph.parkingZonesCalculator.getParkingZonesForLocation(vertex));
+    private boolean canDropoffVehicleHere(Vertex vertex) {
+        return vertex.getIncoming().stream().anyMatch(e -> e instanceof StreetEdge);
     }
 
     private void createCityGovVehicleDropoffStations(Graph graph) {
@@ -127,6 +141,17 @@ public class VehicleSharingBuilderModule implements GraphBuilderModule {
         }
     }
 
+    @Override
+    public List<String> provides() {
+        // City government dropoff stations are linked by splitting the streets
+        return Arrays.asList("streets", "vehicle dropoff");
+    }
+
+    @Override
+    public List<String> getPrerequisites() {
+        return Arrays.asList("streets");
+    }
+
     @Override
     public void checkInputs() {
     }
@@ -14,4 +14,21 @@ public interface GraphBuilderModule {
     /** Check that all inputs to the graphbuilder are valid; throw an exception if not. */
     public void checkInputs();
 
+    /**
+     * A list of ids of the stages (parts of the graph, such as "streets" or "transit") this module creates or modifies.
+     * Along with {@link #getPrerequisites()}, this lets the GraphBuilder run modules which do not touch the same stages
+     * concurrently. Null, the default, when the module did not declare them: it then runs alone.
+     */
+    default List<String> provides() {
+        return null;
+    }
+
+    /**
+     * A list of ids of the stages this module reads, which must be provided before this stage by the modules configured
+     * before it. Null, the default, when the module did not declare them: it then runs alone.
+     */
+    default List<String> getPrerequisites() {
+        return null;
+    }
+
 }
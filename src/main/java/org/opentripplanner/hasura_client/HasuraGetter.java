@@ -5,6 +5,9 @@ import org.opentripplanner.hasura_client.hasura_objects.HasuraObject;
 import org.opentripplanner.hasura_client.mappers.HasuraToOTPMapper;
 import org.opentripplanner.routing.graph.Graph;
 import org.opentripplanner.util.HttpUtils;
+import org.opentripplanner.util.monitoring.Counter;
+import org.opentripplanner.util.monitoring.Histogram;
+import org.opentripplanner.util.monitoring.Metrics;
 import org.slf4j.Logger;
 
 import java.util.List;
@@ -16,6 +19,16 @@ public abstract class HasuraGetter<GRAPH_OBJECT, HASURA_OBJECT extends HasuraObj
 
     private final boolean returnNullOnNoResponse;
 
+    private final Histogram fetchDuration = Metrics.REGISTRY.durationHistogram("otp_hasura_fetch_duration_seconds",
+            "Time spent fetching and parsing a response from Hasura", Metrics.label("getter", getClass().getSimpleName()));
+
+    private final Histogram fetchSize = Metrics.REGISTRY.histogram("otp_hasura_fetch_objects",
+            "Number of objects in a response from Hasura", Metrics.label("getter", getClass().getSimpleName()));
+
+    private final Counter failedFetches = Metrics.REGISTRY.counter("otp_hasura_failed_fetches_total",
+            "Number of requests to Hasura which did not return a response",
+            Metrics.label("getter", getClass().getSimpleName()));
+
     protected abstract String query();
 
     protected abstract Logger getLogger();
@@ -56,19 +69,28 @@ public abstract class HasuraGetter<GRAPH_OBJECT, HASURA_OBJECT extends HasuraObj
     public List<GRAPH_OBJECT> postFromHasura(Graph graph, String url) {
         String arguments = getAdditionalArguments(graph);
         String body = addAdditionalArguments() ? query() + arguments : query();
+        long startNanos = System.nanoTime();
         ApiResponse<HASURA_OBJECT> response = HttpUtils.postData(url, body, hasuraType());
-        getLogger().info("Got {} objects from API", response != null ? response.getData().getItems().size() : "null");
-        return Objects.isNull(response) && returnNullOnNoResponse ? null :
-                mapper().map(response != null ? response.getData().getItems() : emptyList());
+        return handleResponse(response, startNanos);
     }
 
     public List<GRAPH_OBJECT> postFromHasuraWithPassword(Graph graph, String url, String password) {
         String arguments = getAdditionalArguments(graph);
         String body = addAdditionalArguments() ? query() + arguments : query();
+        long startNanos = System.nanoTime();
         ApiResponse<HASURA_OBJECT> response = HttpUtils.postDataWithPassword(url, body, hasuraType(), password);
+        return handleResponse(response, startNanos);
+    }
+
+    private List<GRAPH_OBJECT> handleResponse(ApiResponse<HASURA_OBJECT> response, long startNanos) {
+        fetchDuration.recordSince(startNanos);
+        if (response != null) {
+            fetchSize.record(response.getData().getItems().size());
+        } else {
+            failedFetches.increment();
+        }
         getLogger().info("Got {} objects from API", response != null ? response.getData().getItems().size() : "null");
         return Objects.isNull(response) && returnNullOnNoResponse ? null :
                 mapper().map(response != null ? response.getData().getItems() : emptyList());
     }
-
 }
@@ -12,6 +12,14 @@ public class ParkingZonesGetter extends HasuraGetter<GeometryParkingZone, Parkin
 
     private static final Logger LOG = LoggerFactory.getLogger(ParkingZonesGetter.class);
 
+    public ParkingZonesGetter() {
+        super();
+    }
+
+    public ParkingZonesGetter(boolean returnNullOnNoResponse) {
+        super(returnNullOnNoResponse);
+    }
+
     @Override
     protected String query() {
         return "{\"query\": \"query GetParkingZones($latMin: float8, $lonMin: float8, $latMax: float8, $lonMax: float8) {" +
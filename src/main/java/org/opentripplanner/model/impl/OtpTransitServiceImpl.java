@@ -246,15 +246,7 @@ class OtpTransitServiceImpl implements OtpTransitService {
 
     @Override
     public List<StopTime> getStopTimesForTrip(Trip trip) {
-
-        if (stopTimesByTrip == null) {
-            stopTimesByTrip = getAllStopTimes().stream().collect(groupingBy(StopTime::getTrip));
-
-            for (List<StopTime> stopTimes : stopTimesByTrip.values()) {
-                Collections.sort(stopTimes);
-            }
-        }
-
+        ensureStopTimesByTripRelation();
         return nullSafeUnmodifiableList(stopTimesByTrip.get(trip));
     }
 
@@ -295,21 +287,33 @@ class OtpTransitServiceImpl implements OtpTransitService {
 
     /*  Private Methods */
 
-    private void ensureCalendarDatesByServiceIdRelation() {
+    /* The relations are synchronized, as the graph builder reads the stop times and shapes of trips in parallel. */
+
+    private synchronized void ensureStopTimesByTripRelation() {
+        if (stopTimesByTrip == null) {
+            stopTimesByTrip = getAllStopTimes().stream().collect(groupingBy(StopTime::getTrip));
+
+            for (List<StopTime> stopTimes : stopTimesByTrip.values()) {
+                Collections.sort(stopTimes);
+            }
+        }
+    }
+
+    private synchronized void ensureCalendarDatesByServiceIdRelation() {
         if (calendarDatesByServiceId == null) {
             calendarDatesByServiceId = getAllCalendarDates().stream()
                     .collect(groupingBy(ServiceCalendarDate::getServiceId));
         }
     }
 
-    private void ensureCalendarsByServiceIdRelation() {
+    private synchronized void ensureCalendarsByServiceIdRelation() {
         if (calendarsByServiceId == null) {
             calendarsByServiceId = getAllCalendars().stream()
                     .collect(groupingBy(ServiceCalendar::getServiceId));
         }
     }
 
-    private void ensureShapePointRelation() {
+    private synchronized void ensureShapePointRelation() {
         if (shapePointsByShapeId == null) {
             shapePointsByShapeId = getAllShapePoints().stream()
                     .collect(groupingBy(ShapePoint::getShapeId));
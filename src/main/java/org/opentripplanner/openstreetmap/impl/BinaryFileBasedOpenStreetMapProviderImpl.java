@@ -3,8 +3,14 @@ package org.opentripplanner.openstreetmap.impl;
 import org.opentripplanner.openstreetmap.services.OpenStreetMapContentHandler;
 import org.opentripplanner.openstreetmap.services.OpenStreetMapProvider;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import crosby.binary.file.BlockInputStream;
 
@@ -12,6 +18,9 @@ import crosby.binary.file.BlockInputStream;
  * Parser for the OpenStreetMap PBF format. Parses files in three passes:
  * First the relations, then the ways, then the nodes are also loaded.
  *
+ * When more than one decoding thread is configured, blocks are still read sequentially but inflated and decoded on a
+ * worker pool (see {@link ParallelPbfBlockReader}). The handler receives the entities in file order in both cases.
+ *
  * @see http://wiki.openstreetmap.org/wiki/PBF_Format
  * @see org.opentripplanner.openstreetmap.services.graph_builder.services.osm.OpenStreetMapContentHandler#biPhase
  * @since 0.4
@@ -20,7 +29,13 @@ public class BinaryFileBasedOpenStreetMapProviderImpl implements OpenStreetMapPr
 
     private File path;
 
+    private int decodingThreads = Runtime.getRuntime().availableProcessors();
+
     public void readOSM(OpenStreetMapContentHandler handler) {
+        if (decodingThreads > 1) {
+            readOSMInParallel(handler);
+            return;
+        }
         try {
             BinaryOpenStreetMapParser parser = new BinaryOpenStreetMapParser(handler);
 
@@ -45,10 +60,43 @@ public class BinaryFileBasedOpenStreetMapProviderImpl implements OpenStreetMapPr
             throw new IllegalStateException("error loading OSM from path " + path, ex);        }
     }
 
+    private void readOSMInParallel(OpenStreetMapContentHandler handler) {
+        ExecutorService executor = Executors.newFixedThreadPool(decodingThreads);
+        ConcurrentHashMap<String, String> stringTable = new ConcurrentHashMap<>();
+        int maxBlocksInFlight = decodingThreads * 4;
+        try {
+            readPhase(new ParallelPbfBlockReader(executor, maxBlocksInFlight, stringTable, false, false, true), handler);
+            handler.doneFirstPhaseRelations();
+
+            readPhase(new ParallelPbfBlockReader(executor, maxBlocksInFlight, stringTable, false, true, false), handler);
+            handler.doneSecondPhaseWays();
+
+            readPhase(new ParallelPbfBlockReader(executor, maxBlocksInFlight, stringTable, true, false, false), handler);
+            handler.doneThirdPhaseNodes();
+        } catch (Exception ex) {
+            throw new IllegalStateException("error loading OSM from path " + path, ex);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void readPhase(ParallelPbfBlockReader reader, OpenStreetMapContentHandler handler) throws IOException {
+        try (InputStream input = new BufferedInputStream(new FileInputStream(path))) {
+            reader.process(input, handler);
+        }
+    }
+
     public void setPath(File path) {
         this.path = path;
     }
 
+    /**
+     * Number of threads inflating and decoding PBF blocks. A value of 1 falls back to the serial osmpbf reader.
+     */
+    public void setDecodingThreads(int decodingThreads) {
+        this.decodingThreads = Math.max(1, decodingThreads);
+    }
+
     public String toString() {
         return "BinaryFileBasedOpenStreetMapProviderImpl(" + path + ")";
     }
@@ -20,10 +20,19 @@ public class BinaryOpenStreetMapParser extends BinaryParser {
     private boolean parseWays = true;
     private boolean parseRelations = true;
     private boolean parseNodes = true;
-    private Map<String, String> stringTable = new HashMap<String, String>();
+    private final Map<String, String> stringTable;
 
     public BinaryOpenStreetMapParser(OpenStreetMapContentHandler handler) {
+        this(handler, new HashMap<String, String>());
+    }
+
+    /**
+     * @param stringTable the table used to internalize strings. Several parsers decoding blocks of the same file
+     *                    concurrently can share a single thread safe table.
+     */
+    public BinaryOpenStreetMapParser(OpenStreetMapContentHandler handler, Map<String, String> stringTable) {
         this.handler = handler;
+        this.stringTable = stringTable;
     }
 
     // The strings are already being pulled from a string table in the PBF file,
@@ -31,12 +40,8 @@ public class BinaryOpenStreetMapParser extends BinaryParser {
     // String.intern grinds to a halt on large PBF files (as it did on GTFS import), so 
     // we implement our own. 
     public String internalize(String s) {
-        String fromTable = stringTable.get(s);
-        if (fromTable == null) {
-            stringTable.put(s, s);
-            return s;
-        } 
-        return fromTable;
+        String fromTable = stringTable.putIfAbsent(s, s);
+        return fromTable == null ? s : fromTable;
     }
 
     public void complete() {
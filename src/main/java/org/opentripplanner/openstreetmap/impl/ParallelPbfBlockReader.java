@@ -0,0 +1,205 @@
+package org.opentripplanner.openstreetmap.impl;
+
+import org.opentripplanner.openstreetmap.model.OSMNode;
+import org.opentripplanner.openstreetmap.model.OSMRelation;
+import org.opentripplanner.openstreetmap.model.OSMWay;
+import org.opentripplanner.openstreetmap.model.OSMWithTags;
+import org.opentripplanner.openstreetmap.services.OpenStreetMapContentHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import crosby.binary.Fileformat;
+import crosby.binary.Osmformat;
+
+/**
+ * Reads a PBF file block by block on the calling thread, but inflates and decodes the data blocks on a worker pool.
+ * The decoded entities are handed to the content handler on the calling thread, in the order in which their blocks
+ * appear in the file, so the handler sees exactly the same sequence as with the serial
+ * {@link crosby.binary.file.BlockInputStream}.
+ *
+ * The number of blocks in flight is bounded so memory use does not grow with the size of the file.
+ *
+ * @see http://wiki.openstreetmap.org/wiki/PBF_Format
+ */
+public class ParallelPbfBlockReader {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ParallelPbfBlockReader.class);
+
+    /** Upper limits from the PBF specification, used to detect corrupted input early. */
+    private static final int MAX_HEADER_SIZE = 64 * 1024;
+
+    private static final int MAX_BLOB_SIZE = 32 * 1024 * 1024;
+
+    private final ExecutorService executor;
+
+    private final int maxBlocksInFlight;
+
+    private final Map<String, String> stringTable;
+
+    private final boolean parseNodes;
+
+    private final boolean parseWays;
+
+    private final boolean parseRelations;
+
+    /**
+     * @param stringTable shared by all decoding workers to internalize tag keys and values, must be thread safe.
+     */
+    public ParallelPbfBlockReader(ExecutorService executor, int maxBlocksInFlight, Map<String, String> stringTable,
+                                  boolean parseNodes, boolean parseWays, boolean parseRelations) {
+        this.executor = executor;
+        this.maxBlocksInFlight = maxBlocksInFlight;
+        this.stringTable = stringTable;
+        this.parseNodes = parseNodes;
+        this.parseWays = parseWays;
+        this.parseRelations = parseRelations;
+    }
+
+    public void process(InputStream input, OpenStreetMapContentHandler handler) throws IOException {
+        DataInputStream in = new DataInputStream(input);
+        ArrayDeque<Future<List<OSMWithTags>>> inFlight = new ArrayDeque<>();
+        try {
+            while (true) {
+                int headerSize;
+                try {
+                    headerSize = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (headerSize < 0 || headerSize > MAX_HEADER_SIZE) {
+                    throw new IOException("Invalid PBF blob header size " + headerSize);
+                }
+                byte[] headerBytes = new byte[headerSize];
+                in.readFully(headerBytes);
+                Fileformat.BlobHeader header = Fileformat.BlobHeader.parseFrom(headerBytes);
+                if (header.getDatasize() < 0 || header.getDatasize() > MAX_BLOB_SIZE) {
+                    throw new IOException("Invalid PBF blob size " + header.getDatasize());
+                }
+                byte[] blob = new byte[header.getDatasize()];
+                in.readFully(blob);
+
+                if (header.getType().equals("OSMHeader")) {
+                    // Header blocks are tiny and only validated, there is no point in handing them to a worker.
+                    new BinaryOpenStreetMapParser(handler, stringTable)
+                            .parse(Osmformat.HeaderBlock.parseFrom(inflate(blob)));
+                } else if (header.getType().equals("OSMData")) {
+                    inFlight.add(executor.submit(() -> decode(blob)));
+                    while (inFlight.size() >= maxBlocksInFlight) {
+                        deliver(inFlight.poll(), handler);
+                    }
+                } else {
+                    LOG.debug("Skipping PBF block of unknown type {}", header.getType());
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                deliver(inFlight.poll(), handler);
+            }
+        } finally {
+            for (Future<List<OSMWithTags>> future : inFlight) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private List<OSMWithTags> decode(byte[] blob) throws IOException {
+        BufferingContentHandler buffer = new BufferingContentHandler();
+        BinaryOpenStreetMapParser parser = new BinaryOpenStreetMapParser(buffer, stringTable);
+        parser.setParseNodes(parseNodes);
+        parser.setParseWays(parseWays);
+        parser.setParseRelations(parseRelations);
+        parser.parse(Osmformat.PrimitiveBlock.parseFrom(inflate(blob)));
+        return buffer.entities;
+    }
+
+    private static byte[] inflate(byte[] blobBytes) throws IOException {
+        Fileformat.Blob blob = Fileformat.Blob.parseFrom(blobBytes);
+        if (blob.hasRaw()) {
+            return blob.getRaw().toByteArray();
+        }
+        if (!blob.hasZlibData()) {
+            throw new IOException("PBF blob uses an unsupported compression");
+        }
+        byte[] raw = new byte[blob.getRawSize()];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(blob.getZlibData().toByteArray());
+            inflater.inflate(raw);
+            if (!inflater.finished()) {
+                throw new IOException("PBF blob is larger than its declared raw size");
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupted zlib data in PBF blob", e);
+        } finally {
+            inflater.end();
+        }
+        return raw;
+    }
+
+    private static void deliver(Future<List<OSMWithTags>> future, OpenStreetMapContentHandler handler)
+            throws IOException {
+        List<OSMWithTags> entities;
+        try {
+            entities = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while decoding PBF blocks", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Unable to decode PBF block", e.getCause());
+        }
+        for (OSMWithTags entity : entities) {
+            if (entity instanceof OSMNode) {
+                handler.addNode((OSMNode) entity);
+            } else if (entity instanceof OSMWay) {
+                handler.addWay((OSMWay) entity);
+            } else {
+                handler.addRelation((OSMRelation) entity);
+            }
+        }
+    }
+
+    /**
+     * Collects the entities of a single block so they can be replayed on the reading thread.
+     */
+    private static class BufferingContentHandler implements OpenStreetMapContentHandler {
+
+        private final List<OSMWithTags> entities = new ArrayList<>();
+
+        @Override
+        public void addNode(OSMNode node) {
+            entities.add(node);
+        }
+
+        @Override
+        public void addWay(OSMWay way) {
+            entities.add(way);
+        }
+
+        @Override
+        public void addRelation(OSMRelation relation) {
+            entities.add(relation);
+        }
+
+        @Override
+        public void doneFirstPhaseRelations() { }
+
+        @Override
+        public void doneSecondPhaseWays() { }
+
+        @Override
+        public void doneThirdPhaseNodes() { }
+    }
+}
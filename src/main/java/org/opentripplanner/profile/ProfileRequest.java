@@ -129,6 +129,13 @@ public class ProfileRequest implements Serializable, Cloneable {
     /** What assumption should be used when boarding frequency vehicles? */
     public RaptorWorkerTimetable.BoardingAssumption boardingAssumption = RaptorWorkerTimetable.BoardingAssumption.RANDOM;
 
+    /**
+     * Into how many chunks of consecutive departure minutes the time window is split, the chunks being searched in
+     * parallel. Range-RAPTOR only reuses results within a chunk, so more chunks mean more work overall but a shorter
+     * response time. The default of 1 searches all minutes one after another on the calling thread.
+     */
+    public int parallelism = 1;
+
     /* The relative importance of different factors when biking */
     /** The relative importance of maximizing safety when cycling */
     public int bikeSafe;
@@ -1,5 +1,6 @@
 package org.opentripplanner.profile;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.protobuf.CodedOutputStream;
 import gnu.trove.iterator.TIntIntIterator;
 import gnu.trove.map.TIntIntMap;
@@ -12,9 +13,14 @@ import org.slf4j.LoggerFactory;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.BitSet;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.IntStream;
 
 /**
@@ -113,6 +119,11 @@ public class RaptorWorker {
 
     private FrequencyRandomOffsets offsets;
 
+    /** Searches chunks of departure minutes when the request asks for more than one */
+    private static final ExecutorService executor = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(),
+            new ThreadFactoryBuilder().setNameFormat("RaptorWorker-%d").setDaemon(true).build());
+
     public RaptorWorker(RaptorWorkerData data, ProfileRequest req) {
         this.data = data;
         // these should only reflect the results of the (deterministic) scheduled search
@@ -171,9 +182,7 @@ public class RaptorWorker {
         // So only update the number of iterations when we're actually going to use all of them, to
         // avoid uninitialized arrays.
         // if we multiply when we're not doing monte carlo, we'll end up with too many iterations.
-        if (data.hasFrequencies)
-            // we add 2 because we do two "fake" draws where we do min or max instead of a monte carlo draw
-            iterations *= (monteCarloDraws + 2);
+        iterations *= iterationsPerMinute(monteCarloDraws);
 
         ts.searchCount = iterations;
 
@@ -188,15 +197,54 @@ public class RaptorWorker {
         // TODO don't hardwire timestep below
         ts.timeStep = 60;
 
+        // FIXME this should be changed to tolerate a zero-width time range
+        int minutes = (req.toTime - fromTime - 60) / 60 + 1;
+        int chunks = Math.max(1, Math.min(req.parallelism, minutes));
+        if (chunks == 1) {
+            runMinutes(initialStops, nonTransitTimes, 0, minutes, monteCarloDraws, timesAtTargetsEachIteration,
+                    includeIterationInAverages);
+        } else {
+            runMinutesInParallel(initialStops, nonTransitTimes, minutes, chunks, monteCarloDraws,
+                    timesAtTargetsEachIteration, includeIterationInAverages);
+        }
+
+        long calcTime = System.currentTimeMillis() - beginCalcTime;
+        LOG.info("calc time {}sec", calcTime / 1000.0);
+        LOG.info("  propagation {}sec", totalPropagationTime / 1000.0);
+        LOG.info("  raptor {}sec", (calcTime - totalPropagationTime) / 1000.0);
+        ts.propagation = (int) totalPropagationTime;
+        ts.transitSearch = (int) (calcTime - totalPropagationTime);
+        //dumpVariableByte(timesAtTargetsEachMinute);
+        // we can use min_max here as we've also run it once with best case and worst case board,
+        // so the best and worst cases are meaningful.
+        propagatedTimesStore.setFromArray(timesAtTargetsEachIteration, includeIterationInAverages,
+                PropagatedTimesStore.ConfidenceCalculationMethod.MIN_MAX);
+        return propagatedTimesStore;
+    }
+
+    /** The number of iterations stored for each departure minute */
+    private int iterationsPerMinute (int monteCarloDraws) {
+        // we add 2 because we do two "fake" draws where we do min or max instead of a monte carlo draw
+        return data.hasFrequencies ? monteCarloDraws + 2 : 1;
+    }
+
+    /**
+     * Search departure minutes firstMinute (inclusive) to endMinute (exclusive), counted backward from the end of the
+     * time window, reusing the results of each minute in the next one (range-raptor). The results are stored in the
+     * rows of timesAtTargetsEachIteration and includeIterationInAverages belonging to those minutes only, so that
+     * disjoint ranges of minutes can be searched concurrently by different workers.
+     */
+    private void runMinutes (TIntIntMap initialStops, int[] nonTransitTimes, int firstMinute, int endMinute,
+            int monteCarloDraws, int[][] timesAtTargetsEachIteration, boolean[] includeIterationInAverages) {
         // times at targets from scheduled search
         int[] scheduledTimesAtTargets = new int[data.nTargets];
         Arrays.fill(scheduledTimesAtTargets, UNREACHED);
 
-        // current iteration
-        int iteration = 0;
+        // the iterations of each minute are stored together, whichever chunk the minute belongs to
+        int iteration = firstMinute * iterationsPerMinute(monteCarloDraws);
 
-        // FIXME this should be changed to tolerate a zero-width time range
-        for (int departureTime = req.toTime - 60, n = 0; departureTime >= fromTime; departureTime -= 60, n++) {
+        for (int n = firstMinute; n < endMinute; n++) {
+            int departureTime = req.toTime - 60 - n * 60;
             if (n % 15 == 0) {
                 LOG.info("minute {}", n);
             }
@@ -270,25 +318,60 @@ public class RaptorWorker {
             }
         }
 
-        // make sure we filled the array, otherwise results are garbage.
+        // make sure we filled our part of the array, otherwise results are garbage.
         // This implies a bug in OTP, but it has happened in the past when we did
         // not set the number of iterations correctly.
-        // iteration should be incremented past end of array by ++ in assignment above
-        if (iteration != iterations)
+        // iteration should be incremented past end of our part by ++ in assignment above
+        if (iteration != endMinute * iterationsPerMinute(monteCarloDraws))
             throw new IllegalStateException("Iterations did not completely fill output array");
+    }
 
-        long calcTime = System.currentTimeMillis() - beginCalcTime;
-        LOG.info("calc time {}sec", calcTime / 1000.0);
-        LOG.info("  propagation {}sec", totalPropagationTime / 1000.0);
-        LOG.info("  raptor {}sec", (calcTime - totalPropagationTime) / 1000.0);
-        ts.propagation = (int) totalPropagationTime;
-        ts.transitSearch = (int) (calcTime - totalPropagationTime);
-        //dumpVariableByte(timesAtTargetsEachMinute);
-        // we can use min_max here as we've also run it once with best case and worst case board,
-        // so the best and worst cases are meaningful.
-        propagatedTimesStore.setFromArray(timesAtTargetsEachIteration, includeIterationInAverages,
-                PropagatedTimesStore.ConfidenceCalculationMethod.MIN_MAX);
-        return propagatedTimesStore;
+    /**
+     * Split the departure minutes into contiguous chunks and search each chunk with its own worker on the shared
+     * executor. Workers keep range-raptor state, Monte Carlo offsets and the boarding assumption to themselves, and
+     * write to disjoint rows of the result arrays, so the results are the same as those of a serial search except for
+     * the randomness of the Monte Carlo draws.
+     */
+    private void runMinutesInParallel (TIntIntMap initialStops, int[] nonTransitTimes, int minutes, int chunks,
+            int monteCarloDraws, int[][] timesAtTargetsEachIteration, boolean[] includeIterationInAverages) {
+        List<RaptorWorker> workers = new ArrayList<>();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int c = 0; c < chunks; c++) {
+            int firstMinute = minutes * c / chunks;
+            int endMinute = minutes * (c + 1) / chunks;
+            RaptorWorker worker;
+            try {
+                worker = new RaptorWorker(data, req.clone());
+            } catch (CloneNotSupportedException e) {
+                throw new RuntimeException(e);
+            }
+            workers.add(worker);
+            futures.add(executor.submit(() -> worker.runMinutes(initialStops, nonTransitTimes, firstMinute,
+                    endMinute, monteCarloDraws, timesAtTargetsEachIteration, includeIterationInAverages)));
+        }
+
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while searching departure minutes", e);
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        }
+
+        // the chunks propagate concurrently, so report the average time spent by a worker rather than the sum
+        long propagationTime = 0;
+        for (RaptorWorker worker : workers) {
+            propagationTime += worker.totalPropagationTime;
+        }
+        totalPropagationTime += propagationTime / chunks;
     }
 
     public void dumpVariableByte(int[][] array) {
@@ -8,11 +8,13 @@ import org.opentripplanner.routing.algorithm.strategies.TrivialRemainingWeightHe
 import org.opentripplanner.routing.core.RoutingContext;
 import org.opentripplanner.routing.core.RoutingRequest;
 import org.opentripplanner.routing.core.State;
+import org.opentripplanner.routing.edgetype.rentedgetype.VehicleDropoffIndex;
 import org.opentripplanner.routing.graph.Edge;
 import org.opentripplanner.routing.graph.Vertex;
 import org.opentripplanner.routing.spt.GraphPath;
 import org.opentripplanner.routing.spt.ShortestPathTree;
 import org.opentripplanner.util.DateUtils;
+import org.opentripplanner.util.monitoring.Metrics;
 import org.opentripplanner.util.monitoring.MonitoringStore;
 import org.opentripplanner.util.monitoring.MonitoringStoreFactory;
 import org.slf4j.Logger;
@@ -38,6 +40,12 @@ public class AStar {
 
     private TraverseVisitor traverseVisitor;
 
+    /* Optional storage reused between searches, see setWorkspace. */
+    private SearchWorkspace workspace;
+
+    /* States with a higher estimated weight are not enqueued, see setWeightUpperBound. */
+    private double weightUpperBound = Double.POSITIVE_INFINITY;
+
     enum RunStatus {
         RUNNING, STOPPED
     }
@@ -51,12 +59,18 @@ public class AStar {
         RemainingWeightHeuristic heuristic;
         public RoutingContext rctx;
         public int nVisited;
+        int nPruned;
+        int nInserted;
+        int nDominated;
+        long startNanos;
         public List<State> targetAcceptedStates;
         public RunStatus status;
         private RoutingRequest options;
         private SearchTerminationStrategy terminationStrategy;
         public Vertex u_vertex;
         Double foundPathWeight = null;
+        /* Read once, so that the whole search sees the same drop-off permissions even if parking zones get updated. */
+        VehicleDropoffIndex vehicleDropoffIndex;
 
         public RunState(RoutingRequest options, SearchTerminationStrategy terminationStrategy) {
             this.options = options;
@@ -96,24 +110,31 @@ public class AStar {
                              SearchTerminationStrategy terminationStrategy, long abortTime, boolean addToQueue) {
 
         runState = new RunState(options, terminationStrategy);
+        runState.startNanos = System.nanoTime();
         runState.rctx = options.getRoutingContext();
-        runState.spt = options.getNewShortestPathTree();
+        runState.spt = workspace != null ? workspace.newShortestPathTree(options) : options.getNewShortestPathTree();
+        runState.vehicleDropoffIndex = runState.rctx.graph.vehicleDropoffIndex;
 
-        if (Objects.nonNull(options.getOptimizationProfile())) {
+        if (options.batch) {
+            // "Batch" means one-to-many mode, where there is no goal to reach so we use a trivial heuristic.
+            runState.heuristic = new TrivialRemainingWeightHeuristic();
+        } else if (Objects.nonNull(options.getOptimizationProfile())) {
             runState.heuristic = options.getOptimizationProfile().getHeuristic();
         } else {
             // We want to reuse the heuristic instance in a series of requests for the same target to avoid repeated work.
-            // "Batch" means one-to-many mode, where there is no goal to reach so we use a trivial heuristic.
-            runState.heuristic = options.batch ? new TrivialRemainingWeightHeuristic() : runState.rctx.remainingWeightHeuristic;
+            runState.heuristic = runState.rctx.remainingWeightHeuristic;
         }
 
         // Since initial states can be multiple, heuristic cannot depend on the initial state.
         // Initializing the bidirectional heuristic is a pretty complicated operation that involves searching through
         // the streets around the origin and destination.
+        long heuristicStartNanos = System.nanoTime();
         runState.heuristic.initialize(runState.options, abortTime);
+        Metrics.HEURISTIC_INITIALIZATION_DURATION.recordSince(heuristicStartNanos);
         if (abortTime < Long.MAX_VALUE && System.currentTimeMillis() > abortTime) {
             LOG.warn("Timeout during initialization of goal direction heuristic.");
             options.rctx.debugOutput.timedOut = true;
+            Metrics.SEARCH_TIMEOUTS.increment();
             runState = null; // Search timed out
             return;
         }
@@ -121,11 +142,18 @@ public class AStar {
         // Priority Queue.
         // The queue is self-resizing, so we initialize it to have size = O(sqrt(|V|)) << |V|.
         // For reference, a random, undirected search on a uniform 2d grid will examine roughly sqrt(|V|) vertices
-        // before reaching its target.
-        int initialSize = runState.rctx.graph.getVertices().size();
-        initialSize = (int) Math.ceil(2 * (Math.sqrt((double) initialSize + 1)));
-        runState.pq = new BinHeap<>(initialSize);
+        // before reaching its target. A reused queue keeps the capacity it grew to in previous searches.
+        if (workspace != null) {
+            runState.pq = workspace.newQueue();
+        } else {
+            int initialSize = runState.rctx.graph.countVertices();
+            initialSize = (int) Math.ceil(2 * (Math.sqrt((double) initialSize + 1)));
+            runState.pq = new BinHeap<>(initialSize);
+        }
         runState.nVisited = 0;
+        runState.nPruned = 0;
+        runState.nInserted = 0;
+        runState.nDominated = 0;
         runState.targetAcceptedStates = Lists.newArrayList();
 
         if (addToQueue) {
@@ -153,6 +181,7 @@ public class AStar {
         if (!runState.spt.visit(runState.u)) {
             // state has been dominated since it was added to the priority queue, so it is
             // not in any optimal path. drop it on the floor and try the next one.
+            runState.nDominated += 1;
             return false;
         }
 
@@ -167,59 +196,79 @@ public class AStar {
 
         runState.nVisited += 1;
 
-        Collection<Edge> edges = runState.options.arriveBy ? runState.u_vertex.getIncoming() : runState.u_vertex.getOutgoing();
+        Collection<Edge> edges = runState.options.arriveBy ? runState.rctx.getIncoming(runState.u_vertex)
+                : runState.rctx.getOutgoing(runState.u_vertex);
         for (Edge edge : edges) {
-            // Iterate over traversal results. When an edge leads nowhere (as indicated by
-            // returning NULL), the iteration is over. TODO Use this to board multiple trips.
-            for (State v = edge.traverse(runState.u); v != null; v = v.getNextResult()) {
-                // Could be: for (State v : traverseEdge...)
+            relax(edge);
+        }
 
-                if (traverseVisitor != null) {
-                    traverseVisitor.visitEdge(edge, v);
-                }
+        // Vehicles can be dropped off at most street vertices, but there are no edges for that in the graph.
+        if (runState.u.isCurrentlyRentingVehicle() && runState.vehicleDropoffIndex != null) {
+            Edge dropoffEdge = runState.vehicleDropoffIndex.getImplicitDropoffEdge(runState.u_vertex);
+            if (dropoffEdge != null) {
+                relax(dropoffEdge);
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Traverses given edge from the current state and enqueues all hopeful resulting states.
+     */
+    private void relax(Edge edge) {
+        for (State v = edge.traverse(runState.u); v != null; v = v.getNextResult()) {
+            // Could be: for (State v : traverseEdge...)
+
+            if (traverseVisitor != null) {
+                traverseVisitor.visitEdge(edge, v);
+            }
 
-                double remaining_w = runState.heuristic.estimateRemainingWeight(v);
+            double remaining_w = runState.heuristic.estimateRemainingWeight(v);
 
 //                LOG.info("{} {}", v, remaining_w);
 
-                if (remaining_w < 0 || Double.isInfinite(remaining_w)) {
-                    continue;
-                }
-                double estimate = v.getWeight() + remaining_w * runState.options.remainingWeighMultiplier;
+            if (remaining_w < 0 || Double.isInfinite(remaining_w)) {
+                continue;
+            }
+            double estimate = v.getWeight() + remaining_w * runState.options.remainingWeighMultiplier;
 
-                if (verbose) {
-                    System.out.println("      edge " + edge);
-                    System.out.println("      " + runState.u.getWeight() + " -> " + v.getWeight()
-                            + "(w) + " + remaining_w + "(heur) = " + estimate + " vert = "
-                            + v.getVertex());
-                }
+            if (verbose) {
+                System.out.println("      edge " + edge);
+                System.out.println("      " + runState.u.getWeight() + " -> " + v.getWeight()
+                        + "(w) + " + remaining_w + "(heur) = " + estimate + " vert = "
+                        + v.getVertex());
+            }
 
-                // avoid enqueuing useless branches
-                if (estimate > runState.options.maxWeight) {
-                    // too expensive to get here
-                    if (verbose)
-                        System.out.println("         too expensive to reach, not enqueued. estimated weight = " + estimate);
-                    continue;
-                }
-                if (isWorstTimeExceeded(v, runState.options)) {
-                    // too much time to get here
-                    if (verbose)
-                        System.out.println("         too much time to reach, not enqueued. time = " + v.getTimeSeconds());
-                    continue;
-                }
+            // avoid enqueuing useless branches
+            if (estimate > runState.options.maxWeight) {
+                // too expensive to get here
+                if (verbose)
+                    System.out.println("         too expensive to reach, not enqueued. estimated weight = " + estimate);
+                continue;
+            }
+            if (estimate > weightUpperBound) {
+                // cannot lead to a path good enough compared to the ones found by previous searches
+                runState.nPruned += 1;
+                continue;
+            }
+            if (isWorstTimeExceeded(v, runState.options)) {
+                // too much time to get here
+                if (verbose)
+                    System.out.println("         too much time to reach, not enqueued. time = " + v.getTimeSeconds());
+                continue;
+            }
 
-                // spt.add returns true if the state is hopeful; enqueue state if it's hopeful
-                if (runState.spt.add(v)) {
-                    // report to the visitor if there is one
-                    if (traverseVisitor != null)
-                        traverseVisitor.visitEnqueue(v);
-                    //LOG.info("u.w={} v.w={} h={}", runState.u.weight, v.weight, remaining_w);
-                    runState.pq.insert(v, estimate);
-                }
+            // spt.add returns true if the state is hopeful; enqueue state if it's hopeful
+            if (runState.spt.add(v)) {
+                // report to the visitor if there is one
+                if (traverseVisitor != null)
+                    traverseVisitor.visitEnqueue(v);
+                //LOG.info("u.w={} v.w={} h={}", runState.u.weight, v.weight, remaining_w);
+                runState.pq.insert(v, estimate);
+                runState.nInserted += 1;
             }
         }
-
-        return true;
     }
 
     void runSearch(long abortTime) {
@@ -235,6 +284,7 @@ public class AStar {
                 // allows returning a partial list results even when a timeout occurs.
                 runState.options.rctx.aborted = true; // signal search cancellation up to higher stack frames
                 runState.options.rctx.debugOutput.timedOut = true; // signal timeout in debug output object
+                Metrics.SEARCH_TIMEOUTS.increment();
 
                 break;
             }
@@ -290,6 +340,7 @@ public class AStar {
         if (runState != null) {
             runSearch(abortTime);
             spt = runState.spt;
+            recordMetrics();
         }
 
         storeMemory();
@@ -317,11 +368,19 @@ public class AStar {
 
             runSearch(abortTime);
             spt = runState.spt;
+            recordMetrics();
         }
 
         return spt;
     }
 
+    private void recordMetrics() {
+        Metrics.SEARCH_VISITED_STATES.record(runState.nVisited);
+        Metrics.SEARCH_QUEUE_INSERTS.record(runState.nInserted);
+        Metrics.SEARCH_DOMINATED_STATES.record(runState.nDominated);
+        Metrics.SEARCH_DURATION.recordSince(runState.startNanos);
+    }
+
     private void storeMemory() {
         if (store.isMonitoring("memoryUsed")) {
             System.gc();
@@ -342,6 +401,29 @@ public class AStar {
         this.traverseVisitor = traverseVisitor;
     }
 
+    /**
+     * Makes all following searches skip states whose weight plus remaining weight estimate exceeds given bound, unlike
+     * RoutingRequest.maxWeight the bound may change between searches using the same request.
+     */
+    public void setWeightUpperBound(double weightUpperBound) {
+        this.weightUpperBound = weightUpperBound;
+    }
+
+    /**
+     * @return number of states skipped by the last search because of the weight upper bound
+     */
+    public int getPrunedStatesCount() {
+        return runState == null ? 0 : runState.nPruned;
+    }
+
+    /**
+     * Makes all following searches use the priority queue and shortest path tree storage of given workspace instead
+     * of allocating their own. Shortest path trees returned by one search are then cleared by the next one.
+     */
+    public void setWorkspace(SearchWorkspace workspace) {
+        this.workspace = workspace;
+    }
+
     public List<GraphPath> getPathsToTarget() {
         if (runState == null) {
             return Collections.emptyList();
@@ -0,0 +1,90 @@
+package org.opentripplanner.routing.algorithm;
+
+import org.opentripplanner.common.pqueue.BinHeap;
+import org.opentripplanner.routing.core.RoutingRequest;
+import org.opentripplanner.routing.core.State;
+import org.opentripplanner.routing.graph.Vertex;
+import org.opentripplanner.routing.spt.ShortestPathTree;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Priority queue and shortest path tree storage reused by all searches of one thread, so that a sustained load of
+ * routing requests does not allocate (and throw away) them for each search.
+ *
+ * A search borrows the workspace with {@link #acquire()} and must give it back with {@link #release()}, which drops
+ * all references to states. Paths found by a search (see {@link AStar#getPathsToTarget()}) keep their own states and
+ * stay valid after the workspace is reused, but trees returned by {@link AStar#getShortestPathTree} do not.
+ *
+ * States themselves are still allocated for each search: they are shared with the returned paths.
+ */
+public class SearchWorkspace {
+
+    private static final int INITIAL_QUEUE_CAPACITY = 1000;
+
+    /**
+     * Queues and trees which grew larger than this during an exceptionally long search are not kept, so that one such
+     * search does not hold on to a lot of memory for the lifetime of the thread.
+     */
+    private static final int MAX_RETAINED_SIZE = 1 << 18;
+
+    private static final ThreadLocal<SearchWorkspace> WORKSPACES = ThreadLocal.withInitial(SearchWorkspace::new);
+
+    private BinHeap<State> queue = new BinHeap<>(INITIAL_QUEUE_CAPACITY);
+
+    private Map<Vertex, List<State>> stateSets = new IdentityHashMap<>();
+
+    private boolean inUse = false;
+
+    /**
+     * @return the workspace of the current thread, or a new one if it is already used by a search on this thread
+     */
+    public static SearchWorkspace acquire() {
+        SearchWorkspace workspace = WORKSPACES.get();
+        if (workspace.inUse) {
+            return new SearchWorkspace();
+        }
+        workspace.inUse = true;
+        return workspace;
+    }
+
+    public void release() {
+        clearQueue();
+        clearStateSets();
+        inUse = false;
+    }
+
+    /**
+     * @return an empty priority queue, the same instance for all searches using this workspace
+     */
+    BinHeap<State> newQueue() {
+        clearQueue();
+        return queue;
+    }
+
+    /**
+     * @return an empty shortest path tree, backed by the same storage for all searches using this workspace
+     */
+    ShortestPathTree newShortestPathTree(RoutingRequest options) {
+        clearStateSets();
+        return new ShortestPathTree(options, options.getDominanceFunction(), stateSets);
+    }
+
+    private void clearQueue() {
+        if (queue.capacity() > MAX_RETAINED_SIZE) {
+            queue = new BinHeap<>(INITIAL_QUEUE_CAPACITY);
+        } else {
+            queue.clear();
+        }
+    }
+
+    private void clearStateSets() {
+        if (stateSets.size() > MAX_RETAINED_SIZE) {
+            stateSets = new IdentityHashMap<>();
+        } else {
+            stateSets.clear();
+        }
+    }
+}
@@ -1,7 +1,5 @@
 package org.opentripplanner.routing.algorithm.strategies;
 
-import gnu.trove.map.TObjectDoubleMap;
-import gnu.trove.map.hash.TObjectDoubleHashMap;
 import org.opentripplanner.common.geometry.SphericalDistanceLibrary;
 import org.opentripplanner.common.pqueue.BinHeap;
 import org.opentripplanner.routing.core.RoutingRequest;
@@ -20,8 +18,8 @@ import org.opentripplanner.routing.vertextype.TransitVertex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayDeque;
+import java.util.Deque;
 
 /**
  * This the goal direction heuristic used for transit searches.
@@ -129,6 +127,10 @@ public class InterleavedBidirectionalHeuristic implements RemainingWeightHeurist
     // For each step in the main search, how many steps should the reverse search proceed?
     private static final int HEURISTIC_STEPS_PER_MAIN_STEP = 8; // TODO determine a good value empirically
 
+    // Columns of the street vertex weight tables
+    private static final int WALK = 0;
+    private static final int CAR = 1;
+
     /** The vertex at which the main search begins. */
     Vertex origin;
 
@@ -136,25 +138,30 @@ public class InterleavedBidirectionalHeuristic implements RemainingWeightHeurist
     Vertex target;
 
     /**
-     * A map of all vertices within walking (or driving) distance of the origin (the vertex at which the
-     * main search begins) and their corresponding mode-sensitive lower bound weights.
+     * Tables of vertex weights below, borrowed from a per-thread pool for the lifetime of this heuristic.
+     */
+    private Tables tables;
+
+    /**
+     * All vertices within walking (or driving) distance of the origin (the vertex at which the
+     * main search begins) and their corresponding mode-sensitive (WALK and CAR columns) lower bound weights.
      */
-    Map<Vertex, VertexModeWeight> preTransitVertices;
+    VertexWeightTable preTransitVertices;
 
     /**
      * A lower bound on the weight of the lowest-cost path to the target (the vertex at which the
      * main search ends) from each vertex within walking (or driving) distance of the target. In
-     * previous OTP versions, this map used to also store transit vertex weights, but that data is
+     * previous OTP versions, this table used to also store transit vertex weights, but that data is
      * now stored in {@link InterleavedBidirectionalHeuristic#transitVertexWeights}.
      */
-    Map<Vertex, VertexModeWeight> postTransitVertices;
+    VertexWeightTable postTransitVertices;
 
     /**
-     * A map containing a lower bound on weight of a path to the destination from transit vertices.
+     * A lower bound on weight of a path to the destination from transit vertices.
      * This includes only transit vertices, not street or other vertices reached before or after
      * using transit.
      */
-    TObjectDoubleMap<Vertex> transitVertexWeights;
+    VertexWeightTable transitVertexWeights;
 
     Graph graph;
 
@@ -173,9 +180,6 @@ public class InterleavedBidirectionalHeuristic implements RemainingWeightHeurist
     // The speed for calculating the pre-transit remaining weight with a euclidean heuristic
     private double remainingDistanceSpeed;
 
-    // A cache of pre-transit remaining weights based on a vertex as a key
-    private Map<Vertex, Double> preTransitRemainingWeightEstimates;
-
     // A threshold in meters beyond which the pre-transit euclidean heuristic is applied in order
     // to save time with trip calculations
     private final double PRE_TRANSIT_EUCLIDEAN_WALK_DISTANCE_THRESHOLD = 5000; // TODO determine a good value empirically
@@ -209,29 +213,30 @@ public class InterleavedBidirectionalHeuristic implements RemainingWeightHeurist
         request.bikeWalkingOptions.softWalkLimiting = false;
         request.bikeWalkingOptions.softPreTransitLimiting = false;
         transitQueue = new BinHeap<>();
+        // Reuse the tables of this heuristic if it was initialized before, otherwise borrow them from the pool.
+        // All tables are cleared, transit vertices will be added later in the doSomeWork method.
+        if (tables == null) {
+            tables = Tables.acquire(graph);
+        } else {
+            tables.clear();
+        }
+        preTransitVertices = tables.preTransitVertices;
+        postTransitVertices = tables.postTransitVertices;
+        transitVertexWeights = tables.transitVertexWeights;
         // Forward street search first, mark street vertices around the origin so H evaluates to 0.
-        preTransitVertices = streetSearch(request, false, abortTime);
-        if (preTransitVertices == null) {
+        if (!streetSearch(request, false, preTransitVertices, abortTime)) {
             return; // Search timed out
         }
         LOG.debug("end forward street search {} ms", System.currentTimeMillis() - start);
-        postTransitVertices = streetSearch(request, true, abortTime);
-        if (postTransitVertices == null) {
+        if (!streetSearch(request, true, postTransitVertices, abortTime)) {
             return; // Search timed out
         }
         LOG.debug("end backward street search {} ms", System.currentTimeMillis() - start);
 
-        // initialize the transit vertices to be an empty map.  Transit vertices will be added later
-        // in the doSomeWork method.
-        transitVertexWeights = new TObjectDoubleHashMap<>(100, 0.5f, Double.POSITIVE_INFINITY);
-
         // Set the remaining distance speed to the upper bound speed of the modes available in the
         // routing request.
         remainingDistanceSpeed = request.getStreetSpeedUpperBound();
 
-        // Initialize the pre-transit remaining weight cache
-        preTransitRemainingWeightEstimates = new HashMap<>();
-
         // In certain cases, it will make sense to use a euclidean heuristic for estimating the
         // remaining weight of pre-transit vertices. In transit+walk searches, this is generally not
         // needed because the weight of existing states increases rapidly enough such that not all
@@ -271,7 +276,7 @@ public class InterleavedBidirectionalHeuristic implements RemainingWeightHeurist
             // The main search is on transit. If the current vertex has been explored during the
             // doSomeWork method, then return the stored lower bound. Otherwise return the highest
             // lower bound yet seen -- this location must have a higher cost than that.
-            double h = transitVertexWeights.get(v);
+            double h = transitVertexWeights.get(v, 0);
             if (h == Double.POSITIVE_INFINITY) {
                 return maxWeightSeen;
             } else {
@@ -284,31 +289,29 @@ public class InterleavedBidirectionalHeuristic implements RemainingWeightHeurist
             // can also include other vertices used to create items such as bike rental stations.
             // Zero is always an underestimate.
             return 0;
-        } else if (!s.isEverBoarded() && preTransitVertices.containsKey(v)) {
+        } else if (!s.isEverBoarded() && preTransitVertices.contains(v)) {
             // The current search state is not on transit, is not a temporary vertex and hasn't
             // boarded transit yet. Calculate the remaining weight of the vertex based on the
             // current non-transit mode. This differentiation is needed because during the
             // pre-transit search, the same vertex could be explored in a driving state or a
             // walking state or both. Therefore, the vertices need to be assigned different weights
             // for when a vertex is unreachable via a specific mode.
-            VertexModeWeight weight = preTransitVertices.get(v);
             TraverseMode nonTransitMode = s.getNonTransitMode();
             if (nonTransitMode != null && nonTransitMode.isDriving()) {
-                return getPreTransitRemainingWeightEstimate(v, weight.carWeight);
+                return getPreTransitRemainingWeightEstimate(v, preTransitVertices.get(v, CAR));
             } else {
-                return getPreTransitRemainingWeightEstimate(v, weight.walkWeight);
+                return getPreTransitRemainingWeightEstimate(v, preTransitVertices.get(v, WALK));
             }
-        } else if (s.isEverBoarded() && postTransitVertices.containsKey(v)) {
+        } else if (s.isEverBoarded() && postTransitVertices.contains(v)) {
             // The main search has boarded transit and is on a vertex that was reachable during the
             // post-transit heuristic initialization. Return the mode-dependent lower bound weight
             // found during the heuristic initialization. This can return Infinity if this vertex
             // was unreachable during the heuristic initialization with the current mode.
-            VertexModeWeight weight = postTransitVertices.get(v);
             TraverseMode nonTransitMode = s.getNonTransitMode();
             if (nonTransitMode != null && nonTransitMode.isDriving()) {
-                return weight.carWeight;
+                return postTransitVertices.get(v, CAR);
             } else {
-                return weight.walkWeight;
+                return postTransitVertices.get(v, WALK);
             }
         }
 
@@ -328,7 +331,7 @@ public class InterleavedBidirectionalHeuristic implements RemainingWeightHeurist
      * results in the vertex not being explored further in the graph search. If the vertex was
      * reachable, a non-infinite value is returned. If the
      * useEuclideanRemainingWeightEstimateForPreTransitVertices flag is set to true, a euclidean
-     * remaining weight is calculated (and stored in a cache) based off of the remaining distance
+     * remaining weight is calculated based off of the remaining distance
      * and the speed that the remaining distance could be covered. Otherwise, it is assumed that all
      * pre-transit vertices are equally as likely to have the same remaining weight to the target,
      * so an underestimate of 0 is returned.
@@ -337,21 +340,34 @@ public class InterleavedBidirectionalHeuristic implements RemainingWeightHeurist
         return preTransitStreetSearchWeight == Double.POSITIVE_INFINITY
                ? Double.POSITIVE_INFINITY
                : useEuclideanRemainingWeightEstimateForPreTransitVertices
-                 ? preTransitRemainingWeightEstimates.computeIfAbsent(
-                   v,
-                   (vertex) -> SphericalDistanceLibrary.fastDistance(
+                 ? SphericalDistanceLibrary.fastDistance(
                        v.getLat(),
                        v.getLon(),
                        target.getLat(),
                        target.getLon()
                    ) / remainingDistanceSpeed
-                 )
                  : 0;
     }
 
     @Override
     public void reset() { }
 
+    /**
+     * Gives the vertex weight tables back to the pool of the current thread. This heuristic must be initialized again
+     * before it is used.
+     */
+    @Override
+    public void release() {
+        if (tables != null) {
+            Tables.release(tables);
+            tables = null;
+            preTransitVertices = null;
+            postTransitVertices = null;
+            transitVertexWeights = null;
+            target = null;
+        }
+    }
+
     /**
      * Move backward N steps through the transit network.
      * This improves the heuristic's knowledge of the transit network as seen from the target,
@@ -372,17 +388,17 @@ public class InterleavedBidirectionalHeuristic implements RemainingWeightHeurist
             maxWeightSeen = uWeight;
             // Now that this vertex is closed, we can store its weight for use as a lower bound / heuristic value.
             // We don't implement decrease-key operations though, so check whether a smaller value is already known.
-            double uWeightOld = transitVertexWeights.get(u);
+            double uWeightOld = transitVertexWeights.get(u, 0);
             if (uWeight < uWeightOld) {
                 // Including when uWeightOld is infinite because the vertex is not yet closed.
-                transitVertexWeights.put(u, uWeight);
+                transitVertexWeights.set(u, 0, uWeight);
             } else {
                 // The vertex was already closed. This time it necessarily has a higher weight, so skip it.
                 continue;
             }
             // This search is proceeding backward relative to the main search.
             // When the main search is arriveBy the heuristic search looks at OUTgoing edges.
-            for (Edge e : routingRequest.arriveBy ? u.getOutgoing() : u.getIncoming()) {
+            for (Edge e : routingRequest.arriveBy ? routingRequest.rctx.getOutgoing(u) : routingRequest.rctx.getIncoming(u)) {
                 // Do not enter streets in this phase, which should only touch transit.
                 if (e instanceof StreetTransitLink) {
                     continue;
@@ -395,7 +411,7 @@ public class InterleavedBidirectionalHeuristic implements RemainingWeightHeurist
                     continue;
                 }
                 double vWeight = uWeight + edgeWeight;
-                double vWeightOld = transitVertexWeights.get(v);
+                double vWeightOld = transitVertexWeights.get(v, 0);
                 if (vWeight < vWeightOld) {
                     // Should only happen when vWeightOld is infinite because it is not yet closed.
                     transitQueue.insert(v, vWeight);
@@ -444,14 +460,12 @@ public class InterleavedBidirectionalHeuristic implements RemainingWeightHeurist
      * of the estimated remaining weight after transit will be the largest weight seen, we can
      * safely cut off the post-transit search once the origin is found.
      */
-    private Map<Vertex, VertexModeWeight> streetSearch (RoutingRequest rr, boolean fromTarget, long abortTime) {
+    private boolean streetSearch (RoutingRequest rr, boolean fromTarget, VertexWeightTable vertices, long abortTime) {
         LOG.debug("Heuristic street search around the {}.", fromTarget ? "target" : "origin");
         rr = rr.clone();
         if (fromTarget) {
             rr.setArriveBy(!rr.arriveBy);
         }
-        // Create a map that returns Infinity when it does not contain a vertex.
-        Map<Vertex, VertexModeWeight> vertices = new HashMap<>();
         ShortestPathTree spt = new DominanceFunction.MinimumWeight().getNewShortestPathTree(rr);
         // TODO use normal OTP search for this.
         BinHeap<State> pq = new BinHeap<State>();
@@ -460,7 +474,7 @@ public class InterleavedBidirectionalHeuristic implements RemainingWeightHeurist
         pq.insert(initState, 0);
         while ( ! pq.empty()) {
             if (abortTime < Long.MAX_VALUE  && System.currentTimeMillis() > abortTime) {
-                return null;
+                return false;
             }
             State s = pq.extract_min();
             Vertex v = s.getVertex();
@@ -481,25 +495,15 @@ public class InterleavedBidirectionalHeuristic implements RemainingWeightHeurist
             // We don't test whether we're on an instanceof StreetVertex here because some other vertex types
             // (park and ride or bike rental related) that should also be explored and marked as usable.
 
-            // Get the mode-dependent weights for the current vertex, or create an instance if this
-            // vertex hasn't been explored yet.
-            VertexModeWeight weights;
-            if (!vertices.containsKey(v)) {
-                weights = new VertexModeWeight();
-                vertices.put(v, weights);
-            } else {
-                weights = vertices.get(v);
-            }
-
-            // Set the weight depending on the current non-transit mode
+            // Set the weight depending on the current non-transit mode, marking the vertex as explored.
             // Always keep the minimum weight for a lower-bound estimate of weight. This is to avoid
             // situations where a vertex could be traversed twice with a different mode for example
             // with a bicycle rental trip.
             TraverseMode nonTransitMode = s.getNonTransitMode();
             if (nonTransitMode != null && s.getNonTransitMode().isDriving()) {
-                weights.carWeight = Math.min(s.getWeight(), weights.carWeight);
+                vertices.setMin(v, CAR, s.getWeight());
             } else {
-                weights.walkWeight = Math.min(s.getWeight(), weights.walkWeight);
+                vertices.setMin(v, WALK, s.getWeight());
             }
 
             // if searching from the target and traveling via car and the origin has been reached,
@@ -509,7 +513,7 @@ public class InterleavedBidirectionalHeuristic implements RemainingWeightHeurist
             }
 
             // Attempt to traverse all edges going in the direction desired
-            for (Edge e : rr.arriveBy ? v.getIncoming() : v.getOutgoing()) {
+            for (Edge e : rr.arriveBy ? rr.rctx.getIncoming(v) : rr.rctx.getOutgoing(v)) {
                 // arriveBy has been set to match actual directional behavior in this subsearch.
                 // Max walk distance cutoff or pre transit time cutoff will happen in the street
                 // edge traversal method.
@@ -524,18 +528,55 @@ public class InterleavedBidirectionalHeuristic implements RemainingWeightHeurist
         }
         LOG.debug("Heuristic street search hit {} vertices.", vertices.size());
         LOG.debug("Heuristic street search hit {} transit stops.", transitQueue.size());
-        return vertices;
+        return true;
     }
 
     /**
-     * A simple class to keep track of mode-specific lower bound weights at vertices explored during
-     * the heuristic initialization in the {@link InterleavedBidirectionalHeuristic#streetSearch}
-     * method.  Values are set to infinity by default to indicate an unreachable vertex.  These
-     * values are then used in the {@link InterleavedBidirectionalHeuristic#estimateRemainingWeight}
-     * method.
+     * Vertex weight tables of one heuristic. They are as large as the graph, so instead of allocating them for each
+     * request we keep a few of them per thread (a request may use two heuristics, for the main and reversed search).
+     * They are sized for the permanent vertices of the graph, temporary vertices go to the overflow maps of the tables.
      */
-    static class VertexModeWeight {
-        public double walkWeight = Double.POSITIVE_INFINITY;
-        public double carWeight = Double.POSITIVE_INFINITY;
+    static class Tables {
+
+        private static final int MAX_POOLED_PER_THREAD = 2;
+
+        private static final ThreadLocal<Deque<Tables>> POOL = ThreadLocal.withInitial(ArrayDeque::new);
+
+        final VertexWeightTable preTransitVertices;
+
+        final VertexWeightTable postTransitVertices;
+
+        final VertexWeightTable transitVertexWeights;
+
+        private Tables(int capacity) {
+            preTransitVertices = new VertexWeightTable(2, capacity);
+            postTransitVertices = new VertexWeightTable(2, capacity);
+            transitVertexWeights = new VertexWeightTable(1, capacity);
+        }
+
+        static Tables acquire(Graph graph) {
+            Tables tables = POOL.get().poll();
+            int capacity = graph.getVertexIndexLimit();
+            if (tables == null) {
+                return new Tables(capacity);
+            }
+            tables.preTransitVertices.ensureCapacity(capacity);
+            tables.postTransitVertices.ensureCapacity(capacity);
+            tables.transitVertexWeights.ensureCapacity(capacity);
+            return tables;
+        }
+
+        static void release(Tables tables) {
+            Deque<Tables> pool = POOL.get();
+            if (pool.size() < MAX_POOLED_PER_THREAD) {
+                pool.push(tables);
+            }
+        }
+
+        void clear() {
+            preTransitVertices.clear();
+            postTransitVertices.clear();
+            transitVertexWeights.clear();
+        }
     }
-}
\ No newline at end of file
+}
@@ -33,6 +33,12 @@ public interface RemainingWeightHeuristic extends Serializable {
      * estimate. Avoids thread synchronization evil by interleaving forward and backward searches.
      */
     void doSomeWork();
+
+    /**
+     * Called once the search using this heuristic is finished, so it can give back any resources borrowed in
+     * initialize. The heuristic must be initialized again before it is used.
+     */
+    default void release() { }
 }
 
 
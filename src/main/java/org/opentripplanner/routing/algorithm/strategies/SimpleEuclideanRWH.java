@@ -1,6 +1,7 @@
 package org.opentripplanner.routing.algorithm.strategies;
 
 import com.google.common.annotations.VisibleForTesting;
+import org.opentripplanner.routing.core.RoutingContext;
 import org.opentripplanner.routing.core.RoutingRequest;
 import org.opentripplanner.routing.core.State;
 import org.opentripplanner.routing.core.vehicle_sharing.*;
@@ -26,13 +27,14 @@ public class SimpleEuclideanRWH implements RemainingWeightHeuristic {
 
     @Override
     public void initialize(RoutingRequest options, long abortTime) {
-        calculateDestination(options.rctx.target);
+        calculateDestination(options.rctx);
         calculateBestMultiplier(options);
     }
 
-    private void calculateDestination(Vertex target) {
-        if (target.getDegreeIn() == 1) {
-            Optional<Edge> edge = target.getIncoming().stream().findFirst().filter(FreeEdge.class::isInstance);
+    private void calculateDestination(RoutingContext rctx) {
+        Vertex target = rctx.target;
+        if (rctx.getDegreeIn(target) == 1) {
+            Optional<Edge> edge = rctx.getIncoming(target).stream().findFirst().filter(FreeEdge.class::isInstance);
             if (edge.isPresent()) {
                 lat = edge.get().getFromVertex().getLat();
                 lon = edge.get().getFromVertex().getLon();
@@ -88,6 +88,7 @@ public class TransitOnlyEuclideanRWH implements RemainingWeightHeuristic {
         RoutingRequest options = req.clone();
         options.setArriveBy(!req.arriveBy);
         options.setRoutingContext(req.rctx.graph, req.rctx.fromVertex, req.rctx.toVertex);
+        options.rctx.temporaryEdges = req.rctx.temporaryEdges;
         GenericDijkstra gd = new GenericDijkstra(options);
         State s = new State(options);
         gd.setHeuristic(new TrivialRemainingWeightHeuristic());
@@ -0,0 +1,134 @@
+package org.opentripplanner.routing.algorithm.strategies;
+
+import org.opentripplanner.routing.graph.Vertex;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Lower bounds on path weights at vertices, one per column (e.g. one for walking and one for driving), which are
+ * infinite for vertices that were never set.
+ *
+ * Weights are stored in primitive arrays addressed by {@link Vertex#getIndex()}, so recording tens of thousands of
+ * vertices in a heuristic search allocates nothing. Tables are sized for the permanent vertices of the graph, vertices
+ * created after it was indexed (usually temporary vertices of the current request) have indices beyond their capacity
+ * and go to a small overflow map instead.
+ *
+ * Clearing the table only bumps an epoch counter: an entry counts as set only if its epoch is the current one, so the
+ * same table can be reused by many searches without ever filling the arrays again.
+ *
+ * Weights are stored as floats, rounded down so that they remain lower bounds.
+ */
+class VertexWeightTable {
+
+    private final int columns;
+
+    private float[] weights;
+
+    private int[] epochs;
+
+    private int epoch = 1;
+
+    private int size = 0;
+
+    private final Map<Vertex, double[]> overflow = new HashMap<>();
+
+    VertexWeightTable(int columns, int capacity) {
+        this.columns = columns;
+        this.weights = new float[capacity * columns];
+        this.epochs = new int[capacity];
+    }
+
+    int capacity() {
+        return epochs.length;
+    }
+
+    /**
+     * Grows this table so that all vertices with indices below given capacity are stored in arrays. Clears the table.
+     */
+    void ensureCapacity(int capacity) {
+        if (capacity > epochs.length) {
+            weights = new float[capacity * columns];
+            epochs = new int[capacity];
+            epoch = 0;
+        }
+        clear();
+    }
+
+    void clear() {
+        if (epoch == Integer.MAX_VALUE) {
+            Arrays.fill(epochs, 0);
+            epoch = 0;
+        }
+        epoch++;
+        size = 0;
+        overflow.clear();
+    }
+
+    boolean contains(Vertex v) {
+        int index = v.getIndex();
+        return index < epochs.length ? epochs[index] == epoch : overflow.containsKey(v);
+    }
+
+    double get(Vertex v, int column) {
+        int index = v.getIndex();
+        if (index < epochs.length) {
+            return epochs[index] == epoch ? weights[index * columns + column] : Double.POSITIVE_INFINITY;
+        }
+        double[] vertexWeights = overflow.get(v);
+        return vertexWeights == null ? Double.POSITIVE_INFINITY : vertexWeights[column];
+    }
+
+    /**
+     * Marks given vertex as set, with infinite weights in all columns if it was not set before.
+     */
+    void touch(Vertex v) {
+        int index = v.getIndex();
+        if (index < epochs.length) {
+            if (epochs[index] != epoch) {
+                epochs[index] = epoch;
+                Arrays.fill(weights, index * columns, (index + 1) * columns, Float.POSITIVE_INFINITY);
+                size++;
+            }
+        } else if (!overflow.containsKey(v)) {
+            double[] vertexWeights = new double[columns];
+            Arrays.fill(vertexWeights, Double.POSITIVE_INFINITY);
+            overflow.put(v, vertexWeights);
+            size++;
+        }
+    }
+
+    void set(Vertex v, int column, double weight) {
+        touch(v);
+        int index = v.getIndex();
+        if (index < epochs.length) {
+            weights[index * columns + column] = toLowerBoundFloat(weight);
+        } else {
+            overflow.get(v)[column] = weight;
+        }
+    }
+
+    /**
+     * Sets the weight in given column, unless a lower weight is already set there.
+     */
+    void setMin(Vertex v, int column, double weight) {
+        if (weight < get(v, column)) {
+            set(v, column, weight);
+        } else {
+            touch(v);
+        }
+    }
+
+    /**
+     * @return number of vertices set since the table was last cleared
+     */
+    int size() {
+        return size;
+    }
+
+    private static float toLowerBoundFloat(double weight) {
+        float rounded = (float) weight;
+        return rounded > weight ? Math.nextDown(rounded) : rounded;
+    }
+}
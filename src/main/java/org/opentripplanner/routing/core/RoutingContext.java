@@ -19,6 +19,7 @@ import org.opentripplanner.routing.error.TransitTimesException;
 import org.opentripplanner.routing.error.VertexNotFoundException;
 import org.opentripplanner.routing.graph.Edge;
 import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.graph.TemporaryEdgeOverlay;
 import org.opentripplanner.routing.graph.Vertex;
 import org.opentripplanner.routing.location.StreetLocation;
 import org.opentripplanner.routing.location.TemporaryStreetLocation;
@@ -27,6 +28,7 @@ import org.opentripplanner.routing.vertextype.TemporaryVertex;
 import org.opentripplanner.routing.vertextype.TransitStop;
 import org.opentripplanner.updater.stoptime.TimetableSnapshotSource;
 import org.opentripplanner.util.NonLocalizedString;
+import org.opentripplanner.util.monitoring.Metrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -118,6 +120,13 @@ public class RoutingContext implements Cloneable {
      */
     public Collection<Vertex> temporaryVertices = new ArrayList<>();
 
+    /**
+     * Temporary edges created during the request between its temporary vertices and the permanent graph. They are only
+     * seen by the searches of this request, through {@link #getOutgoing(Vertex)} and {@link #getIncoming(Vertex)}.
+     * Contexts made for the same request with vertices of this one must share it.
+     */
+    public TemporaryEdgeOverlay temporaryEdges = new TemporaryEdgeOverlay();
+
     /* CONSTRUCTORS */
 
     /**
@@ -240,62 +249,67 @@ public class RoutingContext implements Cloneable {
 
         Edge fromBackEdge = null;
         Edge toBackEdge = null;
-        if (findPlaces) {
-            if (opt.batch) {
-                // batch mode: find an OSM vertex, don't split
-                // We do this so that we are always linking to the same thing in analyst mode
-                // even if the transit network has changed.
-                // TODO offset time by distance to nearest OSM node?
-                if (opt.arriveBy) {
-                    // TODO what if there is no coordinate but instead a named place?
-                    toVertex = graph.streetIndex.getSampleVertexAt(opt.to.getCoordinate(), true);
-                    fromVertex = null;
-                }
-                else {
-                    fromVertex = graph.streetIndex.getSampleVertexAt(opt.from.getCoordinate(), false);
-                    toVertex = null;
+        // Temporary edges linking the request to the permanent graph are only seen by this request
+        try (TemporaryEdgeOverlay.Scope linking = temporaryEdges.collect()) {
+            if (findPlaces) {
+                long linkingStartNanos = System.nanoTime();
+                if (opt.batch) {
+                    // batch mode: find an OSM vertex, don't split
+                    // We do this so that we are always linking to the same thing in analyst mode
+                    // even if the transit network has changed.
+                    // TODO offset time by distance to nearest OSM node?
+                    if (opt.arriveBy) {
+                        // TODO what if there is no coordinate but instead a named place?
+                        toVertex = graph.streetIndex.getSampleVertexAt(opt.to.getCoordinate(), true);
+                        fromVertex = null;
+                    }
+                    else {
+                        fromVertex = graph.streetIndex.getSampleVertexAt(opt.from.getCoordinate(), false);
+                        toVertex = null;
+                    }
                 }
-            }
 
-            else {
-                // normal mode, search for vertices based RoutingRequest and split streets
-                toVertex = graph.streetIndex.getVertexForLocation(opt.to, opt, true);
-                if (opt.to.hasEdgeId()) {
-                    toBackEdge = graph.getEdgeById(opt.to.edgeId);
-                }
+                else {
+                    // normal mode, search for vertices based RoutingRequest and split streets
+                    toVertex = graph.streetIndex.getVertexForLocation(opt.to, opt, true);
+                    if (opt.to.hasEdgeId()) {
+                        toBackEdge = graph.getEdgeById(opt.to.edgeId);
+                    }
 
-                if (opt.startingTransitTripId != null && !opt.arriveBy) {
-                    // Depart on-board mode: set the from vertex to "on-board" state
-                    OnBoardDepartService onBoardDepartService = graph.getService(OnBoardDepartService.class);
-                    if (onBoardDepartService == null)
-                        throw new UnsupportedOperationException("Missing OnBoardDepartService");
-                    fromVertex = onBoardDepartService.setupDepartOnBoard(this);
-                } else {
-                    fromVertex = graph.streetIndex.getVertexForLocation(opt.from, opt, false);
-                    if (opt.from.hasEdgeId()) {
-                        fromBackEdge = graph.getEdgeById(opt.from.edgeId);
+                    if (opt.startingTransitTripId != null && !opt.arriveBy) {
+                        // Depart on-board mode: set the from vertex to "on-board" state
+                        OnBoardDepartService onBoardDepartService = graph.getService(OnBoardDepartService.class);
+                        if (onBoardDepartService == null)
+                            throw new UnsupportedOperationException("Missing OnBoardDepartService");
+                        fromVertex = onBoardDepartService.setupDepartOnBoard(this);
+                    } else {
+                        fromVertex = graph.streetIndex.getVertexForLocation(opt.from, opt, false);
+                        if (opt.from.hasEdgeId()) {
+                            fromBackEdge = graph.getEdgeById(opt.from.edgeId);
+                        }
                     }
                 }
+                Metrics.LINKING_DURATION.recordSince(linkingStartNanos);
+            } else {
+                // debug mode, force endpoint vertices to those specified rather than searching
+                fromVertex = from;
+                toVertex = to;
             }
-        } else {
-            // debug mode, force endpoint vertices to those specified rather than searching
-            fromVertex = from;
-            toVertex = to;
-        }
 
-        // If the from and to vertices are generated and lie on some of the same edges, we need to wire them
-        // up along those edges so that we don't get odd circuitous routes for really short trips.
-        // TODO(flamholz): seems like this might be the wrong place for this code? Can't find a better one.
-        //
-        if (fromVertex instanceof TemporaryStreetLocation &&
-                toVertex instanceof TemporaryStreetLocation) {
-            TemporaryStreetLocation fromStreetVertex = (TemporaryStreetLocation) fromVertex;
-            TemporaryStreetLocation toStreetVertex = (TemporaryStreetLocation) toVertex;
-            Set<StreetEdge> overlap = overlappingStreetEdges(fromStreetVertex,
-                    toStreetVertex);
-
-            for (StreetEdge pse : overlap) {
-                makePartialEdgeAlong(pse, fromStreetVertex, toStreetVertex);
+            // If the from and to vertices are generated and lie on some of the same edges, we need to wire them
+            // up along those edges so that we don't get odd circuitous routes for really short trips.
+            // TODO(flamholz): seems like this might be the wrong place for this code? Can't find a better one.
+            //
+            if (fromVertex instanceof TemporaryStreetLocation &&
+                    toVertex instanceof TemporaryStreetLocation) {
+                TemporaryStreetLocation fromStreetVertex = (TemporaryStreetLocation) fromVertex;
+                TemporaryStreetLocation toStreetVertex = (TemporaryStreetLocation) toVertex;
+                Set<StreetEdge> overlap = overlappingStreetEdges(fromStreetVertex,
+                        toStreetVertex);
+
+                for (StreetEdge pse : overlap) {
+                    makePartialEdgeAlong(pse, fromStreetVertex, toStreetVertex);
+                }
             }
         }
 
@@ -322,19 +336,33 @@ public class RoutingContext implements Cloneable {
             remainingWeightHeuristic = new SimpleEuclideanRWH();
 
         if (this.origin != null) {
-            LOG.debug("Origin vertex inbound edges {}", this.origin.getIncoming());
-            LOG.debug("Origin vertex outbound edges {}", this.origin.getOutgoing());
+            LOG.debug("Origin vertex inbound edges {}", getIncoming(this.origin));
+            LOG.debug("Origin vertex outbound edges {}", getOutgoing(this.origin));
         }
         // target is where search will terminate, can be origin or destination depending on arriveBy
         LOG.debug("Target vertex {}", this.target);
         if (this.target != null) {
-            LOG.debug("Destination vertex inbound edges {}", this.target.getIncoming());
-            LOG.debug("Destination vertex outbound edges {}", this.target.getOutgoing());
+            LOG.debug("Destination vertex inbound edges {}", getIncoming(this.target));
+            LOG.debug("Destination vertex outbound edges {}", getOutgoing(this.target));
         }
     }
 
     /* INSTANCE METHODS */
 
+    /** Get the edges leading from a vertex, including the temporary edges of this request. */
+    public Collection<Edge> getOutgoing(Vertex vertex) {
+        return temporaryEdges.getOutgoing(vertex);
+    }
+
+    /** Get the edges leading to a vertex, including the temporary edges of this request. */
+    public Collection<Edge> getIncoming(Vertex vertex) {
+        return temporaryEdges.getIncoming(vertex);
+    }
+
+    public int getDegreeIn(Vertex vertex) {
+        return temporaryEdges.getDegreeIn(vertex);
+    }
+
     public void check() {
         ArrayList<String> notFound = new ArrayList<String>();
 
@@ -431,10 +459,18 @@ public class RoutingContext implements Cloneable {
     /**
      * Tear down this routing context, removing any temporary edges from
      * the "permanent" graph objects. This enables all temporary objects
-     * for garbage collection.
+     * for garbage collection. Edges linked while building the context only
+     * live in its overlay, only those attached outside of it are removed
+     * from the permanent vertices.
      */
     public void destroy() {
-       TemporaryVertex.disposeAll(temporaryVertices);
+       try (TemporaryEdgeOverlay.Scope disposing = temporaryEdges.collect()) {
+           TemporaryVertex.disposeAll(temporaryVertices);
+       }
+       temporaryEdges.clear();
        temporaryVertices.clear();
+       if (remainingWeightHeuristic != null) {
+           remainingWeightHeuristic.release();
+       }
     }
 }
\ No newline at end of file
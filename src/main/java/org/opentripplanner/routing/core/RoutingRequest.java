@@ -107,6 +107,13 @@ public class RoutingRequest implements Cloneable, Serializable {
      */
     public double maxWeight = Double.MAX_VALUE;
 
+    /**
+     * When searching for further itineraries, states whose estimated weight exceeds the weight of the best itinerary
+     * found so far by more than this fraction of it are not explored. For example 0.5 means that no itinerary more
+     * than 1.5 times as heavy as the best one will be returned. The default does not limit the searches.
+     */
+    public double maxWeightSlackOverBest = Double.MAX_VALUE;
+
     /**
      * The maximum duration of a returned itinerary, in hours.
      */
@@ -172,6 +179,16 @@ public class RoutingRequest implements Cloneable, Serializable {
      */
     public boolean showIntermediateStops = false;
 
+    /**
+     * Whether the planner should return turn-by-turn walk steps for street legs.
+     */
+    public boolean showWalkSteps = true;
+
+    /**
+     * Whether the planner should return encoded geometries of legs.
+     */
+    public boolean showLegGeometry = true;
+
     /**
      * max walk/bike speed along streets, in meters per second
      */
@@ -272,6 +289,13 @@ public class RoutingRequest implements Cloneable, Serializable {
      */
     public boolean compactLegsByReversedSearch = false;
 
+    /**
+     * When true, depart-after transit searches solve the transit part with RAPTOR over the scheduled timetables, see
+     * {@link org.opentripplanner.routing.raptor.RaptorPathFinder}. A* is still used for reaching the stops and
+     * whenever RAPTOR finds nothing.
+     */
+    public boolean useRaptor = false;
+
     public boolean reverseOptimizationEnabled = true;
 
     /**
@@ -991,12 +1015,16 @@ public class RoutingRequest implements Cloneable, Serializable {
      * Create a new ShortestPathTree instance using the DominanceFunction specified in this RoutingRequest.
      */
     public ShortestPathTree getNewShortestPathTree() {
+        return getDominanceFunction().getNewShortestPathTree(this);
+    }
+
+    public DominanceFunction getDominanceFunction() {
         if (java.util.Objects.nonNull(this.optimizationProfile)) {
-            return this.optimizationProfile.getDominanceFunction().getNewShortestPathTree(this);
+            return this.optimizationProfile.getDominanceFunction();
         } else {
             // For backward compatibility with old components we use this.dominationFunction if optimizationProfile is
             // not set
-            return this.dominanceFunction.getNewShortestPathTree(this);
+            return this.dominanceFunction;
         }
     }
 
@@ -60,7 +60,6 @@ public class StateEditor {
         child = parent.clone();
         child.backState = parent;
         child.backEdge = e;
-        child.traversalStatistics = parent.traversalStatistics.copy();
         // We clear child.next here, since it could have already been set in the
         // parent
         child.next = null;
@@ -68,6 +67,7 @@ public class StateEditor {
             child.backState = null;
             child.vertex = parent.vertex;
             child.stateData = child.stateData.clone();
+            child.traversalStatistics = child.traversalStatistics.copy();
         } else {
             // be clever
             // Note that we use equals(), not ==, here to allow for dynamically
@@ -208,6 +208,10 @@ public class StateEditor {
             LOG.warn("A state's traversed in mode is being incremented by a negative amount while traversing edge ");
             return;
         }
+        if (distance == 0 || child.stateData.currentTraverseMode == null) {
+            return;
+        }
+        cloneTraversalStatisticsAsNeeded();
         child.traversalStatistics.increaseDistance(child.stateData.currentTraverseMode, distance);
     }
 
@@ -221,6 +225,10 @@ public class StateEditor {
             LOG.warn("A state's traversed in mode is being incremented by a negative amount while traversing edge ");
             return;
         }
+        if (timeInSec == 0 || child.stateData.currentTraverseMode == null) {
+            return;
+        }
+        cloneTraversalStatisticsAsNeeded();
         child.traversalStatistics.increaseTime(child.stateData.currentTraverseMode, timeInSec);
     }
 
@@ -524,6 +532,7 @@ public class StateEditor {
         }
 
         assignBestPackage(previousTotalPrice, newLowestTotalPrice, proposedActivePackageIndex);
+        cloneTraversalStatisticsAsNeeded();
         child.traversalStatistics.setPrice(child.traversalStatistics.getPrice().add(newLowestTotalPrice));
 
         child.stateData.currentTraverseMode = TraverseMode.WALK;
@@ -703,6 +712,11 @@ public class StateEditor {
             child.stateData = child.stateData.clone();
     }
 
+    private void cloneTraversalStatisticsAsNeeded() {
+        if (child.backState != null && child.traversalStatistics == child.backState.traversalStatistics)
+            child.traversalStatistics = child.traversalStatistics.copy();
+    }
+
     public void alightTransit() {
         cloneStateDataAsNeeded();
         child.stateData.lastTransitWalk = child.getTraverseDistanceInMeters();
@@ -6,6 +6,11 @@ import java.math.BigDecimal;
 import java.util.Map;
 import java.util.stream.Collectors;
 
+/**
+ * Distance, time and price accumulated along a path. States share one instance with their back state until a traversal
+ * modifies it, which then works on a copy (see StateEditor), so instances must never be modified once they belong to
+ * a finished state.
+ */
 public class TraversalStatistics implements Cloneable {
 
     protected double distanceInWalk = 0;
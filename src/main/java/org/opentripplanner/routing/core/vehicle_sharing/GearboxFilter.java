@@ -1,7 +1,10 @@
 package org.opentripplanner.routing.core.vehicle_sharing;
 
+import lombok.EqualsAndHashCode;
+
 import java.util.Set;
 
+@EqualsAndHashCode
 public class GearboxFilter implements VehicleFilter {
 
     private final Set<Gearbox> gearboxes;
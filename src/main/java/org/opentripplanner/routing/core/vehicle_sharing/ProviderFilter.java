@@ -1,10 +1,13 @@
 package org.opentripplanner.routing.core.vehicle_sharing;
 
+import lombok.EqualsAndHashCode;
+
 import java.util.Locale;
 import java.util.Set;
 
 import static java.util.stream.Collectors.toSet;
 
+@EqualsAndHashCode
 public class ProviderFilter implements VehicleFilter {
 
     private final Set<String> providers;
@@ -1,7 +1,10 @@
 package org.opentripplanner.routing.core.vehicle_sharing;
 
+import lombok.EqualsAndHashCode;
+
 import java.util.Set;
 
+@EqualsAndHashCode
 public class VehicleTypeFilter implements VehicleFilter {
 
     private final Set<VehicleType> vehicleTypes;
@@ -1,5 +1,7 @@
 package org.opentripplanner.routing.core.vehicle_sharing;
 
+import lombok.EqualsAndHashCode;
+
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
@@ -7,6 +9,7 @@ import java.util.Set;
 
 import static java.util.Set.of;
 
+@EqualsAndHashCode
 public class VehicleValidator {
 
     private final List<VehicleFilter> filters = new ArrayList<>();
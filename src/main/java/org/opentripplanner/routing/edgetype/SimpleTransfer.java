@@ -94,6 +94,10 @@ public class SimpleTransfer extends Edge {
         return this.distance;
     }
 
+    public boolean isWheelchairAccessible() {
+        return isWheelchairAccessible;
+    }
+
 
     @Override
     public LineString getGeometry() {
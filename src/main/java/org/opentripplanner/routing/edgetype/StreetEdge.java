@@ -439,7 +439,7 @@ public class StreetEdge extends Edge implements Cloneable, WheelchairAccessiblit
             if (s1.hasEnteredNoThroughTrafficArea()) {
                 // Only Edges are marked as no-thru, but really we need to avoid creating dominant, pruned states
                 // on thru _Vertices_. This could certainly be improved somehow.
-                for (StreetEdge se : Iterables.filter(s1.getVertex().getOutgoing(), StreetEdge.class)) {
+                for (StreetEdge se : Iterables.filter(s1.getContext().getOutgoing(s1.getVertex()), StreetEdge.class)) {
                     if (!se.isNoThruTraffic()) {
                         // This vertex has at least one through-traffic edge. We can't dominate it with a no-thru state.
                         return null;
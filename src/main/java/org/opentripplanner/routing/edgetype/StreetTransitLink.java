@@ -23,7 +23,7 @@ import java.util.Locale;
 public class StreetTransitLink extends Edge implements WheelchairAccessiblityAwareEdge {
 
     private static final long serialVersionUID = -3311099256178798981L;
-    static final int STL_TRAVERSE_COST = 1;
+    public static final int STL_TRAVERSE_COST = 1;
 
     private boolean wheelchairAccessible;
 
@@ -3,7 +3,8 @@ package org.opentripplanner.routing.edgetype.factory;
 import com.beust.jcommander.internal.Maps;
 import com.google.common.base.Strings;
 import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.HashMultimap;
+import com.google.common.collect.LinkedHashMultimap;
+import com.google.common.collect.LinkedListMultimap;
 import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Multimap;
 import org.locationtech.jts.geom.Coordinate;
@@ -89,9 +90,13 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
 // Filtering out (removing) stoptimes from a trip forces us to either have two copies of that list,
 // or do all the steps within one loop over trips. It would be clearer if there were multiple loops over the trips.
@@ -242,6 +247,9 @@ public class PatternHopFactory {
 
     private static final int SECONDS_IN_HOUR = 60 * 60; // rename to seconds in hour
 
+    /** The number of trips whose stop times are repaired in parallel before they are added to their patterns */
+    private static final int TRIP_BATCH_SIZE = 10000;
+
     private static GeometryFactory _geometryFactory = GeometryUtils.getGeometryFactory();
 
     private GtfsFeedId feedId;
@@ -250,17 +258,21 @@ public class PatternHopFactory {
 
     private CalendarService calendarService;
     
-    private Map<ShapeSegmentKey, LineString> geometriesByShapeSegmentKey = new HashMap<ShapeSegmentKey, LineString>();
+    /* The geometries are cached by the threads building them concurrently. */
+
+    private Map<ShapeSegmentKey, LineString> geometriesByShapeSegmentKey = new ConcurrentHashMap<>();
 
-    private Map<FeedScopedId, LineString> geometriesByShapeId = new HashMap<FeedScopedId, LineString>();
+    private Map<FeedScopedId, LineString> geometriesByShapeId = new ConcurrentHashMap<>();
 
-    private Map<FeedScopedId, double[]> distancesByShapeId = new HashMap<FeedScopedId, double[]>();
+    /** Synchronized rather than concurrent, as the distances of a shape are null when some of its points have none */
+    private Map<FeedScopedId, double[]> distancesByShapeId = Collections.synchronizedMap(new HashMap<>());
 
     private Map<String, Geometry> flexAreasById = new HashMap<>();
 
     private FareServiceFactory fareServiceFactory;
 
-    private Multimap<StopPattern, TripPattern> tripPatterns = HashMultimap.create();
+    /** Linked, so that the patterns are iterated over in the order of the trips they were created for */
+    private Multimap<StopPattern, TripPattern> tripPatterns = LinkedHashMultimap.create();
 
     private GtfsStopContext context = new GtfsStopContext();
 
@@ -312,8 +324,8 @@ public class PatternHopFactory {
         }
         
         LOG.debug("building hops from trips");
-        Collection<Trip> trips = transitService.getAllTrips();
-        int tripCount = 0;
+        List<Trip> trips = new ArrayList<>(transitService.getAllTrips());
+        Set<FeedScopedId> serviceIds = calendarService.getServiceIds();
 
         /* First, record which trips are used by one or more frequency entries.
          * These trips will be ignored for the purposes of non-frequency routing, and
@@ -331,103 +343,95 @@ public class PatternHopFactory {
         
         /* The hops don't actually exist when we build their geometries, but we have to build their geometries
          * below, before we throw away the modified stopTimes, saving only the tripTimes (which don't have enough
-         * information to build a geometry). So we keep them here.
+         * information to build a geometry). So we keep the trip the geometry of each pattern is built from here.
          *
          *  A trip pattern actually does not have a single geometry, but one per hop, so we store an array.
          *  FIXME _why_ doesn't it have a single geometry?
          */
-        Map<TripPattern, LineString[]> geometriesByTripPattern = Maps.newHashMap();
-        
-        TRIP : for (Trip trip : trips) {
-            if (++tripCount % 100000 == 0) {
-                LOG.debug("loading trips {}/{}", tripCount, trips.size());
-            }
-
-            // TODO: move to a validator module
-            if ( ! calendarService.getServiceIds().contains(trip.getServiceId())) {
-                LOG.warn(graph.addBuilderAnnotation(new TripUndefinedService(trip)));
-                continue TRIP; // Invalid trip, skip it, it will break later
-            }
-
-            /* Fetch the stop times for this trip. Copy the list since it's immutable. */
-            List<StopTime> stopTimes = new ArrayList<StopTime>(transitService.getStopTimesForTrip(trip));
-
-            /* GTFS stop times frequently contain duplicate, missing, or incorrect entries. Repair them. */
-            TIntList removedStopSequences = removeRepeatedStops(stopTimes);
-            if (!removedStopSequences.isEmpty()) {
-                LOG.warn(graph.addBuilderAnnotation(new RepeatedStops(trip, removedStopSequences)));
-            }
-            filterStopTimes(stopTimes, graph);
-            interpolateStopTimes(stopTimes);   
-            
-            /* If after filtering this trip does not contain at least 2 stoptimes, it does not serve any purpose. */
-            if (stopTimes.size() < 2) {
-                LOG.warn(graph.addBuilderAnnotation(new TripDegenerate(trip)));
-                continue TRIP;
-            }
-
-            /* Try to get the direction id for the trip, set to -1 if not found */
-            int directionId;
-            try {
-                directionId = Integer.parseInt(trip.getDirectionId());
-            } catch (NumberFormatException e) {
-                LOG.debug("Trip {} does not have direction id, defaults to -1");
-                directionId = -1;
-            }
-
-            boolean hasFlexService = stopTimes.stream().anyMatch(this::stopTimeHasFlex);
-
-            /* Get the existing TripPattern for this filtered StopPattern, or create one. */
-            StopPattern stopPattern = new StopPattern(stopTimes, graph.deduplicator);
-            if (hasFlexService) {
-                stopPattern.setFlexFields(new StopPatternFlexFields(stopTimes, flexAreasById, graph.deduplicator));
-            }
-            TripPattern tripPattern = findOrCreateTripPattern(stopPattern, trip.getRoute(), directionId);
-
-            /* Create a TripTimes object for this list of stoptimes, which form one trip. */
-            TripTimes tripTimes = new TripTimes(trip, stopTimes, graph.deduplicator);
-
-            /* If this trip is referenced by one or more lines in frequencies.txt, wrap it in a FrequencyEntry. */
-            List<Frequency> frequencies = frequenciesForTrip.get(trip);
-            if (frequencies != null && !(frequencies.isEmpty())) {
-                for (Frequency freq : frequencies) {
-                    tripPattern.add(new FrequencyEntry(freq, tripTimes));
-                    freqCount++;
+        Map<TripPattern, FilteredTrip> geometryTripsByTripPattern = new LinkedHashMap<>();
+
+        /* The stop times of the trips are repaired and their trip times created in parallel, a batch of trips at a
+         * time so as not to hold all the repaired stop times at once. The trips are then added to their patterns
+         * in their original order, so the patterns, their vertices and their edges are always created in the same
+         * order, whatever the number of threads. */
+        for (int batchStart = 0; batchStart < trips.size(); batchStart += TRIP_BATCH_SIZE) {
+            List<FilteredTrip> batch = trips.subList(batchStart, Math.min(batchStart + TRIP_BATCH_SIZE, trips.size()))
+                    .parallelStream()
+                    .map(trip -> filterTrip(trip, serviceIds, graph))
+                    .collect(Collectors.toList());
+
+            for (FilteredTrip filteredTrip : batch) {
+                if (filteredTrip == null) {
+                    continue; // Invalid or degenerate trip, already reported
+                }
+                Trip trip = filteredTrip.trip;
+
+                /* Get the existing TripPattern for this filtered StopPattern, or create one. */
+                TripPattern tripPattern = findOrCreateTripPattern(filteredTrip.stopPattern, trip.getRoute(),
+                        filteredTrip.directionId);
+
+                /* If this trip is referenced by one or more lines in frequencies.txt, wrap it in a FrequencyEntry. */
+                List<Frequency> frequencies = frequenciesForTrip.get(trip);
+                if (frequencies != null && !(frequencies.isEmpty())) {
+                    for (Frequency freq : frequencies) {
+                        tripPattern.add(new FrequencyEntry(freq, filteredTrip.tripTimes));
+                        freqCount++;
+                    }
+                    // TODO replace: createGeometry(graph, trip, stopTimes, hops);
                 }
-                // TODO replace: createGeometry(graph, trip, stopTimes, hops);
-            }
-
-            /* This trip was not frequency-based. Add the TripTimes directly to the TripPattern's scheduled timetable. */
-            else {
-                tripPattern.add(tripTimes);
-                nonFreqCount++;
-            }
-            
-            // create geometries if they aren't already created
-            // note that this is not only done on new trip patterns, because it is possible that
-            // there would be a trip pattern with no geometry yet because it failed some of these tests
-            if (!geometriesByTripPattern.containsKey(tripPattern) && 
-                    trip.getShapeId() != null && trip.getShapeId().getId() != null &&
-                    !trip.getShapeId().getId().equals("")) {
-                // save the geometry to later be applied to the hops
-                geometriesByTripPattern.put(tripPattern,  createGeometry(graph, trip, stopTimes));
-            }
 
+                /* This trip was not frequency-based. Add the TripTimes directly to the TripPattern's scheduled timetable. */
+                else {
+                    tripPattern.add(filteredTrip.tripTimes);
+                    nonFreqCount++;
+                }
 
-        } // end foreach TRIP
+                // create geometries if they aren't already created
+                // note that this is not only done on new trip patterns, because it is possible that
+                // there would be a trip pattern with no geometry yet because it failed some of these tests
+                if (!geometryTripsByTripPattern.containsKey(tripPattern) &&
+                        trip.getShapeId() != null && trip.getShapeId().getId() != null &&
+                        !trip.getShapeId().getId().equals("")) {
+                    // save the stop times to later build the geometry applied to the hops
+                    geometryTripsByTripPattern.put(tripPattern, filteredTrip);
+                }
+            } // end foreach TRIP
+            LOG.debug("loading trips {}/{}", batchStart + batch.size(), trips.size());
+        }
         LOG.info("Added {} frequency-based and {} single-trip timetable entries.", freqCount, nonFreqCount);
         graph.hasFrequencyService = graph.hasFrequencyService || freqCount > 0;
         graph.hasScheduledService = graph.hasScheduledService || nonFreqCount > 0;
 
+        /* Snap the stops of the patterns to their shapes in parallel. */
+        Map<TripPattern, LineString[]> geometriesByTripPattern = geometryTripsByTripPattern.entrySet()
+                .parallelStream()
+                .collect(Collectors.toMap(Map.Entry::getKey,
+                        entry -> createGeometry(graph, entry.getValue().trip, entry.getValue().stopTimes)));
+        geometryTripsByTripPattern.clear();
+
         /* Generate unique human-readable names for all the TableTripPatterns. */
         TripPattern.generateUniqueNames(tripPatterns.values());
 
         /* Generate unique short IDs for all the TableTripPatterns. */
         TripPattern.generateUniqueIds(tripPatterns.values());
 
-        /* Loop over all new TripPatterns, creating edges, setting the service codes and geometries, etc. */
+        /* Loop over all new TripPatterns, creating edges and recording mode information, in the order of the trips. */
         for (TripPattern tripPattern : tripPatterns.values()) {
             tripPattern.makePatternVerticesAndEdges(graph, context.stationStopNodes);
+
+            /* Iterate over all stops in this pattern recording mode information. */
+            TraverseMode mode = GtfsLibrary.getTraverseMode(tripPattern.route);
+            for (TransitStop tstop : tripPattern.stopVertices) {
+                tstop.addMode(mode);
+                if (mode == TraverseMode.SUBWAY) {
+                    tstop.setStreetToStopTime(subwayAccessTime);
+                }
+                graph.addTransitMode(mode);
+            }
+        }
+
+        /* Then set the geometries and service codes, which only concern each pattern, in parallel. */
+        tripPatterns.values().parallelStream().forEach(tripPattern -> {
             // Add the geometries to the hop edges.
             LineString[] geom = geometriesByTripPattern.get(tripPattern);
             if (geom != null) {
@@ -440,18 +444,7 @@ public class PatternHopFactory {
                 tripPattern.makeGeometry();
             }
             tripPattern.setServiceCodes(graph.serviceCodes); // TODO this could be more elegant
-
-            /* Iterate over all stops in this pattern recording mode information. */
-            TraverseMode mode = GtfsLibrary.getTraverseMode(tripPattern.route);
-            for (TransitStop tstop : tripPattern.stopVertices) {
-                tstop.addMode(mode);
-                if (mode == TraverseMode.SUBWAY) {
-                    tstop.setStreetToStopTime(subwayAccessTime);
-                }
-                graph.addTransitMode(mode);
-            }
-
-        }
+        });
 
         /* Identify interlined trips and create the necessary edges. */
         interline(tripPatterns.values(), graph);
@@ -469,15 +462,65 @@ public class PatternHopFactory {
 
         /* Is this the wrong place to do this? It should be done on all feeds at once, or at deserialization. */
         // it is already done at deserialization, but standalone mode allows using graphs without serializing them.
-        for (TripPattern tableTripPattern : tripPatterns.values()) {
-            tableTripPattern.scheduledTimetable.finish();
-        }
+        tripPatterns.values().parallelStream().forEach(tableTripPattern -> tableTripPattern.scheduledTimetable.finish());
         
         clearCachedData(); // eh?
         graph.putService(FareService.class, fareServiceFactory.makeFareService());
         graph.putService(OnBoardDepartService.class, new OnBoardDepartServiceImpl());
     }
 
+    /**
+     * Repair the stop times of a trip and create its stop pattern and trip times. This is called for many trips in
+     * parallel, so it must not modify anything but the stop times of the trip, and annotations.
+     *
+     * @return null if the trip is invalid or does not serve any purpose
+     */
+    private FilteredTrip filterTrip(Trip trip, Set<FeedScopedId> serviceIds, Graph graph) {
+        // TODO: move to a validator module
+        if ( ! serviceIds.contains(trip.getServiceId())) {
+            LOG.warn(graph.addBuilderAnnotation(new TripUndefinedService(trip)));
+            return null; // Invalid trip, skip it, it will break later
+        }
+
+        /* Fetch the stop times for this trip. Copy the list since it's immutable. */
+        List<StopTime> stopTimes = new ArrayList<StopTime>(transitService.getStopTimesForTrip(trip));
+
+        /* GTFS stop times frequently contain duplicate, missing, or incorrect entries. Repair them. */
+        TIntList removedStopSequences = removeRepeatedStops(stopTimes);
+        if (!removedStopSequences.isEmpty()) {
+            LOG.warn(graph.addBuilderAnnotation(new RepeatedStops(trip, removedStopSequences)));
+        }
+        filterStopTimes(stopTimes, graph);
+        interpolateStopTimes(stopTimes);
+
+        /* If after filtering this trip does not contain at least 2 stoptimes, it does not serve any purpose. */
+        if (stopTimes.size() < 2) {
+            LOG.warn(graph.addBuilderAnnotation(new TripDegenerate(trip)));
+            return null;
+        }
+
+        /* Try to get the direction id for the trip, set to -1 if not found */
+        int directionId;
+        try {
+            directionId = Integer.parseInt(trip.getDirectionId());
+        } catch (NumberFormatException e) {
+            LOG.debug("Trip {} does not have direction id, defaults to -1");
+            directionId = -1;
+        }
+
+        boolean hasFlexService = stopTimes.stream().anyMatch(this::stopTimeHasFlex);
+
+        StopPattern stopPattern = new StopPattern(stopTimes, graph.deduplicator);
+        if (hasFlexService) {
+            stopPattern.setFlexFields(new StopPatternFlexFields(stopTimes, flexAreasById, graph.deduplicator));
+        }
+
+        /* Create a TripTimes object for this list of stoptimes, which form one trip. */
+        TripTimes tripTimes = new TripTimes(trip, stopTimes, graph.deduplicator);
+
+        return new FilteredTrip(trip, stopTimes, directionId, stopPattern, tripTimes);
+    }
+
     private TripPattern findOrCreateTripPattern(StopPattern stopPattern, Route route, int directionId) {
         for(TripPattern tripPattern : tripPatterns.get(stopPattern)) {
             if(tripPattern.route.equals(route) && tripPattern.directionId == directionId) {
@@ -519,7 +562,8 @@ public class PatternHopFactory {
         }
 
         /* Associate pairs of TripPatterns with lists of trips that continue from one pattern to the other. */
-        Multimap<P2<TripPattern>, P2<Trip>> interlines = ArrayListMultimap.create();
+        /* Linked, so that the edges are always created in the same order. */
+        Multimap<P2<TripPattern>, P2<Trip>> interlines = LinkedListMultimap.create();
 
         /*
           Sort trips within each block by first departure time, then iterate over trips in this block and service,
@@ -1261,8 +1305,9 @@ public class PatternHopFactory {
 
         CoordinateSequence sequence = new PackedCoordinateSequence.Double(coordinates, 2);
         geometry = _geometryFactory.createLineString(sequence);
-        geometriesByShapeId.put(shapeId, geometry);
+        // The distances first, as other threads only look for them once they find the geometry
         distancesByShapeId.put(shapeId, distances);
+        geometriesByShapeId.put(shapeId, geometry);
 
         return geometry;
     }
@@ -1546,4 +1591,27 @@ public class PatternHopFactory {
                 || st.getStartServiceAreaRadius() != StopTime.MISSING_VALUE
                 || st.getEndServiceAreaRadius() != StopTime.MISSING_VALUE;
     }
+
+    /** A trip with its repaired stop times, and the pattern and times built from them. */
+    private static class FilteredTrip {
+
+        private final Trip trip;
+
+        private final List<StopTime> stopTimes;
+
+        private final int directionId;
+
+        private final StopPattern stopPattern;
+
+        private final TripTimes tripTimes;
+
+        private FilteredTrip(Trip trip, List<StopTime> stopTimes, int directionId, StopPattern stopPattern,
+                             TripTimes tripTimes) {
+            this.trip = trip;
+            this.stopTimes = stopTimes;
+            this.directionId = directionId;
+            this.stopPattern = stopPattern;
+            this.tripTimes = tripTimes;
+        }
+    }
 }
@@ -20,6 +20,10 @@ public class DropoffVehicleEdge extends EdgeWithParkingZones {
         super(v, parkingZones);
     }
 
+    protected DropoffVehicleEdge(Vertex v, ParkingZoneInfo parkingZones, boolean attached) {
+        super(v, parkingZones, attached);
+    }
+
     @Override
     public String getName() {
         return "Drop off vehicle in node " + tov.getName();
@@ -13,14 +13,30 @@ public abstract class EdgeWithParkingZones extends Edge {
 
     private static final ParkingZoneInfo EMPTY_PARKING_ZONES = new ParkingZoneInfo(emptyList(), emptyList(), emptyList());
 
-    private final ParkingZoneInfo parkingZones;
+    /**
+     * Replaced by {@link org.opentripplanner.updater.vehicle_sharing.parking_zones.ParkingZonesUpdater} when parking
+     * zones change, while searches may be reading it.
+     */
+    private volatile ParkingZoneInfo parkingZones;
 
     protected EdgeWithParkingZones(Vertex v) {
         this(v, EMPTY_PARKING_ZONES);
     }
 
     public EdgeWithParkingZones(Vertex v, ParkingZoneInfo parkingZones) {
-        super(v, v);
+        this(v, parkingZones, true);
+    }
+
+    protected EdgeWithParkingZones(Vertex v, ParkingZoneInfo parkingZones, boolean attached) {
+        super(v, v, attached);
+        this.parkingZones = parkingZones;
+    }
+
+    public ParkingZoneInfo getParkingZones() {
+        return parkingZones;
+    }
+
+    public void setParkingZones(ParkingZoneInfo parkingZones) {
         this.parkingZones = parkingZones;
     }
 
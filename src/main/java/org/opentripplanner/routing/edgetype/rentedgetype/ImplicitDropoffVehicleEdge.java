@@ -0,0 +1,15 @@
+package org.opentripplanner.routing.edgetype.rentedgetype;
+
+import org.opentripplanner.routing.graph.Vertex;
+
+/**
+ * A {@link DropoffVehicleEdge} which is not part of the graph. It is created by {@link VehicleDropoffIndex} during
+ * a search, when a state renting a vehicle reaches a street vertex at which vehicles may be dropped off, and only
+ * serves as the back edge of the resulting state.
+ */
+public class ImplicitDropoffVehicleEdge extends DropoffVehicleEdge {
+
+    ImplicitDropoffVehicleEdge(Vertex v, ParkingZoneInfo parkingZones) {
+        super(v, parkingZones, false);
+    }
+}
@@ -0,0 +1,78 @@
+package org.opentripplanner.routing.edgetype.rentedgetype;
+
+import gnu.trove.map.TIntObjectMap;
+import gnu.trove.map.hash.TIntObjectHashMap;
+import org.opentripplanner.routing.core.vehicle_sharing.VehicleDescription;
+import org.opentripplanner.routing.core.vehicle_sharing.VehicleType;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Pairs <provider, vehicleType> which bits of {@link ParkingZoneInfo} refer to, shared by all parking zone infos
+ * created by one {@link org.opentripplanner.updater.vehicle_sharing.parking_zones.ParkingZonesCalculator}. The position
+ * of the pair of a vehicle is looked up on each dropoff, so it is indexed by provider id and vehicle type.
+ */
+public class ParkingZoneIndex implements Serializable {
+
+    private static final int NO_ZONE = -1;
+
+    private static final int VEHICLE_TYPES = VehicleType.values().length;
+
+    private final SingleParkingZone[] zones;
+
+    /**
+     * For each provider id, positions in `zones` indexed by {@link VehicleType#ordinal()}, {@link #NO_ZONE} if absent
+     */
+    private final TIntObjectMap<int[]> positionsByProvider = new TIntObjectHashMap<>();
+
+    public ParkingZoneIndex(List<SingleParkingZone> zones) {
+        this.zones = zones.toArray(new SingleParkingZone[0]);
+        for (int i = 0; i < this.zones.length; i++) {
+            SingleParkingZone zone = this.zones[i];
+            int[] positions = positionsByProvider.get(zone.getProviderId());
+            if (positions == null) {
+                positions = new int[VEHICLE_TYPES];
+                Arrays.fill(positions, NO_ZONE);
+                positionsByProvider.put(zone.getProviderId(), positions);
+            }
+            if (positions[zone.getVehicleType().ordinal()] == NO_ZONE) {
+                positions[zone.getVehicleType().ordinal()] = i;
+            }
+        }
+    }
+
+    public int size() {
+        return zones.length;
+    }
+
+    /**
+     * @return position of the given pair, -1 if it is not in the index
+     */
+    public int indexOf(SingleParkingZone zone) {
+        return indexOf(zone.getProviderId(), zone.getVehicleType());
+    }
+
+    /**
+     * @return position of the pair of the vehicle's provider and type, -1 if it is not in the index
+     */
+    public int indexOf(VehicleDescription vehicle) {
+        return indexOf(vehicle.getProvider().getProviderId(), vehicle.getVehicleType());
+    }
+
+    private int indexOf(int providerId, VehicleType vehicleType) {
+        int[] positions = positionsByProvider.get(providerId);
+        return positions == null || vehicleType == null ? NO_ZONE : positions[vehicleType.ordinal()];
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(zones);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof ParkingZoneIndex && Arrays.equals(zones, ((ParkingZoneIndex) other).zones);
+    }
+}
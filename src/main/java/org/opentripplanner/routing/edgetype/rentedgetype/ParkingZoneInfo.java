@@ -4,7 +4,12 @@ import org.opentripplanner.routing.core.vehicle_sharing.VehicleDescription;
 import org.opentripplanner.routing.core.vehicle_sharing.VehicleType;
 
 import java.io.Serializable;
+import java.util.BitSet;
 import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.toList;
 
 /**
  * This class enables disallowing dropping off vehicles outside of their parking zones (both made by provider and city
@@ -12,29 +17,51 @@ import java.util.List;
  * pair has parking zones feature enabled, then we will have it in `parkingZonesEnabled` field. If we can park a vehicle
  * of some type and some provider in a given location, then we will have this pair of <provider, vehicleType>
  * in `parkingZones` field;
+ *
+ * Pairs <provider, vehicleType> are stored once in a {@link ParkingZoneIndex}, which is shared by all instances created
+ * by one {@link org.opentripplanner.updater.vehicle_sharing.parking_zones.ParkingZonesCalculator}. Both sets of pairs
+ * are bitsets of positions in that index, and vehicle types forbidden by city government are a bitmask
+ * of {@link VehicleType#ordinal()}. Instances are immutable, so equal ones should be interned
+ * (see {@link ParkingZoneInfoInterner}).
  */
 public class ParkingZoneInfo implements Serializable {
 
+    /**
+     * All pairs <provider, vehicleType> which bits in `parkingZones` and `parkingZonesEnabled` refer to
+     */
+    private final ParkingZoneIndex zones;
+
     /**
      * Are we inside a parking zone for given provider and vehicleType
      */
-    private final List<SingleParkingZone> parkingZones;
+    private final BitSet parkingZones;
 
     /**
      * Does this provider and vehicleType have parking zones feature enabled?
      */
-    private final List<SingleParkingZone> parkingZonesEnabled;
+    private final BitSet parkingZonesEnabled;
 
     /**
      * Does city government forbid parking given vehicle types here?
      */
-    private final List<VehicleType> vehicleTypesForbiddenFromParkingHere;
+    private final int vehicleTypesForbiddenFromParkingHere;
 
     public ParkingZoneInfo(List<SingleParkingZone> parkingZones, List<SingleParkingZone> parkingZonesEnabled,
                            List<VehicleType> vehicleTypesForbiddenFromParkingHere) {
-        this.parkingZones = parkingZones;
-        this.parkingZonesEnabled = parkingZonesEnabled;
-        this.vehicleTypesForbiddenFromParkingHere = vehicleTypesForbiddenFromParkingHere;
+        this(new ParkingZoneIndex(zonesOf(parkingZones, parkingZonesEnabled)), parkingZones, parkingZonesEnabled,
+                vehicleTypesForbiddenFromParkingHere);
+    }
+
+    /**
+     * @param zones all pairs <provider, vehicleType> which may appear in `parkingZones` and `parkingZonesEnabled`
+     */
+    public ParkingZoneInfo(ParkingZoneIndex zones, List<SingleParkingZone> parkingZones,
+                           List<SingleParkingZone> parkingZonesEnabled,
+                           List<VehicleType> vehicleTypesForbiddenFromParkingHere) {
+        this.zones = zones;
+        this.parkingZones = toBitSet(zones, parkingZones);
+        this.parkingZonesEnabled = toBitSet(zones, parkingZonesEnabled);
+        this.vehicleTypesForbiddenFromParkingHere = toMask(vehicleTypesForbiddenFromParkingHere);
     }
 
     /**
@@ -52,7 +79,8 @@ public class ParkingZoneInfo implements Serializable {
      * 2. We are outside of those areas
      */
     private boolean doesCityGovernmentAllowParkingHere(VehicleDescription vehicle) {
-        return !vehicleTypesForbiddenFromParkingHere.contains(vehicle.getVehicleType());
+        VehicleType vehicleType = vehicle.getVehicleType();
+        return vehicleType == null || (vehicleTypesForbiddenFromParkingHere & (1 << vehicleType.ordinal())) == 0;
     }
 
     /**
@@ -62,18 +90,54 @@ public class ParkingZoneInfo implements Serializable {
      * 2. We are inside parking zone for that provider and vehicleType
      */
     private boolean doesProviderAllowParkingHere(VehicleDescription vehicle) {
-        return hasProviderAndVehicleTypeDisabledParkingZonesFeature(vehicle)
-                || areWeInsideParkingZoneForProviderAndVehicleType(vehicle);
+        int zone = zones.indexOf(vehicle);
+        boolean hasDisabledParkingZonesFeature = !vehicle.requiresHubToDrop()
+                && (zone < 0 || !parkingZonesEnabled.get(zone));
+        return hasDisabledParkingZonesFeature || (zone >= 0 && parkingZones.get(zone));
+    }
+
+    private static List<SingleParkingZone> zonesOf(List<SingleParkingZone> parkingZones,
+                                                   List<SingleParkingZone> parkingZonesEnabled) {
+        return Stream.concat(parkingZonesEnabled.stream(), parkingZones.stream())
+                .distinct()
+                .collect(toList());
     }
 
-    private boolean hasProviderAndVehicleTypeDisabledParkingZonesFeature(VehicleDescription vehicle) {
-        if (vehicle.requiresHubToDrop())
-            return false;
-        return parkingZonesEnabled.stream().noneMatch(pz -> pz.appliesToThisVehicle(vehicle));
+    private static BitSet toBitSet(ParkingZoneIndex zones, List<SingleParkingZone> members) {
+        BitSet bits = new BitSet(zones.size());
+        for (SingleParkingZone member : members) {
+            int zone = zones.indexOf(member);
+            if (zone < 0) {
+                throw new IllegalArgumentException("Unknown parking zone for provider and vehicle type " + member);
+            }
+            bits.set(zone);
+        }
+        return bits;
     }
 
-    private boolean areWeInsideParkingZoneForProviderAndVehicleType(VehicleDescription vehicle) {
-        return parkingZones.stream().anyMatch(pz -> pz.appliesToThisVehicle(vehicle));
+    private static int toMask(List<VehicleType> vehicleTypes) {
+        int mask = 0;
+        for (VehicleType vehicleType : vehicleTypes) {
+            mask |= 1 << vehicleType.ordinal();
+        }
+        return mask;
     }
 
+    @Override
+    public int hashCode() {
+        return Objects.hash(zones, parkingZones, parkingZonesEnabled,
+                vehicleTypesForbiddenFromParkingHere);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (other instanceof ParkingZoneInfo) {
+            ParkingZoneInfo that = (ParkingZoneInfo) other;
+            return vehicleTypesForbiddenFromParkingHere == that.vehicleTypesForbiddenFromParkingHere
+                    && parkingZones.equals(that.parkingZones)
+                    && parkingZonesEnabled.equals(that.parkingZonesEnabled)
+                    && (zones == that.zones || zones.equals(that.zones));
+        }
+        return false;
+    }
 }
@@ -0,0 +1,27 @@
+package org.opentripplanner.routing.edgetype.rentedgetype;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Canonicalizing table of {@link ParkingZoneInfo}. Most street vertices in a city lie in one of a few dozen distinct
+ * combinations of parking zones, so edges with parking zones should share one instance per combination instead of
+ * each holding its own copy. Safe to use from multiple threads, as temporary edges are created during requests.
+ */
+public class ParkingZoneInfoInterner implements Serializable {
+
+    private final Map<ParkingZoneInfo, ParkingZoneInfo> canonicalParkingZones = new ConcurrentHashMap<>();
+
+    /**
+     * @return an instance equal to given one, the same for all equal instances passed to this interner
+     */
+    public ParkingZoneInfo intern(ParkingZoneInfo parkingZones) {
+        ParkingZoneInfo canonical = canonicalParkingZones.putIfAbsent(parkingZones, parkingZones);
+        return canonical == null ? parkingZones : canonical;
+    }
+
+    public int size() {
+        return canonicalParkingZones.size();
+    }
+}
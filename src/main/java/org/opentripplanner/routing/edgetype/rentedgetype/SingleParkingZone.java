@@ -1,6 +1,5 @@
 package org.opentripplanner.routing.edgetype.rentedgetype;
 
-import org.opentripplanner.routing.core.vehicle_sharing.VehicleDescription;
 import org.opentripplanner.routing.core.vehicle_sharing.VehicleType;
 import org.opentripplanner.updater.vehicle_sharing.parking_zones.GeometryParkingZone;
 
@@ -21,13 +20,22 @@ public class SingleParkingZone implements Serializable {
         this.vehicleType = vehicleType;
     }
 
+    int getProviderId() {
+        return providerId;
+    }
+
+    VehicleType getVehicleType() {
+        return vehicleType;
+    }
+
     public boolean sameProviderIdAndVehicleType(GeometryParkingZone geometryParkingZone) {
         return providerId == geometryParkingZone.getProviderId()
                 && vehicleType.equals(geometryParkingZone.getVehicleType());
     }
 
-    boolean appliesToThisVehicle(VehicleDescription vehicle) {
-        return vehicle.getProvider().getProviderId() == providerId && vehicle.getVehicleType().equals(vehicleType);
+    @Override
+    public String toString() {
+        return "SingleParkingZone{providerId=" + providerId + ", vehicleType=" + vehicleType + "}";
     }
 
     @Override
@@ -0,0 +1,132 @@
+package org.opentripplanner.routing.edgetype.rentedgetype;
+
+import org.opentripplanner.routing.graph.Vertex;
+import org.opentripplanner.routing.vertextype.TemporaryVertex;
+
+import javax.annotation.Nullable;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Remembers at which street vertices rented vehicles may be dropped off, and which parking zones apply there.
+ *
+ * This replaces a {@link DropoffVehicleEdge} loop on every street vertex. Most vertices share the same parking zones,
+ * so every distinct {@link ParkingZoneInfo} is stored once and vertices refer to it by its position in a table,
+ * using an int array indexed by {@link Vertex#getIndex()}. The search asks for a drop-off edge only when it expands
+ * a state which is renting a vehicle, see {@link #getImplicitDropoffEdge(Vertex)}.
+ */
+public class VehicleDropoffIndex implements Serializable {
+
+    private static final int NO_DROPOFF = -1;
+
+    private final List<ParkingZoneInfo> parkingZones;
+
+    private int[] parkingZonesIdByVertex;
+
+    /**
+     * Used only while building the index or its copy, to store every distinct parking zone info once.
+     */
+    private transient Map<ParkingZoneInfo, Integer> idByParkingZones;
+
+    public VehicleDropoffIndex() {
+        this(new ArrayList<>(), new int[0]);
+    }
+
+    private VehicleDropoffIndex(List<ParkingZoneInfo> parkingZones, int[] parkingZonesIdByVertex) {
+        this.parkingZones = parkingZones;
+        this.parkingZonesIdByVertex = parkingZonesIdByVertex;
+    }
+
+    /**
+     * Creates a copy of this index in which given vertices, which must already allow dropping off vehicles, have new
+     * parking zones. This index is not modified, so that it can be replaced by the copy while searches are using it.
+     */
+    public VehicleDropoffIndex withParkingZones(Map<Vertex, ParkingZoneInfo> changedParkingZones) {
+        VehicleDropoffIndex copy = compactCopy();
+        changedParkingZones.forEach((vertex, vertexParkingZones) -> {
+            if (copy.getParkingZones(vertex) != null) {
+                copy.allowDropoff(vertex, vertexParkingZones);
+            }
+        });
+        return copy;
+    }
+
+    /**
+     * Allows dropping off vehicles at given vertex, as long as their parking zones allow it.
+     */
+    public void allowDropoff(Vertex vertex, ParkingZoneInfo vertexParkingZones) {
+        int index = vertex.getIndex();
+        if (index >= parkingZonesIdByVertex.length) {
+            int oldLength = parkingZonesIdByVertex.length;
+            parkingZonesIdByVertex = Arrays.copyOf(parkingZonesIdByVertex, Math.max(index + 1, Vertex.getMaxIndex()));
+            Arrays.fill(parkingZonesIdByVertex, oldLength, parkingZonesIdByVertex.length, NO_DROPOFF);
+        }
+        parkingZonesIdByVertex[index] = internalize(vertexParkingZones);
+    }
+
+    /**
+     * @return parking zones at given vertex, or null if vehicles cannot be dropped off there at all. Temporary
+     * vertices are never in this index, they get explicit drop-off edges when needed.
+     */
+    @Nullable
+    public ParkingZoneInfo getParkingZones(Vertex vertex) {
+        if (vertex instanceof TemporaryVertex) {
+            return null;
+        }
+        int index = vertex.getIndex();
+        if (index < 0 || index >= parkingZonesIdByVertex.length || parkingZonesIdByVertex[index] == NO_DROPOFF) {
+            return null;
+        }
+        return parkingZones.get(parkingZonesIdByVertex[index]);
+    }
+
+    /**
+     * @return a drop-off edge on given vertex, which is not added to the graph, or null if vehicles cannot be dropped
+     * off there.
+     */
+    @Nullable
+    public DropoffVehicleEdge getImplicitDropoffEdge(Vertex vertex) {
+        ParkingZoneInfo vertexParkingZones = getParkingZones(vertex);
+        return vertexParkingZones == null ? null : new ImplicitDropoffVehicleEdge(vertex, vertexParkingZones);
+    }
+
+    /**
+     * @return a copy of this index, without parking zones which no vertex refers to anymore
+     */
+    private VehicleDropoffIndex compactCopy() {
+        List<ParkingZoneInfo> usedParkingZones = new ArrayList<>();
+        int[] newIds = new int[parkingZones.size()];
+        Arrays.fill(newIds, NO_DROPOFF);
+        int[] newParkingZonesIdByVertex = new int[parkingZonesIdByVertex.length];
+        for (int i = 0; i < parkingZonesIdByVertex.length; i++) {
+            int id = parkingZonesIdByVertex[i];
+            if (id != NO_DROPOFF && newIds[id] == NO_DROPOFF) {
+                newIds[id] = usedParkingZones.size();
+                usedParkingZones.add(parkingZones.get(id));
+            }
+            newParkingZonesIdByVertex[i] = id == NO_DROPOFF ? NO_DROPOFF : newIds[id];
+        }
+        return new VehicleDropoffIndex(usedParkingZones, newParkingZonesIdByVertex);
+    }
+
+    public int getDistinctParkingZonesCount() {
+        return parkingZones.size();
+    }
+
+    private int internalize(ParkingZoneInfo vertexParkingZones) {
+        if (idByParkingZones == null) {
+            idByParkingZones = new HashMap<>();
+            for (int i = 0; i < parkingZones.size(); i++) {
+                idByParkingZones.put(parkingZones.get(i), i);
+            }
+        }
+        return idByParkingZones.computeIfAbsent(vertexParkingZones, pz -> {
+            parkingZones.add(pz);
+            return parkingZones.size() - 1;
+        });
+    }
+}
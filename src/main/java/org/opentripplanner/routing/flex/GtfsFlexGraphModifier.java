@@ -18,6 +18,7 @@ import org.opentripplanner.routing.edgetype.StreetEdge;
 import org.opentripplanner.routing.edgetype.flex.*;
 import org.opentripplanner.routing.graph.Edge;
 import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.graph.TemporaryEdgeOverlay;
 import org.opentripplanner.routing.graph.Vertex;
 import org.opentripplanner.routing.spt.GraphPath;
 import org.opentripplanner.routing.vertextype.*;
@@ -129,7 +130,9 @@ public abstract class GtfsFlexGraphModifier {
         RoutingRequest forward = request.clone();
         forward.setMode(getMode());
         forward.setArriveBy(false);
-        streetSearch(forward);
+        try (TemporaryEdgeOverlay.Scope hops = request.rctx.temporaryEdges.collect()) {
+            streetSearch(forward);
+        }
     }
 
     /**
@@ -141,7 +144,9 @@ public abstract class GtfsFlexGraphModifier {
         RoutingRequest backward = request.clone();
         backward.setMode(getMode());
         backward.setArriveBy(true);
-        streetSearch(backward);
+        try (TemporaryEdgeOverlay.Scope hops = request.rctx.temporaryEdges.collect()) {
+            streetSearch(backward);
+        }
     }
 
     protected void streetSearch(RoutingRequest rr) {
@@ -416,8 +421,10 @@ public abstract class GtfsFlexGraphModifier {
         Vertex fromVertex = findCarAccessibleVertex(opt, opt.rctx.fromVertex, false);
         Vertex toVertex = findCarAccessibleVertex(opt, opt.rctx.toVertex, true);
         Collection<Vertex> temporaryVertices = opt.rctx.temporaryVertices;
+        TemporaryEdgeOverlay temporaryEdges = opt.rctx.temporaryEdges;
         opt.setRoutingContext(opt.rctx.graph, fromVertex, toVertex);
         opt.rctx.temporaryVertices = temporaryVertices;
+        opt.rctx.temporaryEdges = temporaryEdges;
     }
 
     private Vertex findCarAccessibleVertex(RoutingRequest opt, Vertex vertex, boolean arriveBy) {
@@ -52,6 +52,15 @@ public abstract class Edge implements Serializable {
     protected Vertex tov;
 
     protected Edge(Vertex v1, Vertex v2) {
+        this(v1, v2, true);
+    }
+
+    /**
+     * @param attached whether to add this edge to the edge lists of its vertices. Detached edges are never found when
+     *                 iterating the graph, they are only created on the fly during a search to record a transition
+     *                 which has no edge of its own in the graph. They do not get an id.
+     */
+    protected Edge(Vertex v1, Vertex v2, boolean attached) {
         if (v1 == null || v2 == null) {
             String err = String.format("%s constructed with null vertex : %s %s", this.getClass(),
                     v1, v2);
@@ -60,15 +69,17 @@ public abstract class Edge implements Serializable {
 
         this.fromv = v1;
         this.tov = v2;
-        this.id = idGenerator.getId(this);
+        this.id = attached ? idGenerator.getId(this) : -1;
 
         // if (! vertexTypesValid()) {
         // throw new IllegalStateException(this.getClass() +
         // " constructed with bad vertex types");
         // }
 
-        fromv.addOutgoing(this);
-        tov.addIncoming(this);
+        if (attached) {
+            fromv.addOutgoing(this);
+            tov.addIncoming(this);
+        }
     }
 
     public Vertex getFromVertex() {
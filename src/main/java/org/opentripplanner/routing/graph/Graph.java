@@ -10,6 +10,7 @@ import com.esotericsoftware.kryo.serializers.ExternalizableSerializer;
 import com.esotericsoftware.kryo.serializers.JavaSerializer;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.*;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import de.javakaffee.kryoserializers.UnmodifiableCollectionsSerializer;
 import gnu.trove.impl.hash.TPrimitiveHash;
 import gnu.trove.list.TDoubleList;
@@ -51,6 +52,7 @@ import org.opentripplanner.routing.edgetype.EdgeWithCleanup;
 import org.opentripplanner.routing.edgetype.StreetEdge;
 import org.opentripplanner.routing.edgetype.TripPattern;
 import org.opentripplanner.routing.edgetype.rentedgetype.RentBikeEdge;
+import org.opentripplanner.routing.edgetype.rentedgetype.VehicleDropoffIndex;
 import org.opentripplanner.routing.flex.FlexIndex;
 import org.opentripplanner.routing.impl.DefaultStreetVertexIndexFactory;
 import org.opentripplanner.routing.services.StreetVertexIndexFactory;
@@ -60,6 +62,7 @@ import org.opentripplanner.routing.trippattern.Deduplicator;
 import org.opentripplanner.routing.vertextype.PatternArriveVertex;
 import org.opentripplanner.routing.vertextype.TemporaryRentVehicleVertex;
 import org.opentripplanner.routing.vertextype.TransitStop;
+import org.opentripplanner.routing.vertextype.TransitVertex;
 import org.opentripplanner.updater.GraphUpdaterConfigurator;
 import org.opentripplanner.updater.GraphUpdaterManager;
 import org.opentripplanner.updater.stoptime.TimetableSnapshotSource;
@@ -74,13 +77,17 @@ import javax.annotation.Nullable;
 import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
-import java.time.LocalDateTime;
 import java.time.LocalTime;
-import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.TimeoutException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import java.util.prefs.Preferences;
 import java.util.stream.Stream;
 
@@ -96,6 +103,9 @@ public class Graph implements Serializable {
 
     private static final Logger LOG = LoggerFactory.getLogger(Graph.class);
 
+    /** Number of threads building the independent indices in {@link #index(StreetVertexIndexFactory)}. */
+    private static final int INDEXING_THREADS = 4;
+
     private static final long serialVersionUID = MavenVersion.VERSION.getUID();
 
     private final MavenVersion mavenVersion = MavenVersion.VERSION;
@@ -118,8 +128,6 @@ public class Graph implements Serializable {
 
     private Map<FeedScopedId, Stop> transitStops = new HashMap<>();
 
-    private Collection<StopTime> transitStopTimes = new ArrayList<>();
-
     private TransferTable transferTable = new TransferTable();
 
     private GraphBundle bundle;
@@ -134,6 +142,12 @@ public class Graph implements Serializable {
 
     private transient Map<Integer, Edge> edgeById;
 
+    /**
+     * Exclusive upper bound of the indices of the vertices of this graph when it was indexed, 0 if it was not. Vertices
+     * created since (temporary vertices of requests and of realtime updaters) have higher indices.
+     */
+    private transient volatile int vertexIndexLimit;
+
     public transient StreetVertexIndexService streetIndex;
 
     public transient GraphIndex index;
@@ -156,6 +170,11 @@ public class Graph implements Serializable {
 
     private transient List<GraphBuilderAnnotation> graphBuilderAnnotations = new LinkedList<GraphBuilderAnnotation>(); // initialize for tests
 
+    /*
+     * Agencies, feeds, transit routes, stops and modes are written by GTFS loading while graph builder modules running
+     * in parallel with it (e.g. OSM, which clears the cached time zone) may use them, so they are only accessed in
+     * methods synchronized on the graph.
+     */
     private Map<String, Collection<Agency>> agenciesForFeedId = new HashMap<>();
 
     private Collection<String> feedIds = new HashSet<>();
@@ -164,7 +183,7 @@ public class Graph implements Serializable {
 
     private VertexComparatorFactory vertexComparatorFactory = new MortonVertexComparatorFactory();
 
-    private transient TimeZone timeZone = null;
+    private transient volatile TimeZone timeZone = null;
 
     //Envelope of all OSM and transit vertices. Calculated during build time
     private WorldEnvelope envelope = null;
@@ -281,7 +300,13 @@ public class Graph implements Serializable {
      * Used for calculating parking zones for temporary vehicle dropoff edges added to graph
      */
     @Nullable
-    public ParkingZonesCalculator parkingZonesCalculator;
+    public volatile ParkingZonesCalculator parkingZonesCalculator;
+
+    /**
+     * Street vertices at which rented vehicles may be dropped off, null if vehicle sharing is not built into graph
+     */
+    @Nullable
+    public volatile VehicleDropoffIndex vehicleDropoffIndex;
 
     /**
      * Vehicles which we tried to link to graph. If vertex is present, then we succeeded in linking that vehicle
@@ -320,6 +345,18 @@ public class Graph implements Serializable {
      */
     public RouterHealth routerHealth = new RouterHealth();
 
+    /**
+     * Incremented whenever rentable vehicles, bike stations, parking zones, vehicle presence predictions or traffic
+     * speeds are written to the graph, so that street search results depending on them can be cached until then
+     */
+    private final AtomicLong realtimeStreetDataVersion = new AtomicLong();
+
+    /**
+     * Called with the vertices near which realtime street data changed, or with null if it may have changed anywhere
+     */
+    private final transient List<Consumer<Collection<Vertex>>> realtimeStreetDataListeners =
+            new CopyOnWriteArrayList<>();
+
     public Graph(Graph basedOn) {
         this();
         this.bundle = basedOn.getBundle();
@@ -523,45 +560,85 @@ public class Graph implements Serializable {
         return (v != null) && vertices.get(v.getLabel()) == v;
     }
 
+    /* Services are synchronized, as graph builder modules running in parallel may put them concurrently. */
+
     @SuppressWarnings("unchecked")
     public <T> T putService(Class<T> serviceType, T service) {
-        return (T) _services.put(serviceType, service);
+        synchronized (_services) {
+            return (T) _services.put(serviceType, service);
+        }
     }
 
     public boolean hasService(Class<?> serviceType) {
-        return _services.containsKey(serviceType);
+        synchronized (_services) {
+            return _services.containsKey(serviceType);
+        }
     }
 
     @SuppressWarnings("unchecked")
     public <T> T getService(Class<T> serviceType) {
-        return (T) _services.get(serviceType);
+        synchronized (_services) {
+            return (T) _services.get(serviceType);
+        }
     }
 
     public <T> T getService(Class<T> serviceType, boolean autoCreate) {
-        @SuppressWarnings("unchecked")
-        T t = (T) _services.get(serviceType);
-        if (t == null && autoCreate) {
-            try {
-                t = (T) serviceType.newInstance();
-            } catch (InstantiationException e) {
-                throw new RuntimeException(e);
-            } catch (IllegalAccessException e) {
-                throw new RuntimeException(e);
+        synchronized (_services) {
+            @SuppressWarnings("unchecked")
+            T t = (T) _services.get(serviceType);
+            if (t == null && autoCreate) {
+                try {
+                    t = (T) serviceType.newInstance();
+                } catch (InstantiationException e) {
+                    throw new RuntimeException(e);
+                } catch (IllegalAccessException e) {
+                    throw new RuntimeException(e);
+                }
+                _services.put(serviceType, t);
             }
-            _services.put(serviceType, t);
+            return t;
         }
-        return t;
     }
 
-    public void addTransitRoutes(Collection<Route> routes) {
+    public synchronized void addTransitRoutes(Collection<Route> routes) {
         this.transitRoutes = Stream.of(this.transitRoutes, routes)
                 .flatMap(Collection::stream).collect(toList());
     }
 
-    public Collection<Route> getTransitRoutes() {
+    public synchronized Collection<Route> getTransitRoutes() {
         return transitRoutes;
     }
 
+    public long getRealtimeStreetDataVersion() {
+        return realtimeStreetDataVersion.get();
+    }
+
+    /** Called by graph writers after changing rentable vehicles or street speeds anywhere in the graph */
+    public void realtimeStreetDataChanged() {
+        realtimeStreetDataChanged(null);
+    }
+
+    /**
+     * Called by graph writers after changing rentable vehicles or street speeds. Writers of different graph regions
+     * call it concurrently, so it is thread-safe and so must be the listeners.
+     *
+     * @param changedVertices vertices of the changed vehicles and edges, null if they may be anywhere
+     */
+    public void realtimeStreetDataChanged(@Nullable Collection<Vertex> changedVertices) {
+        realtimeStreetDataVersion.incrementAndGet();
+        for (Consumer<Collection<Vertex>> listener : realtimeStreetDataListeners) {
+            listener.accept(changedVertices);
+        }
+    }
+
+    /**
+     * The listener is called on the graph writer threads, so it should return quickly. It may be called by several
+     * writers at the same time and must be thread-safe.
+     */
+    public void addRealtimeStreetDataListener(Consumer<Collection<Vertex>> listener) {
+        realtimeStreetDataListeners.add(listener);
+    }
+
     public Map<Provider, LocalTime> getLastProviderVehiclesUpdateTimestamps() {
         return lastProviderVehiclesUpdateTimestamps;
     }
@@ -691,9 +768,12 @@ public class Graph implements Serializable {
     public void rebuildVertexAndEdgeIndices() {
         this.vertexById = new HashMap<Integer, Vertex>(Vertex.getMaxIndex());
         Collection<Vertex> vertices = getVertices();
+        int maxVertexIndex = -1;
         for (Vertex v : vertices) {
             vertexById.put(v.getIndex(), v);
+            maxVertexIndex = Math.max(maxVertexIndex, v.getIndex());
         }
+        vertexIndexLimit = maxVertexIndex + 1;
 
         // Create map from edge ids to edges.
         this.edgeById = new HashMap<Integer, Edge>();
@@ -708,6 +788,22 @@ public class Graph implements Serializable {
         }
     }
 
+    /**
+     * @return the exclusive upper bound of the indices of the permanent vertices of this graph, recorded when it was
+     * indexed (or on the first call for a graph which was not). Unlike {@link Vertex#getMaxIndex()}, it does not grow
+     * with the temporary vertices created by every request, so it can size tables reused across requests.
+     */
+    public int getVertexIndexLimit() {
+        int limit = vertexIndexLimit;
+        if (limit == 0) {
+            for (Vertex v : getVertices()) {
+                limit = Math.max(limit, v.getIndex() + 1);
+            }
+            vertexIndexLimit = limit;
+        }
+        return limit;
+    }
+
     private void readObject(ObjectInputStream inputStream) throws ClassNotFoundException,
             IOException {
         inputStream.defaultReadObject();
@@ -723,8 +819,12 @@ public class Graph implements Serializable {
      */
     public String addBuilderAnnotation(GraphBuilderAnnotation gba) {
         String ret = gba.getMessage();
-        if (this.graphBuilderAnnotations != null)
-            this.graphBuilderAnnotations.add(gba);
+        List<GraphBuilderAnnotation> annotations = this.graphBuilderAnnotations;
+        if (annotations != null) {
+            synchronized (annotations) {
+                annotations.add(gba);
+            }
+        }
         return ret;
     }
 
@@ -736,7 +836,7 @@ public class Graph implements Serializable {
      * Adds mode of transport to transit modes in graph
      * @param mode
      */
-    public void addTransitMode(TraverseMode mode) {
+    public synchronized void addTransitMode(TraverseMode mode) {
         transitModes.add(mode);
     }
 
@@ -748,7 +848,9 @@ public class Graph implements Serializable {
 
     public static Graph load(File file) throws IOException {
         LOG.info("Reading graph " + file.getAbsolutePath() + " ...");
-        return load(new FileInputStream(file));
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            return load(in);
+        }
     }
 
     /**
@@ -756,26 +858,66 @@ public class Graph implements Serializable {
      * This used to be done in readObject methods upon deserialization, but stand-alone mode now
      * allows passing graphs from graphbuilder to server in memory, without a round trip through
      * serialization. 
+     * The independent stages (street spatial index, id indices, timetables, transit index) run concurrently, only the
+     * flex index waits for the transit index it is built from. The time taken by each stage is logged.
      * TODO: do we really need a factory for different street vertex indexes?
      */
     public void index (StreetVertexIndexFactory indexFactory) {
-        streetIndex = indexFactory.newIndex(this);
-        LOG.debug("street index built.");
-        LOG.debug("Rebuilding edge and vertex indices.");
-        rebuildVertexAndEdgeIndices();
+        long startTime = System.currentTimeMillis();
+        ExecutorService executor = Executors.newFixedThreadPool(INDEXING_THREADS,
+                new ThreadFactoryBuilder().setNameFormat("GraphIndexer-" + routerId + "-%d").build());
+        try {
+            CompletableFuture<Void> streetIndexStage = runIndexingStage("street index",
+                    () -> streetIndex = indexFactory.newIndex(this), executor);
+            CompletableFuture<Void> idIndicesStage = runIndexingStage("vertex and edge indices",
+                    this::rebuildVertexAndEdgeIndices, executor);
+            CompletableFuture<Void> timetablesStage = runIndexingStage("scheduled timetables",
+                    this::finishScheduledTimetables, executor);
+            // TODO: Move timetable finishing into the graph index
+            CompletableFuture<Void> graphIndexStage = runIndexingStage("graph index",
+                    () -> this.index = new GraphIndex(this), executor);
+            CompletableFuture<Void> flexIndexStage = CompletableFuture.completedFuture(null);
+            if (useFlexService) {
+                flexIndexStage = graphIndexStage.thenCompose(ignored -> runIndexingStage("flex index", () -> {
+                    FlexIndex flexIndex = new FlexIndex();
+                    flexIndex.init(this);
+                    this.flexIndex = flexIndex;
+                }, executor));
+            }
+            CompletableFuture.allOf(streetIndexStage, idIndicesStage, timetablesStage, graphIndexStage, flexIndexStage)
+                    .join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Graph indexing failed", e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+        LOG.info("Graph indexed in {} ms.", System.currentTimeMillis() - startTime);
+    }
+
+    private static CompletableFuture<Void> runIndexingStage(String name, Runnable stage, ExecutorService executor) {
+        return CompletableFuture.runAsync(() -> {
+            long stageStart = System.currentTimeMillis();
+            stage.run();
+            LOG.info("Indexing stage '{}' took {} ms.", name, System.currentTimeMillis() - stageStart);
+        }, executor);
+    }
+
+    private void finishScheduledTimetables() {
+        getTripPatterns().parallelStream()
+                .filter(Objects::nonNull) // skip frequency-based patterns with no table (null)
+                .forEach(ttp -> ttp.scheduledTimetable.finish());
+    }
+
+    /** @return the trip patterns of the graph, found from their vertices */
+    private Set<TripPattern> getTripPatterns() {
         Set<TripPattern> tableTripPatterns = Sets.newHashSet();
         for (PatternArriveVertex pav : Iterables.filter(this.getVertices(), PatternArriveVertex.class)) {
             tableTripPatterns.add(pav.getTripPattern());
         }
-        for (TripPattern ttp : tableTripPatterns) {
-            if (ttp != null) ttp.scheduledTimetable.finish(); // skip frequency-based patterns with no table (null)
-        }
-        // TODO: Move this ^ stuff into the graph index
-        this.index = new GraphIndex(this);
-        if (useFlexService ) {
-            this.flexIndex = new FlexIndex();
-            flexIndex.init(this);
-        }
+        return tableTripPatterns;
     }
 
     public static Graph load(InputStream in) {
@@ -793,6 +935,7 @@ public class Graph implements Serializable {
         List<Edge> edges = (ArrayList<Edge>) kryo.readClassAndObject(input);
         graph.vertices = new ConcurrentHashMap<>(); // why is this concurrent?
 
+        int maxVertexIndex = -1;
         for (Edge e : edges) {
             Vertex fromVertex = e.getFromVertex();
             Vertex toVertex = e.getToVertex();
@@ -803,7 +946,11 @@ public class Graph implements Serializable {
             toVertex.initEdgeListsIfNeeded();
             fromVertex.addOutgoing(e);
             toVertex.addIncoming(e);
+            maxVertexIndex = Math.max(maxVertexIndex, Math.max(fromVertex.getIndex(), toVertex.getIndex()));
         }
+        // Kryo restores the saved vertex indices without running any constructor, vertices created from now on (e.g.
+        // the temporary vertices of requests) must not reuse them.
+        Vertex.reserveIndicesBelow(maxVertexIndex + 1);
 
         LOG.info("Main graph read. |V|={} |E|={}", graph.countVertices(), graph.countEdges());
         graph.index(new DefaultStreetVertexIndexFactory());
@@ -909,7 +1056,7 @@ public class Graph implements Serializable {
         }
     }
 
-    public void saveTransitLineStops(File file) throws IOException {
+    public synchronized void saveTransitLineStops(File file) throws IOException {
         LOG.info("Writing transit line stops to csv {} ...", file.getAbsolutePath());
 
         CsvWriter writer = new CsvWriter(file.getPath(), ',', StandardCharsets.UTF_8);
@@ -926,49 +1073,17 @@ public class Graph implements Serializable {
         }
     }
 
+    /**
+     * Write the arrival times of the transit lines at their stops during the coming week, from the trip times of the
+     * patterns.
+     *
+     * @param timeLimit the time after which the export is aborted, in seconds
+     */
     public void saveTransitLineStopTimes(File file, long timeLimit) throws IOException {
-        LocalTime startTime = LocalTime.now();
-        LOG.info("Preparing to write transit line stop times to csv");
-        CsvWriter writer = new CsvWriter(file.getPath(), ',', StandardCharsets.UTF_8);
-        LOG.info("Writing transit line stop times to csv {} ...", file.getAbsolutePath());
-        int numberOfConsideredRecords = 0;
-        int numberOfWrittenRecords = 0;
-        long writingTime = 0;
-        try {
-            for (StopTime stopTime : this.transitStopTimes) {
-                Set<ServiceDate> serviceDates = calendarService.getServiceDatesForServiceId(stopTime.getTrip().getServiceId());
-                for (ServiceDate serviceDate : serviceDates) {
-                    LocalDate serviceDateToWrite = LocalDate.of(serviceDate.getYear(), serviceDate.getMonth(), serviceDate.getDay());
-                    int serviceTimeToWrite = stopTime.getArrivalTime();
-                    //if arrival time is eg. 25:30, convert it to 1:30 next day
-                    if (serviceTimeToWrite > LocalTime.MAX.toSecondOfDay()) {
-                        serviceTimeToWrite -= LocalTime.MAX.toSecondOfDay();
-                        serviceDateToWrite = serviceDateToWrite.plusDays(1);
-                    }
-                    if (!serviceDateToWrite.isBefore(LocalDate.now()) && !serviceDateToWrite.isAfter(LocalDate.now().plusDays(7))) {
-                        String arrivalDate = LocalDateTime.of(serviceDateToWrite, LocalTime.ofSecondOfDay(serviceTimeToWrite)).format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
-                        String routeShortName = Optional.ofNullable(stopTime.getTrip().getRoute().getShortName()).orElseGet(stopTime.getTrip().getRoute()::getLongName);
-                        writer.writeRecord(new String[]{stopTime.getStop().getId().getId(), stopTime.getTrip().getTripHeadsign(), routeShortName, arrivalDate});
-                        numberOfWrittenRecords++;
-                    }
-                    numberOfConsideredRecords++;
-                    writingTime = startTime.until(LocalTime.now(), ChronoUnit.SECONDS);
-                    if (writingTime > timeLimit) {
-                        throw new TimeoutException();
-                    }
-                }
-            }
-        } catch (IOException e) {
-            file.delete();
-            throw e;
-        } catch (TimeoutException e) {
-            LOG.error("Writing transit line stop times to csv takes too long - aborting");
-            file.delete();
-        } finally {
-            writer.close();
-            LOG.info("Writing transit line stop times to csv took {} seconds (considered entries: {}, written entries: {}",
-                    writingTime, numberOfConsideredRecords, numberOfWrittenRecords);
-        }
+        CalendarService calendarService = getCalendarService();
+        Collection<FeedScopedId> serviceIds = calendarService == null ? Collections.emptySet() : serviceCodes.keySet();
+        new TransitLineStopTimesExporter(getTripPatterns(), getTransitRoutes(), serviceIds, calendarService,
+                LocalDate.now()).export(file, timeLimit);
     }
 
     public void saveEdgesForTimePrediction(File file) {
@@ -1064,26 +1179,26 @@ public class Graph implements Serializable {
         return removed;
     }
 
-    public Collection<String> getFeedIds() {
+    public synchronized Collection<String> getFeedIds() {
         return feedIds;
     }
 
-    public Collection<Agency> getAgencies(String feedId) {
+    public synchronized Collection<Agency> getAgencies(String feedId) {
         return agenciesForFeedId.get(feedId);
     }
 
-    public FeedInfo getFeedInfo(String feedId) {
+    public synchronized FeedInfo getFeedInfo(String feedId) {
         return feedInfoForId.get(feedId);
     }
 
-    public void addAgency(String feedId, Agency agency) {
+    public synchronized void addAgency(String feedId, Agency agency) {
         Collection<Agency> agencies = agenciesForFeedId.getOrDefault(feedId, new HashSet<>());
         agencies.add(agency);
         this.agenciesForFeedId.put(feedId, agencies);
         this.feedIds.add(feedId);
     }
 
-    public void addFeedInfo(FeedInfo info) {
+    public synchronized void addFeedInfo(FeedInfo info) {
         this.feedInfoForId.put(info.getId().toString(), info);
     }
 
@@ -1098,10 +1213,16 @@ public class Graph implements Serializable {
      * with long distance train, boat, or air services.
      */
     public TimeZone getTimeZone() {
-        if (timeZone == null) {
-            timeZone = calculateTimeZone();
+        TimeZone zone = timeZone;
+        if (zone == null) {
+            synchronized (this) {
+                if (timeZone == null) {
+                    timeZone = calculateTimeZone();
+                }
+                zone = timeZone;
+            }
         }
-        return timeZone;
+        return zone;
     }
 
     private TimeZone calculateTimeZone() {
@@ -1120,7 +1241,7 @@ public class Graph implements Serializable {
      *
      * @return collection of referenced timezones
      */
-    public List<TimeZone> getAllTimeZones() {
+    public synchronized List<TimeZone> getAllTimeZones() {
         CalendarService cs = getCalendarService();
         if (cs == null) {
             return emptyList();
@@ -1138,7 +1259,7 @@ public class Graph implements Serializable {
      * The timezone is cached by the graph. If you've done something to the graph that has the
      * potential to change the time zone, you should call this to ensure it is reset.
      */
-    public void clearTimeZone() {
+    public synchronized void clearTimeZone() {
         this.timeZone = null;
     }
 
@@ -1160,14 +1281,17 @@ public class Graph implements Serializable {
      * <p>
      * Transit stops are added to the envelope as they are added to the graph
      */
-    public void calculateEnvelopeOsmVertices() {
+    public synchronized void calculateEnvelopeOsmVertices() {
         this.envelope = new WorldEnvelope();
         this.osmEnvelope = new WorldEnvelope();
 
         for (Vertex v : this.getVertices()) {
             Coordinate c = v.getCoordinate();
             this.envelope.expandToInclude(c);
-            this.osmEnvelope.expandToInclude(c);
+            // Stops may already be there when transit is loaded concurrently
+            if (!(v instanceof TransitVertex)) {
+                this.osmEnvelope.expandToInclude(c);
+            }
         }
     }
 
@@ -1195,7 +1319,7 @@ public class Graph implements Serializable {
      * @param  x  the value to lower the minimum x to or to raise the maximum x to
      * @param  y  the value to lower the minimum y to or to raise the maximum y to
      */
-    public void expandToInclude(double x, double y) {
+    public synchronized void expandToInclude(double x, double y) {
         //Envelope can be empty if graph building is run without OSM data
         if (this.envelope == null) {
             calculateEnvelopeOsmVertices();
@@ -1282,15 +1406,15 @@ public class Graph implements Serializable {
         this.useFlexService = useFlexService;
     }
 
-    public void addTransitStops(Collection<Stop> newStops){
+    public synchronized void addTransitStops(Collection<Stop> newStops){
         newStops.stream().forEach(newStop -> this.transitStops.put(newStop.getId(), newStop));
     }
 
-    public void addTransitStopTime(StopTime newStopTime){
-        this.transitStopTimes.add(newStopTime);
-        if(!this.transitStops.containsKey(newStopTime.getStop().getId())){
-            this.transitStops.put(newStopTime.getStop().getId(), newStopTime.getStop());
+    /** Record that the given route, a transit line, stops at the given stop. */
+    public synchronized void addTransitStopLine(Stop stop, Route route){
+        if(!this.transitStops.containsKey(stop.getId())){
+            this.transitStops.put(stop.getId(), stop);
         }
-        this.transitStops.get(newStopTime.getStop().getId()).addLine(Optional.ofNullable(newStopTime.getTrip().getRoute().getShortName()).orElseGet(newStopTime.getTrip().getRoute()::getLongName));
+        this.transitStops.get(stop.getId()).addLine(Optional.ofNullable(route.getShortName()).orElseGet(route::getLongName));
     }
 }
@@ -0,0 +1,147 @@
+package org.opentripplanner.routing.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The temporary edges a single request attaches to permanent vertices: linking of its origin and destination, flex
+ * stops and hops.
+ *
+ * While an overlay is collecting on a thread, the temporary edges created by that thread which start from or lead to a
+ * permanent vertex are recorded here instead of in the edge lists of the vertex. Only the searches of the request, which
+ * ask their routing context for the edges of a vertex, see them. Temporary vertices keep their own edges, as only the
+ * request they were made for can reach them. Concurrent requests thus never copy the edge lists of the busy vertices
+ * they link to, and there is nothing to remove from the graph once a request is done.
+ *
+ * Temporary edges created while no overlay is collecting, such as those of the rentable vehicles linked by the graph
+ * updaters, are attached to the vertices and shared by all requests as before.
+ *
+ * An overlay is filled by the thread building its request, before searching. It may then be read by several threads.
+ */
+public final class TemporaryEdgeOverlay {
+
+    private static final ThreadLocal<TemporaryEdgeOverlay> COLLECTING = new ThreadLocal<>();
+
+    private static final Edge[] NO_EDGES = new Edge[0];
+
+    private final Map<Vertex, Edge[]> outgoing = new IdentityHashMap<>();
+
+    private final Map<Vertex, Edge[]> incoming = new IdentityHashMap<>();
+
+    /**
+     * Closing a scope restores the overlay which was collecting before it was opened, if any.
+     */
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    /**
+     * Record the temporary edges created by the current thread in this overlay until the returned scope is closed.
+     */
+    public Scope collect() {
+        TemporaryEdgeOverlay previous = COLLECTING.get();
+        COLLECTING.set(this);
+        return () -> {
+            if (previous == null) {
+                COLLECTING.remove();
+            } else {
+                COLLECTING.set(previous);
+            }
+        };
+    }
+
+    /** @return the overlay collecting the temporary edges created by the current thread, null if none */
+    static TemporaryEdgeOverlay collecting() {
+        return COLLECTING.get();
+    }
+
+    void addOutgoing(Vertex vertex, Edge edge) {
+        outgoing.put(vertex, add(outgoing.get(vertex), edge));
+    }
+
+    void addIncoming(Vertex vertex, Edge edge) {
+        incoming.put(vertex, add(incoming.get(vertex), edge));
+    }
+
+    /** @return whether the edge was found and removed */
+    boolean removeOutgoing(Vertex vertex, Edge edge) {
+        return remove(outgoing, vertex, edge);
+    }
+
+    /** @return whether the edge was found and removed */
+    boolean removeIncoming(Vertex vertex, Edge edge) {
+        return remove(incoming, vertex, edge);
+    }
+
+    /** Get the edges leading from the vertex, those of the graph followed by those of this overlay. */
+    public Collection<Edge> getOutgoing(Vertex vertex) {
+        return join(vertex.getOutgoing(), outgoing.isEmpty() ? null : outgoing.get(vertex));
+    }
+
+    /** Get the edges leading to the vertex, those of the graph followed by those of this overlay. */
+    public Collection<Edge> getIncoming(Vertex vertex) {
+        return join(vertex.getIncoming(), incoming.isEmpty() ? null : incoming.get(vertex));
+    }
+
+    public int getDegreeOut(Vertex vertex) {
+        Edge[] edges = outgoing.isEmpty() ? null : outgoing.get(vertex);
+        return vertex.getDegreeOut() + (edges == null ? 0 : edges.length);
+    }
+
+    public int getDegreeIn(Vertex vertex) {
+        Edge[] edges = incoming.isEmpty() ? null : incoming.get(vertex);
+        return vertex.getDegreeIn() + (edges == null ? 0 : edges.length);
+    }
+
+    /** Forget all the temporary edges of the request, which can then be garbage collected. */
+    public void clear() {
+        outgoing.clear();
+        incoming.clear();
+    }
+
+    private static Edge[] add(Edge[] existing, Edge edge) {
+        if (existing == null) {
+            return new Edge[]{edge};
+        }
+        Edge[] copy = Arrays.copyOf(existing, existing.length + 1);
+        copy[existing.length] = edge;
+        return copy;
+    }
+
+    private static boolean remove(Map<Vertex, Edge[]> edgesByVertex, Vertex vertex, Edge edge) {
+        Edge[] existing = edgesByVertex.get(vertex);
+        if (existing == null) {
+            return false;
+        }
+        List<Edge> kept = new ArrayList<>(existing.length);
+        for (Edge e : existing) {
+            if (e != edge) {
+                kept.add(e);
+            }
+        }
+        if (kept.size() == existing.length) {
+            return false;
+        }
+        if (kept.isEmpty()) {
+            edgesByVertex.remove(vertex);
+        } else {
+            edgesByVertex.put(vertex, kept.toArray(NO_EDGES));
+        }
+        return true;
+    }
+
+    private static Collection<Edge> join(Collection<Edge> edges, Edge[] overlaid) {
+        if (overlaid == null) {
+            return edges;
+        }
+        List<Edge> joined = new ArrayList<>(edges.size() + overlaid.length);
+        joined.addAll(edges);
+        joined.addAll(Arrays.asList(overlaid));
+        return joined;
+    }
+}
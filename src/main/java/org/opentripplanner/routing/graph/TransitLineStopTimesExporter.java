@@ -0,0 +1,225 @@
+package org.opentripplanner.routing.graph;
+
+import com.csvreader.CsvWriter;
+import org.opentripplanner.model.CalendarService;
+import org.opentripplanner.model.FeedScopedId;
+import org.opentripplanner.model.Route;
+import org.opentripplanner.model.calendar.ServiceDate;
+import org.opentripplanner.routing.edgetype.TripPattern;
+import org.opentripplanner.routing.trippattern.FrequencyEntry;
+import org.opentripplanner.routing.trippattern.TripTimes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Writes the times at which the transit lines arrive at their stops during the coming week to a CSV file: one record
+ * of stop id, trip headsign, line name and arrival date and time for each stop of each trip on each day it runs.
+ *
+ * The records are made from the trip times of the patterns, and the days on which each service runs are looked up once
+ * for all its trips. The records of the routes are formatted in parallel, a batch of routes at a time, then written in
+ * the order of the routes.
+ */
+class TransitLineStopTimesExporter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TransitLineStopTimesExporter.class);
+
+    private static final int SECONDS_PER_DAY = 24 * 60 * 60;
+
+    /** The stop times are exported from today up to this number of days after it, inclusive */
+    private static final int EXPORTED_DAYS = 7;
+
+    /** The number of days before today on which a trip may start and still arrive at stops during the exported days */
+    private static final int LOOKBACK_DAYS = 7;
+
+    /** The number of routes formatted in parallel before their records are written */
+    private static final int ROUTE_BATCH_SIZE = 256;
+
+    private final Collection<TripPattern> patterns;
+
+    private final Collection<Route> routes;
+
+    private final Collection<FeedScopedId> serviceIds;
+
+    private final CalendarService calendarService;
+
+    private final LocalDate today;
+
+    /**
+     * @param routes the routes in the order in which their stop times are written, patterns on other routes last
+     * @param serviceIds the services of the trips
+     * @param today the first exported day
+     */
+    TransitLineStopTimesExporter(Collection<TripPattern> patterns, Collection<Route> routes,
+                                 Collection<FeedScopedId> serviceIds, CalendarService calendarService,
+                                 LocalDate today) {
+        this.patterns = patterns;
+        this.routes = routes;
+        this.serviceIds = serviceIds;
+        this.calendarService = calendarService;
+        this.today = today;
+    }
+
+    /**
+     * Write the stop times to the given file. If this takes longer than the time limit, the export is aborted and the
+     * file deleted.
+     */
+    void export(File file, long timeLimitSeconds) throws IOException {
+        long startTime = System.currentTimeMillis();
+        LOG.info("Writing transit line stop times to csv {} ...", file.getAbsolutePath());
+        Map<FeedScopedId, BitSet> daysByServiceId = serviceDays();
+        String[] dates = new String[EXPORTED_DAYS + 1];
+        for (int day = 0; day <= EXPORTED_DAYS; day++) {
+            dates[day] = today.plusDays(day).format(DateTimeFormatter.ISO_LOCAL_DATE) + "T";
+        }
+        List<Map.Entry<Route, List<TripPattern>>> patternsByRoute = new ArrayList<>(partitionByRoute().entrySet());
+
+        AtomicLong numberOfWrittenRecords = new AtomicLong();
+        int numberOfWrittenRoutes = 0;
+        boolean timedOut = false;
+        try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            for (int batchStart = 0; batchStart < patternsByRoute.size() && !timedOut; batchStart += ROUTE_BATCH_SIZE) {
+                List<String> batch = patternsByRoute
+                        .subList(batchStart, Math.min(batchStart + ROUTE_BATCH_SIZE, patternsByRoute.size()))
+                        .parallelStream()
+                        .map(route -> format(route.getKey(), route.getValue(), daysByServiceId, dates,
+                                numberOfWrittenRecords))
+                        .collect(toList());
+                for (String records : batch) {
+                    writer.write(records);
+                }
+                numberOfWrittenRoutes += batch.size();
+                timedOut = System.currentTimeMillis() - startTime > timeLimitSeconds * 1000;
+            }
+        } catch (IOException | UncheckedIOException e) {
+            file.delete();
+            throw e;
+        }
+        if (timedOut && numberOfWrittenRoutes < patternsByRoute.size()) {
+            LOG.error("Writing transit line stop times to csv takes too long - aborting");
+            file.delete();
+        }
+        LOG.info("Writing transit line stop times to csv took {} seconds (routes: {}/{}, written entries: {})",
+                (System.currentTimeMillis() - startTime) / 1000, numberOfWrittenRoutes, patternsByRoute.size(),
+                numberOfWrittenRecords.get());
+    }
+
+    /**
+     * @return for each service running around the exported days, the days on which it runs: bit 0 is
+     * {@link #LOOKBACK_DAYS} days before today.
+     */
+    private Map<FeedScopedId, BitSet> serviceDays() {
+        Map<FeedScopedId, BitSet> daysByServiceId = new HashMap<>();
+        for (FeedScopedId serviceId : serviceIds) {
+            BitSet days = new BitSet(LOOKBACK_DAYS + EXPORTED_DAYS + 1);
+            for (ServiceDate serviceDate : calendarService.getServiceDatesForServiceId(serviceId)) {
+                long day = ChronoUnit.DAYS.between(today,
+                        LocalDate.of(serviceDate.getYear(), serviceDate.getMonth(), serviceDate.getDay()));
+                if (day >= -LOOKBACK_DAYS && day <= EXPORTED_DAYS) {
+                    days.set((int) day + LOOKBACK_DAYS);
+                }
+            }
+            if (!days.isEmpty()) {
+                daysByServiceId.put(serviceId, days);
+            }
+        }
+        return daysByServiceId;
+    }
+
+    private Map<Route, List<TripPattern>> partitionByRoute() {
+        Map<Route, List<TripPattern>> patternsByRoute = new LinkedHashMap<>();
+        for (Route route : routes) {
+            patternsByRoute.put(route, new ArrayList<>());
+        }
+        for (TripPattern pattern : patterns) {
+            if (pattern == null) {
+                continue;
+            }
+            patternsByRoute.computeIfAbsent(pattern.route, route -> new ArrayList<>()).add(pattern);
+        }
+        patternsByRoute.values().removeIf(List::isEmpty);
+        // The patterns come from the vertices of the graph, in no particular order
+        for (List<TripPattern> routePatterns : patternsByRoute.values()) {
+            routePatterns.sort(Comparator.comparing(pattern -> pattern.code,
+                    Comparator.nullsLast(Comparator.naturalOrder())));
+        }
+        return patternsByRoute;
+    }
+
+    /** @return the CSV records of the stop times of the given route */
+    private static String format(Route route, List<TripPattern> patterns, Map<FeedScopedId, BitSet> daysByServiceId,
+                                 String[] dates, AtomicLong numberOfWrittenRecords) {
+        String routeName = Optional.ofNullable(route.getShortName()).orElseGet(route::getLongName);
+        StringWriter records = new StringWriter();
+        CsvWriter writer = new CsvWriter(records, ',');
+        long numberOfRecords = 0;
+        try {
+            for (TripPattern pattern : patterns) {
+                for (TripTimes tripTimes : scheduledTripTimes(pattern)) {
+                    BitSet days = daysByServiceId.get(tripTimes.trip.getServiceId());
+                    if (days == null) {
+                        continue;
+                    }
+                    String headsign = tripTimes.trip.getTripHeadsign();
+                    for (int stop = 0; stop < tripTimes.getNumStops(); stop++) {
+                        String stopId = pattern.getStop(stop).getId().getId();
+                        int arrivalTime = tripTimes.getScheduledArrivalTime(stop);
+                        // if arrival time is eg. 25:30, it is 1:30 on the next day
+                        int dayShift = Math.floorDiv(arrivalTime, SECONDS_PER_DAY);
+                        String time = LocalTime.ofSecondOfDay(Math.floorMod(arrivalTime, SECONDS_PER_DAY))
+                                .format(DateTimeFormatter.ISO_LOCAL_TIME);
+                        for (int serviceDay = days.nextSetBit(0); serviceDay >= 0;
+                             serviceDay = days.nextSetBit(serviceDay + 1)) {
+                            int day = serviceDay - LOOKBACK_DAYS + dayShift;
+                            if (day >= 0 && day <= EXPORTED_DAYS) {
+                                writer.writeRecord(new String[]{stopId, headsign, routeName, dates[day] + time});
+                                numberOfRecords++;
+                            }
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            writer.close();
+        }
+        numberOfWrittenRecords.addAndGet(numberOfRecords);
+        return records.toString();
+    }
+
+    /** @return the times of the scheduled trips of the pattern, including those of the frequency-based ones */
+    private static List<TripTimes> scheduledTripTimes(TripPattern pattern) {
+        List<TripTimes> tripTimes = new ArrayList<>(pattern.scheduledTimetable.tripTimes);
+        for (FrequencyEntry frequencyEntry : pattern.scheduledTimetable.frequencyEntries) {
+            // A trip may be repeated by several frequency entries, its stop times are only exported once
+            if (!tripTimes.contains(frequencyEntry.tripTimes)) {
+                tripTimes.add(frequencyEntry.tripTimes);
+            }
+        }
+        return tripTimes;
+    }
+}
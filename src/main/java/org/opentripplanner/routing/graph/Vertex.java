@@ -8,6 +8,8 @@ import org.locationtech.jts.geom.impl.CoordinateArraySequence;
 import org.opentripplanner.common.MavenVersion;
 import org.opentripplanner.common.geometry.DirectionUtils;
 import org.opentripplanner.routing.edgetype.StreetEdge;
+import org.opentripplanner.routing.edgetype.TemporaryEdge;
+import org.opentripplanner.routing.vertextype.TemporaryVertex;
 import org.opentripplanner.util.I18NString;
 import org.opentripplanner.util.NonLocalizedString;
 import org.slf4j.Logger;
@@ -19,6 +21,7 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A vertex in the graph. Each vertex has a longitude/latitude location, as well as a set of
@@ -29,7 +32,8 @@ public abstract class Vertex implements Serializable, Cloneable {
 
     private static final Logger LOG = LoggerFactory.getLogger(Vertex.class);
 
-    private static int maxIndex = 0;
+    /* Vertices may be created concurrently, by requests or by graph builder modules running in parallel */
+    private static final AtomicInteger maxIndex = new AtomicInteger();
 
     private int index;
 
@@ -43,9 +47,24 @@ public abstract class Vertex implements Serializable, Cloneable {
 
     private final double y;
 
-    private transient Edge[] incoming = new Edge[0];
+    private static final Edge[] NO_EDGES = new Edge[0];
 
-    private transient Edge[] outgoing = new Edge[0];
+    /* Edges of the permanent graph. These arrays are only copied while building or modifying the permanent graph. */
+
+    private transient Edge[] incoming = NO_EDGES;
+
+    private transient Edge[] outgoing = NO_EDGES;
+
+    /*
+     * Overlay holding the temporary edges shared by all requests (rentable vehicles...) attached to this vertex.
+     * Keeping them apart means that linking and unlinking them only copies these short arrays, not the full edge
+     * lists of busy intersections, and that the permanent arrays stay stable. The temporary edges of a single request
+     * are kept in its own TemporaryEdgeOverlay instead.
+     */
+
+    private transient Edge[] temporaryIncoming = NO_EDGES;
+
+    private transient Edge[] temporaryOutgoing = NO_EDGES;
 
 
     /* CONSTRUCTORS */
@@ -54,7 +73,7 @@ public abstract class Vertex implements Serializable, Cloneable {
         this.label = label;
         this.x = x;
         this.y = y;
-        this.index = maxIndex  ++;
+        this.index = maxIndex.getAndIncrement();
         // null graph means temporary vertex
         if (g != null)
             g.addVertex(this);
@@ -89,10 +108,16 @@ public abstract class Vertex implements Serializable, Cloneable {
     // Stopgap until old serialization methods are completely replaced.
     public void initEdgeListsIfNeeded () {
         if (this.outgoing == null) {
-            this.outgoing = new Edge[0];
+            this.outgoing = NO_EDGES;
         }
         if (this.incoming == null) {
-            this.incoming = new Edge[0];
+            this.incoming = NO_EDGES;
+        }
+        if (this.temporaryOutgoing == null) {
+            this.temporaryOutgoing = NO_EDGES;
+        }
+        if (this.temporaryIncoming == null) {
+            this.temporaryIncoming = NO_EDGES;
         }
     }
 
@@ -142,14 +167,31 @@ public abstract class Vertex implements Serializable, Cloneable {
     /* FIELD ACCESSOR METHODS : READ/WRITE */
 
     public void addOutgoing(Edge edge) {
+        TemporaryEdgeOverlay overlay = requestOverlay(edge);
+        if (overlay != null) {
+            overlay.addOutgoing(this, edge);
+            return;
+        }
         synchronized (this) {
-            outgoing = addEdge(outgoing, edge);
+            if (edge instanceof TemporaryEdge) {
+                temporaryOutgoing = addEdge(temporaryOutgoing, edge);
+            } else {
+                outgoing = addEdge(outgoing, edge);
+            }
         }
     }
 
     /** @return whether the edge was found and removed. */
     public boolean removeOutgoing(Edge edge) {
+        TemporaryEdgeOverlay overlay = requestOverlay(edge);
+        if (overlay != null && overlay.removeOutgoing(this, edge)) {
+            return true;
+        }
         synchronized (this) {
+            if (contains(temporaryOutgoing, edge)) {
+                temporaryOutgoing = removeEdge(temporaryOutgoing, edge);
+                return true;
+            }
             int n = outgoing.length;
             outgoing = removeEdge(outgoing, edge);
             return (outgoing.length < n);
@@ -158,42 +200,96 @@ public abstract class Vertex implements Serializable, Cloneable {
 
 
     public void addIncoming(Edge edge) {
+        TemporaryEdgeOverlay overlay = requestOverlay(edge);
+        if (overlay != null) {
+            overlay.addIncoming(this, edge);
+            return;
+        }
         synchronized (this) {
-            incoming = addEdge(incoming, edge);
+            if (edge instanceof TemporaryEdge) {
+                temporaryIncoming = addEdge(temporaryIncoming, edge);
+            } else {
+                incoming = addEdge(incoming, edge);
+            }
         }
     }
 
     /** @return whether the edge was found and removed. */
     public boolean removeIncoming(Edge edge) {
+        TemporaryEdgeOverlay overlay = requestOverlay(edge);
+        if (overlay != null && overlay.removeIncoming(this, edge)) {
+            return true;
+        }
         synchronized (this) {
+            if (contains(temporaryIncoming, edge)) {
+                temporaryIncoming = removeEdge(temporaryIncoming, edge);
+                return true;
+            }
             int n = incoming.length;
             incoming = removeEdge(incoming, edge);
             return (incoming.length < n);
         }
     }
 
+    /**
+     * @return the overlay of the request collecting temporary edges on this thread, if the edge is a temporary edge of
+     * a permanent vertex. Temporary vertices hold all their edges themselves.
+     */
+    private TemporaryEdgeOverlay requestOverlay(Edge edge) {
+        if (edge instanceof TemporaryEdge && !(this instanceof TemporaryVertex)) {
+            return TemporaryEdgeOverlay.collecting();
+        }
+        return null;
+    }
+
+    private static boolean contains(Edge[] edges, Edge e) {
+        for (Edge edge : edges) {
+            if (edge == e) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Both arrays are read once, so the result is a consistent snapshot even if edges are concurrently added or
+     * removed. The common case without temporary edges does not copy anything.
+     */
+    private static Collection<Edge> joinEdges(Edge[] permanent, Edge[] temporary) {
+        if (temporary.length == 0) {
+            return Arrays.asList(permanent);
+        }
+        if (permanent.length == 0) {
+            return Arrays.asList(temporary);
+        }
+        Edge[] joined = Arrays.copyOf(permanent, permanent.length + temporary.length);
+        System.arraycopy(temporary, 0, joined, permanent.length, temporary.length);
+        return Arrays.asList(joined);
+    }
+
     /**
      * Get a collection containing all the edges leading from this vertex to other vertices.
      * There is probably some overhead to creating the wrapper ArrayList objects, but this
      * allows filtering and combining edge lists using stock Collection-based methods.
+     * Permanent edges come first, followed by the temporary edges currently attached to this vertex.
      */
     public Collection<Edge> getOutgoing() {
-        return Arrays.asList(outgoing);
+        return joinEdges(outgoing, temporaryOutgoing);
     }
 
     /** Get a collection containing all the edges leading from other vertices to this vertex. */
     public Collection<Edge> getIncoming() {
-        return Arrays.asList(incoming);
+        return joinEdges(incoming, temporaryIncoming);
     }
 
     @XmlTransient
     public int getDegreeOut() {
-        return outgoing.length;
+        return outgoing.length + temporaryOutgoing.length;
     }
 
     @XmlTransient
     public int getDegreeIn() {
-        return incoming.length;
+        return incoming.length + temporaryIncoming.length;
     }
 
     /** Get the longitude of the vertex */
@@ -263,7 +359,15 @@ public abstract class Vertex implements Serializable, Cloneable {
     }
 
     public static int getMaxIndex() {
-        return maxIndex;
+        return maxIndex.get();
+    }
+
+    /**
+     * Make sure that vertices created from now on get indices of at least the given one. Used when vertices with
+     * existing indices are loaded, so that indices stay unique and below {@link #getMaxIndex()}.
+     */
+    public static void reserveIndicesBelow(int index) {
+        maxIndex.accumulateAndGet(index, Math::max);
     }
 
 
@@ -276,9 +380,11 @@ public abstract class Vertex implements Serializable, Cloneable {
 
     private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
         in.defaultReadObject();
-        this.incoming = new Edge[0];
-        this.outgoing = new Edge[0];
-        index = maxIndex++;
+        this.incoming = NO_EDGES;
+        this.outgoing = NO_EDGES;
+        this.temporaryIncoming = NO_EDGES;
+        this.temporaryOutgoing = NO_EDGES;
+        index = maxIndex.getAndIncrement();
     }
 
     /* UTILITY METHODS FOR SEARCHING, GRAPH BUILDING, AND GENERATING WALKSTEPS */
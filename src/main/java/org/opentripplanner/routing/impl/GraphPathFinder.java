@@ -5,6 +5,7 @@ import org.opentripplanner.api.resource.DebugOutput;
 import org.opentripplanner.common.model.GenericLocation;
 import org.opentripplanner.model.FeedScopedId;
 import org.opentripplanner.routing.algorithm.AStar;
+import org.opentripplanner.routing.algorithm.SearchWorkspace;
 import org.opentripplanner.routing.algorithm.profile.OptimizationProfile;
 import org.opentripplanner.routing.algorithm.profile.OptimizationProfileFactory;
 import org.opentripplanner.routing.algorithm.strategies.RemainingWeightHeuristic;
@@ -22,6 +23,7 @@ import org.opentripplanner.routing.flex.DeviatedRouteGraphModifier;
 import org.opentripplanner.routing.flex.FlagStopGraphModifier;
 import org.opentripplanner.routing.graph.Edge;
 import org.opentripplanner.routing.graph.Vertex;
+import org.opentripplanner.routing.raptor.RaptorPathFinder;
 import org.opentripplanner.routing.spt.GraphPath;
 import org.opentripplanner.standalone.Router;
 import org.slf4j.Logger;
@@ -68,8 +70,20 @@ public class GraphPathFinder {
      * For search N, all trips used in itineraries retained from trips 0..(N-1) are "banned" to create variety.
      * The goal direction heuristic is reused between tries, which means the later tries have more information to
      * work with (in the case of the more sophisticated bidirectional heuristic, which improves over time).
+     *
+     * All searches use the search workspace of the current thread, which is cleared before returning. Returned paths
+     * hold their own states, so they do not depend on the workspace.
      */
     public List<GraphPath> getPaths(RoutingRequest options) {
+        SearchWorkspace workspace = SearchWorkspace.acquire();
+        try {
+            return getPaths(options, workspace);
+        } finally {
+            workspace.release();
+        }
+    }
+
+    private List<GraphPath> getPaths(RoutingRequest options, SearchWorkspace workspace) {
 
         RoutingRequest originalReq = options.clone();
 
@@ -80,6 +94,7 @@ public class GraphPathFinder {
 
         // Reuse one instance of AStar for all N requests, which are carried out sequentially
         AStar aStar = new AStar();
+        aStar.setWorkspace(workspace);
         if (options.rctx == null) {
             options.setRoutingContext(router.graph);
             // The special long-distance heuristic should be sufficient to constrain the search to the right area.
@@ -132,9 +147,45 @@ public class GraphPathFinder {
                 deviatedRouteGraphModifier.createBackwardHops(options);
             }
         }
+        List<GraphPath> paths = Lists.newArrayList();
+        if (options.useRaptor && options.modes.isTransit() && !options.arriveBy) {
+            List<GraphPath> raptorPaths = new RaptorPathFinder(router, aStar).getPaths(options, options.timeouts[0]);
+            boolean raptorAborted = options.rctx.aborted;
+            options.rctx.aborted = false;
+            if (raptorPaths.isEmpty()) {
+                LOG.debug("No transit path found by RAPTOR, searching with A*");
+            } else {
+                paths.addAll(processNewPaths(aStar, originalReq, options, raptorPaths, options.timeouts[0],
+                        optimizationProfile));
+                // RAPTOR only finds itineraries using transit, the direct one (walking or riding a rented vehicle) is
+                // still searched with A*, sharing the routing context of the request.
+                RoutingRequest directRequest = options.clone();
+                directRequest.modes = options.modes.clone();
+                directRequest.modes.setTransit(false);
+                directRequest.setNumItineraries(paths.size() + 1);
+                findPathsWithAStar(aStar, originalReq, directRequest, optimizationProfile, paths);
+                options.rctx.aborted |= raptorAborted;
+                Collections.sort(paths, options.getPathComparator(options.arriveBy));
+                return paths;
+            }
+        }
+        findPathsWithAStar(aStar, originalReq, options, optimizationProfile, paths);
+        Collections.sort(paths, options.getPathComparator(options.arriveBy));
+        return paths;
+    }
+
+    /**
+     * Repeatedly search with A*, adding the paths found to the given ones until the request has its number of
+     * itineraries, no further path is found or the search times out.
+     */
+    private void findPathsWithAStar(AStar aStar, RoutingRequest originalReq, RoutingRequest options,
+                                    OptimizationProfile optimizationProfile, List<GraphPath> paths) {
         long searchBeginTime = System.currentTimeMillis();
         LOG.debug("BEGIN SEARCH");
-        List<GraphPath> paths = Lists.newArrayList();
+        double bestWeight = Double.POSITIVE_INFINITY;
+        for (GraphPath path : paths) {
+            bestWeight = Math.min(bestWeight, path.getWeight());
+        }
         while (paths.size() < options.getNumItineraries()) {
             // TODO pull all this timeout logic into a function near org.opentripplanner.util.DateUtils.absoluteTimeout()
             int timeoutIndex = paths.size();
@@ -151,7 +202,11 @@ public class GraphPathFinder {
                 break;
             }
             // Don't dig through the SPT object, just ask the A star algorithm for the states that reached the target.
+            // Further itineraries cannot be much heavier than the best one, so do not explore states which are.
+            aStar.setWeightUpperBound(weightUpperBound(bestWeight, options.maxWeightSlackOverBest));
             aStar.getShortestPathTree(options, timeout);
+            aStar.setWeightUpperBound(Double.POSITIVE_INFINITY);
+            options.rctx.debugOutput.prunedStates(aStar.getPrunedStatesCount());
 
             if (options.rctx.aborted) {
                 break; // Search timed out or was gracefully aborted for some other reason.
@@ -160,64 +215,88 @@ public class GraphPathFinder {
             if (newPaths.isEmpty()) {
                 break;
             }
-
-            // Do a full reversed search to compact the legs
-            if(options.compactLegsByReversedSearch){
-                newPaths = compactLegsByReversedSearch(aStar, originalReq, options, newPaths, timeout, optimizationProfile.getReversedSearchHeuristic());
+            for (GraphPath path : newPaths) {
+                bestWeight = Math.min(bestWeight, path.getWeight());
             }
+            paths.addAll(processNewPaths(aStar, originalReq, options, newPaths, timeout, optimizationProfile));
 
-            // Find all trips used in this path and ban them for the remaining searches
-            for (GraphPath path : newPaths) {
-                // path.dump();
-                List<FeedScopedId> tripIds = path.getTrips();
-                List<FeedScopedId> callAndRideTripIds = path.getCallAndRideTrips();
-                for (FeedScopedId tripId : tripIds) {
-                    if (!callAndRideTripIds.contains(tripId)) {
-                        options.bannedTransit.banTrip(tripId);
-                    }
-                }
-                if (tripIds.isEmpty() && !options.rentingAllowed) {
-                    // This path does not use transit (is entirely on-street). Do not repeatedly find the same one.
-                    options.forceTransitTrips = true;
+            LOG.debug("we have {} paths", paths.size());
+        }
+        LOG.debug("END SEARCH ({} msec)", System.currentTimeMillis() - searchBeginTime);
+    }
+
+    /**
+     * Compact the legs of the paths found by one search, ban their trips and rented vehicle providers from the
+     * following searches of the request.
+     *
+     * @return the paths which are not longer than the maximum duration of the request
+     */
+    private List<GraphPath> processNewPaths(AStar aStar, RoutingRequest originalReq, RoutingRequest options,
+                                            List<GraphPath> newPaths, double timeout,
+                                            OptimizationProfile optimizationProfile) {
+        // Do a full reversed search to compact the legs
+        if(options.compactLegsByReversedSearch){
+            newPaths = compactLegsByReversedSearch(aStar, originalReq, options, newPaths, timeout, optimizationProfile.getReversedSearchHeuristic());
+        }
+
+        // Find all trips used in this path and ban them for the remaining searches
+        for (GraphPath path : newPaths) {
+            // path.dump();
+            List<FeedScopedId> tripIds = path.getTrips();
+            List<FeedScopedId> callAndRideTripIds = path.getCallAndRideTrips();
+            for (FeedScopedId tripId : tripIds) {
+                if (!callAndRideTripIds.contains(tripId)) {
+                    options.bannedTransit.banTrip(tripId);
                 }
-                // Call-and-Ride trips should not use regular trip-banning, since call-and-ride trips can beused in
-                // multiple ways (e.g. from origin to destination, or from origin to a transfer stop.) Instead,
-                // after an itinerary which uses call-and-ride is found, reduce the allowable call-and-ride duration
-                // so that the same leg cannot be found in a subsequent search.
-                if (tripIds.size() < 2) {
-                    int duration = path.getCallAndRideDuration();
-                    if (duration > 0) { // only true if there are call-and-ride legs
-                        int constantLimit = Math.min(0, duration - options.flex.getReduceCallAndRideSeconds());
-                        int ratioLimit = (int) Math.round(options.flex.getReduceCallAndRideRatio() * duration);
-                        options.flex.setMaxCallAndRideSeconds(Math.min(constantLimit, ratioLimit));
-                    }
+            }
+            if (tripIds.isEmpty() && !options.rentingAllowed) {
+                // This path does not use transit (is entirely on-street). Do not repeatedly find the same one.
+                options.forceTransitTrips = true;
+            }
+            // Call-and-Ride trips should not use regular trip-banning, since call-and-ride trips can beused in
+            // multiple ways (e.g. from origin to destination, or from origin to a transfer stop.) Instead,
+            // after an itinerary which uses call-and-ride is found, reduce the allowable call-and-ride duration
+            // so that the same leg cannot be found in a subsequent search.
+            if (tripIds.size() < 2) {
+                int duration = path.getCallAndRideDuration();
+                if (duration > 0) { // only true if there are call-and-ride legs
+                    int constantLimit = Math.min(0, duration - options.flex.getReduceCallAndRideSeconds());
+                    int ratioLimit = (int) Math.round(options.flex.getReduceCallAndRideRatio() * duration);
+                    options.flex.setMaxCallAndRideSeconds(Math.min(constantLimit, ratioLimit));
                 }
-
-                Set<String> providersDisallowed = path.states.stream()
-                        .filter(State::isCurrentlyRentingVehicle)
-                        .map(State::getCurrentVehicle)
-                        .map(VehicleDescription::getProvider)
-                        .map(Provider::getProviderName)
-                        .collect(Collectors.toSet());
-                options.vehicleValidator.addFilter(ProviderFilter.providersDisallowedFilter(providersDisallowed));
             }
 
-            paths.addAll(newPaths.stream()
-                    .filter(path -> {
-                        double duration = options.useRequestedDateTimeInMaxHours
-                            ? options.arriveBy
-                                ? options.dateTime - path.getStartTime()
-                                : path.getEndTime() - options.dateTime
-                            : path.getDuration();
-                        return duration < options.maxHours * 60 * 60;
-                    })
-                    .collect(Collectors.toList()));
+            Set<String> providersDisallowed = path.states.stream()
+                    .filter(State::isCurrentlyRentingVehicle)
+                    .map(State::getCurrentVehicle)
+                    .map(VehicleDescription::getProvider)
+                    .map(Provider::getProviderName)
+                    .collect(Collectors.toSet());
+            options.vehicleValidator.addFilter(ProviderFilter.providersDisallowedFilter(providersDisallowed));
+        }
+
+        return newPaths.stream()
+                .filter(path -> {
+                    double duration = options.useRequestedDateTimeInMaxHours
+                        ? options.arriveBy
+                            ? options.dateTime - path.getStartTime()
+                            : path.getEndTime() - options.dateTime
+                        : path.getDuration();
+                    return duration < options.maxHours * 60 * 60;
+                })
+                .collect(Collectors.toList());
+    }
 
-            LOG.debug("we have {} paths", paths.size());
+    /**
+     * @return the weight above which states are not explored by a search for a further itinerary, given the weight of
+     * the best itinerary found so far. A best weight of zero (e.g. origin and destination on the same vertex) does not
+     * bound the search, as no slack over it would let any other itinerary through.
+     */
+    static double weightUpperBound(double bestWeight, double maxWeightSlackOverBest) {
+        if (bestWeight <= 0) {
+            return Double.POSITIVE_INFINITY;
         }
-        LOG.debug("END SEARCH ({} msec)", System.currentTimeMillis() - searchBeginTime);
-        Collections.sort(paths, options.getPathComparator(options.arriveBy));
-        return paths;
+        return bestWeight * (1 + maxWeightSlackOverBest);
     }
 
     /**
@@ -341,6 +420,7 @@ public class GraphPathFinder {
         reversedOptions.dateTime = dateTime;
         reversedOptions.setArriveBy(!originalReq.arriveBy);
         reversedOptions.setRoutingContext(router.graph, fromVertex, toVertex);
+        reversedOptions.rctx.temporaryEdges = options.rctx.temporaryEdges;
         reversedOptions.dominanceFunction = reversedOptions.getOptimizationProfile().getDominanceFunction();
         reversedOptions.rctx.remainingWeightHeuristic = remainingWeightHeuristic;
         reversedOptions.maxTransfers = 4;
@@ -32,7 +32,7 @@ public class InputStreamGraphSource implements GraphSource {
      * */
     private static final long LOAD_DELAY_SEC = 10;
 
-    private Router router;
+    private volatile Router router;
 
     private String routerId;
 
@@ -104,14 +104,25 @@ public class InputStreamGraphSource implements GraphSource {
                     router = loadGraph();
                 }
             } else {
+                // Staged reload: the current router keeps serving requests while the new one is loaded, brought up to
+                // date by its updaters and warmed up. Only then is it published.
+                long loadStart = System.currentTimeMillis();
                 Router newRouter = loadGraph();
+                long loadEnd = System.currentTimeMillis();
+                if (newRouter != null && newRouter.warmup != null) {
+                    newRouter.warmup.warmUp(newRouter);
+                }
                 if (newRouter != null) {
-                    // Load OK
-                    if (router != null) {
+                    LOG.info("Router '{}' ready after {} ms (load {} ms, warm-up {} ms), swapping.", routerId,
+                            System.currentTimeMillis() - loadStart, loadEnd - loadStart,
+                            System.currentTimeMillis() - loadEnd);
+                    // Load OK. Publish the new router first, so no request ever sees a router being shut down.
+                    Router oldRouter = router;
+                    router = newRouter; // Assignment in java is atomic
+                    if (oldRouter != null) {
                         LOG.info("Reloading '{}': post-evicting router", routerId);
-                        router.shutdown();
+                        oldRouter.shutdown();
                     }
-                    router = newRouter; // Assignment in java is atomic
                 } else {
                     // Load failed
                     if (force || router == null) {
@@ -0,0 +1,85 @@
+package org.opentripplanner.routing.raptor;
+
+import java.util.List;
+
+/**
+ * A way from an access stop to an egress stop found by {@link RaptorSearch}, in terms of stop, pattern and trip
+ * indices of {@link RaptorTransitData}. Times are relative to the requested departure time.
+ */
+class RaptorJourney {
+
+    final int accessStop;
+
+    final int egressStop;
+
+    /** Latest departure from the origin which still catches the first vehicle */
+    final int departureTime;
+
+    /** Arrival at the destination, egress included */
+    final int arrivalTime;
+
+    /** Rides and transfers in the order in which they are taken */
+    final List<Leg> legs;
+
+    RaptorJourney(int accessStop, int egressStop, int departureTime, int arrivalTime, List<Leg> legs) {
+        this.accessStop = accessStop;
+        this.egressStop = egressStop;
+        this.departureTime = departureTime;
+        this.arrivalTime = arrivalTime;
+        this.legs = legs;
+    }
+
+    int countRides() {
+        int rides = 0;
+        for (Leg leg : legs) {
+            if (leg.isRide()) {
+                rides++;
+            }
+        }
+        return rides;
+    }
+
+    /**
+     * Either a ride with a trip of a pattern from one position of the pattern to another, or a transfer from one stop
+     * to another.
+     */
+    static class Leg {
+
+        /** Pattern of the ride, -1 for a transfer */
+        final int pattern;
+
+        final int trip;
+
+        /** Index of the service day of the trip */
+        final int day;
+
+        /** Positions in the pattern for a ride, stops for a transfer */
+        final int from;
+
+        final int to;
+
+        /** Index of the transfer among the transfers from its stop */
+        final int transfer;
+
+        private Leg(int pattern, int trip, int day, int from, int to, int transfer) {
+            this.pattern = pattern;
+            this.trip = trip;
+            this.day = day;
+            this.from = from;
+            this.to = to;
+            this.transfer = transfer;
+        }
+
+        static Leg ride(int pattern, int trip, int day, int boardPosition, int alightPosition) {
+            return new Leg(pattern, trip, day, boardPosition, alightPosition, -1);
+        }
+
+        static Leg transfer(int fromStop, int toStop, int transfer) {
+            return new Leg(-1, -1, -1, fromStop, toStop, transfer);
+        }
+
+        boolean isRide() {
+            return pattern >= 0;
+        }
+    }
+}
@@ -0,0 +1,328 @@
+package org.opentripplanner.routing.raptor;
+
+import gnu.trove.map.TIntObjectMap;
+import gnu.trove.map.hash.TIntObjectHashMap;
+import org.opentripplanner.model.FeedScopedId;
+import org.opentripplanner.routing.algorithm.AStar;
+import org.opentripplanner.routing.core.RoutingContext;
+import org.opentripplanner.routing.core.RoutingRequest;
+import org.opentripplanner.routing.core.ServiceDay;
+import org.opentripplanner.routing.core.State;
+import org.opentripplanner.routing.edgetype.PreAlightEdge;
+import org.opentripplanner.routing.edgetype.PreBoardEdge;
+import org.opentripplanner.routing.edgetype.TripPattern;
+import org.opentripplanner.routing.graph.Edge;
+import org.opentripplanner.routing.graph.Vertex;
+import org.opentripplanner.routing.spt.GraphPath;
+import org.opentripplanner.routing.spt.ShortestPathTree;
+import org.opentripplanner.routing.vertextype.TransitStop;
+import org.opentripplanner.standalone.Router;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Finds transit paths for a depart-after request in three steps:
+ * - A* searches without transit find the stops reachable from the origin and the stops from which the destination is
+ *   reachable, with all street modes of the request including renting vehicles;
+ * - a {@link RaptorSearch} finds the best journeys between those stops for each number of transfers;
+ * - every journey is turned into a {@link GraphPath} by traversing its edges from the origin, so that the path has
+ *   real states, with prices, vehicles and realtime trip times, like paths found by A*. Journeys which turn out not
+ *   to be traversable (e.g. the trip chosen by RAPTOR is banned for this request) are dropped.
+ *
+ * To find more itineraries, RAPTOR is run again leaving one minute after the latest departure of the journeys found
+ * so far. The searches share the street searches done at the beginning.
+ *
+ * Like {@link org.opentripplanner.routing.impl.GraphPathFinder}, an instance serves a single request.
+ */
+public class RaptorPathFinder {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RaptorPathFinder.class);
+
+    private static final int MAX_TRANSFERS = 5;
+
+    /** How many later departures are tried at most to find the requested number of itineraries */
+    private static final int MAX_SEARCHES = 8;
+
+    private static final int NEXT_DEPARTURE_DELAY_SECONDS = 60;
+
+    private static final int MAX_ARRIVAL_SECONDS = 24 * 60 * 60;
+
+    private final Router router;
+
+    private final AStar aStar;
+
+    /**
+     * @param aStar used for the street searches, so that they use the search workspace of the caller
+     */
+    public RaptorPathFinder(Router router, AStar aStar) {
+        this.router = router;
+        this.aStar = aStar;
+    }
+
+    /**
+     * @return paths using transit, empty if there are none or the request cannot be handled by RAPTOR
+     */
+    public List<GraphPath> getPaths(RoutingRequest options, double timeoutSeconds) {
+        if (options.arriveBy || !options.modes.isTransit() || options.startingTransitTripId != null) {
+            return Collections.emptyList();
+        }
+        long abortTime = System.currentTimeMillis() + (long) (timeoutSeconds * 1000);
+        RaptorTransitData data = router.getRaptorTransitData();
+
+        TIntObjectMap<State> accessStates = searchStops(data, streetRequest(options, false), timeoutSeconds, false);
+        if (accessStates.isEmpty() || options.rctx.aborted) {
+            return Collections.emptyList();
+        }
+        RoutingRequest egressRequest = streetRequest(options, true);
+        TIntObjectMap<State> egressStates = searchStops(data, egressRequest, remainingSeconds(abortTime), true);
+        if (egressStates.isEmpty() || egressRequest.rctx.aborted) {
+            return Collections.emptyList();
+        }
+
+        RaptorSearch search = raptorSearch(data, options, accessStates, egressStates, egressRequest.dateTime);
+        List<GraphPath> paths = new ArrayList<>();
+        Set<List<FeedScopedId>> tripSequences = new HashSet<>();
+        int departureTime = 0;
+        for (int i = 0; i < MAX_SEARCHES && paths.size() < options.getNumItineraries(); i++) {
+            if (System.currentTimeMillis() > abortTime) {
+                options.rctx.aborted = true;
+                break;
+            }
+            List<RaptorJourney> journeys = search.route(departureTime);
+            if (journeys.isEmpty()) {
+                break;
+            }
+            int nextDepartureTime = Integer.MAX_VALUE;
+            for (RaptorJourney journey : journeys) {
+                nextDepartureTime = Math.min(nextDepartureTime, journey.departureTime + NEXT_DEPARTURE_DELAY_SECONDS);
+                GraphPath path = toGraphPath(data, options, journey, accessStates.get(journey.accessStop),
+                        egressStates.get(journey.egressStop));
+                if (path == null) {
+                    LOG.debug("Journey with {} rides found by RAPTOR cannot be traversed", journey.countRides());
+                } else if (tripSequences.add(path.getTrips())) {
+                    paths.add(path);
+                }
+            }
+            departureTime = Math.max(departureTime + NEXT_DEPARTURE_DELAY_SECONDS, nextDepartureTime);
+        }
+        return paths;
+    }
+
+    private static double remainingSeconds(long abortTime) {
+        // A non-positive timeout would mean no timeout at all
+        return Math.max(0.001, (abortTime - System.currentTimeMillis()) / 1000.0);
+    }
+
+    /**
+     * @param egress true for a search from the destination backwards, false for a search from the origin
+     * @return request for a one-to-many search without transit, limited to the maximum pre-transit time
+     */
+    private RoutingRequest streetRequest(RoutingRequest options, boolean egress) {
+        RoutingRequest request = options.clone();
+        request.modes = options.modes.clone();
+        request.modes.setTransit(false);
+        request.batch = true;
+        if (egress) {
+            // Street durations hardly depend on the time, so the arrival is estimated as the requested time
+            request.setArriveBy(true);
+            request.worstTime = options.dateTime - options.maxPreTransitTime;
+            request.rctx = null;
+            request.setRoutingContext(router.graph, options.rctx.fromVertex, options.rctx.toVertex);
+            request.rctx.temporaryEdges = options.rctx.temporaryEdges;
+        } else {
+            // The routing context of the request, with its linked origin, is reused
+            request.worstTime = options.dateTime + options.maxPreTransitTime;
+        }
+        return request;
+    }
+
+    /**
+     * @return for each stop reached by the search, the state reaching it first (or leaving it last when searching
+     * backwards)
+     */
+    private TIntObjectMap<State> searchStops(RaptorTransitData data, RoutingRequest request, double timeoutSeconds,
+                                             boolean egress) {
+        TIntObjectMap<State> states = new TIntObjectHashMap<>();
+        ShortestPathTree spt = aStar.getShortestPathTree(request, timeoutSeconds);
+        if (spt == null) {
+            return states;
+        }
+        for (State state : spt.getAllStates()) {
+            if (!(state.getVertex() instanceof TransitStop) || !state.isFinal()) {
+                continue;
+            }
+            int stop = data.indexOf((TransitStop) state.getVertex());
+            if (stop == RaptorTransitData.NO_STOP) {
+                continue;
+            }
+            State best = states.get(stop);
+            if (best == null || (egress ? state.getTimeSeconds() > best.getTimeSeconds()
+                    : state.getTimeSeconds() < best.getTimeSeconds())) {
+                states.put(stop, state);
+            }
+        }
+        return states;
+    }
+
+    private RaptorSearch raptorSearch(RaptorTransitData data, RoutingRequest options,
+                                      TIntObjectMap<State> accessStates, TIntObjectMap<State> egressStates,
+                                      long egressArrivalTime) {
+        RaptorSearch search = new RaptorSearch(data);
+        search.accessStops = accessStates.keys();
+        search.accessDurations = new int[search.accessStops.length];
+        for (int i = 0; i < search.accessStops.length; i++) {
+            State state = accessStates.get(search.accessStops[i]);
+            search.accessDurations[i] = (int) (state.getTimeSeconds() - options.dateTime);
+        }
+        search.egressStops = egressStates.keys();
+        search.egressDurations = new int[search.egressStops.length];
+        for (int i = 0; i < search.egressStops.length; i++) {
+            State state = egressStates.get(search.egressStops[i]);
+            search.egressDurations[i] = (int) (egressArrivalTime - state.getTimeSeconds());
+        }
+
+        List<ServiceDay> serviceDays = options.rctx.serviceDays;
+        int nServiceCodes = router.graph.serviceCodes.size();
+        search.serviceDayOffsets = new int[serviceDays.size()];
+        search.servicesRunning = new BitSet[serviceDays.size()];
+        for (int day = 0; day < serviceDays.size(); day++) {
+            ServiceDay serviceDay = serviceDays.get(day);
+            search.serviceDayOffsets[day] = (int) (serviceDay.time(0) - options.dateTime);
+            search.servicesRunning[day] = new BitSet(nServiceCodes);
+            for (int code = 0; code < nServiceCodes; code++) {
+                if (serviceDay.serviceRunning(code)) {
+                    search.servicesRunning[day].set(code);
+                }
+            }
+        }
+
+        search.patternAllowed = new boolean[data.nPatterns];
+        for (int p = 0; p < data.nPatterns; p++) {
+            TripPattern pattern = data.patterns[p];
+            search.patternAllowed[p] = options.modes.contains(pattern.mode)
+                    && !options.bannedTransit.routeIsBanned(pattern.route);
+        }
+
+        search.maxRounds = Math.min(options.maxTransfers, MAX_TRANSFERS) + 1;
+        search.maxArrivalTime = (int) Math.min(options.maxHours * 60 * 60, MAX_ARRIVAL_SECONDS);
+        search.boardSlack = options.boardSlack;
+        search.alightSlack = options.alightSlack;
+        search.transferSlack = options.transferSlack;
+        search.walkSpeed = options.walkSpeed;
+        search.maxTransferWalkDistance = options.maxTransferWalkDistance;
+        search.wheelchairAccessible = options.wheelchairAccessible;
+        return search;
+    }
+
+    /**
+     * Traverses the edges of the journey from the origin, leaving at the latest time found by RAPTOR.
+     *
+     * @return null if some edge cannot be traversed or the destination is not reached
+     */
+    private GraphPath toGraphPath(RaptorTransitData data, RoutingRequest options, RaptorJourney journey,
+                                  State accessState, State egressState) {
+        RoutingContext rctx = options.rctx;
+        State state = new State(rctx.origin, rctx.originBackEdge, options.dateTime + journey.departureTime, options);
+
+        // The access search went forward, so its states are found from the stop backwards
+        List<State> accessStates = new ArrayList<>();
+        for (State s = accessState; s.getBackEdge() != null; s = s.getBackState()) {
+            accessStates.add(s);
+        }
+        Collections.reverse(accessStates);
+        for (State original : accessStates) {
+            state = traverse(state, original.getBackEdge(), original);
+            if (state == null) {
+                return null;
+            }
+        }
+
+        for (RaptorJourney.Leg leg : journey.legs) {
+            if (leg.isRide()) {
+                state = ride(state, data, leg);
+            } else {
+                state = traverse(state, data.transfers[leg.from][leg.transfer], null);
+            }
+            if (state == null) {
+                return null;
+            }
+        }
+
+        // The egress search went backwards, so its states are found from the stop forwards, each one with the edge
+        // leaving its vertex
+        for (State original = egressState; original.getBackEdge() != null; original = original.getBackState()) {
+            state = traverse(state, original.getBackEdge(), original);
+            if (state == null) {
+                return null;
+            }
+        }
+        if (state.getVertex() != rctx.target || !state.isFinal()) {
+            return null;
+        }
+        return new GraphPath(state, false);
+    }
+
+    /**
+     * Boards the pattern at the stop, rides it and alights. The board edge chooses the trip itself, which is the trip
+     * chosen by RAPTOR unless realtime updates or trip restrictions of the request made it unsuitable.
+     */
+    private static State ride(State state, RaptorTransitData data, RaptorJourney.Leg leg) {
+        TripPattern pattern = data.patterns[leg.pattern];
+        TransitStop boardStop = data.stops[data.stopsForPattern[leg.pattern][leg.from]];
+        TransitStop alightStop = data.stops[data.stopsForPattern[leg.pattern][leg.to]];
+        state = traverse(state, outgoing(boardStop, PreBoardEdge.class), null);
+        if (state == null) {
+            return null;
+        }
+        state = traverse(state, pattern.boardEdges[leg.from], null);
+        for (int position = leg.from; state != null && position < leg.to; position++) {
+            if (position > leg.from) {
+                state = traverse(state, pattern.dwellEdges[position], null);
+            }
+            if (state != null) {
+                state = traverse(state, pattern.hopEdges[position], null);
+            }
+        }
+        if (state == null) {
+            return null;
+        }
+        state = traverse(state, pattern.alightEdges[leg.to], null);
+        if (state == null) {
+            return null;
+        }
+        return traverse(state, outgoing(alightStop.arriveVertex, PreAlightEdge.class), null);
+    }
+
+    private static <T extends Edge> T outgoing(Vertex vertex, Class<T> type) {
+        for (Edge edge : vertex.getOutgoing()) {
+            if (type.isInstance(edge)) {
+                return type.cast(edge);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param original state of the search which found the way, it decides between several results of the edge (e.g.
+     *                 renting one of several vehicles or walking on), null to take the first result
+     */
+    private static State traverse(State state, Edge edge, State original) {
+        if (edge == null) {
+            return null;
+        }
+        for (State next = edge.traverse(state); next != null; next = next.getNextResult()) {
+            if (original == null || (next.getNonTransitMode() == original.getNonTransitMode()
+                    && next.getCurrentVehicle() == original.getCurrentVehicle())) {
+                return next;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,387 @@
+package org.opentripplanner.routing.raptor;
+
+import org.opentripplanner.routing.edgetype.StreetTransitLink;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Round-based earliest arrival search over {@link RaptorTransitData} (Delling, Pajor, Werneck: Round-Based Public
+ * Transit Routing). Round k finds the best arrival at every stop using exactly k vehicles, so the journeys to the
+ * destination found after each round form the Pareto set of arrival time and number of transfers.
+ *
+ * All times are in seconds relative to the requested departure time. The search does not look at the street network:
+ * the stops reachable from the origin and the destination, and how long it takes to reach them, are given by the
+ * caller. Parameters are set directly on the fields before calling {@link #route(int)}; one instance may run any
+ * number of searches, but only one at a time.
+ */
+class RaptorSearch {
+
+    static final int UNREACHED = Integer.MAX_VALUE;
+
+    /** Time added to each transfer, see SimpleTransfer */
+    private static final int TRANSFER_OVERHEAD = 2 * StreetTransitLink.STL_TRAVERSE_COST;
+
+    private final RaptorTransitData data;
+
+    /** Stops reachable from the origin and the times needed to reach them */
+    int[] accessStops = new int[0];
+
+    int[] accessDurations = new int[0];
+
+    /** Stops from which the destination can be reached and the times needed to reach it */
+    int[] egressStops = new int[0];
+
+    int[] egressDurations = new int[0];
+
+    /** Start of each service day at which trips may run, relative to the requested departure time */
+    int[] serviceDayOffsets = {0};
+
+    /** Service codes running on each of the service days */
+    BitSet[] servicesRunning = {new BitSet()};
+
+    /** Patterns which may be used, null if all are allowed */
+    boolean[] patternAllowed;
+
+    int maxRounds = 6;
+
+    /** Nothing arriving later than this is of interest */
+    int maxArrivalTime = 24 * 60 * 60;
+
+    int boardSlack = 0;
+
+    int alightSlack = 0;
+
+    int transferSlack = 0;
+
+    double walkSpeed = 1.33;
+
+    double maxTransferWalkDistance = Double.MAX_VALUE;
+
+    boolean wheelchairAccessible = false;
+
+    /* State of the running search, see route(). Indexed [round][stop]. */
+
+    /** Best arrival with at most as many vehicles as the round number, by any means */
+    private int[][] arrivals;
+
+    /** Arrival improved in the round by riding a vehicle, alight slack included */
+    private int[][] rideArrivals;
+
+    private int[][] ridePatterns;
+
+    private int[][] rideTrips;
+
+    private int[][] rideDays;
+
+    private int[][] rideBoardPositions;
+
+    private int[][] rideAlightPositions;
+
+    /** Arrival improved in the round by a transfer after riding a vehicle */
+    private int[][] transferArrivals;
+
+    private int[][] transferSources;
+
+    private int[][] transferIndices;
+
+    /** Best arrival at each stop in any round, for pruning */
+    private int[] bestArrivals;
+
+    /** Best arrival at the destination so far, for pruning */
+    private int bestDestinationArrival;
+
+    /** Result of findTrip() */
+    private int foundTrip;
+
+    private int foundDay;
+
+    private int foundDeparture;
+
+    RaptorSearch(RaptorTransitData data) {
+        this.data = data;
+    }
+
+    /**
+     * @param departureTime when to leave the origin, relative to the requested departure time
+     * @return for each number of vehicles which leads to an earlier arrival than fewer vehicles, the journey with
+     * the earliest arrival, ordered by number of vehicles
+     */
+    List<RaptorJourney> route(int departureTime) {
+        int nStops = data.nStops;
+        int rounds = maxRounds + 1;
+        arrivals = newTable(rounds, nStops, UNREACHED);
+        rideArrivals = newTable(rounds, nStops, UNREACHED);
+        ridePatterns = new int[rounds][nStops];
+        rideTrips = new int[rounds][nStops];
+        rideDays = new int[rounds][nStops];
+        rideBoardPositions = new int[rounds][nStops];
+        rideAlightPositions = new int[rounds][nStops];
+        transferArrivals = newTable(rounds, nStops, UNREACHED);
+        transferSources = new int[rounds][nStops];
+        transferIndices = new int[rounds][nStops];
+        bestArrivals = new int[nStops];
+        Arrays.fill(bestArrivals, UNREACHED);
+        bestDestinationArrival = maxArrivalTime;
+
+        BitSet marked = new BitSet(nStops);
+        for (int i = 0; i < accessStops.length; i++) {
+            int stop = accessStops[i];
+            int arrival = departureTime + accessDurations[i];
+            if (arrival < arrivals[0][stop]) {
+                arrivals[0][stop] = arrival;
+                bestArrivals[stop] = arrival;
+                marked.set(stop);
+            }
+        }
+
+        List<RaptorJourney> journeys = new ArrayList<>();
+        for (int round = 1; round < rounds && !marked.isEmpty(); round++) {
+            System.arraycopy(arrivals[round - 1], 0, arrivals[round], 0, nStops);
+            BitSet reachedByRide = scanPatterns(round, marked);
+            marked = doTransfers(round, reachedByRide);
+            marked.or(reachedByRide);
+
+            RaptorJourney journey = bestJourney(round, departureTime);
+            if (journey != null) {
+                journeys.add(journey);
+            }
+        }
+        return journeys;
+    }
+
+    private static int[][] newTable(int rounds, int nStops, int value) {
+        int[][] table = new int[rounds][nStops];
+        for (int[] row : table) {
+            Arrays.fill(row, value);
+        }
+        return table;
+    }
+
+    /**
+     * Rides every pattern serving a stop whose arrival improved in the previous round.
+     *
+     * @return stops whose arrival improved in this round
+     */
+    private BitSet scanPatterns(int round, BitSet marked) {
+        // Scan each pattern from the first position at which one of the marked stops is served
+        int[] firstMarkedPosition = new int[data.nPatterns];
+        Arrays.fill(firstMarkedPosition, Integer.MAX_VALUE);
+        BitSet patternsToScan = new BitSet(data.nPatterns);
+        for (int stop = marked.nextSetBit(0); stop >= 0; stop = marked.nextSetBit(stop + 1)) {
+            for (int pattern : data.patternsForStop[stop]) {
+                if (patternAllowed != null && !patternAllowed[pattern]) {
+                    continue;
+                }
+                int[] patternStops = data.stopsForPattern[pattern];
+                for (int position = 0; position < patternStops.length; position++) {
+                    if (patternStops[position] == stop) {
+                        firstMarkedPosition[pattern] = Math.min(firstMarkedPosition[pattern], position);
+                        break;
+                    }
+                }
+                patternsToScan.set(pattern);
+            }
+        }
+
+        BitSet reached = new BitSet(data.nStops);
+        int[] previousArrivals = arrivals[round - 1];
+        for (int pattern = patternsToScan.nextSetBit(0); pattern >= 0;
+             pattern = patternsToScan.nextSetBit(pattern + 1)) {
+            int[] patternStops = data.stopsForPattern[pattern];
+            int nPatternStops = patternStops.length;
+            int trip = -1;
+            int day = -1;
+            int boardPosition = -1;
+            for (int position = firstMarkedPosition[pattern]; position < nPatternStops; position++) {
+                int stop = patternStops[position];
+                if (trip >= 0 && data.canAlight[pattern][position]) {
+                    int arrival = data.arrivals[pattern][trip * nPatternStops + position]
+                            + serviceDayOffsets[day] + alightSlack;
+                    if (arrival < bestArrivals[stop] && arrival < bestDestinationArrival) {
+                        arrivals[round][stop] = arrival;
+                        rideArrivals[round][stop] = arrival;
+                        ridePatterns[round][stop] = pattern;
+                        rideTrips[round][stop] = trip;
+                        rideDays[round][stop] = day;
+                        rideBoardPositions[round][stop] = boardPosition;
+                        rideAlightPositions[round][stop] = position;
+                        bestArrivals[stop] = arrival;
+                        reached.set(stop);
+                    }
+                }
+                if (data.canBoard[pattern][position] && previousArrivals[stop] != UNREACHED) {
+                    int slack = round == 1 || previousArrivals[stop] == arrivals[0][stop]
+                            ? boardSlack : transferSlack - alightSlack;
+                    int earliestDeparture = previousArrivals[stop] + slack;
+                    if (trip < 0 || earliestDeparture < data.departures[pattern][trip * nPatternStops + position]
+                            + serviceDayOffsets[day]) {
+                        if (findTrip(pattern, position, earliestDeparture)
+                                && (trip < 0 || foundDeparture < data.departures[pattern][trip * nPatternStops
+                                + position] + serviceDayOffsets[day])) {
+                            trip = foundTrip;
+                            day = foundDay;
+                            boardPosition = position;
+                        }
+                    }
+                }
+            }
+        }
+        return reached;
+    }
+
+    /**
+     * Finds the trip of the pattern which leaves the given position first, but not before the given time.
+     *
+     * @return false if there is no such trip
+     */
+    private boolean findTrip(int pattern, int position, int earliestDeparture) {
+        int[] departures = data.departures[pattern];
+        int[] serviceCodes = data.serviceCodes[pattern];
+        int nPatternStops = data.stopsForPattern[pattern].length;
+        int nTrips = serviceCodes.length;
+        foundTrip = -1;
+        foundDeparture = UNREACHED;
+        for (int day = 0; day < serviceDayOffsets.length; day++) {
+            int earliest = earliestDeparture - serviceDayOffsets[day];
+            int firstTrip = 0;
+            if (data.sortedAtEveryStop[pattern]) {
+                // Binary search for the first trip not leaving too early
+                int high = nTrips;
+                while (firstTrip < high) {
+                    int middle = (firstTrip + high) >>> 1;
+                    if (departures[middle * nPatternStops + position] < earliest) {
+                        firstTrip = middle + 1;
+                    } else {
+                        high = middle;
+                    }
+                }
+            }
+            for (int trip = firstTrip; trip < nTrips; trip++) {
+                int departure = departures[trip * nPatternStops + position];
+                if (departure < earliest) {
+                    continue;
+                }
+                if (departure + serviceDayOffsets[day] >= foundDeparture) {
+                    if (data.sortedAtEveryStop[pattern]) {
+                        break; // All later trips leave even later
+                    }
+                    continue;
+                }
+                if (!servicesRunning[day].get(serviceCodes[trip])
+                        || (wheelchairAccessible && !data.wheelchairAccessible[pattern][trip])) {
+                    continue;
+                }
+                foundTrip = trip;
+                foundDay = day;
+                foundDeparture = departure + serviceDayOffsets[day];
+                if (data.sortedAtEveryStop[pattern]) {
+                    break;
+                }
+            }
+        }
+        return foundTrip >= 0;
+    }
+
+    /**
+     * Walks from the stops reached by riding a vehicle in this round to the stops nearby.
+     *
+     * @return stops whose arrival improved by walking
+     */
+    private BitSet doTransfers(int round, BitSet reachedByRide) {
+        BitSet reached = new BitSet(data.nStops);
+        for (int stop = reachedByRide.nextSetBit(0); stop >= 0; stop = reachedByRide.nextSetBit(stop + 1)) {
+            int[] targets = data.transferTargets[stop];
+            for (int i = 0; i < targets.length; i++) {
+                double distance = data.transferDistances[stop][i];
+                if (distance > maxTransferWalkDistance
+                        || (wheelchairAccessible && !data.transferWheelchairAccessible[stop][i])) {
+                    continue;
+                }
+                int target = targets[i];
+                int arrival = rideArrivals[round][stop] + (int) Math.ceil(distance / walkSpeed) + TRANSFER_OVERHEAD;
+                if (arrival < bestArrivals[target] && arrival < bestDestinationArrival) {
+                    arrivals[round][target] = arrival;
+                    transferArrivals[round][target] = arrival;
+                    transferSources[round][target] = stop;
+                    transferIndices[round][target] = i;
+                    bestArrivals[target] = arrival;
+                    reached.set(target);
+                }
+            }
+        }
+        return reached;
+    }
+
+    /**
+     * @return the journey reaching the destination with exactly this many vehicles if it arrives earlier than all
+     * journeys with fewer vehicles, otherwise null
+     */
+    private RaptorJourney bestJourney(int round, int departureTime) {
+        int bestEgress = -1;
+        for (int i = 0; i < egressStops.length; i++) {
+            // The street network cannot be entered right after a transfer, so only arrivals by vehicle count
+            int arrival = rideArrivals[round][egressStops[i]];
+            if (arrival != UNREACHED && arrival + egressDurations[i] < bestDestinationArrival) {
+                bestDestinationArrival = arrival + egressDurations[i];
+                bestEgress = i;
+            }
+        }
+        if (bestEgress < 0) {
+            return null;
+        }
+        return reconstruct(round, egressStops[bestEgress], egressDurations[bestEgress], departureTime);
+    }
+
+    /**
+     * Follows the back pointers from a stop reached by a vehicle in the given round to an access stop.
+     */
+    private RaptorJourney reconstruct(int round, int egressStop, int egressDuration, int departureTime) {
+        int arrival = rideArrivals[round][egressStop] + egressDuration;
+        List<RaptorJourney.Leg> legs = new ArrayList<>();
+        int stop = egressStop;
+        boolean byRide = true;
+        while (round > 0) {
+            if (!byRide) {
+                if (arrivals[round - 1][stop] == arrivals[round][stop]) {
+                    // Reached with fewer vehicles
+                    round--;
+                    continue;
+                }
+                if (transferArrivals[round][stop] == arrivals[round][stop]) {
+                    int source = transferSources[round][stop];
+                    legs.add(RaptorJourney.Leg.transfer(source, stop, transferIndices[round][stop]));
+                    // A transfer always follows a ride in the same round
+                    stop = source;
+                    byRide = true;
+                    continue;
+                }
+            }
+            int pattern = ridePatterns[round][stop];
+            int boardPosition = rideBoardPositions[round][stop];
+            legs.add(RaptorJourney.Leg.ride(pattern, rideTrips[round][stop], rideDays[round][stop], boardPosition,
+                    rideAlightPositions[round][stop]));
+            stop = data.stopsForPattern[pattern][boardPosition];
+            round--;
+            byRide = false;
+        }
+        Collections.reverse(legs);
+
+        // Leave the origin as late as possible while still catching the first vehicle
+        int accessDuration = 0;
+        for (int i = 0; i < accessStops.length; i++) {
+            if (accessStops[i] == stop && departureTime + accessDurations[i] == arrivals[0][stop]) {
+                accessDuration = accessDurations[i];
+            }
+        }
+        RaptorJourney.Leg firstRide = legs.get(0);
+        int firstDeparture = data.departures[firstRide.pattern][
+                firstRide.trip * data.stopsForPattern[firstRide.pattern].length + firstRide.from]
+                + serviceDayOffsets[firstRide.day];
+        int latestDeparture = Math.max(departureTime, firstDeparture - boardSlack - accessDuration);
+        return new RaptorJourney(stop, egressStop, latestDeparture, arrival, legs);
+    }
+}
@@ -0,0 +1,276 @@
+package org.opentripplanner.routing.raptor;
+
+import com.google.common.collect.Iterables;
+import gnu.trove.list.TIntList;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.TObjectIntMap;
+import gnu.trove.map.hash.TObjectIntHashMap;
+import org.opentripplanner.routing.edgetype.SimpleTransfer;
+import org.opentripplanner.routing.edgetype.TripPattern;
+import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.trippattern.TripTimes;
+import org.opentripplanner.routing.vertextype.TransitStop;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The scheduled timetables of a graph, flattened into primitive arrays indexed by stop and pattern numbers, which is
+ * what {@link RaptorSearch} scans. Unlike {@link org.opentripplanner.profile.RaptorWorkerData} this does not depend on
+ * a date or time window: trips of all service days are kept together with their service codes, and trip identity is
+ * kept so that paths found by RAPTOR can be turned back into graph paths.
+ *
+ * Frequency-based trips and realtime changes to the timetables are not included.
+ */
+public class RaptorTransitData {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RaptorTransitData.class);
+
+    static final int NO_STOP = -1;
+
+    private static final int[] EMPTY_INT_ARRAY = new int[0];
+
+    private static final double[] EMPTY_DOUBLE_ARRAY = new double[0];
+
+    final int nStops;
+
+    final int nPatterns;
+
+    /** Graph vertex of each stop, null in tests */
+    final TransitStop[] stops;
+
+    /** Graph pattern of each pattern, null in tests */
+    final TripPattern[] patterns;
+
+    /** For each pattern, the indices of its stops in the order they are visited */
+    final int[][] stopsForPattern;
+
+    /** For each pattern, whether passengers may board / alight at each position of the pattern */
+    final boolean[][] canBoard;
+
+    final boolean[][] canAlight;
+
+    /**
+     * For each pattern, departure and arrival times of its trips in seconds since midnight of their service day,
+     * trip after trip: the time of trip t at position p is at index t * stopsForPattern[pattern].length + p.
+     * Trips are sorted by departure from the first stop.
+     */
+    final int[][] departures;
+
+    final int[][] arrivals;
+
+    /** For each pattern, the service code of each trip */
+    final int[][] serviceCodes;
+
+    /** For each pattern, whether each trip is wheelchair accessible */
+    final boolean[][] wheelchairAccessible;
+
+    /** For each pattern, true if no trip overtakes another one, so that trips are sorted by departure at every stop */
+    final boolean[] sortedAtEveryStop;
+
+    /** For each pattern, the trips in the same order as their times */
+    final TripTimes[][] tripTimes;
+
+    /** For each stop, the indices of the patterns visiting it */
+    final int[][] patternsForStop;
+
+    /** For each stop, the stops reachable by a transfer from it, the walking distances and the transfer edges */
+    final int[][] transferTargets;
+
+    final double[][] transferDistances;
+
+    final boolean[][] transferWheelchairAccessible;
+
+    /** Null in tests */
+    final SimpleTransfer[][] transfers;
+
+    private final TObjectIntMap<TransitStop> indexForStop;
+
+    RaptorTransitData(TransitStop[] stops, TripPattern[] patterns, int[][] stopsForPattern, boolean[][] canBoard,
+                      boolean[][] canAlight, int[][] departures, int[][] arrivals, int[][] serviceCodes,
+                      boolean[][] wheelchairAccessible, TripTimes[][] tripTimes, int[][] transferTargets,
+                      double[][] transferDistances, boolean[][] transferWheelchairAccessible,
+                      SimpleTransfer[][] transfers) {
+        this.nStops = transferTargets.length;
+        this.nPatterns = stopsForPattern.length;
+        this.stops = stops;
+        this.patterns = patterns;
+        this.stopsForPattern = stopsForPattern;
+        this.canBoard = canBoard;
+        this.canAlight = canAlight;
+        this.departures = departures;
+        this.arrivals = arrivals;
+        this.serviceCodes = serviceCodes;
+        this.wheelchairAccessible = wheelchairAccessible;
+        this.tripTimes = tripTimes;
+        this.transferTargets = transferTargets;
+        this.transferDistances = transferDistances;
+        this.transferWheelchairAccessible = transferWheelchairAccessible;
+        this.transfers = transfers;
+
+        this.sortedAtEveryStop = new boolean[nPatterns];
+        for (int p = 0; p < nPatterns; p++) {
+            sortedAtEveryStop[p] = isSortedAtEveryStop(departures[p], stopsForPattern[p].length);
+        }
+
+        List<TIntList> patternsForStop = new ArrayList<>(nStops);
+        for (int s = 0; s < nStops; s++) {
+            patternsForStop.add(new TIntArrayList());
+        }
+        for (int p = 0; p < nPatterns; p++) {
+            for (int stop : stopsForPattern[p]) {
+                TIntList patternsHere = patternsForStop.get(stop);
+                // A pattern visiting a stop twice is scanned once
+                if (patternsHere.isEmpty() || patternsHere.get(patternsHere.size() - 1) != p) {
+                    patternsHere.add(p);
+                }
+            }
+        }
+        this.patternsForStop = new int[nStops][];
+        for (int s = 0; s < nStops; s++) {
+            this.patternsForStop[s] = patternsForStop.get(s).toArray();
+        }
+
+        this.indexForStop = new TObjectIntHashMap<>(nStops, 0.5f, NO_STOP);
+        if (stops != null) {
+            for (int s = 0; s < nStops; s++) {
+                indexForStop.put(stops[s], s);
+            }
+        }
+    }
+
+    /**
+     * @return index of the given stop, {@link #NO_STOP} if no scheduled trip serves it
+     */
+    int indexOf(TransitStop stop) {
+        return indexForStop.get(stop);
+    }
+
+    int nTrips(int pattern) {
+        return serviceCodes[pattern].length;
+    }
+
+    private static boolean isSortedAtEveryStop(int[] departures, int nStops) {
+        for (int i = nStops; i < departures.length; i++) {
+            if (departures[i] < departures[i - nStops]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Collects the scheduled trips of all patterns of the graph. This takes a while on large graphs, so the result is
+     * meant to be built once per graph and shared by all searches.
+     */
+    public static RaptorTransitData build(Graph graph) {
+        long startTime = System.currentTimeMillis();
+        List<TripPattern> graphPatterns = new ArrayList<>(graph.index.patternForId.values());
+        // Same numbering whenever the graph is loaded
+        graphPatterns.sort(Comparator.comparing(pattern -> pattern.code));
+
+        TObjectIntMap<TransitStop> indexForStop = new TObjectIntHashMap<>(1000, 0.5f, NO_STOP);
+        List<TransitStop> stops = new ArrayList<>();
+        List<TripPattern> patterns = new ArrayList<>();
+        List<int[]> stopsForPattern = new ArrayList<>();
+        List<boolean[]> canBoard = new ArrayList<>();
+        List<boolean[]> canAlight = new ArrayList<>();
+        List<int[]> departures = new ArrayList<>();
+        List<int[]> arrivals = new ArrayList<>();
+        List<int[]> serviceCodes = new ArrayList<>();
+        List<boolean[]> wheelchairAccessible = new ArrayList<>();
+        List<TripTimes[]> tripTimes = new ArrayList<>();
+
+        for (TripPattern pattern : graphPatterns) {
+            List<TripTimes> trips = new ArrayList<>();
+            for (TripTimes tt : pattern.scheduledTimetable.tripTimes) {
+                if (!tt.isCanceled()) {
+                    trips.add(tt);
+                }
+            }
+            if (trips.isEmpty() || pattern.stopPattern.hasFlexFields()) {
+                continue;
+            }
+            trips.sort(Comparator.comparingInt(tt -> tt.getDepartureTime(0)));
+
+            int nPatternStops = pattern.stopPattern.size;
+            int[] patternStops = new int[nPatternStops];
+            boolean[] board = new boolean[nPatternStops];
+            boolean[] alight = new boolean[nPatternStops];
+            for (int p = 0; p < nPatternStops; p++) {
+                TransitStop stop = graph.index.stopVertexForStop.get(pattern.stopPattern.stops[p]);
+                int stopIndex = indexForStop.get(stop);
+                if (stopIndex == NO_STOP) {
+                    stopIndex = stops.size();
+                    stops.add(stop);
+                    indexForStop.put(stop, stopIndex);
+                }
+                patternStops[p] = stopIndex;
+                board[p] = p < nPatternStops - 1 && pattern.boardEdges[p] != null;
+                alight[p] = p > 0 && pattern.alightEdges[p] != null;
+            }
+
+            int[] patternDepartures = new int[trips.size() * nPatternStops];
+            int[] patternArrivals = new int[trips.size() * nPatternStops];
+            int[] patternServiceCodes = new int[trips.size()];
+            boolean[] patternWheelchairAccessible = new boolean[trips.size()];
+            for (int t = 0; t < trips.size(); t++) {
+                TripTimes tt = trips.get(t);
+                for (int p = 0; p < nPatternStops; p++) {
+                    patternDepartures[t * nPatternStops + p] = tt.getDepartureTime(p);
+                    patternArrivals[t * nPatternStops + p] = tt.getArrivalTime(p);
+                }
+                patternServiceCodes[t] = tt.serviceCode;
+                patternWheelchairAccessible[t] = tt.trip.getWheelchairAccessible() == 1;
+            }
+
+            patterns.add(pattern);
+            stopsForPattern.add(patternStops);
+            canBoard.add(board);
+            canAlight.add(alight);
+            departures.add(patternDepartures);
+            arrivals.add(patternArrivals);
+            serviceCodes.add(patternServiceCodes);
+            wheelchairAccessible.add(patternWheelchairAccessible);
+            tripTimes.add(trips.toArray(new TripTimes[0]));
+        }
+
+        int nStops = stops.size();
+        int[][] transferTargets = new int[nStops][];
+        double[][] transferDistances = new double[nStops][];
+        boolean[][] transferWheelchairAccessible = new boolean[nStops][];
+        SimpleTransfer[][] transfers = new SimpleTransfer[nStops][];
+        for (int s = 0; s < nStops; s++) {
+            List<SimpleTransfer> stopTransfers = new ArrayList<>();
+            for (SimpleTransfer transfer : Iterables.filter(stops.get(s).getOutgoing(), SimpleTransfer.class)) {
+                if (transfer.getToVertex() instanceof TransitStop
+                        && indexForStop.get(transfer.getToVertex()) != NO_STOP) {
+                    stopTransfers.add(transfer);
+                }
+            }
+            transferTargets[s] = stopTransfers.isEmpty() ? EMPTY_INT_ARRAY : new int[stopTransfers.size()];
+            transferDistances[s] = stopTransfers.isEmpty() ? EMPTY_DOUBLE_ARRAY : new double[stopTransfers.size()];
+            transferWheelchairAccessible[s] = new boolean[stopTransfers.size()];
+            transfers[s] = stopTransfers.toArray(new SimpleTransfer[0]);
+            for (int i = 0; i < stopTransfers.size(); i++) {
+                SimpleTransfer transfer = stopTransfers.get(i);
+                transferTargets[s][i] = indexForStop.get(transfer.getToVertex());
+                transferDistances[s][i] = transfer.getDistanceInMeters();
+                transferWheelchairAccessible[s][i] = transfer.isWheelchairAccessible();
+            }
+        }
+
+        RaptorTransitData data = new RaptorTransitData(stops.toArray(new TransitStop[0]),
+                patterns.toArray(new TripPattern[0]), stopsForPattern.toArray(new int[0][]),
+                canBoard.toArray(new boolean[0][]), canAlight.toArray(new boolean[0][]),
+                departures.toArray(new int[0][]), arrivals.toArray(new int[0][]), serviceCodes.toArray(new int[0][]),
+                wheelchairAccessible.toArray(new boolean[0][]), tripTimes.toArray(new TripTimes[0][]),
+                transferTargets, transferDistances, transferWheelchairAccessible, transfers);
+        LOG.info("Prepared {} stops and {} patterns for RAPTOR searches in {} ms", data.nStops, data.nPatterns,
+                System.currentTimeMillis() - startTime);
+        return data;
+    }
+}
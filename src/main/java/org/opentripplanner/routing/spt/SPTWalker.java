@@ -13,7 +13,9 @@ import org.slf4j.LoggerFactory;
 
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.function.Predicate;
 
 /**
  * Walk over a SPT tree to geometrically visit all nodes and edge geometry. For each geometry longer
@@ -58,6 +60,14 @@ public class SPTWalker {
      * Walk over a SPT. Call a visitor for each visited point.
      */
     public void walk(SPTVisitor visitor, double d0) {
+        walk(visitor, d0, state -> true);
+    }
+
+    /**
+     * Walk over a SPT, using at each vertex the best final state accepted by the filter. This allows for instance
+     * to walk only the states in which the traveler is not riding a rented vehicle, even where riding is quicker.
+     */
+    public void walk(SPTVisitor visitor, double d0, Predicate<State> stateFilter) {
         int nTotal = 0, nSkippedDupEdge = 0, nSkippedNoGeometry = 0;
         Collection<? extends State> allStates = spt.getAllStates();
         Set<Vertex> allVertices = new HashSet<Vertex>(spt.getVertexCount());
@@ -66,13 +76,13 @@ public class SPTWalker {
         }
         Set<Edge> processedEdges = new HashSet<Edge>(allVertices.size());
         for (Vertex v : allVertices) {
-            State s0 = spt.getState(v);
+            State s0 = bestState(v, stateFilter);
             if (s0 == null || !s0.isFinal())
                 continue;
             for (Edge e : s0.getVertex().getIncoming()) {
                 // Take only street
                 if (e != null && visitor.accept(e)) {
-                    State s1 = spt.getState(e.getFromVertex());
+                    State s1 = bestState(e.getFromVertex(), stateFilter);
                     if (s1 == null || !s1.isFinal())
                         continue;
                     if (e.getFromVertex() != null && e.getToVertex() != null) {
@@ -156,4 +166,17 @@ public class SPTWalker {
         LOG.info("SPTWalker: Generated {} points ({} dup edges, {} no geometry) from {} vertices / {} states.",
                 nTotal, nSkippedDupEdge, nSkippedNoGeometry, allVertices.size(), allStates.size());
     }
+
+    private State bestState(Vertex v, Predicate<State> stateFilter) {
+        List<State> states = spt.getStates(v);
+        if (states == null)
+            return null;
+        State best = null;
+        for (State s : states) {
+            if ((best == null || s.weight < best.weight) && s.isFinal() && stateFilter.test(s)) {
+                best = s;
+            }
+        }
+        return best;
+    }
 }
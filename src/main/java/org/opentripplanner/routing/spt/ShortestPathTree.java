@@ -34,9 +34,17 @@ public class ShortestPathTree {
     private Map<Vertex, List<State>> stateSets;
 
     public ShortestPathTree (RoutingRequest options, DominanceFunction dominanceFunction) {
+        this(options, dominanceFunction, new IdentityHashMap<Vertex, List<State>>());
+    }
+
+    /**
+     * @param stateSets an empty identity map to keep the states in, so that its table can be reused between searches
+     */
+    public ShortestPathTree (RoutingRequest options, DominanceFunction dominanceFunction,
+                             Map<Vertex, List<State>> stateSets) {
         this.options = options;
         this.dominanceFunction = dominanceFunction;
-        stateSets = new IdentityHashMap<Vertex, List<State>>();
+        this.stateSets = stateSets;
     }
 
     /** @return a list of GraphPaths, sometimes empty but never null. */
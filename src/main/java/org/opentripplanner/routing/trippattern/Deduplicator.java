@@ -1,24 +1,26 @@
 package org.opentripplanner.routing.trippattern;
 
-import com.google.common.collect.Maps;
-
 import java.io.Serializable;
 import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Does the same thing as String.intern, but for several different types.
  * Java's String.intern uses perm gen space and is broken anyway.
+ *
+ * It may be used by several threads at once, as the graph builder creates trip times in parallel. The first instance
+ * stored wins, so concurrent callers always get the same canonical instance.
  */
 public class Deduplicator implements Serializable {
     private static final long serialVersionUID = 20140524L;
 
-    private final Map<IntArray, IntArray> canonicalIntArrays = Maps.newHashMap();
-    private final Map<DoubleArray, DoubleArray> canonicalDoubleArrays = Maps.newHashMap();
-    private final Map<String, String> canonicalStrings = Maps.newHashMap();
-    private final Map<BitSet, BitSet> canonicalBitSets = Maps.newHashMap();
-    private final Map<StringArray, StringArray> canonicalStringArrays = Maps.newHashMap();
+    private final Map<IntArray, IntArray> canonicalIntArrays = new ConcurrentHashMap<>();
+    private final Map<DoubleArray, DoubleArray> canonicalDoubleArrays = new ConcurrentHashMap<>();
+    private final Map<String, String> canonicalStrings = new ConcurrentHashMap<>();
+    private final Map<BitSet, BitSet> canonicalBitSets = new ConcurrentHashMap<>();
+    private final Map<StringArray, StringArray> canonicalStringArrays = new ConcurrentHashMap<>();
 
     /** Free up any memory used by the deduplicator. */
     public void reset() {
@@ -33,55 +35,45 @@ public class Deduplicator implements Serializable {
     public int[] deduplicateIntArray(int[] original) {
         if (original == null) return null;
         IntArray intArray = new IntArray(original);
-        IntArray canonical = canonicalIntArrays.get(intArray);
-        if (canonical == null) {
-            canonical = intArray;
-            canonicalIntArrays.put(canonical, canonical);
-        }
-        return canonical.array;
+        return canonical(canonicalIntArrays, intArray).array;
     }
 
     public double[] deduplicateDoubleArray(double[] original) {
         if (original == null) return null;
         DoubleArray doubleArray = new DoubleArray(original);
-        DoubleArray canonical = canonicalDoubleArrays.get(doubleArray);
-        if (canonical == null) {
-            canonical = doubleArray;
-            canonicalDoubleArrays.put(canonical, canonical);
-        }
-        return canonical.array;
+        return canonical(canonicalDoubleArrays, doubleArray).array;
     }
 
     public String deduplicateString(String original) {
         if (original == null) return null;
         String canonical = canonicalStrings.get(original);
         if (canonical == null) {
-            canonical = new String(original.toCharArray()); // Trim String if necessary (older JDKs)
-            canonicalStrings.put(canonical, canonical);
+            // Trim String if necessary (older JDKs)
+            canonical = canonical(canonicalStrings, new String(original.toCharArray()));
         }
         return canonical;
     }
 
     public BitSet deduplicateBitSet(BitSet original) {
         if (original == null) return null;
-        BitSet canonical = canonicalBitSets.get(original);
-        if (canonical == null) {
-            canonical = original;
-            canonicalBitSets.put(canonical, canonical);
-        }
-        return canonical;
+        return canonical(canonicalBitSets, original);
     }
 
     public String[] deduplicateStringArray(String[] original) {
         if (original == null) return null;
         StringArray canonical = canonicalStringArrays.get(new StringArray(original, false));
         if (canonical == null) {
-            canonical = new StringArray(original, true);
-            canonicalStringArrays.put(canonical, canonical);
+            canonical = canonical(canonicalStringArrays, new StringArray(original, true));
         }
         return canonical.array;
     }
 
+    /** Store the given instance unless an equal one is already there, and return the stored one. */
+    private static <T> T canonical(Map<T, T> canonicalInstances, T instance) {
+        T canonical = canonicalInstances.putIfAbsent(instance, instance);
+        return canonical == null ? instance : canonical;
+    }
+
     /** A wrapper for a primitive int array. This is insane but necessary in Java. */
     private class IntArray implements Serializable {
         private static final long serialVersionUID = 20140524L;
@@ -1,5 +1,6 @@
 package org.opentripplanner.routing.vertextype;
 
+import org.opentripplanner.routing.core.vehicle_sharing.VehicleType;
 import org.opentripplanner.routing.edgetype.rentedgetype.CityGovDropoffStation;
 import org.opentripplanner.routing.edgetype.rentedgetype.DropoffVehicleEdge;
 import org.opentripplanner.routing.graph.Graph;
@@ -12,8 +13,18 @@ import org.opentripplanner.routing.graph.Vertex;
  */
 public class CityGovVehicleDropoffStationVertex extends Vertex {
 
+    /**
+     * Vehicle type which may be dropped off here, even though city government forbids parking it in this area
+     */
+    private final VehicleType vehicleType;
+
     public CityGovVehicleDropoffStationVertex(Graph g, CityGovDropoffStation cityGovDropoffStation) {
         super(g, "City government vehicle dropoff station", cityGovDropoffStation.getLongitude(),
                 cityGovDropoffStation.getLatitude());
+        this.vehicleType = cityGovDropoffStation.getVehicleType();
+    }
+
+    public VehicleType getVehicleType() {
+        return vehicleType;
     }
 }
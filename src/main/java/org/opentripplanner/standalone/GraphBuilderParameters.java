@@ -1,6 +1,7 @@
 package org.opentripplanner.standalone;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import org.opentripplanner.graph_builder.module.GtfsModule;
 import org.opentripplanner.graph_builder.module.osm.WayPropertySetSource;
 import org.opentripplanner.graph_builder.services.osm.CustomNamer;
 import org.opentripplanner.profile.StopClusterMode;
@@ -183,6 +184,19 @@ public class GraphBuilderParameters {
      */
     public final Boolean extraEdgesStopPlatformLink;
 
+    /**
+     * Run the graph builder modules which do not depend on each other concurrently, e.g. load GTFS while the OSM data
+     * is processed. The ids of edges then depend on how the modules interleave, so two builds from the same inputs no
+     * longer give the same ids.
+     */
+    public final boolean parallelModules;
+
+    /**
+     * How many GTFS feeds are read at the same time. Every feed read is held in memory until it is added to the graph,
+     * so a higher value needs more heap.
+     */
+    public final int gtfsLoaderThreads;
+
     /**
      * Set all parameters from the given Jackson JSON tree, applying defaults.
      * Supplying MissingNode.getInstance() will cause all the defaults to be applied.
@@ -219,6 +233,8 @@ public class GraphBuilderParameters {
         banDiscouragedBiking = config.path("banDiscouragedBiking").asBoolean(false);
         maxTransferDistance = config.path("maxTransferDistance").asDouble(2000);
         extraEdgesStopPlatformLink = config.path("extraEdgesStopPlatformLink").asBoolean(false);
+        parallelModules = config.path("parallelModules").asBoolean(false);
+        gtfsLoaderThreads = config.path("gtfsLoaderThreads").asInt(GtfsModule.DEFAULT_LOADER_THREADS);
     }
 
 
@@ -69,6 +69,7 @@ public class OTPApplication extends Application {
                 /* Jersey resource classes: define web services, i.e. an HTTP API. */
                 BenchmarkDominanceResource.class,
                 PlannerResource.class,
+                PlannerMatrixResource.class,
                 IndexAPI.class,
                 ExternalGeocoderResource.class,
                 GeocoderResource.class,
@@ -85,6 +86,7 @@ public class OTPApplication extends Application {
                 ProfileResource.class,
                 SimpleIsochrone.class,
                 ServerInfo.class,
+                MetricsResource.class,
                 SurfaceResource.class,
                 PointSetResource.class,
                 GraphInspectorTileResource.class,
@@ -14,6 +14,7 @@ import org.opentripplanner.reflect.ReflectiveInitializer;
 import org.opentripplanner.routing.core.RoutingRequest;
 import org.opentripplanner.routing.core.TraverseMode;
 import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.raptor.RaptorTransitData;
 import org.opentripplanner.updater.GraphUpdaterConfigurator;
 import org.opentripplanner.util.ElevationUtils;
 import org.opentripplanner.util.WorldEnvelope;
@@ -51,6 +52,7 @@ public class Router {
     public TileCache tileCache;
     public Renderer renderer;
     public IsoChroneSPTRenderer isoChroneSPTRenderer;
+    public IsoChroneSPTRenderer parallelGridIsoChroneSPTRenderer;
     public SampleGridRenderer sampleGridRenderer;
 
     // A RoutingRequest containing default parameters that will be cloned when handling each request
@@ -66,11 +68,35 @@ public class Router {
      */
     public ScenarioStore scenarioStore = new ScenarioStore();
 
+    /**
+     * Preparation run on this router before it starts serving requests, see {@link RouterWarmup}.
+     */
+    public RouterWarmup warmup;
+
+    /**
+     * Scheduled timetables prepared for RAPTOR searches, built on first use.
+     */
+    private volatile RaptorTransitData raptorTransitData;
+
     public Router(String id, Graph graph) {
         this.id = id;
         this.graph = graph;
     }
 
+    public RaptorTransitData getRaptorTransitData() {
+        RaptorTransitData data = raptorTransitData;
+        if (data == null) {
+            synchronized (this) {
+                data = raptorTransitData;
+                if (data == null) {
+                    data = RaptorTransitData.build(graph);
+                    raptorTransitData = data;
+                }
+            }
+        }
+        return data;
+    }
+
 
     /**
      * Below is functionality moved into Router from the "router lifecycle manager" interface and implementation.
@@ -93,6 +119,7 @@ public class Router {
             this.renderer = new Renderer(this.tileCache);
             this.sampleGridRenderer = new SampleGridRenderer(this.graph);
             this.isoChroneSPTRenderer = new IsoChroneSPTRendererAccSampling(this.sampleGridRenderer);
+            this.parallelGridIsoChroneSPTRenderer = new IsoChroneSPTRendererParallelGrid(this.sampleGridRenderer);
         }
 
         /* Create the default router parameters from the JSON router config. */
@@ -180,6 +207,8 @@ public class Router {
         /* Create Graph updater modules from JSON config. */
         GraphUpdaterConfigurator.setupGraph(this.graph, config);
 
+        this.warmup = RouterWarmup.fromConfig(config);
+
         /* Compute ellipsoidToGeoidDifference for this Graph */
         try {
             WorldEnvelope env = graph.getEnvelope();
@@ -0,0 +1,110 @@
+package org.opentripplanner.standalone;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.opentripplanner.reflect.ReflectiveInitializer;
+import org.opentripplanner.routing.core.RoutingRequest;
+import org.opentripplanner.routing.impl.GraphPathFinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prepares a freshly loaded router before it replaces the one currently serving requests. Configured in the
+ * "warmup" section of the router config:
+ *
+ * <pre>
+ * "warmup": {
+ *     "updatersTimeoutSec": 120,
+ *     "rounds": 3,
+ *     "requests": [
+ *         { "fromString": "52.40,16.92", "toString": "52.41,16.95", "modes": "WALK,CAR", "rentingAllowed": "true" }
+ *     ]
+ * }
+ * </pre>
+ *
+ * Warm-up happens in two phases. First we wait (up to updatersTimeoutSec) until every polling updater of the new router
+ * has completed its first poll and the resulting graph writes have been applied, so the new graph carries the same
+ * live vehicle, traffic and parking zone state as the old one. Then the recorded requests are planned a few times on
+ * the new router, so that the hot routing code is compiled and caches are filled before the first real request.
+ *
+ * Failing requests are logged and ignored: a warm-up never prevents a router from being published.
+ */
+public class RouterWarmup {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RouterWarmup.class);
+
+    private final long updatersTimeoutMillis;
+
+    private final int rounds;
+
+    private final List<JsonNode> requests;
+
+    /** Duration in milliseconds of each phase of the last warm-up, in execution order. */
+    private final Map<String, Long> phaseDurations = new LinkedHashMap<>();
+
+    public RouterWarmup(JsonNode config) {
+        updatersTimeoutMillis = TimeUnit.SECONDS.toMillis(config.path("updatersTimeoutSec").asLong(0));
+        rounds = config.path("rounds").asInt(1);
+        requests = new ArrayList<>();
+        for (JsonNode request : config.path("requests")) {
+            requests.add(request);
+        }
+    }
+
+    /** @return the warm-up configured for the given router config, doing nothing when no "warmup" section exists. */
+    public static RouterWarmup fromConfig(JsonNode routerConfig) {
+        return new RouterWarmup(routerConfig.path("warmup"));
+    }
+
+    public void warmUp(Router router) {
+        phaseDurations.clear();
+        long start = System.currentTimeMillis();
+        if (updatersTimeoutMillis > 0 && router.graph.updaterManager != null) {
+            try {
+                if (!router.graph.updaterManager.awaitInitialUpdates(updatersTimeoutMillis)) {
+                    LOG.warn("Router '{}': updaters did not complete their first update within {} ms.",
+                            router.id, updatersTimeoutMillis);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        long updatersDone = System.currentTimeMillis();
+        phaseDurations.put("updaters", updatersDone - start);
+
+        int planned = 0;
+        int failed = 0;
+        ReflectiveInitializer<RoutingRequest> scraper = new ReflectiveInitializer<>(RoutingRequest.class);
+        for (int round = 0; round < rounds; round++) {
+            for (JsonNode requestConfig : requests) {
+                RoutingRequest request = scraper.scrape(requestConfig);
+                request.routerId = router.id;
+                try {
+                    new GraphPathFinder(router).graphPathFinderEntryPoint(request);
+                    planned++;
+                } catch (Exception e) {
+                    failed++;
+                    LOG.debug("Warm-up request {} failed on router '{}'", requestConfig, router.id, e);
+                } finally {
+                    if (request.rctx != null) {
+                        request.cleanup();
+                    }
+                }
+            }
+        }
+        phaseDurations.put("requests", System.currentTimeMillis() - updatersDone);
+        LOG.info("Router '{}' warmed up in {} ms (phases: {}), {} requests planned, {} failed.", router.id,
+                System.currentTimeMillis() - start, phaseDurations, planned, failed);
+    }
+
+    public Map<String, Long> getPhaseDurations() {
+        return Collections.unmodifiableMap(phaseDurations);
+    }
+}
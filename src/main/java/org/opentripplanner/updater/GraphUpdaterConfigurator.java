@@ -11,6 +11,7 @@ import org.opentripplanner.updater.stoptime.PollingStoptimeUpdater;
 import org.opentripplanner.updater.stoptime.WebsocketGtfsRealtimeUpdater;
 import org.opentripplanner.updater.street_notes.WinkkiPollingGraphUpdater;
 import org.opentripplanner.updater.traficstreetupdater.TrafficUpdater;
+import org.opentripplanner.updater.vehicle_sharing.parking_zones.ParkingZonesUpdater;
 import org.opentripplanner.updater.vehicle_sharing.vehicle_presence.VehiclePresencePredictionUpdater;
 import org.opentripplanner.updater.vehicle_sharing.vehicles_positions.BikesUpdater;
 import org.opentripplanner.updater.vehicle_sharing.vehicles_positions.SharedHistoricalVehiclesUpdater;
@@ -65,7 +66,8 @@ public abstract class GraphUpdaterConfigurator {
      */
     private static GraphUpdaterManager createManagerFromConfig(Graph graph, JsonNode config) {
 
-        GraphUpdaterManager updaterManager = new GraphUpdaterManager(graph);
+        // Updates touching distinct parts of the graph may be applied at the same time by several writer threads
+        GraphUpdaterManager updaterManager = new GraphUpdaterManager(graph, config.path("graphWriterThreads").asInt(1));
         for (JsonNode configItem : config.path("updaters")) {
 
             // For each sub-node, determine which kind of updater is being created.
@@ -99,6 +101,10 @@ public abstract class GraphUpdaterConfigurator {
 
         addUpdater(graph, updaterManager, new SharedVehiclesUpdater(), config.path("sharedVehiclesUpdater"));
         addUpdater(graph, updaterManager, new BikesUpdater(), config.path("bikesUpdater"));
+        if (config.has("parkingZonesUpdater")) {
+            // Otherwise parking zones are kept as they were when the graph was built
+            addUpdater(graph, updaterManager, new ParkingZonesUpdater(), config.path("parkingZonesUpdater"));
+        }
         addUpdater(graph, updaterManager, new TrafficUpdater(), null);
         addUpdater(graph, updaterManager, new VehiclePresencePredictionUpdater(), null);
         addUpdater(graph, updaterManager, new SharedHistoricalVehiclesUpdater(), config.path("sharedHistoricalVehiclesUpdater"));
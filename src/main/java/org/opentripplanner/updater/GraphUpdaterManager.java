@@ -6,15 +6,14 @@ import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 
 import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.util.monitoring.Gauge;
+import org.opentripplanner.util.monitoring.Metrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -38,6 +37,10 @@ public class GraphUpdaterManager {
      * Text used for naming threads when the graph lacks a routerId.
      */
     private static String DEFAULT_ROUTER_ID = "(default)";
+
+    private static final String PENDING_WRITERS_METRIC = "otp_graph_writers_pending";
+
+    private static final String OLDEST_PENDING_WRITER_METRIC = "otp_graph_writers_oldest_pending_milliseconds";
     
     /**
      * Thread factory used to create new threads, giving them more human-readable names including the routerId.
@@ -46,12 +49,11 @@ public class GraphUpdaterManager {
 
     /**
      * OTP's multi-version concurrency control model for graph updating allows simultaneous reads,
-     * but never simultaneous writes. We ensure this policy is respected by having a single writer
-     * thread, which sequentially executes all graph updater tasks. Each task is a runnable that is
-     * scheduled with the ExecutorService to run at regular intervals.
-     * FIXME in reality we're not using scheduleAtFixedInterval. We're scheduling for immediate execution from separate threads that sleep in a loop.
+     * but never simultaneous writes to the same part of the graph. We ensure this policy is respected by having
+     * the scheduler run graph updater tasks one at a time, or at the same time only if they declare distinct regions
+     * of the graph and there is more than one writer thread.
      */
-    private ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private GraphWriterScheduler scheduler;
 
     /**
      * A pool of threads on which the updaters will run.
@@ -70,11 +72,31 @@ public class GraphUpdaterManager {
      */
     private Graph graph;
 
+    /**
+     * Label of the metrics of this manager.
+     */
+    private final String routerLabel;
+
+    /**
+     * Gauges of the pending graph writers, removed from the metrics when this manager is stopped.
+     */
+    private final Gauge pendingWritersGauge;
+
+    private final Gauge oldestPendingWriterGauge;
+
     /**
      * Constructor.
      * @param graph is the Graph that will be updated.
      */
     public GraphUpdaterManager(Graph graph) {
+        this(graph, 1);
+    }
+
+    /**
+     * @param writerThreads number of threads applying updates to the graph, only writers declaring distinct graph
+     *                      regions are ever run at the same time
+     */
+    public GraphUpdaterManager(Graph graph, int writerThreads) {
         this.graph = graph;
         
         String routerId = graph.routerId;
@@ -82,8 +104,18 @@ public class GraphUpdaterManager {
             routerId = DEFAULT_ROUTER_ID;
         
         threadFactory = new ThreadFactoryBuilder().setNameFormat("GraphUpdater-" + routerId + "-%d").build();
-        scheduler = Executors.newSingleThreadScheduledExecutor(threadFactory);
         updaterPool = Executors.newCachedThreadPool(threadFactory);
+
+        routerLabel = Metrics.label("router", routerId);
+        ThreadFactory writerThreadFactory = new ThreadFactoryBuilder()
+                .setNameFormat("GraphWriter-" + routerId + "-%d").build();
+        scheduler = new GraphWriterScheduler(graph, writerThreads, writerThreadFactory, routerLabel);
+        pendingWritersGauge = Metrics.REGISTRY.gauge(PENDING_WRITERS_METRIC,
+                "Number of graph writers waiting for or being executed",
+                routerLabel, scheduler::size);
+        oldestPendingWriterGauge = Metrics.REGISTRY.gauge(OLDEST_PENDING_WRITER_METRIC,
+                "How long the graph writer waiting the longest has been waiting, in milliseconds",
+                routerLabel, scheduler::oldestPendingAgeMillis);
     }
 
     public void stop() {
@@ -108,12 +140,10 @@ public class GraphUpdaterManager {
         updaterList.clear();
 
         // Shutdown scheduler
-        scheduler.shutdownNow();
+        Metrics.REGISTRY.remove(pendingWritersGauge);
+        Metrics.REGISTRY.remove(oldestPendingWriterGauge);
         try {
-            boolean ok = scheduler.awaitTermination(30, TimeUnit.SECONDS);
-            if (!ok) {
-                LOG.warn("Timeout waiting for scheduled task to finish.");
-            }
+            scheduler.shutdown(30, TimeUnit.SECONDS);
         } catch (InterruptedException e) {
             // This should not happen
             LOG.warn("Interrupted while waiting for scheduled task to finish.");
@@ -130,20 +160,33 @@ public class GraphUpdaterManager {
     }
 
     /**
-     * This is the method to use to modify the graph from the updaters. The runnables will be
-     * scheduled after each other, guaranteeing that only one of these runnables will be active at
-     * any time.
+     * This is the method to use to modify the graph from the updaters. The runnables are ordered by priority and
+     * guaranteed not to run at the same time as other runnables writing to the same region of the graph, see
+     * {@link GraphWriterScheduler}. A runnable may be dropped if a newer one replaces it before it runs.
      * 
      * @param runnable is a graph writer runnable
      */
     public void execute(GraphWriterRunnable runnable) {
-        scheduler.submit(() -> {
-            try {
-                runnable.run(graph);
-            } catch (Exception e) {
-                LOG.error("Error while running graph writer {}:", runnable.getClass().getName(), e);
+        scheduler.submit(runnable);
+    }
+
+    /**
+     * Wait until every polling updater has completed its first poll and all the graph writes submitted so far have
+     * been applied. This is used to bring a freshly loaded graph up to date before it starts serving requests.
+     *
+     * @return false if the timeout elapsed before that.
+     */
+    public boolean awaitInitialUpdates(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        for (GraphUpdater updater : updaterList) {
+            if (updater instanceof PollingGraphUpdater) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (!((PollingGraphUpdater) updater).awaitFirstPoll(remaining, TimeUnit.MILLISECONDS)) {
+                    return false;
+                }
             }
-        });
+        }
+        return scheduler.awaitSubmitted(Math.max(0, deadline - System.currentTimeMillis()));
     }
 
     public int size() {
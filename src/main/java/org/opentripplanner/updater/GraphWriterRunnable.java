@@ -7,16 +7,53 @@ import org.opentripplanner.routing.graph.Graph;
  * GraphUpdaterManager.
  * A few notes:
  * - Don't spend more time in this runnable than necessary, it might block other graph writer runnables.
- * - Be aware that while only one graph writer runnable is running to write to the graph, several
- *   request-threads might be reading the graph.
+ * - Be aware that while only one graph writer runnable is running to write to the graph (or to its region of the
+ *   graph, see {@link #getGraphRegion()}), several request-threads might be reading the graph.
  * - Be sure that the request-threads always see a consistent view of the graph while planning.
  * 
  * @see GraphUpdaterManager.execute
  */
 public interface GraphWriterRunnable {
 
+    int PRIORITY_LOW = -10;
+
+    int PRIORITY_NORMAL = 0;
+
+    int PRIORITY_HIGH = 10;
+
+    /**
+     * Region of the writers which split street edges to link rentable vehicles, or go through all street edges. Edges
+     * are split and linked while the set of street edges is iterated, so these writers must not run at the same time.
+     */
+    String STREET_EDGES_REGION = "street-edges";
+
     /**
      * This function is executed to modify the graph.
      */
     public void run(Graph graph);
+
+    /**
+     * Writers which replace the whole state they are responsible for (e.g. a full snapshot of vehicle positions)
+     * should return a key identifying that state. A writer waiting to be run is then dropped when a newer writer of
+     * the same class with an equal key is submitted. Writers applying incremental changes must return null.
+     */
+    default Object getCoalescingKey() {
+        return null;
+    }
+
+    /**
+     * Writers with a higher priority are run before the ones with a lower priority which were submitted earlier.
+     */
+    default int getPriority() {
+        return PRIORITY_NORMAL;
+    }
+
+    /**
+     * Writers returning different regions do not touch the same parts of the graph and may be run at the same time.
+     * Writers returning null (the default) are never run at the same time as any other writer. Writers of different
+     * regions may call {@link Graph#realtimeStreetDataChanged} concurrently.
+     */
+    default String getGraphRegion() {
+        return null;
+    }
 }
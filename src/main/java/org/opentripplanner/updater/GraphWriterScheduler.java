@@ -0,0 +1,312 @@
+package org.opentripplanner.updater;
+
+import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.util.monitoring.Counter;
+import org.opentripplanner.util.monitoring.Histogram;
+import org.opentripplanner.util.monitoring.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Decides in which order and on which thread the {@link GraphWriterRunnable}s submitted by the updaters are applied
+ * to the graph:
+ * - a writer waiting to be run is dropped when a newer writer with the same coalescing key is submitted, see
+ *   {@link GraphWriterRunnable#getCoalescingKey()}. The newer writer takes its place in the queue;
+ * - writers with a higher priority are run first, writers with the same priority in the order of submission;
+ * - writers declaring different graph regions may run at the same time, if there is more than one writer thread.
+ *   Writers declaring no region have the graph for themselves, as all writers had before.
+ *
+ * A writer which cannot be started because its region is busy does not hold back writers of lower priority from
+ * other regions, but a writer which needs the whole graph does: otherwise it could wait forever.
+ */
+class GraphWriterScheduler {
+
+    private static final Logger LOG = LoggerFactory.getLogger(GraphWriterScheduler.class);
+
+    private final Graph graph;
+
+    private final int threads;
+
+    private final ExecutorService executor;
+
+    private final String routerLabel;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** Signalled whenever a writer finishes or is dropped */
+    private final Condition writerDone = lock.newCondition();
+
+    /** Writers waiting to be run, in the order in which they should be run */
+    private final TreeSet<Task> pending = new TreeSet<>(Comparator
+            .comparingInt((Task task) -> -task.priority)
+            .thenComparingLong(task -> task.sequence));
+
+    private final Map<CoalescingKey, Task> pendingByKey = new HashMap<>();
+
+    /** Sequence numbers of all writers which were submitted and did not finish yet (including running ones) */
+    private final TreeSet<Long> unfinished = new TreeSet<>();
+
+    private final Set<String> runningRegions = new HashSet<>();
+
+    private int running = 0;
+
+    private boolean runningExclusive = false;
+
+    private long nextSequence = 0;
+
+    private final Histogram waitTime;
+
+    /** Looked up once per writer class, not on every run of a writer */
+    private final Map<Class<?>, Histogram> durationHistograms = new ConcurrentHashMap<>();
+
+    GraphWriterScheduler(Graph graph, int threads, ThreadFactory threadFactory, String routerLabel) {
+        this.graph = graph;
+        this.threads = Math.max(1, threads);
+        this.executor = Executors.newFixedThreadPool(this.threads, threadFactory);
+        this.routerLabel = routerLabel;
+        this.waitTime = Metrics.REGISTRY.durationHistogram("otp_graph_writer_wait_seconds",
+                "Time between submitting an update to the graph (or an older update it replaced) and applying it",
+                routerLabel);
+    }
+
+    void submit(GraphWriterRunnable runnable) {
+        lock.lock();
+        try {
+            if (executor.isShutdown()) {
+                LOG.warn("Ignoring graph writer {} submitted after shutdown", runnable.getClass().getName());
+                return;
+            }
+            Task task = new Task(runnable);
+            Task superseded = task.key == null ? null : pendingByKey.remove(task.key);
+            if (superseded != null) {
+                pending.remove(superseded);
+                // Keep the place in the queue, so that a frequently updated writer does not wait forever
+                task.sequence = superseded.sequence;
+                task.submittedNanos = superseded.submittedNanos;
+                supersededCounter(superseded.runnable).increment();
+                LOG.debug("Dropping graph writer {} superseded by a newer one", superseded.runnable);
+            } else {
+                task.sequence = nextSequence++;
+                unfinished.add(task.sequence);
+            }
+            pending.add(task);
+            if (task.key != null) {
+                pendingByKey.put(task.key, task);
+            }
+            dispatch();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return false if the timeout elapsed before all writers submitted so far were applied or dropped
+     */
+    boolean awaitSubmitted(long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        lock.lock();
+        try {
+            long lastSubmitted = nextSequence - 1;
+            while (!unfinished.isEmpty() && unfinished.first() <= lastSubmitted) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                writerDone.awaitNanos(remaining);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of writers waiting to be run or running
+     */
+    int size() {
+        lock.lock();
+        try {
+            return pending.size() + running;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return how long the writer which waits the longest has been waiting, in milliseconds
+     */
+    long oldestPendingAgeMillis() {
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            long oldest = 0;
+            for (Task task : pending) {
+                oldest = Math.max(oldest, now - task.submittedNanos);
+            }
+            return TimeUnit.NANOSECONDS.toMillis(oldest);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+        lock.lock();
+        try {
+            pending.clear();
+            pendingByKey.clear();
+            unfinished.clear();
+            writerDone.signalAll();
+            executor.shutdownNow();
+        } finally {
+            lock.unlock();
+        }
+        if (!executor.awaitTermination(timeout, unit)) {
+            LOG.warn("Timeout waiting for scheduled task to finish.");
+        }
+    }
+
+    /**
+     * Starts as many pending writers as the free threads and the running writers allow. Called with the lock held.
+     */
+    private void dispatch() {
+        List<Task> started = new ArrayList<>();
+        for (Iterator<Task> it = pending.iterator(); it.hasNext() && running < threads && !runningExclusive; ) {
+            Task task = it.next();
+            if (task.region == null) {
+                if (running > 0) {
+                    // Wait for the running writers to finish and do not let anything else start meanwhile
+                    break;
+                }
+                runningExclusive = true;
+            } else if (!runningRegions.add(task.region)) {
+                continue;
+            }
+            it.remove();
+            if (task.key != null) {
+                pendingByKey.remove(task.key);
+            }
+            running++;
+            started.add(task);
+        }
+        for (Task task : started) {
+            waitTime.recordSince(task.submittedNanos);
+            executor.execute(() -> run(task));
+        }
+    }
+
+    private void run(Task task) {
+        long startNanos = System.nanoTime();
+        try {
+            task.runnable.run(graph);
+        } catch (Exception e) {
+            LOG.error("Error while running graph writer {}:", task.runnable.getClass().getName(), e);
+        } finally {
+            durationHistogram(task.runnable).recordSince(startNanos);
+            lock.lock();
+            try {
+                running--;
+                if (task.region == null) {
+                    runningExclusive = false;
+                } else {
+                    runningRegions.remove(task.region);
+                }
+                unfinished.remove(task.sequence);
+                writerDone.signalAll();
+                if (!executor.isShutdown()) {
+                    dispatch();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private Histogram durationHistogram(GraphWriterRunnable runnable) {
+        Histogram histogram = durationHistograms.get(runnable.getClass());
+        if (histogram == null) {
+            histogram = durationHistograms.computeIfAbsent(runnable.getClass(), type ->
+                    Metrics.REGISTRY.durationHistogram("otp_graph_writer_duration_seconds",
+                            "Time spent applying an update to the graph", writerLabels(runnable)));
+        }
+        return histogram;
+    }
+
+    private Counter supersededCounter(GraphWriterRunnable runnable) {
+        return Metrics.REGISTRY.counter("otp_graph_writers_superseded_total",
+                "Number of updates to the graph dropped because a newer update replaced them", writerLabels(runnable));
+    }
+
+    private String writerLabels(GraphWriterRunnable runnable) {
+        Class<?> type = runnable.getClass();
+        // Anonymous writers have no simple name
+        String writer = type.getSimpleName().isEmpty() ? type.getName() : type.getSimpleName();
+        return routerLabel + "," + Metrics.label("writer", writer);
+    }
+
+    private static class Task {
+
+        final GraphWriterRunnable runnable;
+
+        final CoalescingKey key;
+
+        final int priority;
+
+        final String region;
+
+        long sequence;
+
+        long submittedNanos = System.nanoTime();
+
+        Task(GraphWriterRunnable runnable) {
+            this.runnable = runnable;
+            Object coalescingKey = runnable.getCoalescingKey();
+            this.key = coalescingKey == null ? null : new CoalescingKey(runnable.getClass(), coalescingKey);
+            this.priority = runnable.getPriority();
+            this.region = runnable.getGraphRegion();
+        }
+    }
+
+    /** Writers of different classes never replace each other, even if they use equal keys */
+    private static class CoalescingKey {
+
+        private final Class<?> type;
+
+        private final Object key;
+
+        CoalescingKey(Class<?> type, Object key) {
+            this.type = type;
+            this.key = key;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            CoalescingKey that = (CoalescingKey) o;
+            return type.equals(that.type) && key.equals(that.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(type, key);
+        }
+    }
+}
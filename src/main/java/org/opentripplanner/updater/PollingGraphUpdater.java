@@ -5,6 +5,9 @@ import org.opentripplanner.routing.graph.Graph;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
 /**
  * This abstract class implements logic that is shared between all polling updaters.
  * Usage example ('polling' name is an example and 'polling-updater' should be the type of a
@@ -39,6 +42,9 @@ public abstract class PollingGraphUpdater implements GraphUpdater {
      */
     protected String type;
 
+    /** Released once the first polling attempt is over, whether it succeeded or not. */
+    private final CountDownLatch firstPollDone = new CountDownLatch(1);
+
     @Override
     final public void run() {
         try {
@@ -58,6 +64,8 @@ public abstract class PollingGraphUpdater implements GraphUpdater {
                 } catch (Exception e) {
                     LOG.error("Error while running polling updater of type {}", type, e);
                     // TODO Should we cancel the task? Or after n consecutive failures? cancel();
+                } finally {
+                    firstPollDone.countDown();
                 }
                 Thread.sleep(pollingPeriodSeconds * 1000);
             }
@@ -67,6 +75,15 @@ public abstract class PollingGraphUpdater implements GraphUpdater {
         }
     }
 
+    /**
+     * Wait until the first polling attempt of this updater is over. The graph writes it submitted may still be queued.
+     *
+     * @return false if the timeout elapsed first.
+     */
+    public boolean awaitFirstPoll(long timeout, TimeUnit unit) throws InterruptedException {
+        return firstPollDone.await(timeout, unit);
+    }
+
     /** Shared configuration code for all polling graph updaters. */
     @Override
      public void configure (Graph graph, JsonNode config) throws Exception {
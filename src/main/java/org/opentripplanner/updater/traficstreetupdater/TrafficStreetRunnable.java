@@ -3,8 +3,11 @@ package org.opentripplanner.updater.traficstreetupdater;
 import org.opentripplanner.graph_builder.module.time.EdgeLine;
 import org.opentripplanner.routing.edgetype.StreetEdge;
 import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.graph.Vertex;
 import org.opentripplanner.updater.GraphWriterRunnable;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 class TrafficStreetRunnable implements GraphWriterRunnable {
@@ -17,13 +20,38 @@ class TrafficStreetRunnable implements GraphWriterRunnable {
 
     @Override
     public void run(Graph graph) {
+        List<Vertex> changedVertices = new ArrayList<>();
         for (StreetEdge e : graph.getStreetEdges()) {
+            double previousSpeedLimit = e.getTemporarySpeedLimit();
             e.setTemporarySpeedLimit(-1);
             EdgeLine el = new EdgeLine(e.getStartOsmNodeId(), e.getEndOsmNodeId());
             if (map.get(el) != null) {
                 e.setTemporarySpeedLimit(map.get(el));
             }
+            if (e.getTemporarySpeedLimit() != previousSpeedLimit) {
+                changedVertices.add(e.getFromVertex());
+            }
         }
+        graph.realtimeStreetDataChanged(changedVertices);
         graph.routerHealth.setTraffic(true);
     }
+
+
+    /** Each update replaces all speeds, only the latest one matters */
+    @Override
+    public Object getCoalescingKey() {
+        return TrafficStreetRunnable.class;
+    }
+
+    /** Goes through all street edges, so it should not hold back quicker updates */
+    @Override
+    public int getPriority() {
+        return PRIORITY_LOW;
+    }
+
+    /** Only temporary speed limits are written, but of all street edges, which vehicle writers split */
+    @Override
+    public String getGraphRegion() {
+        return STREET_EDGES_REGION;
+    }
 }
@@ -3,7 +3,9 @@ package org.opentripplanner.updater.vehicle_sharing.parking_zones;
 import com.google.common.annotations.VisibleForTesting;
 import org.locationtech.jts.geom.Point;
 import org.opentripplanner.routing.core.vehicle_sharing.VehicleType;
+import org.opentripplanner.routing.edgetype.rentedgetype.ParkingZoneIndex;
 import org.opentripplanner.routing.edgetype.rentedgetype.ParkingZoneInfo;
+import org.opentripplanner.routing.edgetype.rentedgetype.ParkingZoneInfoInterner;
 import org.opentripplanner.routing.edgetype.rentedgetype.SingleParkingZone;
 import org.opentripplanner.routing.graph.Vertex;
 
@@ -23,11 +25,19 @@ public class ParkingZonesCalculator implements Serializable {
     @VisibleForTesting
     final List<SingleParkingZone> parkingZonesEnabled;
 
+    /**
+     * Pairs <provider, vehicleType> shared by all parking zone infos created here
+     */
+    private final ParkingZoneIndex zones;
+
+    private final ParkingZoneInfoInterner interner = new ParkingZoneInfoInterner();
+
     public ParkingZonesCalculator(List<GeometryParkingZone> geometryParkingZones,
                                   List<GeometriesDisallowedForVehicleType> geometriesDisallowedForVehicleTypes) {
         this.geometryParkingZones = geometryParkingZones;
         this.geometriesDisallowedForVehicleTypes = geometriesDisallowedForVehicleTypes;
         this.parkingZonesEnabled = createParkingZonesEnabled();
+        this.zones = new ParkingZoneIndex(parkingZonesEnabled);
     }
 
     private List<SingleParkingZone> createParkingZonesEnabled() {
@@ -50,7 +60,23 @@ public class ParkingZonesCalculator implements Serializable {
                 .collect(toList());
         List<VehicleType> vehicleTypesForbiddenFromParkingHere = getCityGovParkingZonesForLocation(point,
                 vehicleTypeExcludedFromCityParkingZones);
-        return new ParkingZoneInfo(parkingZones, parkingZonesEnabled, vehicleTypesForbiddenFromParkingHere);
+        return interner.intern(new ParkingZoneInfo(zones, parkingZones, parkingZonesEnabled,
+                vehicleTypesForbiddenFromParkingHere));
+    }
+
+    public List<GeometryParkingZone> getGeometryParkingZones() {
+        return geometryParkingZones;
+    }
+
+    public List<GeometriesDisallowedForVehicleType> getGeometriesDisallowedForVehicleTypes() {
+        return geometriesDisallowedForVehicleTypes;
+    }
+
+    /**
+     * @return how many distinct parking zone infos were created so far
+     */
+    public int getDistinctParkingZonesCount() {
+        return interner.size();
     }
 
     private List<VehicleType> getCityGovParkingZonesForLocation(Point point, @Nullable VehicleType excluded) {
@@ -0,0 +1,126 @@
+package org.opentripplanner.updater.vehicle_sharing.parking_zones;
+
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.TopologyException;
+import org.opentripplanner.common.geometry.GeometryUtils;
+import org.opentripplanner.routing.edgetype.rentedgetype.SingleParkingZone;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Collections.emptyList;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Finds out which parts of the city have different provider parking zones after an update, so that we only recompute
+ * drop-off permissions of vertices in those areas.
+ */
+public class ParkingZonesDiff {
+
+    private static final GeometryFactory GEOMETRY_FACTORY = GeometryUtils.getGeometryFactory();
+
+    /**
+     * If the set of <provider, vehicleType> pairs with parking zones changes, then parking zones of all vertices change
+     */
+    private final boolean everythingChanged;
+
+    private final List<Envelope> changedAreas;
+
+    private ParkingZonesDiff(boolean everythingChanged, List<Envelope> changedAreas) {
+        this.everythingChanged = everythingChanged;
+        this.changedAreas = changedAreas;
+    }
+
+    /**
+     * Used when there are no previous parking zones to compare with
+     */
+    public static ParkingZonesDiff everything() {
+        return new ParkingZonesDiff(true, emptyList());
+    }
+
+    public static ParkingZonesDiff between(List<GeometryParkingZone> oldParkingZones,
+                                           List<GeometryParkingZone> newParkingZones) {
+        Map<SingleParkingZone, List<GeometryParkingZone>> oldByZone = groupByProviderAndVehicleType(oldParkingZones);
+        Map<SingleParkingZone, List<GeometryParkingZone>> newByZone = groupByProviderAndVehicleType(newParkingZones);
+        if (!oldByZone.keySet().equals(newByZone.keySet())) {
+            return everything();
+        }
+        List<Envelope> changedAreas = new ArrayList<>();
+        oldByZone.forEach((zone, oldZones) -> {
+            Envelope changedArea = findChangedArea(oldZones, newByZone.get(zone));
+            if (changedArea != null) {
+                changedAreas.add(changedArea);
+            }
+        });
+        return new ParkingZonesDiff(false, changedAreas);
+    }
+
+    public boolean isEverythingChanged() {
+        return everythingChanged;
+    }
+
+    public List<Envelope> getChangedAreas() {
+        return changedAreas;
+    }
+
+    public boolean isEmpty() {
+        return !everythingChanged && changedAreas.isEmpty();
+    }
+
+    private static Map<SingleParkingZone, List<GeometryParkingZone>> groupByProviderAndVehicleType(
+            List<GeometryParkingZone> parkingZones) {
+        Map<SingleParkingZone, List<GeometryParkingZone>> byZone = new HashMap<>();
+        for (GeometryParkingZone parkingZone : parkingZones) {
+            byZone.computeIfAbsent(new SingleParkingZone(parkingZone.getProviderId(), parkingZone.getVehicleType()),
+                    zone -> new ArrayList<>()).add(parkingZone);
+        }
+        return byZone;
+    }
+
+    /**
+     * @return bounding box of the area in which we are inside old parking zones, but not inside new ones or vice versa,
+     * null if there is no such area
+     */
+    private static Envelope findChangedArea(List<GeometryParkingZone> oldZones, List<GeometryParkingZone> newZones) {
+        try {
+            Geometry difference = area(oldZones).symDifference(area(newZones));
+            return difference.isEmpty() ? null : difference.getEnvelopeInternal();
+        } catch (TopologyException e) {
+            // Invalid polygons, we cannot compute the exact difference so we recompute everything in both zones
+            Envelope changedArea = new Envelope();
+            allGeometries(oldZones).forEach(g -> changedArea.expandToInclude(g.getEnvelopeInternal()));
+            allGeometries(newZones).forEach(g -> changedArea.expandToInclude(g.getEnvelopeInternal()));
+            return changedArea.isNull() ? null : changedArea;
+        }
+    }
+
+    /**
+     * Area in which a vertex is inside at least one of given parking zones, see
+     * {@link GeometryParkingZone#isPointInParkingZone}
+     */
+    private static Geometry area(List<GeometryParkingZone> parkingZones) {
+        List<Geometry> areas = parkingZones.stream()
+                .map(pz -> union(pz.getGeometriesAllowed()).difference(union(pz.getGeometriesDisallowed())))
+                .collect(toList());
+        return union(areas);
+    }
+
+    private static List<Geometry> allGeometries(List<GeometryParkingZone> parkingZones) {
+        List<Geometry> geometries = new ArrayList<>();
+        for (GeometryParkingZone parkingZone : parkingZones) {
+            geometries.addAll(parkingZone.getGeometriesAllowed());
+            geometries.addAll(parkingZone.getGeometriesDisallowed());
+        }
+        return geometries;
+    }
+
+    private static Geometry union(Collection<Geometry> geometries) {
+        Geometry collection = GEOMETRY_FACTORY.buildGeometry(geometries);
+        return geometries.isEmpty() ? collection : collection.union();
+    }
+}
@@ -0,0 +1,114 @@
+package org.opentripplanner.updater.vehicle_sharing.parking_zones;
+
+import org.locationtech.jts.geom.Envelope;
+import org.opentripplanner.routing.edgetype.rentedgetype.EdgeWithParkingZones;
+import org.opentripplanner.routing.edgetype.rentedgetype.ParkingZoneInfo;
+import org.opentripplanner.routing.edgetype.rentedgetype.RentVehicleEdge;
+import org.opentripplanner.routing.edgetype.rentedgetype.VehicleDropoffIndex;
+import org.opentripplanner.routing.graph.Edge;
+import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.graph.Vertex;
+import org.opentripplanner.routing.vertextype.CityGovVehicleDropoffStationVertex;
+import org.opentripplanner.routing.vertextype.TemporaryRentVehicleVertex;
+import org.opentripplanner.updater.GraphWriterRunnable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Replaces parking zones in graph. Drop-off permissions are recomputed only for vertices inside areas in which parking
+ * zones changed, found using the street index.
+ *
+ * Searches are running while this happens. New drop-off permissions of street vertices are written into a copy of
+ * {@link VehicleDropoffIndex}, which replaces the current one in a single write once it is complete. A search reads
+ * the index once when it starts, so it sees either old or new permissions everywhere. Edges of rentable vehicles and
+ * city government dropoff stations get their new parking zones afterwards, one edge at a time.
+ */
+public class ParkingZonesGraphWriterRunnable implements GraphWriterRunnable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ParkingZonesGraphWriterRunnable.class);
+
+    private final ParkingZonesCalculator calculator;
+
+    private final ParkingZonesDiff diff;
+
+    public ParkingZonesGraphWriterRunnable(ParkingZonesCalculator calculator, ParkingZonesDiff diff) {
+        this.calculator = calculator;
+        this.diff = diff;
+    }
+
+    @Override
+    public void run(Graph graph) {
+        long start = System.currentTimeMillis();
+        Collection<Vertex> changedVertices = findChangedVertices(graph);
+
+        VehicleDropoffIndex index = graph.vehicleDropoffIndex;
+        if (index != null) {
+            Map<Vertex, ParkingZoneInfo> changedParkingZones = new HashMap<>();
+            for (Vertex vertex : changedVertices) {
+                if (index.getParkingZones(vertex) != null) {
+                    changedParkingZones.put(vertex, calculator.getParkingZonesForLocation(vertex));
+                }
+            }
+            graph.vehicleDropoffIndex = index.withParkingZones(changedParkingZones);
+            LOG.info("Recomputed parking zones of {} vertices", changedParkingZones.size());
+        }
+        graph.parkingZonesCalculator = calculator;
+
+        for (Vertex vertex : changedVertices) {
+            if (vertex instanceof CityGovVehicleDropoffStationVertex) {
+                updateEdges(vertex, calculator.getParkingZonesForLocation(vertex,
+                        ((CityGovVehicleDropoffStationVertex) vertex).getVehicleType()));
+            }
+        }
+        int updatedVehicles = 0;
+        for (Optional<TemporaryRentVehicleVertex> vertex : graph.vehiclesTriedToLink.values()) {
+            if (vertex.isPresent() && isInChangedArea(vertex.get())) {
+                updateEdges(vertex.get(), calculator.getParkingZonesForLocation(vertex.get()));
+                updatedVehicles++;
+            }
+        }
+        if (graph.bikeRentalStationsInGraph != null) {
+            for (RentVehicleEdge edge : graph.bikeRentalStationsInGraph.values()) {
+                if (isInChangedArea(edge.getFromVertex())) {
+                    updateEdges(edge.getFromVertex(), calculator.getParkingZonesForLocation(edge.getFromVertex()));
+                    updatedVehicles++;
+                }
+            }
+        }
+        LOG.info("Updated parking zones of {} rentable vehicles and bike stations in {} ms", updatedVehicles,
+                System.currentTimeMillis() - start);
+        graph.realtimeStreetDataChanged(changedVertices);
+    }
+
+    private Collection<Vertex> findChangedVertices(Graph graph) {
+        if (diff.isEverythingChanged() || graph.streetIndex == null) {
+            return graph.getVertices();
+        }
+        Set<Vertex> vertices = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Envelope changedArea : diff.getChangedAreas()) {
+            vertices.addAll(graph.streetIndex.getVerticesForEnvelope(changedArea));
+        }
+        return vertices;
+    }
+
+    private boolean isInChangedArea(Vertex vertex) {
+        return diff.isEverythingChanged()
+                || diff.getChangedAreas().stream().anyMatch(area -> area.contains(vertex.getCoordinate()));
+    }
+
+    private static void updateEdges(Vertex vertex, ParkingZoneInfo parkingZones) {
+        for (Edge edge : vertex.getOutgoing()) {
+            if (edge instanceof EdgeWithParkingZones) {
+                ((EdgeWithParkingZones) edge).setParkingZones(parkingZones);
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package org.opentripplanner.updater.vehicle_sharing.parking_zones;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.annotations.VisibleForTesting;
+import org.opentripplanner.hasura_client.ParkingZonesGetter;
+import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.updater.GraphUpdaterManager;
+import org.opentripplanner.updater.PollingGraphUpdater;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+
+import static java.util.Collections.emptyList;
+
+/**
+ * Periodically fetches provider parking zones, so that changes of parking zones do not require rebuilding the graph.
+ * City government forbidden parking zones are kept as they were when the graph was built.
+ */
+public class ParkingZonesUpdater extends PollingGraphUpdater {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ParkingZonesUpdater.class);
+
+    private final ParkingZonesGetter parkingZonesGetter;
+
+    private GraphUpdaterManager graphUpdaterManager;
+
+    private Graph graph;
+
+    private String url;
+
+    /**
+     * Parking zones sent to graph in the last update, or present in graph at startup. Graph writes happen in order,
+     * so this is what the graph will contain when the next update is applied.
+     */
+    private ParkingZonesCalculator lastCalculator;
+
+    public ParkingZonesUpdater() {
+        this(new ParkingZonesGetter(true));
+    }
+
+    @VisibleForTesting
+    ParkingZonesUpdater(ParkingZonesGetter parkingZonesGetter) {
+        this.parkingZonesGetter = parkingZonesGetter;
+    }
+
+    @Override
+    protected void runPolling() {
+        LOG.info("Polling parking zones from API");
+        List<GeometryParkingZone> parkingZones = parkingZonesGetter.postFromHasura(graph, url);
+        if (parkingZones == null) {
+            LOG.warn("Failed to fetch parking zones, keeping current ones");
+            return;
+        }
+        ParkingZonesDiff diff = lastCalculator == null ? ParkingZonesDiff.everything()
+                : ParkingZonesDiff.between(lastCalculator.getGeometryParkingZones(), parkingZones);
+        if (diff.isEmpty()) {
+            LOG.info("Parking zones did not change");
+            return;
+        }
+        LOG.info("Parking zones changed in {} areas", diff.isEverythingChanged() ? "all" : diff.getChangedAreas().size());
+        ParkingZonesCalculator calculator = new ParkingZonesCalculator(parkingZones, lastCalculator == null
+                ? emptyList() : lastCalculator.getGeometriesDisallowedForVehicleTypes());
+        lastCalculator = calculator;
+        graphUpdaterManager.execute(new ParkingZonesGraphWriterRunnable(calculator, diff));
+    }
+
+    @Override
+    protected void configurePolling(Graph graph, JsonNode config) throws IllegalStateException {
+        this.pollingPeriodSeconds = 600;
+        if (config != null && config.get("pollingPeriodSeconds") != null)
+            this.pollingPeriodSeconds = config.get("pollingPeriodSeconds").asInt(this.pollingPeriodSeconds);
+        this.url = System.getProperty("sharedVehiclesApi");
+        if (this.url == null) {
+            throw new IllegalStateException("Please provide program parameter `--sharedVehiclesApi <URL>`");
+        }
+    }
+
+    @Override
+    public void configure(Graph graph, JsonNode config) throws Exception {
+        configurePolling(graph, config);
+        type = "Parking zones";
+    }
+
+    @Override
+    public void setGraphUpdaterManager(GraphUpdaterManager updaterManager) {
+        this.graphUpdaterManager = updaterManager;
+    }
+
+    @Override
+    public void setup(Graph graph) throws Exception {
+        this.graph = graph;
+        this.lastCalculator = graph.parkingZonesCalculator;
+    }
+
+    @Override
+    public void teardown() {
+    }
+}
@@ -20,9 +20,22 @@ public class VehiclePresenceGraphWriterRunnable implements GraphWriterRunnable {
             LOG.info("Updating vehicle presence prediction heatmaps from API");
             graph.carPresencePredictor = new CarPresencePredictor(vehiclePresenceHeatmapsFromApi);
             graph.routerHealth.setVehiclePresence(true);
+            graph.realtimeStreetDataChanged();
         }
     }
 
+    /** Each update replaces the heatmaps of a vehicle type, only the latest one matters */
+    @Override
+    public Object getCoalescingKey() {
+        return vehiclePresenceHeatmapsFromApi.getVehicleType();
+    }
+
+    /** Only the predictor of the graph is replaced */
+    @Override
+    public String getGraphRegion() {
+        return "vehicle-presence";
+    }
+
     public VehiclePresenceGraphWriterRunnable(VehiclePresence vehiclePresenceHeatmap) {
         this.vehiclePresenceHeatmapsFromApi = vehiclePresenceHeatmap;
     }
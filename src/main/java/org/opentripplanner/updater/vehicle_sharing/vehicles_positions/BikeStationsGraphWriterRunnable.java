@@ -13,6 +13,7 @@ import org.opentripplanner.updater.GraphWriterRunnable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -90,6 +91,27 @@ public class BikeStationsGraphWriterRunnable implements GraphWriterRunnable {
         LOG.info("Failed to place {} bike stations on a map", failedToPlaceCount);
         LOG.info("Updated {} bike stations on a map", updatedStationsCount);
         LOG.info("Removed {} bike stations from map", removedStationsCount);
+
+        // availability may have changed at any station
+        List<Vertex> changedVertices = new ArrayList<>(dissappearedStations);
+        graph.bikeRentalStationsInGraph.values().forEach(edge -> changedVertices.add(edge.getFromVertex()));
+        graph.realtimeStreetDataChanged(changedVertices);
+    }
+
+    /** Each update contains all bike stations, only the latest one matters */
+    @Override
+    public Object getCoalescingKey() {
+        return BikeStationsGraphWriterRunnable.class;
+    }
+
+    @Override
+    public int getPriority() {
+        return PRIORITY_HIGH;
+    }
+
+    @Override
+    public String getGraphRegion() {
+        return STREET_EDGES_REGION;
     }
 }
 
@@ -64,22 +64,41 @@ class VehicleSharingGraphWriterRunnable implements GraphWriterRunnable {
                 graph.getLastProviderVehiclesUpdateTimestamps().put(responsiveProvider, updateTimestamp);
             }
         }
-        removeDisappearedRentableVehicles(graph);
-        addAppearedRentableVehicles(graph);
+        List<Vertex> changedVertices = new ArrayList<>();
+        changedVertices.addAll(removeDisappearedRentableVehicles(graph));
+        changedVertices.addAll(addAppearedRentableVehicles(graph));
         //We don't want to modify last update timestamp based on historical data from snapshots
         if (!removalGracePeriodDisabled) {
             graph.getLastProviderVehiclesUpdateTimestamps().entrySet().removeIf(entry -> graph.isUnresponsiveGracePeriodExceeded(entry.getKey(), updateTimestamp));
         }
+        graph.realtimeStreetDataChanged(changedVertices);
         graph.routerHealth.setVehiclePosition(true);
     }
 
-    private void removeDisappearedRentableVehicles(Graph graph) {
+    /** Each update contains all vehicles of a snapshot, only the latest one for the snapshot matters */
+    @Override
+    public Object getCoalescingKey() {
+        return snapshotLabel;
+    }
+
+    @Override
+    public int getPriority() {
+        return PRIORITY_HIGH;
+    }
+
+    @Override
+    public String getGraphRegion() {
+        return STREET_EDGES_REGION;
+    }
+
+    private List<Vertex> removeDisappearedRentableVehicles(Graph graph) {
         Map<VehicleDescription, Optional<TemporaryRentVehicleVertex>> disappearedVehicles = getDisappearedVehicles(graph);
         List<Vertex> properlyLinkedVertices = getProperlyLinkedVertices(disappearedVehicles.values());
         TemporaryVertex.disposeAll(properlyLinkedVertices);
         disappearedVehicles.forEach(graph.vehiclesTriedToLink::remove);
         LOG.info("Removed {} rentable vehicles from snapshot {} from graph", disappearedVehicles.size(), this.snapshotLabel);
         LOG.debug("Removed {} properly linked rentable vehicles from snapshot {} from graph", properlyLinkedVertices.size(), this.snapshotLabel);
+        return properlyLinkedVertices;
     }
 
     private Map<VehicleDescription, Optional<TemporaryRentVehicleVertex>> getDisappearedVehicles(Graph graph) {
@@ -102,8 +121,13 @@ class VehicleSharingGraphWriterRunnable implements GraphWriterRunnable {
                 .collect(toList());
     }
 
-    private void addAppearedRentableVehicles(Graph graph) {
-        getAppearedVehicles(graph).forEach(v -> graph.vehiclesTriedToLink.put(v, temporaryStreetSplitter.linkRentableVehicleToGraph(v)));
+    private List<Vertex> addAppearedRentableVehicles(Graph graph) {
+        List<Vertex> addedVertices = new ArrayList<>();
+        for (VehicleDescription vehicle : getAppearedVehicles(graph)) {
+            Optional<TemporaryRentVehicleVertex> vertex = temporaryStreetSplitter.linkRentableVehicleToGraph(vehicle);
+            graph.vehiclesTriedToLink.put(vehicle, vertex);
+            vertex.ifPresent(addedVertices::add);
+        }
 
         Map<Boolean, Long> vehiclesForSnapshot =
                 graph.vehiclesTriedToLink.entrySet().stream().collect(
@@ -125,6 +149,7 @@ class VehicleSharingGraphWriterRunnable implements GraphWriterRunnable {
         LOG.info("There are {} rentable vehicles from snapshot {} which we failed to link to graph",
                 Optional.ofNullable(vehiclesForSnapshot.get(false)).orElse(0L),
                 this.snapshotLabel);
+        return addedVertices;
     }
 
     private List<VehicleDescription> getAppearedVehicles(Graph graph) {
@@ -0,0 +1,37 @@
+package org.opentripplanner.util.monitoring;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A monotonically increasing count which can be incremented from many threads at once without contention.
+ */
+public class Counter extends Metric {
+
+    private final LongAdder count = new LongAdder();
+
+    Counter(String name, String help, String labels) {
+        super(name, help, labels);
+    }
+
+    public void increment() {
+        count.increment();
+    }
+
+    public void add(long amount) {
+        count.add(amount);
+    }
+
+    public long get() {
+        return count.sum();
+    }
+
+    @Override
+    String type() {
+        return "counter";
+    }
+
+    @Override
+    void write(StringBuilder out) {
+        out.append(name).append(labelsOf(null)).append(' ').append(get()).append('\n');
+    }
+}
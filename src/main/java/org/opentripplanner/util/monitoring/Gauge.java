@@ -0,0 +1,30 @@
+package org.opentripplanner.util.monitoring;
+
+import java.util.function.LongSupplier;
+
+/**
+ * A value which can go up and down, read from its source only when the metrics are exported.
+ */
+public class Gauge extends Metric {
+
+    private final LongSupplier value;
+
+    Gauge(String name, String help, String labels, LongSupplier value) {
+        super(name, help, labels);
+        this.value = value;
+    }
+
+    public long get() {
+        return value.getAsLong();
+    }
+
+    @Override
+    String type() {
+        return "gauge";
+    }
+
+    @Override
+    void write(StringBuilder out) {
+        out.append(name).append(labelsOf(null)).append(' ').append(get()).append('\n');
+    }
+}
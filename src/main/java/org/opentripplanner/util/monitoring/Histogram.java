@@ -0,0 +1,157 @@
+package org.opentripplanner.util.monitoring;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Distribution of non-negative long values (durations, sizes, counts) in logarithmic buckets, in the spirit of an HDR
+ * histogram: each power of two is split into {@link #SUB_BUCKETS} linear buckets, so any recorded value is known
+ * with a relative error of at most 1 / SUB_BUCKETS while the whole long range takes a few hundred counters.
+ * Recording is a handful of arithmetic operations and an atomic increment, and never allocates.
+ *
+ * Values are recorded in an integer unit (e.g. microseconds) and exported multiplied by {@link #unit} (e.g. 1e-6 to
+ * export seconds, as Prometheus expects).
+ */
+public class Histogram extends Metric {
+
+    private static final int SUB_BUCKET_BITS = 2;
+
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private static final double MICROSECONDS = 1e-6;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    private final LongAdder sum = new LongAdder();
+
+    private final double unit;
+
+    Histogram(String name, String help, String labels, double unit) {
+        super(name, help, labels);
+        this.unit = unit;
+    }
+
+    /**
+     * @return a histogram of durations, recorded with {@link #recordSince(long)} and exported in seconds
+     */
+    static Histogram ofDurations(String name, String help, String labels) {
+        return new Histogram(name, help, labels, MICROSECONDS);
+    }
+
+    /**
+     * @param value negative values are recorded as zero
+     */
+    public void record(long value) {
+        value = Math.max(0, value);
+        counts.incrementAndGet(bucketOf(value));
+        sum.add(value);
+    }
+
+    /**
+     * Records the time elapsed since the given {@link System#nanoTime()} in microseconds.
+     */
+    public void recordSince(long startNanos) {
+        record((System.nanoTime() - startNanos) / 1000);
+    }
+
+    public long getCount() {
+        long total = 0;
+        for (long bucketCount : snapshot()) {
+            total += bucketCount;
+        }
+        return total;
+    }
+
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * @return the highest value which may have been recorded in the bucket containing the given quantile (0..1), or
+     * zero if nothing was recorded
+     */
+    public long valueAtQuantile(double quantile) {
+        long[] snapshot = snapshot();
+        long total = 0;
+        for (long bucketCount : snapshot) {
+            total += bucketCount;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return upperBoundOf(i);
+            }
+        }
+        return upperBoundOf(BUCKETS - 1);
+    }
+
+    private long[] snapshot() {
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+        }
+        return snapshot;
+    }
+
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @return the highest value belonging to the given bucket
+     */
+    static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowerBound = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lowerBound + (1L << shift) - 1;
+    }
+
+    @Override
+    String type() {
+        return "histogram";
+    }
+
+    /**
+     * Cumulative buckets are written from the lowest to the highest bucket which ever received a value, so that
+     * the output stays short while no precision is lost. The count is taken from the same snapshot as the buckets,
+     * so that it stays consistent with them while values are being recorded.
+     */
+    @Override
+    void write(StringBuilder out) {
+        long[] snapshot = snapshot();
+        int first = 0;
+        while (first < BUCKETS && snapshot[first] == 0) {
+            first++;
+        }
+        int last = BUCKETS - 1;
+        while (last > first && snapshot[last] == 0) {
+            last--;
+        }
+        long cumulative = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            cumulative += snapshot[i];
+            if (i >= first && i <= last) {
+                out.append(name).append("_bucket").append(labelsOf("le=\"" + upperBoundOf(i) * unit + "\""))
+                        .append(' ').append(cumulative).append('\n');
+            }
+        }
+        out.append(name).append("_bucket").append(labelsOf("le=\"+Inf\"")).append(' ').append(cumulative).append('\n');
+        out.append(name).append("_sum").append(labelsOf(null)).append(' ').append(getSum() * unit).append('\n');
+        out.append(name).append("_count").append(labelsOf(null)).append(' ').append(cumulative).append('\n');
+    }
+}
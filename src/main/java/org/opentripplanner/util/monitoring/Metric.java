@@ -0,0 +1,41 @@
+package org.opentripplanner.util.monitoring;
+
+/**
+ * A single named (and optionally labelled) value kept by a {@link MetricRegistry}.
+ */
+public abstract class Metric {
+
+    final String name;
+
+    final String help;
+
+    /** Labels in the Prometheus format without braces, e.g. {@code writer="TrafficStreetRunnable"}, or null */
+    final String labels;
+
+    Metric(String name, String help, String labels) {
+        this.name = name;
+        this.help = help;
+        this.labels = labels;
+    }
+
+    abstract String type();
+
+    /** Appends the samples of this metric in the Prometheus text format */
+    abstract void write(StringBuilder out);
+
+    /**
+     * @return the labels of this metric extended with the given one, in braces, or an empty string if there are none
+     */
+    String labelsOf(String extraLabel) {
+        if (labels == null && extraLabel == null) {
+            return "";
+        }
+        if (labels == null) {
+            return "{" + extraLabel + "}";
+        }
+        if (extraLabel == null) {
+            return "{" + labels + "}";
+        }
+        return "{" + labels + "," + extraLabel + "}";
+    }
+}
@@ -0,0 +1,92 @@
+package org.opentripplanner.util.monitoring;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Keeps metrics by name and labels and exports them in the Prometheus text format. Metrics are created on first use
+ * and live as long as the registry, so callers should keep a reference to them instead of looking them up on hot paths.
+ *
+ * Unlike {@link MonitoringStore}, metrics are always on: they are cheap enough to be updated in every search.
+ */
+public class MetricRegistry {
+
+    /** Ordered by name and then labels, so that all samples of one metric are written together */
+    private final Map<String, Metric> metrics = new ConcurrentSkipListMap<>();
+
+    public Counter counter(String name, String help) {
+        return counter(name, help, null);
+    }
+
+    public Counter counter(String name, String help, String labels) {
+        return get(name, labels, Counter.class, () -> new Counter(name, help, labels));
+    }
+
+    public Histogram histogram(String name, String help) {
+        return histogram(name, help, null);
+    }
+
+    public Histogram histogram(String name, String help, String labels) {
+        return get(name, labels, Histogram.class, () -> new Histogram(name, help, labels, 1));
+    }
+
+    /**
+     * @param name should end in "_seconds", values are recorded with {@link Histogram#recordSince(long)}
+     */
+    public Histogram durationHistogram(String name, String help) {
+        return durationHistogram(name, help, null);
+    }
+
+    public Histogram durationHistogram(String name, String help, String labels) {
+        return get(name, labels, Histogram.class, () -> Histogram.ofDurations(name, help, labels));
+    }
+
+    /**
+     * Registers a gauge, replacing any previous one with the same name and labels (e.g. of a graph which was reloaded).
+     */
+    public Gauge gauge(String name, String help, String labels, LongSupplier value) {
+        Gauge gauge = new Gauge(name, help, labels, value);
+        metrics.put(keyOf(name, labels), gauge);
+        return gauge;
+    }
+
+    /**
+     * Removes the given metric, unless another one has replaced it since (e.g. the gauge of a reloaded graph,
+     * registered before the previous graph is shut down).
+     */
+    public void remove(Metric metric) {
+        metrics.remove(keyOf(metric.name, metric.labels), metric);
+    }
+
+    /**
+     * @return all metrics in the Prometheus text exposition format (version 0.0.4)
+     */
+    public String toPrometheusText() {
+        StringBuilder out = new StringBuilder();
+        String lastName = null;
+        for (Metric metric : metrics.values()) {
+            if (!metric.name.equals(lastName)) {
+                out.append("# HELP ").append(metric.name).append(' ').append(metric.help).append('\n');
+                out.append("# TYPE ").append(metric.name).append(' ').append(metric.type()).append('\n');
+                lastName = metric.name;
+            }
+            metric.write(out);
+        }
+        return out.toString();
+    }
+
+    private <T extends Metric> T get(String name, String labels, Class<T> type, Supplier<T> create) {
+        Metric metric = metrics.computeIfAbsent(keyOf(name, labels), key -> create.get());
+        if (!type.isInstance(metric)) {
+            throw new IllegalArgumentException("Metric " + name + " is already registered as a " + metric.type());
+        }
+        return type.cast(metric);
+    }
+
+    private static String keyOf(String name, String labels) {
+        // A space sorts before all characters allowed in metric names, so a name is never split by a longer one
+        return labels == null ? name : name + ' ' + labels;
+    }
+}
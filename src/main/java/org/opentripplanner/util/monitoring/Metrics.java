@@ -0,0 +1,43 @@
+package org.opentripplanner.util.monitoring;
+
+/**
+ * The metrics registry of this OTP server, exported by {@link org.opentripplanner.api.resource.MetricsResource}, and
+ * the metrics updated on hot paths of routing.
+ */
+public class Metrics {
+
+    public static final MetricRegistry REGISTRY = new MetricRegistry();
+
+    public static final Histogram SEARCH_VISITED_STATES = REGISTRY.histogram("otp_search_visited_states",
+            "Number of states taken from the queue and expanded by one A* search");
+
+    public static final Histogram SEARCH_QUEUE_INSERTS = REGISTRY.histogram("otp_search_queue_inserts",
+            "Number of states inserted into the priority queue by one A* search");
+
+    public static final Histogram SEARCH_DOMINATED_STATES = REGISTRY.histogram("otp_search_dominated_states",
+            "Number of states taken from the queue by one A* search which were already dominated");
+
+    public static final Histogram SEARCH_DURATION = REGISTRY.durationHistogram("otp_search_duration_seconds",
+            "Duration of one A* search, including the heuristic initialization");
+
+    public static final Histogram HEURISTIC_INITIALIZATION_DURATION = REGISTRY.durationHistogram(
+            "otp_heuristic_initialization_duration_seconds", "Time spent initializing the heuristic of an A* search");
+
+    public static final Histogram LINKING_DURATION = REGISTRY.durationHistogram("otp_linking_duration_seconds",
+            "Time spent linking the origin and destination of a request to the street graph");
+
+    public static final Histogram ITINERARY_CONVERSION_DURATION = REGISTRY.durationHistogram(
+            "otp_itinerary_conversion_duration_seconds", "Time spent converting the paths of a request to itineraries");
+
+    public static final Counter SEARCH_TIMEOUTS = REGISTRY.counter("otp_search_timeouts_total",
+            "Number of A* searches aborted because of a timeout");
+
+    private Metrics() { }
+
+    /**
+     * @return a Prometheus label with the given value escaped as needed
+     */
+    public static String label(String name, String value) {
+        return name + "=\"" + value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n") + "\"";
+    }
+}
@@ -0,0 +1,134 @@
+package org.opentripplanner.analyst;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.opentripplanner.common.geometry.GeometryUtils;
+import org.opentripplanner.common.model.GenericLocation;
+import org.opentripplanner.routing.algorithm.EarliestArrivalSearch;
+import org.opentripplanner.routing.core.RoutingRequest;
+import org.opentripplanner.routing.core.TraverseMode;
+import org.opentripplanner.routing.edgetype.StreetEdge;
+import org.opentripplanner.routing.edgetype.StreetTraversalPermission;
+import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.spt.ShortestPathTree;
+import org.opentripplanner.routing.vertextype.IntersectionVertex;
+import org.opentripplanner.routing.vertextype.StreetVertex;
+
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class SurfaceCacheTest {
+
+    private static final long TIMEOUT_MILLIS = 10 * 1000;
+
+    private final AtomicInteger searches = new AtomicInteger();
+
+    /** Does not hold on to any graph, like the searches of SurfaceResource */
+    private final Function<Graph, ShortestPathTree> search = graph -> {
+        searches.incrementAndGet();
+        return search(graph);
+    };
+
+    private SurfaceCache surfaceCache;
+
+    private Graph graph;
+
+    private StreetVertex v1, far;
+
+    @Before
+    public void setUp() {
+        surfaceCache = new SurfaceCache(100);
+        graph = buildGraph();
+        v1 = (StreetVertex) graph.getVertex("v1");
+        far = (StreetVertex) graph.getVertex("far");
+    }
+
+    @Test
+    public void testRecomputationAfterRealtimeChange() throws InterruptedException {
+        TimeSurface surface = new TimeSurface(search(graph), false);
+        int id = surfaceCache.add(surface, graph, search);
+        assertEquals(2, surface.times.size());
+
+        graph.realtimeStreetDataChanged(Collections.singletonList(v1));
+
+        awaitRecomputation(id, 1);
+        TimeSurface recomputed = surfaceCache.get(id);
+        assertNotNull(recomputed);
+        assertNotSame(surface, recomputed);
+        assertEquals(id, recomputed.id);
+        assertEquals(SurfaceCache.FRESH, surfaceCache.getStalenessMillis(id));
+    }
+
+    @Test
+    public void testChangeOutsideOfSurface() {
+        TimeSurface surface = new TimeSurface(search(graph), false);
+        int id = surfaceCache.add(surface, graph, search);
+
+        graph.realtimeStreetDataChanged(Collections.singletonList(far));
+
+        assertEquals(SurfaceCache.FRESH, surfaceCache.getStalenessMillis(id));
+        assertSame(surface, surfaceCache.get(id));
+        assertEquals(0, searches.get());
+    }
+
+    @Test
+    public void testGraphIsReleased() throws InterruptedException {
+        WeakReference<Graph> reloadedGraph = addSurfaceOfNewGraph();
+
+        for (int i = 0; i < 100 && reloadedGraph.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+
+        assertNull(reloadedGraph.get());
+    }
+
+    /** Keeps no strong reference to the new graph once it returns, as a hot reload of the router does */
+    private WeakReference<Graph> addSurfaceOfNewGraph() {
+        Graph reloadedGraph = buildGraph();
+        surfaceCache.add(new TimeSurface(search(reloadedGraph), false), reloadedGraph, search);
+        return new WeakReference<>(reloadedGraph);
+    }
+
+    private void awaitRecomputation(int id, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while ((searches.get() < count || surfaceCache.getStalenessMillis(id) != SurfaceCache.FRESH)
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, searches.get());
+    }
+
+    private static ShortestPathTree search(Graph graph) {
+        RoutingRequest request = new RoutingRequest(TraverseMode.WALK);
+        request.batch = true;
+        request.from = new GenericLocation(0, 0);
+        request.setRoutingContext(graph, graph.getVertex("v1"), null);
+        try {
+            return new EarliestArrivalSearch().getShortestPathTree(request);
+        } finally {
+            request.cleanup();
+        }
+    }
+
+    private static Graph buildGraph() {
+        Graph graph = new Graph();
+        StreetVertex v1 = new IntersectionVertex(graph, "v1", 0, 0, "v1");
+        StreetVertex v2 = new IntersectionVertex(graph, "v2", 0.001, 0, "v2");
+        new StreetEdge(v1, v2, GeometryUtils.makeLineString(0, 0, 0.001, 0), "street", 111,
+                StreetTraversalPermission.ALL, false);
+        new StreetEdge(v2, v1, GeometryUtils.makeLineString(0.001, 0, 0, 0), "street", 111,
+                StreetTraversalPermission.ALL, false);
+        // Not reachable, and far from the reached cells
+        new IntersectionVertex(graph, "far", 1, 1, "far");
+        return graph;
+    }
+}
@@ -96,6 +96,21 @@ public class GraphPathToTripPlanConverterTest {
         assertEquals(TraverseMode.WALK, itinerary.legs.get(0).mode);
     }
 
+    /**
+     * Test that walk steps and leg geometries are not generated when they are not requested.
+     */
+    @Test
+    public void testWithoutWalkStepsAndLegGeometry() {
+        GraphPath graphPath = new GraphPath(buildPaths()[0].states.get(3), false);
+
+        Itinerary itinerary = GraphPathToTripPlanConverter.generateItinerary(graphPath, false, false, false, false,
+                locale, EMPTY_STREET_INDEX);
+
+        assertEquals(1, itinerary.legs.size());
+        assertNull(itinerary.legs.get(0).walkSteps);
+        assertNull(itinerary.legs.get(0).legGeometry);
+    }
+
     /**
      * Test that empty graph paths throw a TrivialPathException
      */
@@ -0,0 +1,49 @@
+package org.opentripplanner.api.resource;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+import org.opentripplanner.api.model.JSONObjectMapperProvider;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PlanStreamingOutputTest {
+
+    private static final ObjectMapper MAPPER = new JSONObjectMapperProvider().getContext(Response.class);
+
+    private final AtomicInteger finished = new AtomicInteger();
+
+    @Test
+    public void shouldFinishOnceWhenWrittenAndClosed() throws IOException {
+        // given
+        PlanStreamingOutput output = new PlanStreamingOutput(MAPPER, new Response(null), null, null, null,
+                finished::incrementAndGet);
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+
+        // when
+        output.write(stream);
+        output.close();
+
+        // then
+        assertEquals(1, finished.get());
+        assertTrue(stream.toString("UTF-8").startsWith("{"));
+    }
+
+    @Test
+    public void shouldFinishWhenClosedWithoutBeingWritten() {
+        // given
+        PlanStreamingOutput output = new PlanStreamingOutput(MAPPER, new Response(null), null, null, null,
+                finished::incrementAndGet);
+
+        // when
+        output.close();
+        output.close();
+
+        // then
+        assertEquals(1, finished.get());
+    }
+}
@@ -0,0 +1,221 @@
+package org.opentripplanner.api.resource;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opentripplanner.api.common.Message;
+import org.opentripplanner.api.model.TravelMatrix;
+import org.opentripplanner.api.parameter.QualifiedModeSet;
+import org.opentripplanner.graph_builder.linking.TemporaryStreetSplitter;
+import org.opentripplanner.graph_builder.module.FakeGraph;
+import org.opentripplanner.graph_builder.module.vehicle_sharing.VehicleSharingBuilderModule;
+import org.opentripplanner.routing.core.TraverseMode;
+import org.opentripplanner.routing.core.vehicle_sharing.CarDescription;
+import org.opentripplanner.routing.core.vehicle_sharing.FuelType;
+import org.opentripplanner.routing.core.vehicle_sharing.Gearbox;
+import org.opentripplanner.routing.core.vehicle_sharing.Provider;
+import org.opentripplanner.routing.core.vehicle_sharing.VehiclePricingPackage;
+import org.opentripplanner.routing.edgetype.StreetEdge;
+import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.impl.DefaultStreetVertexIndexFactory;
+import org.opentripplanner.routing.impl.MemoryGraphSource;
+import org.opentripplanner.routing.services.GraphService;
+import org.opentripplanner.standalone.CommandLineParameters;
+import org.opentripplanner.standalone.OTPServer;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PlannerMatrixResourceTest {
+
+    private static final String SOUTH = "39.93080,-82.98522";
+
+    private static final String NORTH = "39.96383,-82.96291";
+
+    /** Far away from the streets of the graph */
+    private static final String OUTSIDE = "0.0,0.0";
+
+    private static final BigDecimal START_PRICE = BigDecimal.valueOf(5);
+
+    private static OTPServer otpServer;
+
+    @BeforeClass
+    public static void setUp() {
+        otpServer = new OTPServer(new CommandLineParameters(), new GraphService());
+        registerGraph("A", buildGraph());
+    }
+
+    @Test
+    public void testMatrixDimensions() {
+        TravelMatrix matrix = planMatrix(Arrays.asList(SOUTH, NORTH), Arrays.asList(SOUTH, NORTH, SOUTH), null);
+
+        assertNull(matrix.error);
+        assertEquals(2, matrix.durations.length);
+        assertEquals(2, matrix.prices.length);
+        for (int i = 0; i < 2; i++) {
+            assertEquals(3, matrix.durations[i].length);
+            assertEquals(3, matrix.prices[i].length);
+            for (int j = 0; j < 3; j++) {
+                assertTrue(matrix.durations[i][j] >= 0);
+                // Walking costs nothing
+                assertEquals(0, matrix.prices[i][j], 0.0);
+            }
+        }
+        // Destinations are in the requested order
+        assertTrue(matrix.durations[0][0] < matrix.durations[0][1]);
+        assertEquals(matrix.durations[0][0], matrix.durations[0][2]);
+        assertTrue(matrix.durations[1][1] < matrix.durations[1][0]);
+    }
+
+    @Test
+    public void testUnreachableDestinations() {
+        TravelMatrix matrix = planMatrix(Collections.singletonList(SOUTH), Arrays.asList(SOUTH, NORTH, OUTSIDE), 300);
+
+        assertNull(matrix.error);
+        assertTrue(matrix.durations[0][0] >= 0);
+        // Too far to walk within the time limit
+        assertEquals(TravelMatrix.UNREACHABLE, matrix.durations[0][1]);
+        assertEquals(TravelMatrix.UNREACHABLE, matrix.prices[0][1], 0.0);
+        // Not near any street
+        assertEquals(TravelMatrix.UNREACHABLE, matrix.durations[0][2]);
+        assertEquals(TravelMatrix.UNREACHABLE, matrix.prices[0][2], 0.0);
+    }
+
+    @Test
+    public void testMissingPoints() {
+        assertBogusParameter(planMatrix(null, Collections.singletonList(NORTH), null));
+        assertBogusParameter(planMatrix(Collections.singletonList(SOUTH), Collections.emptyList(), null));
+    }
+
+    @Test
+    public void testTooManyPoints() {
+        List<String> origins = new ArrayList<>(Collections.nCopies(101, SOUTH));
+
+        assertBogusParameter(planMatrix(origins, Collections.singletonList(NORTH), null));
+    }
+
+    @Test
+    public void testPointsWithoutCoordinates() {
+        assertBogusParameter(planMatrix(Collections.singletonList("Main Street"), Collections.singletonList(NORTH),
+                null));
+    }
+
+    @Test
+    public void testRentingVehicles() {
+        Graph graph = buildGraph();
+        VehicleSharingBuilderModule.withoutParkingZones().buildGraph(graph, new HashMap<>());
+        VehiclePricingPackage pricingPackage = new VehiclePricingPackage(BigDecimal.ZERO, 0, 0, BigDecimal.ZERO,
+                START_PRICE, BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO, 60, 60,
+                BigDecimal.ZERO, false);
+        CarDescription car = new CarDescription("1", -82.98522, 39.93080, FuelType.ELECTRIC, Gearbox.AUTOMATIC,
+                new Provider(1, "PANEK"), null, pricingPackage);
+        assertTrue(TemporaryStreetSplitter.createNewDefaultInstance(graph, null, null)
+                .linkRentableVehicleToGraph(car).isPresent());
+        registerGraph("rent", graph);
+        List<String> destinations = Arrays.asList(SOUTH, NORTH);
+
+        TravelMatrix walking = planMatrix("rent", "WALK", false, Collections.singletonList(SOUTH), destinations, null);
+        TravelMatrix renting = planMatrix("rent", "WALK,CAR", true, Collections.singletonList(SOUTH), destinations,
+                null);
+
+        assertNull(renting.error);
+        assertTrue(renting.failedOrigins.isEmpty());
+        // Not worth renting a car to stay in place
+        assertEquals(walking.durations[0][0], renting.durations[0][0]);
+        assertEquals(0, renting.prices[0][0], 0.0);
+        // The car parked at the origin is driven to the far destination and paid for
+        assertTrue(renting.durations[0][1] >= 0);
+        assertTrue(renting.durations[0][1] < walking.durations[0][1]);
+        assertEquals(START_PRICE.doubleValue(), renting.prices[0][1], 0.0);
+    }
+
+    @Test
+    public void testTrafficSpeeds() {
+        Graph graph = buildGraph();
+        registerGraph("traffic", graph);
+        List<String> destinations = Arrays.asList(SOUTH, NORTH);
+
+        TravelMatrix freeFlow = planMatrix("traffic", "CAR", false, Collections.singletonList(SOUTH), destinations,
+                null);
+        // Traffic jams everywhere, as set by the traffic updater
+        for (StreetEdge edge : graph.getStreetEdges()) {
+            edge.setTemporarySpeedLimit(2);
+        }
+        TravelMatrix jammed = planMatrix("traffic", "CAR", false, Collections.singletonList(SOUTH), destinations,
+                null);
+
+        assertNull(freeFlow.error);
+        assertNull(jammed.error);
+        assertTrue(freeFlow.durations[0][1] >= 0);
+        assertTrue(jammed.durations[0][1] > freeFlow.durations[0][1]);
+        // Driving costs nothing
+        assertEquals(0, jammed.prices[0][1], 0.0);
+    }
+
+    @Test
+    public void testFailedOrigin() {
+        // The search from an origin away from the streets fails, but does not fail the whole matrix
+        TravelMatrix matrix = planMatrix(Arrays.asList(OUTSIDE, SOUTH), Collections.singletonList(SOUTH), null);
+
+        assertNull(matrix.error);
+        assertEquals(Collections.singletonList(0), matrix.failedOrigins);
+        assertEquals(TravelMatrix.UNREACHABLE, matrix.durations[0][0]);
+        assertEquals(TravelMatrix.UNREACHABLE, matrix.prices[0][0], 0.0);
+        assertTrue(matrix.durations[1][0] >= 0);
+    }
+
+    private static void assertBogusParameter(TravelMatrix matrix) {
+        assertNotNull(matrix.error);
+        assertEquals(Message.BOGUS_PARAMETER.getId(), matrix.error.getId());
+        assertNull(matrix.durations);
+        assertNull(matrix.prices);
+    }
+
+    private static Graph buildGraph() {
+        Graph graph = FakeGraph.buildGraphNoTransit();
+        graph.index(new DefaultStreetVertexIndexFactory());
+        return graph;
+    }
+
+    private static void registerGraph(String routerId, Graph graph) {
+        otpServer.getGraphService().registerGraph(routerId, new MemoryGraphSource(routerId, graph));
+    }
+
+    private static TravelMatrix planMatrix(List<String> origins, List<String> destinations, Integer maxTravelTimeSec) {
+        return planMatrix("A", "WALK", false, origins, destinations, maxTravelTimeSec);
+    }
+
+    private static TravelMatrix planMatrix(String routerId, String modes, boolean rentingAllowed, List<String> origins,
+                                           List<String> destinations, Integer maxTravelTimeSec) {
+        // The query parameters are injected by JAX-RS into protected fields
+        PlannerMatrixResource resource = new PlannerMatrixResource() {
+            {
+                this.otpServer = PlannerMatrixResourceTest.otpServer;
+                this.routerId = routerId;
+                this.modes = new QualifiedModeSet(modes);
+                if (rentingAllowed) {
+                    this.startingMode = TraverseMode.WALK;
+                    this.rentingAllowed = true;
+                    // JAX-RS injects empty sets for missing vehicle filters
+                    this.fuelTypesAllowed = Collections.emptySet();
+                    this.gearboxesAllowed = Collections.emptySet();
+                    this.providersAllowed = Collections.emptySet();
+                    this.providersDisallowed = Collections.emptySet();
+                    this.vehicleTypesAllowed = Collections.emptySet();
+                }
+                this.origins = origins;
+                this.destinations = destinations;
+                this.maxTravelTimeSec = maxTravelTimeSec;
+            }
+        };
+        return resource.planMatrix();
+    }
+}
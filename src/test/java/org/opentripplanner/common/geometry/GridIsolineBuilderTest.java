@@ -0,0 +1,136 @@
+package org.opentripplanner.common.geometry;
+
+import junit.framework.TestCase;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.Polygon;
+import org.opentripplanner.analyst.request.SampleGridRenderer.WTWD;
+import org.opentripplanner.analyst.request.SampleGridRenderer.WTWDAccumulativeMetric;
+
+import java.util.Random;
+
+public class GridIsolineBuilderTest extends TestCase {
+
+    private static final double LAT = 45.0;
+
+    private static final double LON = 5.0;
+
+    private static final double GRID_SIZE_METERS = 100;
+
+    private static final double OFF_ROAD_DISTANCE_METERS = 150;
+
+    private static final double OFF_ROAD_SPEED = 1.0;
+
+    private final double cosLat = Math.cos(Math.toRadians(LAT));
+
+    private final double dY = Math.toDegrees(GRID_SIZE_METERS / SphericalDistanceLibrary.RADIUS_OF_EARTH_IN_M);
+
+    private final double dX = dY / cosLat;
+
+    private final Coordinate center = new Coordinate(LON, LAT);
+
+    /**
+     * Samples reached at 2 m/s from the center, within 3 km except in a ring from 1 to 1.5 km.
+     */
+    private Coordinate[] samplePoints() {
+        Random random = new Random(42);
+        Coordinate[] points = new Coordinate[20000];
+        int n = 0;
+        while (n < points.length) {
+            double r = 3000 * Math.sqrt(random.nextDouble());
+            double theta = 2 * Math.PI * random.nextDouble();
+            if (r > 1000 && r < 1500)
+                continue;
+            double x = Math.toDegrees(r * Math.cos(theta) / SphericalDistanceLibrary.RADIUS_OF_EARTH_IN_M) / cosLat;
+            double y = Math.toDegrees(r * Math.sin(theta) / SphericalDistanceLibrary.RADIUS_OF_EARTH_IN_M);
+            points[n] = new Coordinate(LON + x, LAT + y);
+            points[n].z = r / 2;
+            n++;
+        }
+        return points;
+    }
+
+    private TimeDistanceGrid timeDistanceGrid(Coordinate[] points) {
+        ParallelGridSampler sampler = new ParallelGridSampler(center, dX, dY, cosLat, GRID_SIZE_METERS,
+                OFF_ROAD_DISTANCE_METERS, OFF_ROAD_SPEED);
+        for (Coordinate point : points) {
+            sampler.addSamplingPoint(point, point.z);
+        }
+        return sampler.close();
+    }
+
+    private Geometry delaunayIsoline(Coordinate[] points, int cutoffSec) {
+        SparseMatrixZSampleGrid<WTWD> sampleGrid = new SparseMatrixZSampleGrid<WTWD>(16, points.length, dX, dY,
+                center);
+        AccumulativeGridSampler<WTWD> sampler = new AccumulativeGridSampler<WTWD>(sampleGrid,
+                new WTWDAccumulativeMetric(cosLat, OFF_ROAD_DISTANCE_METERS, OFF_ROAD_SPEED, GRID_SIZE_METERS));
+        for (Coordinate point : points) {
+            WTWD z = new WTWD();
+            z.w = 1.0;
+            z.wTime = point.z;
+            sampler.addSamplingPoint(point, z, OFF_ROAD_SPEED);
+        }
+        sampler.close();
+        DelaunayIsolineBuilder<WTWD> builder = new DelaunayIsolineBuilder<WTWD>(sampleGrid.delaunayTriangulate(),
+                new WTWD.IsolineMetric());
+        WTWD z0 = new WTWD();
+        z0.w = 1.0;
+        z0.wTime = cutoffSec;
+        z0.d = OFF_ROAD_DISTANCE_METERS;
+        return builder.computeIsoline(z0);
+    }
+
+    public void testSampling() {
+        TimeDistanceGrid grid = timeDistanceGrid(samplePoints());
+
+        // The sample at the center of the grid
+        int x = -grid.xMin;
+        int y = -grid.yMin;
+        assertTrue(grid.getTime(x, y) < 200);
+        assertTrue(grid.getDistance(x, y) < GRID_SIZE_METERS);
+        // Closed all around
+        assertEquals(TimeDistanceGrid.UNREACHED, grid.getTime(0, 0));
+        assertEquals(TimeDistanceGrid.UNREACHED, grid.getTime(grid.width - 1, grid.height - 1));
+    }
+
+    public void testSameIsolinesAsDelaunay() {
+        Coordinate[] points = samplePoints();
+        GridIsolineBuilder builder = new GridIsolineBuilder(timeDistanceGrid(points));
+
+        for (int cutoffSec : new int[] { 400, 1000, 2000 }) {
+            Geometry isoline = builder.computeIsoline(cutoffSec, OFF_ROAD_DISTANCE_METERS);
+            Geometry expected = delaunayIsoline(points, cutoffSec);
+
+            assertEquals(expected.getNumGeometries(), isoline.getNumGeometries());
+            assertEquals(countHoles(expected), countHoles(isoline));
+            assertEquals(expected.getArea(), isoline.getArea(), expected.getArea() * 0.02);
+        }
+    }
+
+    public void testHole() {
+        GridIsolineBuilder builder = new GridIsolineBuilder(timeDistanceGrid(samplePoints()));
+
+        Geometry isoline = builder.computeIsoline(1000, OFF_ROAD_DISTANCE_METERS);
+
+        // The center, and the outer ring with a hole where nothing is reached
+        assertEquals(2, isoline.getNumGeometries());
+        assertEquals(1, countHoles(isoline));
+    }
+
+    private static int countHoles(Geometry isoline) {
+        int holes = 0;
+        for (int i = 0; i < isoline.getNumGeometries(); i++) {
+            holes += ((Polygon) isoline.getGeometryN(i)).getNumInteriorRing();
+        }
+        return holes;
+    }
+
+    public void testEmptyGrid() {
+        ParallelGridSampler sampler = new ParallelGridSampler(center, dX, dY, cosLat, GRID_SIZE_METERS,
+                OFF_ROAD_DISTANCE_METERS, OFF_ROAD_SPEED);
+
+        Geometry isoline = new GridIsolineBuilder(sampler.close()).computeIsoline(1000, OFF_ROAD_DISTANCE_METERS);
+
+        assertTrue(isoline.isEmpty());
+    }
+}
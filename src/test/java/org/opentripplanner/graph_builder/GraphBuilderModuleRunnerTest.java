@@ -0,0 +1,186 @@
+package org.opentripplanner.graph_builder;
+
+import org.junit.Test;
+import org.opentripplanner.graph_builder.module.GtfsModule;
+import org.opentripplanner.graph_builder.module.PruneFloatingIslands;
+import org.opentripplanner.graph_builder.services.GraphBuilderModule;
+import org.opentripplanner.routing.graph.Graph;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class GraphBuilderModuleRunnerTest {
+
+    private final List<String> finished = new CopyOnWriteArrayList<>();
+
+    @Test
+    public void testDependencies() {
+        GraphBuilderModuleRunner runner = new GraphBuilderModuleRunner(Arrays.asList(
+                module("osm", list("streets"), list()),
+                module("gtfs", list("transit"), list()),
+                module("linker", list("streets", "linking"), list("streets", "transit")),
+                module("elevation", list("elevation"), list("streets")),
+                module("tickets", list("tickets"), list()),
+                module("undeclared", null, null),
+                module("config", list("config"), list())
+        ));
+
+        assertEquals(set(), runner.getDependencies(0));
+        // Transit does not depend on the streets
+        assertEquals(set(), runner.getDependencies(1));
+        assertEquals(set(0, 1), runner.getDependencies(2));
+        // Elevation reads the streets, modified by both modules before it
+        assertEquals(set(0, 2), runner.getDependencies(3));
+        assertEquals(set(), runner.getDependencies(4));
+        assertEquals(set(0, 1, 2, 3, 4), runner.getDependencies(5));
+        assertEquals(set(5), runner.getDependencies(6));
+    }
+
+    @Test
+    public void testWriteAfterRead() {
+        GraphBuilderModuleRunner runner = new GraphBuilderModuleRunner(Arrays.asList(
+                module("transfers", list("transfers"), list("streets")),
+                module("splitter", list("streets"), list())
+        ));
+
+        // The streets must not be modified while they are read
+        assertEquals(set(0), runner.getDependencies(1));
+    }
+
+    @Test
+    public void testPruningWaitsForTransit() {
+        GraphBuilderModuleRunner runner = new GraphBuilderModuleRunner(Arrays.asList(
+                new GtfsModule(Collections.emptyList()),
+                module("osm", list("streets"), list()),
+                new PruneFloatingIslands()
+        ));
+
+        // Pruning removes the stops which GTFS loading did not connect yet
+        assertEquals(set(0, 1), runner.getDependencies(2));
+    }
+
+    @Test
+    public void testIndependentModulesRunConcurrently() {
+        CountDownLatch bothStarted = new CountDownLatch(2);
+        GraphBuilderModule osm = new TestModule("osm", list("streets"), list()) {
+            @Override
+            public void buildGraph(Graph graph, HashMap<Class<?>, Object> extra) {
+                awaitOther(bothStarted);
+                super.buildGraph(graph, extra);
+            }
+        };
+        GraphBuilderModule gtfs = new TestModule("gtfs", list("transit"), list()) {
+            @Override
+            public void buildGraph(Graph graph, HashMap<Class<?>, Object> extra) {
+                awaitOther(bothStarted);
+                super.buildGraph(graph, extra);
+            }
+        };
+        GraphBuilderModule linker = module("linker", list("streets"), list("streets", "transit"));
+
+        new GraphBuilderModuleRunner(Arrays.asList(osm, gtfs, linker))
+                .runInParallel(new Graph(), new HashMap<>(), 4);
+
+        assertEquals(3, finished.size());
+        assertEquals("linker", finished.get(2));
+    }
+
+    @Test
+    public void testSequentialOrder() {
+        new GraphBuilderModuleRunner(Arrays.asList(
+                module("gtfs", list("transit"), list()),
+                module("osm", list("streets"), list()),
+                module("undeclared", null, null)
+        )).runSequentially(new Graph(), new HashMap<>());
+
+        assertEquals(Arrays.asList("gtfs", "osm", "undeclared"), finished);
+    }
+
+    @Test
+    public void testFailure() {
+        GraphBuilderModule failing = new TestModule("failing", list("transit"), list()) {
+            @Override
+            public void buildGraph(Graph graph, HashMap<Class<?>, Object> extra) {
+                throw new IllegalStateException("bad feed");
+            }
+        };
+        try {
+            new GraphBuilderModuleRunner(Arrays.asList(
+                    module("osm", list("streets"), list()),
+                    failing,
+                    module("linker", list("streets"), list("streets", "transit"))
+            )).runInParallel(new Graph(), new HashMap<>(), 2);
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("bad feed", e.getMessage());
+        }
+        // Modules depending on the failed one are not run
+        assertEquals(Collections.singletonList("osm"), finished);
+    }
+
+    private static void awaitOther(CountDownLatch bothStarted) {
+        bothStarted.countDown();
+        try {
+            assertTrue("The modules did not run concurrently", bothStarted.await(10, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private GraphBuilderModule module(String name, List<String> provides, List<String> prerequisites) {
+        return new TestModule(name, provides, prerequisites);
+    }
+
+    private static List<String> list(String... stages) {
+        return Arrays.asList(stages);
+    }
+
+    private static Set<Integer> set(Integer... modules) {
+        return new TreeSet<>(Arrays.asList(modules));
+    }
+
+    private class TestModule implements GraphBuilderModule {
+
+        private final String name;
+
+        private final List<String> provides;
+
+        private final List<String> prerequisites;
+
+        private TestModule(String name, List<String> provides, List<String> prerequisites) {
+            this.name = name;
+            this.provides = provides;
+            this.prerequisites = prerequisites;
+        }
+
+        @Override
+        public void buildGraph(Graph graph, HashMap<Class<?>, Object> extra) {
+            finished.add(name);
+        }
+
+        @Override
+        public void checkInputs() {
+        }
+
+        @Override
+        public List<String> provides() {
+            return provides;
+        }
+
+        @Override
+        public List<String> getPrerequisites() {
+            return prerequisites;
+        }
+    }
+}
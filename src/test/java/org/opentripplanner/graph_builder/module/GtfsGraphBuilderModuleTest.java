@@ -4,8 +4,12 @@ import static org.junit.Assert.assertEquals;
 
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
 
 import com.beust.jcommander.internal.Lists;
 import org.junit.Test;
@@ -16,7 +20,9 @@ import org.opentripplanner.gtfs.MockGtfs;
 import org.opentripplanner.graph_builder.model.GtfsBundle;
 import org.opentripplanner.gtfs.BikeAccess;
 import org.opentripplanner.routing.edgetype.TripPattern;
+import org.opentripplanner.routing.graph.Edge;
 import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.graph.Vertex;
 import org.opentripplanner.routing.impl.DefaultStreetVertexIndexFactory;
 
 public class GtfsGraphBuilderModuleTest {
@@ -83,6 +89,88 @@ public class GtfsGraphBuilderModuleTest {
                 BikeAccess.fromTrip(withId(trips, new FeedScopedId(feedId.getId(), "t1"))));
     }
 
+    @Test
+    public void testMultipleFeeds() throws IOException {
+        List<GtfsBundle> bundleList = Lists.newArrayList();
+        for (int i = 0; i < 3; i++) {
+            GtfsBundle bundle = getGtfsAsBundleList(getSimpleGtfs()).get(0);
+            bundle.setFeedId(new GtfsFeedId.Builder().id("FEED" + i).build());
+            bundleList.add(bundle);
+        }
+        builder = new GtfsModule(bundleList);
+
+        Graph graph = new Graph();
+        builder.buildGraph(graph, _extra);
+        graph.index(new DefaultStreetVertexIndexFactory());
+
+        // The feeds are read in parallel, but each of them has its own trips, patterns and stops
+        for (int i = 0; i < 3; i++) {
+            Trip trip = graph.index.tripForId.get(new FeedScopedId("FEED" + i, "t0"));
+            TripPattern pattern = graph.index.patternForTrip.get(trip);
+            assertEquals(1, pattern.getTrips().size());
+            assertEquals("FEED" + i, pattern.getStop(0).getId().getAgencyId());
+        }
+    }
+
+    @Test
+    public void testParallelLoadingBuildsSameGraph() throws IOException {
+        Graph serial = buildFeeds(1);
+        Graph parallel = buildFeeds(3);
+
+        assertEquals(patternTrips(serial), patternTrips(parallel));
+        assertEquals(vertexLabels(serial), vertexLabels(parallel));
+        assertEquals(edgeDescriptions(serial), edgeDescriptions(parallel));
+    }
+
+    /** @return a graph of three different feeds, read by the given number of threads */
+    private Graph buildFeeds(int loaderThreads) throws IOException {
+        List<GtfsBundle> bundleList = Lists.newArrayList();
+        for (int i = 0; i < 3; i++) {
+            MockGtfs gtfs = MockGtfs.create();
+            gtfs.putAgencies(1);
+            gtfs.putRoutes(1);
+            gtfs.putStops(i + 2);
+            gtfs.putCalendars(1);
+            gtfs.putTrips(2, "r0", "sid0");
+            gtfs.putStopTimes("t0,t1", i == 0 ? "s0,s1" : i == 1 ? "s0,s1,s2" : "s3,s2,s1,s0");
+            GtfsBundle bundle = getGtfsAsBundleList(gtfs).get(0);
+            bundle.setFeedId(new GtfsFeedId.Builder().id("FEED" + i).build());
+            bundleList.add(bundle);
+        }
+        builder = new GtfsModule(bundleList);
+        builder.setLoaderThreads(loaderThreads);
+
+        Graph graph = new Graph();
+        builder.buildGraph(graph, _extra);
+        graph.index(new DefaultStreetVertexIndexFactory());
+        return graph;
+    }
+
+    private static Map<String, List<FeedScopedId>> patternTrips(Graph graph) {
+        Map<String, List<FeedScopedId>> trips = new TreeMap<>();
+        for (TripPattern pattern : graph.index.patternForId.values()) {
+            trips.put(pattern.code, pattern.getTrips().stream().map(Trip::getId).collect(Collectors.toList()));
+        }
+        return trips;
+    }
+
+    /** @return the labels of the vertices in the order in which they were created */
+    private static List<String> vertexLabels(Graph graph) {
+        return graph.getVertices().stream()
+                .sorted(Comparator.comparingInt(Vertex::getIndex))
+                .map(Vertex::getLabel)
+                .collect(Collectors.toList());
+    }
+
+    /** @return the edges in the order in which they were created */
+    private static List<String> edgeDescriptions(Graph graph) {
+        return graph.getEdges().stream()
+                .sorted(Comparator.comparingInt(Edge::getId))
+                .map(e -> e.getClass().getSimpleName() + " " + e.getFromVertex().getLabel() + " "
+                        + e.getToVertex().getLabel())
+                .collect(Collectors.toList());
+    }
+
     private MockGtfs getSimpleGtfs() throws IOException {
         MockGtfs gtfs = MockGtfs.create();
         gtfs.putAgencies(1);
@@ -53,6 +53,26 @@ public class OpenStreetMapParserTest {
         testParser(map);
     }
 
+    @Test
+    public void testSerialBinaryParser() throws Exception {
+        BinaryFileBasedOpenStreetMapProviderImpl pr = new BinaryFileBasedOpenStreetMapProviderImpl();
+        pr.setDecodingThreads(1);
+        OSMMap map = new OSMMap();
+        pr.setPath(new File(URLDecoder.decode(getClass().getResource("map.osm.pbf").getPath(), "UTF-8")));
+        pr.readOSM(map);
+        testParser(map);
+    }
+
+    @Test
+    public void testParallelBinaryParser() throws Exception {
+        BinaryFileBasedOpenStreetMapProviderImpl pr = new BinaryFileBasedOpenStreetMapProviderImpl();
+        pr.setDecodingThreads(4);
+        OSMMap map = new OSMMap();
+        pr.setPath(new File(URLDecoder.decode(getClass().getResource("map.osm.pbf").getPath(), "UTF-8")));
+        pr.readOSM(map);
+        testParser(map);
+    }
+
     @Test
     public void testXMLParser() throws Exception {
         FileBasedOpenStreetMapProviderImpl pr = new FileBasedOpenStreetMapProviderImpl();
@@ -5,14 +5,13 @@ import org.junit.Test;
 import org.opentripplanner.common.geometry.GeometryUtils;
 import org.opentripplanner.routing.edgetype.StreetEdge;
 import org.opentripplanner.routing.edgetype.StreetTraversalPermission;
-import org.opentripplanner.routing.edgetype.rentedgetype.DropoffVehicleEdge;
-import org.opentripplanner.routing.graph.Edge;
 import org.opentripplanner.routing.graph.Graph;
 import org.opentripplanner.routing.vertextype.IntersectionVertex;
 import org.opentripplanner.routing.vertextype.StreetVertex;
 
 import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 
 public class VehicleSharingBuilderModuleTest {
 
@@ -36,22 +35,27 @@ public class VehicleSharingBuilderModuleTest {
     }
 
     @Test
-    public void shouldAddDropoffEdgesOnlyForVerticesConnectedToGraph() {
+    public void shouldAllowDropoffOnlyInVerticesConnectedToGraph() {
         // when
         builderModuleWithoutParkingZones.buildGraph(graph, null);
 
         // then
-        assertEquals(2, v1.getOutgoing().size());
-        assertEquals(2, v1.getIncoming().size());
-        Edge dropoffEdge1 = v1.getOutgoing().stream().filter(DropoffVehicleEdge.class::isInstance).findFirst().get();
-        assertTrue(v1.getIncoming().contains(dropoffEdge1));
-
-        assertEquals(2, v2.getOutgoing().size());
-        assertEquals(2, v2.getIncoming().size());
-        Edge dropoffEdge2 = v2.getOutgoing().stream().filter(DropoffVehicleEdge.class::isInstance).findFirst().get();
-        assertTrue(v2.getIncoming().contains(dropoffEdge2));
-
-        assertTrue(v3.getOutgoing().isEmpty());
-        assertTrue(v3.getIncoming().isEmpty());
+        assertNotNull(graph.vehicleDropoffIndex);
+        assertNotNull(graph.vehicleDropoffIndex.getParkingZones(v1));
+        assertNotNull(graph.vehicleDropoffIndex.getParkingZones(v2));
+        assertNull(graph.vehicleDropoffIndex.getParkingZones(v3));
+        assertEquals(1, graph.vehicleDropoffIndex.getDistinctParkingZonesCount());
+    }
+
+    @Test
+    public void shouldNotAddDropoffEdgesToGraph() {
+        // when
+        builderModuleWithoutParkingZones.buildGraph(graph, null);
+
+        // then
+        assertEquals(1, v1.getOutgoing().size());
+        assertEquals(1, v1.getIncoming().size());
+        assertEquals(1, v2.getOutgoing().size());
+        assertEquals(1, v2.getIncoming().size());
     }
 }
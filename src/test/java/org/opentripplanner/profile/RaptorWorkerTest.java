@@ -0,0 +1,67 @@
+package org.opentripplanner.profile;
+
+import gnu.trove.map.TIntIntMap;
+import org.joda.time.LocalDate;
+import org.junit.Test;
+import org.opentripplanner.analyst.cluster.TaskStatistics;
+import org.opentripplanner.api.parameter.QualifiedModeSet;
+import org.opentripplanner.routing.core.TraverseModeSet;
+import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.impl.DefaultStreetVertexIndexFactory;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.opentripplanner.graph_builder.module.FakeGraph.addRegularStopGrid;
+import static org.opentripplanner.graph_builder.module.FakeGraph.addTransitMultipleLines;
+import static org.opentripplanner.graph_builder.module.FakeGraph.buildGraphNoTransit;
+import static org.opentripplanner.graph_builder.module.FakeGraph.link;
+
+public class RaptorWorkerTest {
+
+    /**
+     * Searching chunks of departure minutes in parallel restarts range-raptor at each chunk, which must not change
+     * the travel times found for any minute.
+     */
+    @Test
+    public void testParallelMinutesGiveSameResults() throws Exception {
+        Graph graph = buildGraphNoTransit();
+        addRegularStopGrid(graph);
+        addTransitMultipleLines(graph);
+        link(graph);
+        graph.index(new DefaultStreetVertexIndexFactory());
+
+        ProfileRequest request = new ProfileRequest();
+        request.fromLon = request.toLon = -83.0118;
+        request.fromLat = request.toLat = 39.9908;
+        request.date = new LocalDate(2015, 9, 17);
+        request.walkSpeed = 1.3f;
+        request.fromTime = 7 * 3600;
+        request.toTime = 8 * 3600;
+        request.transitModes = new TraverseModeSet("TRANSIT");
+        request.accessModes = request.egressModes = request.directModes = new QualifiedModeSet("WALK");
+        // Monte Carlo draws are random, boarding frequency vehicles in the worst case is not
+        request.boardingAssumption = RaptorWorkerTimetable.BoardingAssumption.WORST_CASE;
+
+        RaptorWorkerData data = RepeatedRaptorProfileRouter.getRaptorWorkerData(request, graph, null,
+                new TaskStatistics());
+        TIntIntMap accessTimes = new RepeatedRaptorProfileRouter(graph, request).findInitialStops(false, data);
+        assertFalse(accessTimes.isEmpty());
+        int[] nonTransitTimes = new int[data.nTargets];
+        Arrays.fill(nonTransitTimes, RaptorWorker.UNREACHED);
+
+        request.parallelism = 1;
+        PropagatedTimesStore serial = new RaptorWorker(data, request)
+                .runRaptor(graph, accessTimes, nonTransitTimes, new TaskStatistics());
+        request.parallelism = 4;
+        PropagatedTimesStore parallel = new RaptorWorker(data, request)
+                .runRaptor(graph, accessTimes, nonTransitTimes, new TaskStatistics());
+
+        assertTrue(serial.countTargetsReached() > 0);
+        assertArrayEquals(serial.mins, parallel.mins);
+        assertArrayEquals(serial.avgs, parallel.avgs);
+        assertArrayEquals(serial.maxs, parallel.maxs);
+    }
+}
@@ -103,6 +103,25 @@ public class AStarTest {
         assertEquals("leary_20th", states.get(6).getVertex().getLabel());
     }
 
+    @Test
+    public void testWeightUpperBound() {
+        RoutingRequest options = new RoutingRequest();
+        options.walkSpeed = 1.0;
+        options.setRoutingContext(graph, graph.getVertex("56th_24th"), graph.getVertex("leary_20th"));
+        AStar aStar = new AStar();
+        aStar.getShortestPathTree(options);
+        double bestWeight = aStar.getPathsToTarget().get(0).getWeight();
+
+        aStar.setWeightUpperBound(bestWeight + 1);
+        aStar.getShortestPathTree(options);
+        assertEquals(bestWeight, aStar.getPathsToTarget().get(0).getWeight(), 0.0);
+
+        aStar.setWeightUpperBound(bestWeight / 2);
+        aStar.getShortestPathTree(options);
+        assertTrue(aStar.getPathsToTarget().isEmpty());
+        assertTrue(aStar.getPrunedStatesCount() > 0);
+    }
+
     @Test
     public void testBack() {
 
@@ -0,0 +1,63 @@
+package org.opentripplanner.routing.algorithm;
+
+import org.junit.After;
+import org.junit.Test;
+import org.opentripplanner.common.pqueue.BinHeap;
+import org.opentripplanner.routing.core.RoutingRequest;
+import org.opentripplanner.routing.core.State;
+import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.graph.Vertex;
+import org.opentripplanner.routing.spt.ShortestPathTree;
+import org.opentripplanner.routing.vertextype.IntersectionVertex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SearchWorkspaceTest {
+
+    private SearchWorkspace workspace = SearchWorkspace.acquire();
+
+    @After
+    public void tearDown() {
+        workspace.release();
+    }
+
+    @Test
+    public void shouldReuseWorkspaceOfThreadOnlyAfterItIsReleased() {
+        // when
+        SearchWorkspace nested = SearchWorkspace.acquire();
+        nested.release();
+        workspace.release();
+        SearchWorkspace next = SearchWorkspace.acquire();
+
+        // then
+        assertNotSame(workspace, nested);
+        assertSame(workspace, next);
+    }
+
+    @Test
+    public void shouldReturnEmptyQueueAndTreeForEachSearch() {
+        // given
+        Graph graph = new Graph();
+        Vertex vertex = new IntersectionVertex(graph, "v", 0, 0);
+        RoutingRequest request = new RoutingRequest();
+        request.setRoutingContext(graph, vertex, vertex);
+        State state = new State(request);
+
+        BinHeap<State> queue = workspace.newQueue();
+        queue.insert(state, 0);
+        ShortestPathTree spt = workspace.newShortestPathTree(request);
+        spt.add(state);
+
+        // when
+        BinHeap<State> nextQueue = workspace.newQueue();
+        ShortestPathTree nextSpt = workspace.newShortestPathTree(request);
+
+        // then
+        assertSame(queue, nextQueue);
+        assertTrue(nextQueue.empty());
+        assertEquals(0, nextSpt.getVertexCount());
+    }
+}
@@ -0,0 +1,64 @@
+package org.opentripplanner.routing.algorithm.strategies;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.graph.Vertex;
+import org.opentripplanner.routing.vertextype.IntersectionVertex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class InterleavedBidirectionalHeuristicTest {
+
+    private Graph graph;
+    private Vertex v1, v2;
+
+    @Before
+    public void setUp() {
+        graph = new Graph();
+        v1 = new IntersectionVertex(graph, "v1", 0, 0);
+        v2 = new IntersectionVertex(graph, "v2", 0, 1);
+        graph.rebuildVertexAndEdgeIndices();
+    }
+
+    @Test
+    public void shouldSizeTablesForPermanentVertices() {
+        // when
+        new IntersectionVertex(null, "temporary", 0, 2);
+
+        // then
+        assertEquals(v2.getIndex() + 1, graph.getVertexIndexLimit());
+        assertTrue(Vertex.getMaxIndex() > graph.getVertexIndexLimit());
+    }
+
+    @Test
+    public void shouldReuseTablesAfterTemporaryVerticesWereCreated() {
+        // given
+        InterleavedBidirectionalHeuristic.Tables tables = InterleavedBidirectionalHeuristic.Tables.acquire(graph);
+        tables.preTransitVertices.set(v1, 0, 10);
+        int capacity = tables.preTransitVertices.capacity();
+        InterleavedBidirectionalHeuristic.Tables.release(tables);
+
+        // when
+        Vertex temporary = null;
+        for (int i = 0; i < 1000; i++) {
+            // not added to the graph, like the vertices linking a request
+            temporary = new IntersectionVertex(null, "temporary" + i, 0, 2);
+        }
+        InterleavedBidirectionalHeuristic.Tables reused = InterleavedBidirectionalHeuristic.Tables.acquire(graph);
+        reused.preTransitVertices.set(temporary, 0, 20);
+
+        // then
+        assertSame(tables, reused);
+        assertEquals(capacity, reused.preTransitVertices.capacity());
+        assertEquals(capacity, reused.postTransitVertices.capacity());
+        assertEquals(capacity, reused.transitVertexWeights.capacity());
+        assertTrue(capacity <= temporary.getIndex());
+        assertFalse(reused.preTransitVertices.contains(v1));
+        assertEquals(20, reused.preTransitVertices.get(temporary, 0), 0);
+        InterleavedBidirectionalHeuristic.Tables.release(reused);
+    }
+}
@@ -0,0 +1,104 @@
+package org.opentripplanner.routing.algorithm.strategies;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.graph.Vertex;
+import org.opentripplanner.routing.vertextype.IntersectionVertex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class VertexWeightTableTest {
+
+    private Graph graph;
+    private Vertex v1, v2;
+    private VertexWeightTable table;
+
+    @Before
+    public void setUp() {
+        graph = new Graph();
+        v1 = new IntersectionVertex(graph, "v1", 0, 0);
+        v2 = new IntersectionVertex(graph, "v2", 0, 1);
+        table = new VertexWeightTable(2, Vertex.getMaxIndex());
+    }
+
+    @Test
+    public void shouldReturnInfinityForVerticesNeverSet() {
+        // when
+        table.setMin(v1, 0, 10);
+
+        // then
+        assertTrue(table.contains(v1));
+        assertFalse(table.contains(v2));
+        assertEquals(10, table.get(v1, 0), 0);
+        assertEquals(Double.POSITIVE_INFINITY, table.get(v1, 1), 0);
+        assertEquals(Double.POSITIVE_INFINITY, table.get(v2, 0), 0);
+        assertEquals(1, table.size());
+    }
+
+    @Test
+    public void shouldKeepMinimumWeight() {
+        // when
+        table.setMin(v1, 0, 10);
+        table.setMin(v1, 0, 20);
+        table.setMin(v1, 0, 5);
+        table.setMin(v1, 0, 7);
+
+        // then
+        assertEquals(5, table.get(v1, 0), 0);
+        assertEquals(1, table.size());
+    }
+
+    @Test
+    public void shouldStoreLowerBoundOfWeight() {
+        // given
+        double weight = 1234.56789012345;
+
+        // when
+        table.set(v1, 0, weight);
+
+        // then
+        assertTrue(table.get(v1, 0) <= weight);
+        assertEquals(weight, table.get(v1, 0), 0.001);
+    }
+
+    @Test
+    public void shouldForgetAllVerticesWhenCleared() {
+        // given
+        table.set(v1, 0, 10);
+        table.set(v2, 1, 20);
+
+        // when
+        table.clear();
+
+        // then
+        assertFalse(table.contains(v1));
+        assertFalse(table.contains(v2));
+        assertEquals(Double.POSITIVE_INFINITY, table.get(v1, 0), 0);
+        assertEquals(Double.POSITIVE_INFINITY, table.get(v2, 1), 0);
+        assertEquals(0, table.size());
+    }
+
+    @Test
+    public void shouldStoreVerticesCreatedAfterTableWasAllocated() {
+        // given
+        Vertex v3 = new IntersectionVertex(graph, "v3", 1, 1);
+
+        // when
+        table.setMin(v3, 1, 30);
+
+        // then
+        assertTrue(v3.getIndex() >= table.capacity());
+        assertTrue(table.contains(v3));
+        assertEquals(30, table.get(v3, 1), 0);
+        assertEquals(Double.POSITIVE_INFINITY, table.get(v3, 0), 0);
+
+        // when
+        table.clear();
+
+        // then
+        assertFalse(table.contains(v3));
+    }
+}
@@ -73,9 +73,28 @@ public class RoutingContextDestroyTest {
         // And When:
         subject.destroy();
 
-        // Then - permanent vertexes
+        // Then - permanent vertexes does not reference the any temporary nodes any more
+        assertPermanentVertexesAreNotReferencingTemporaryElements();
+    }
+
+    @Test public void temporaryChangesOnlySeenByTheirContext() {
+        // Given - A request
+        RoutingRequest request = new RoutingRequest();
+        request.from = from;
+        request.to = to;
+
+        // When - the context is created
+        subject = new RoutingContext(request, g);
+
+        // Then - the permanent vertexes do not reference any temporary nodes
+        assertPermanentVertexesAreNotReferencingTemporaryElements();
+
+        // But - the context links them to the origin and destination
+        originAndDestinationInsertedCorrect();
+    }
+
+    private void assertPermanentVertexesAreNotReferencingTemporaryElements() {
         for (Vertex v : permanentVertexes) {
-            // - does not reference the any temporary nodes any more
             for (Edge e : v.getIncoming()) {
                 assertVertexEdgeIsNotReferencingTemporaryElements(v, e, e.getFromVertex());
             }
@@ -122,17 +141,17 @@ public class RoutingContextDestroyTest {
         new StreetEdge(v0, v1, geom, name, dist, StreetTraversalPermission.ALL, false);
     }
 
-    private static <T extends Collection<String>> T findAllReachableVertexes(Vertex vertex,
+    private <T extends Collection<String>> T findAllReachableVertexes(Vertex vertex,
             boolean forward, T list) {
         if (list.contains(vertex.getName()))
             return list;
 
         list.add(vertex.getName());
         if (forward) {
-            vertex.getOutgoing()
+            subject.getOutgoing(vertex)
                     .forEach(it -> findAllReachableVertexes(it.getToVertex(), forward, list));
         } else {
-            vertex.getIncoming()
+            subject.getIncoming(vertex)
                     .forEach(it -> findAllReachableVertexes(it.getFromVertex(), forward, list));
         }
         return list;
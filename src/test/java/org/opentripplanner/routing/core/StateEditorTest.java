@@ -326,4 +326,30 @@ public class StateEditorTest {
         assertEquals(0, next.distanceTraversedInCurrentVehicle, DELTA);
         assertEquals(state.time + request.routingDelays.getDropoffTime(CAR_1) * 1000, next.time);
     }
+
+    @Test
+    public void shouldNotModifyTraversalStatisticsOfParentState() {
+        // given
+        StateEditor stateEditor = rentingState.edit(rentVehicleEdge);
+
+        // when
+        stateEditor.incrementDistanceTraversedInMode(100.0);
+        stateEditor.incrementTimeTraversedInMode(10);
+        State next = stateEditor.makeState();
+
+        // then
+        assertEquals(100, next.createDistanceTraversedInModeMap().get(TraverseMode.CAR), DELTA);
+        assertEquals(10, next.createTimeTraversedInModeMap().get(TraverseMode.CAR).intValue());
+        assertTrue(rentingState.createDistanceTraversedInModeMap().isEmpty());
+        assertTrue(rentingState.createTimeTraversedInModeMap().isEmpty());
+    }
+
+    @Test
+    public void shouldShareTraversalStatisticsWithParentStateUntilModified() {
+        // when
+        State next = rentingState.edit(rentVehicleEdge).makeState();
+
+        // then
+        assertTrue(next.traversalStatistics == rentingState.traversalStatistics);
+    }
 }
@@ -53,4 +53,31 @@ public class VehicleValidatorTest {
         // then
         assertEquals(validator.getVehicleTypesAllowed(), of(VehicleType.MOTORBIKE));
     }
+
+    @Test
+    public void testValidatorsWithEqualFiltersAreEqual() {
+        // given
+        VehicleValidator validator1 = new VehicleValidator();
+        validator1.addFilter(new VehicleTypeFilter(of(VehicleType.CAR)));
+        validator1.addFilter(ProviderFilter.providersAllowedFilter(of("Provider")));
+        VehicleValidator validator2 = new VehicleValidator();
+        validator2.addFilter(new VehicleTypeFilter(of(VehicleType.CAR)));
+        validator2.addFilter(ProviderFilter.providersAllowedFilter(of("provider")));
+
+        // then
+        assertEquals(validator1, validator2);
+        assertEquals(validator1.hashCode(), validator2.hashCode());
+    }
+
+    @Test
+    public void testValidatorsWithDifferentFiltersAreNotEqual() {
+        // given
+        VehicleValidator validator1 = new VehicleValidator();
+        validator1.addFilter(ProviderFilter.providersAllowedFilter(of("provider")));
+        VehicleValidator validator2 = new VehicleValidator();
+        validator2.addFilter(ProviderFilter.providersDisallowedFilter(of("provider")));
+
+        // then
+        assertNotEquals(validator1, validator2);
+    }
 }
@@ -1,10 +1,13 @@
 package org.opentripplanner.routing.edgetype.rentedgetype;
 
 import org.junit.Test;
+import org.opentripplanner.routing.core.vehicle_sharing.CarDescription;
 import org.opentripplanner.routing.core.vehicle_sharing.KickScooterDescription;
 import org.opentripplanner.routing.core.vehicle_sharing.Provider;
 import org.opentripplanner.routing.core.vehicle_sharing.VehicleType;
 
+import java.util.Arrays;
+
 import static java.util.Collections.emptyList;
 import static java.util.Collections.singletonList;
 import static org.junit.Assert.assertFalse;
@@ -61,4 +64,17 @@ public class ParkingZoneInfoTest {
         // then
         assertFalse(parkingZoneInfo.canDropoffVehicleHere(KICKSCOOTER));
     }
+
+    @Test
+    public void shouldFindParkingZoneOfVehicleAmongManyProvidersAndVehicleTypes() {
+        // given
+        SingleParkingZone hopCityCar = new SingleParkingZone(1, VehicleType.CAR);
+        SingleParkingZone panekKickScooter = new SingleParkingZone(2, VehicleType.KICKSCOOTER);
+        ParkingZoneInfo parkingZoneInfo = new ParkingZoneInfo(Arrays.asList(PANEK_CAR, hopCityCar),
+                Arrays.asList(PANEK_CAR, hopCityCar, panekKickScooter, HOPCITY_KICKSCOOTER), emptyList());
+
+        // then
+        assertFalse(parkingZoneInfo.canDropoffVehicleHere(KICKSCOOTER));
+        assertTrue(parkingZoneInfo.canDropoffVehicleHere(new CarDescription("id", 1.0, 2.0, null, null, PROVIDER)));
+    }
 }
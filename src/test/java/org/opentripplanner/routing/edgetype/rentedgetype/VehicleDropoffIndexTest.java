@@ -0,0 +1,110 @@
+package org.opentripplanner.routing.edgetype.rentedgetype;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.opentripplanner.routing.core.vehicle_sharing.VehicleType;
+import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.graph.Vertex;
+import org.opentripplanner.routing.location.TemporaryStreetLocation;
+import org.opentripplanner.routing.vertextype.IntersectionVertex;
+import org.opentripplanner.util.NonLocalizedString;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class VehicleDropoffIndexTest {
+
+    private VehicleDropoffIndex index;
+
+    private IntersectionVertex v1, v2, v3, v4;
+
+    @Before
+    public void setUp() {
+        Graph graph = new Graph();
+        v1 = new IntersectionVertex(graph, "v1", 0, 0);
+        v2 = new IntersectionVertex(graph, "v2", 1, 1);
+        v3 = new IntersectionVertex(graph, "v3", 2, 2);
+        v4 = new IntersectionVertex(graph, "v4", 3, 3);
+        index = new VehicleDropoffIndex();
+    }
+
+    @Test
+    public void shouldStoreEqualParkingZonesOnce() {
+        // given
+        ParkingZoneInfo zones = new ParkingZoneInfo(emptyList(), emptyList(), singletonList(VehicleType.CAR));
+        ParkingZoneInfo equalZones = new ParkingZoneInfo(emptyList(), emptyList(), singletonList(VehicleType.CAR));
+        ParkingZoneInfo otherZones = new ParkingZoneInfo(emptyList(), emptyList(), emptyList());
+
+        // when
+        index.allowDropoff(v1, zones);
+        index.allowDropoff(v2, equalZones);
+        index.allowDropoff(v4, otherZones);
+
+        // then
+        assertEquals(2, index.getDistinctParkingZonesCount());
+        assertSame(zones, index.getParkingZones(v1));
+        assertSame(zones, index.getParkingZones(v2));
+        assertNull(index.getParkingZones(v3));
+        assertSame(otherZones, index.getParkingZones(v4));
+    }
+
+    @Test
+    public void shouldCreateDropoffEdgesWhichAreNotPartOfGraph() {
+        // given
+        index.allowDropoff(v1, new ParkingZoneInfo(emptyList(), emptyList(), emptyList()));
+
+        // when
+        DropoffVehicleEdge edge = index.getImplicitDropoffEdge(v1);
+
+        // then
+        assertNotNull(edge);
+        assertSame(v1, edge.getFromVertex());
+        assertSame(v1, edge.getToVertex());
+        assertTrue(v1.getOutgoing().isEmpty());
+        assertTrue(v1.getIncoming().isEmpty());
+        assertNull(index.getImplicitDropoffEdge(v2));
+    }
+
+    @Test
+    public void shouldNeverAllowDropoffAtTemporaryVertices() {
+        // given
+        TemporaryStreetLocation temporaryVertex = new TemporaryStreetLocation("temporary",
+                new Coordinate(4, 4), new NonLocalizedString("temporary"), false);
+
+        // when
+        index.allowDropoff(temporaryVertex, new ParkingZoneInfo(emptyList(), emptyList(), emptyList()));
+
+        // then
+        assertNull(index.getParkingZones(temporaryVertex));
+    }
+
+    @Test
+    public void shouldChangeParkingZonesOnlyInCopy() {
+        // given
+        ParkingZoneInfo zones = new ParkingZoneInfo(emptyList(), emptyList(), emptyList());
+        ParkingZoneInfo newZones = new ParkingZoneInfo(emptyList(), emptyList(), singletonList(VehicleType.CAR));
+        index.allowDropoff(v1, zones);
+        index.allowDropoff(v2, zones);
+
+        // when
+        Map<Vertex, ParkingZoneInfo> changes = new HashMap<>();
+        changes.put(v1, newZones);
+        changes.put(v3, newZones);
+        VehicleDropoffIndex copy = index.withParkingZones(changes);
+
+        // then
+        assertSame(zones, index.getParkingZones(v1));
+        assertSame(newZones, copy.getParkingZones(v1));
+        assertSame(zones, copy.getParkingZones(v2));
+        assertNull(copy.getParkingZones(v3));
+    }
+}
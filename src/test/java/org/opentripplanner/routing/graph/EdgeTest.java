@@ -3,11 +3,17 @@ package org.opentripplanner.routing.graph;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+
 import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
 import org.opentripplanner.routing.edgetype.StreetEdge;
 import org.opentripplanner.routing.edgetype.StreetTraversalPermission;
+import org.opentripplanner.routing.location.TemporaryStreetLocation;
 import org.opentripplanner.routing.vertextype.IntersectionVertex;
 import org.opentripplanner.routing.vertextype.StreetVertex;
+import org.opentripplanner.util.NonLocalizedString;
 
 public class EdgeTest {
     @Test
@@ -60,4 +66,25 @@ public class EdgeTest {
         assertEquals(vb.getDegreeOut(), 0);
         
     }
+
+    @Test
+    public void testTemporaryEdgesAreKeptApartFromPermanentEdges() {
+        Graph graph = new Graph();
+        StreetVertex va = new IntersectionVertex(graph, "A", 10.0, 10.0);
+        StreetVertex vb = new IntersectionVertex(graph, "B", 10.1, 10.1);
+        TemporaryStreetLocation target = new TemporaryStreetLocation("target",
+                new Coordinate(10.05, 10.05), new NonLocalizedString("target"), true);
+        Edge eab = new StreetEdge(va, vb, null, "AB", 10, StreetTraversalPermission.ALL, false);
+        Edge temporary = new TemporaryConcreteEdge(va, target);
+        Edge eba = new StreetEdge(vb, va, null, "BA", 10, StreetTraversalPermission.ALL, false);
+
+        // permanent edges come first, whatever the insertion order
+        assertEquals(2, va.getDegreeOut());
+        assertEquals(Arrays.asList(eab, temporary), new ArrayList<>(va.getOutgoing()));
+        assertEquals(Arrays.asList(eba), new ArrayList<>(va.getIncoming()));
+
+        assertTrue(va.removeOutgoing(temporary));
+        assertEquals(1, va.getDegreeOut());
+        assertEquals(Arrays.asList(eab), new ArrayList<>(va.getOutgoing()));
+    }
 }
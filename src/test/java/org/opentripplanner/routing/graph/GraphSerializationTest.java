@@ -6,22 +6,33 @@ import org.locationtech.jts.geom.Polygon;
 import org.geotools.util.WeakValueHashMap;
 import org.jets3t.service.io.TempFile;
 import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
 import org.opentripplanner.ConstantsForTests;
 import org.opentripplanner.common.geometry.HashGridSpatialIndex;
+import org.opentripplanner.routing.algorithm.AStar;
+import org.opentripplanner.routing.algorithm.strategies.InterleavedBidirectionalHeuristic;
+import org.opentripplanner.routing.core.RoutingRequest;
 import org.opentripplanner.routing.impl.DefaultStreetVertexIndexFactory;
+import org.opentripplanner.routing.location.TemporaryStreetLocation;
+import org.opentripplanner.routing.spt.GraphPath;
 import org.opentripplanner.routing.trippattern.Deduplicator;
 import org.opentripplanner.routing.vertextype.TransitStation;
+import org.opentripplanner.util.NonLocalizedString;
 
 import java.io.File;
 import java.lang.ref.SoftReference;
 import java.lang.reflect.Method;
 import java.util.BitSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.jar.JarFile;
 import java.util.stream.Collectors;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 
 /**
@@ -60,6 +71,57 @@ public class GraphSerializationTest {
         assertNoDifferences(copiedGraph1, copiedGraph2);
     }
 
+    /**
+     * Tests that vertices created after loading a graph, such as the temporary vertices of a request, get indices
+     * which are not used by the loaded vertices, and that routing with them on the loaded graph works.
+     */
+    @Test
+    public void testVertexIndicesAfterLoad () throws Exception {
+        Graph originalGraph = new Graph();
+        String[] labels = {"a", "b", "c", "d"};
+        for (int i = 0; i < labels.length; i++) {
+            new SimpleConcreteVertex(originalGraph, labels[i], 47.669 + i * 0.001, -122.387);
+        }
+        for (int i = 0; i < labels.length - 1; i++) {
+            new SimpleConcreteEdge(originalGraph.getVertex(labels[i]), originalGraph.getVertex(labels[i + 1]));
+            new SimpleConcreteEdge(originalGraph.getVertex(labels[i + 1]), originalGraph.getVertex(labels[i]));
+        }
+        // Saved indices are restored as they are. Make them those the next created vertices would get, as happens
+        // when a graph built in another JVM is loaded.
+        int nextIndex = Vertex.getMaxIndex();
+        for (int i = 0; i < labels.length; i++) {
+            originalGraph.getVertex(labels[i]).setIndex(nextIndex + i);
+        }
+        File tempFile = TempFile.createTempFile("graph", "indices");
+        originalGraph.save(tempFile);
+        Graph graph = Graph.load(tempFile);
+
+        Set<Integer> loadedIndices = graph.getVertices().stream().map(Vertex::getIndex).collect(Collectors.toSet());
+        assertEquals(labels.length, loadedIndices.size());
+        assertTrue(loadedIndices.stream().allMatch(index -> index < Vertex.getMaxIndex()));
+
+        TemporaryStreetLocation from = new TemporaryStreetLocation("near_a",
+                new Coordinate(-122.3871, 47.6689), new NonLocalizedString("near_a"), false);
+        new TemporaryConcreteEdge(from, graph.getVertex("a"));
+        TemporaryStreetLocation to = new TemporaryStreetLocation("near_d",
+                new Coordinate(-122.3871, 47.6721), new NonLocalizedString("near_d"), true);
+        new TemporaryConcreteEdge(graph.getVertex("d"), to);
+        assertFalse(loadedIndices.contains(from.getIndex()));
+        assertFalse(loadedIndices.contains(to.getIndex()));
+
+        RoutingRequest options = new RoutingRequest();
+        options.walkSpeed = 1.0;
+        options.setRoutingContext(graph, from, to);
+        options.rctx.remainingWeightHeuristic = new InterleavedBidirectionalHeuristic();
+        GraphPath path = new AStar().getShortestPathTree(options).getPath(to, false);
+        options.cleanup();
+
+        assertNotNull(path);
+        assertEquals(6, path.states.size());
+        assertEquals("a", path.states.get(1).getVertex().getLabel());
+        assertEquals("d", path.states.get(4).getVertex().getLabel());
+    }
+
     // Ideally we'd also test comparing two separate but identical complex graphs, built separately from the same inputs.
     // A test that builds the same graph twice will currently fail for the following reasons:
     // There is global state in Vertex.index and the feeds IDs that mean if you build the same graph twice the feed IDs
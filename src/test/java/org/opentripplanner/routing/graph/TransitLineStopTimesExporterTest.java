@@ -0,0 +1,153 @@
+package org.opentripplanner.routing.graph;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.opentripplanner.calendar.impl.CalendarServiceImpl;
+import org.opentripplanner.model.FeedScopedId;
+import org.opentripplanner.model.Frequency;
+import org.opentripplanner.model.Route;
+import org.opentripplanner.model.Stop;
+import org.opentripplanner.model.StopPattern;
+import org.opentripplanner.model.StopTime;
+import org.opentripplanner.model.Trip;
+import org.opentripplanner.model.calendar.CalendarServiceData;
+import org.opentripplanner.model.calendar.ServiceDate;
+import org.opentripplanner.routing.edgetype.TripPattern;
+import org.opentripplanner.routing.trippattern.Deduplicator;
+import org.opentripplanner.routing.trippattern.FrequencyEntry;
+import org.opentripplanner.routing.trippattern.TripTimes;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class TransitLineStopTimesExporterTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2026, 10, 19);
+
+    private static final FeedScopedId SERVICE_ID = new FeedScopedId("agency", "service");
+
+    private final Route route = new Route();
+
+    private final CalendarServiceData calendarData = new CalendarServiceData();
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        route.setId(new FeedScopedId("agency", "route"));
+        route.setShortName("1");
+        route.setType(3);
+        file = File.createTempFile("stopTimes", ".csv");
+        file.deleteOnExit();
+    }
+
+    @Test
+    public void testStopTimesOfTheWeek() throws IOException {
+        // Runs yesterday, tomorrow and in a week
+        calendarData.putServiceDatesForServiceId(SERVICE_ID, Arrays.asList(serviceDate(-1), serviceDate(1),
+                serviceDate(7)));
+        TripPattern pattern = pattern(trip("trip", "Centrum, North"), 23 * 3600 + 50 * 60, 24 * 3600 + 10 * 60);
+
+        export(pattern);
+
+        assertEquals(Arrays.asList(
+                "s0,\"Centrum, North\",1,2026-10-20T23:50:00",
+                "s0,\"Centrum, North\",1,2026-10-26T23:50:00",
+                // After midnight, on the day after the service day
+                "s1,\"Centrum, North\",1,2026-10-19T00:10:00",
+                "s1,\"Centrum, North\",1,2026-10-21T00:10:00"
+        ), Files.readAllLines(file.toPath(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testFrequencyBasedTrip() throws IOException {
+        calendarData.putServiceDatesForServiceId(SERVICE_ID, Collections.singletonList(serviceDate(0)));
+        Trip trip = trip("trip", "South");
+        TripPattern pattern = pattern(trip);
+        TripTimes tripTimes = new TripTimes(trip, stopTimes(trip, 8 * 3600, 8 * 3600 + 600), new Deduplicator());
+        pattern.add(new FrequencyEntry(frequency(trip, 6 * 3600), tripTimes));
+        pattern.add(new FrequencyEntry(frequency(trip, 18 * 3600), tripTimes));
+
+        export(pattern);
+
+        // The template trip, once
+        assertEquals(Arrays.asList(
+                "s0,South,1,2026-10-19T08:00:00",
+                "s1,South,1,2026-10-19T08:10:00"
+        ), Files.readAllLines(file.toPath(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testNoService() throws IOException {
+        calendarData.putServiceDatesForServiceId(SERVICE_ID, Collections.singletonList(serviceDate(8)));
+        TripPattern pattern = pattern(trip("trip", "South"), 8 * 3600, 8 * 3600 + 600);
+
+        export(pattern);
+
+        assertEquals(Collections.emptyList(), Files.readAllLines(file.toPath(), StandardCharsets.UTF_8));
+    }
+
+    private void export(TripPattern pattern) throws IOException {
+        new TransitLineStopTimesExporter(Collections.singletonList(pattern), Collections.singletonList(route),
+                Collections.singletonList(SERVICE_ID), new CalendarServiceImpl(calendarData), TODAY)
+                .export(file, 300);
+    }
+
+    private Trip trip(String id, String headsign) {
+        Trip trip = new Trip();
+        trip.setId(new FeedScopedId("agency", id));
+        trip.setRoute(route);
+        trip.setServiceId(SERVICE_ID);
+        trip.setTripHeadsign(headsign);
+        return trip;
+    }
+
+    /** @return a pattern with the given trip, and the trip times built from the given arrival times */
+    private TripPattern pattern(Trip trip, int... arrivalTimes) {
+        List<StopTime> stopTimes = stopTimes(trip, arrivalTimes.length == 0 ? new int[]{0, 0} : arrivalTimes);
+        TripPattern pattern = new TripPattern(route, new StopPattern(stopTimes));
+        if (arrivalTimes.length > 0) {
+            pattern.add(new TripTimes(trip, stopTimes, new Deduplicator()));
+        }
+        return pattern;
+    }
+
+    private static List<StopTime> stopTimes(Trip trip, int... arrivalTimes) {
+        List<StopTime> stopTimes = new ArrayList<>();
+        for (int i = 0; i < arrivalTimes.length; i++) {
+            Stop stop = new Stop();
+            stop.setId(new FeedScopedId("agency", "s" + i));
+            StopTime stopTime = new StopTime();
+            stopTime.setTrip(trip);
+            stopTime.setStop(stop);
+            stopTime.setStopSequence(i);
+            stopTime.setArrivalTime(arrivalTimes[i]);
+            stopTime.setDepartureTime(arrivalTimes[i]);
+            stopTimes.add(stopTime);
+        }
+        return stopTimes;
+    }
+
+    private static Frequency frequency(Trip trip, int startTime) {
+        Frequency frequency = new Frequency();
+        frequency.setTrip(trip);
+        frequency.setStartTime(startTime);
+        frequency.setEndTime(startTime + 3600);
+        frequency.setHeadwaySecs(600);
+        return frequency;
+    }
+
+    private static ServiceDate serviceDate(int daysFromToday) {
+        LocalDate date = TODAY.plusDays(daysFromToday);
+        return new ServiceDate(date.getYear(), date.getMonthValue(), date.getDayOfMonth());
+    }
+}
@@ -0,0 +1,90 @@
+package org.opentripplanner.routing.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.opentripplanner.routing.core.RoutingRequest;
+import org.opentripplanner.routing.core.TraverseMode;
+import org.opentripplanner.routing.core.TraverseModeSet;
+import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.graph.SimpleConcreteEdge;
+import org.opentripplanner.routing.graph.SimpleConcreteVertex;
+import org.opentripplanner.routing.graph.Vertex;
+import org.opentripplanner.routing.spt.GraphPath;
+import org.opentripplanner.standalone.Router;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class GraphPathFinderTest {
+
+    private Graph graph;
+
+    private Vertex a, b, c;
+
+    @Before
+    public void setUp() {
+        graph = new Graph();
+        a = new SimpleConcreteVertex(graph, "a", 47.669, -122.387);
+        b = new SimpleConcreteVertex(graph, "b", 47.670, -122.387);
+        c = new SimpleConcreteVertex(graph, "c", 47.671, -122.387);
+        edges(a, b);
+        edges(b, c);
+    }
+
+    @Test
+    public void testWeightUpperBound() {
+        assertEquals(15, GraphPathFinder.weightUpperBound(10, 0.5), 0.0);
+        assertEquals(10, GraphPathFinder.weightUpperBound(10, 0), 0.0);
+        // No itinerary found yet
+        assertEquals(Double.POSITIVE_INFINITY, GraphPathFinder.weightUpperBound(Double.POSITIVE_INFINITY, 0.5), 0.0);
+        // Default slack
+        assertEquals(Double.POSITIVE_INFINITY, GraphPathFinder.weightUpperBound(10, Double.MAX_VALUE), 0.0);
+        // A best itinerary of weight zero must not prune all later searches
+        assertEquals(Double.POSITIVE_INFINITY, GraphPathFinder.weightUpperBound(0, 0.5), 0.0);
+        assertEquals(Double.POSITIVE_INFINITY, GraphPathFinder.weightUpperBound(0, Double.MAX_VALUE), 0.0);
+    }
+
+    @Test
+    public void testLaterItinerariesWithinSlack() {
+        List<GraphPath> paths = getPaths(a, c, 0);
+
+        // Later searches are bounded by the weight of the first itinerary, which they can still match
+        assertEquals(3, paths.size());
+        for (GraphPath path : paths) {
+            assertEquals(paths.get(0).getWeight(), path.getWeight(), 0.0);
+            assertEquals(c, path.states.getLast().getVertex());
+        }
+    }
+
+    @Test
+    public void testLaterItinerariesAfterZeroWeightItinerary() {
+        List<GraphPath> paths = getPaths(a, a, 0.5);
+
+        assertEquals(3, paths.size());
+        for (GraphPath path : paths) {
+            assertEquals(0, path.getWeight(), 0.0);
+        }
+    }
+
+    private List<GraphPath> getPaths(Vertex from, Vertex to, double maxWeightSlackOverBest) {
+        RoutingRequest options = new RoutingRequest();
+        options.setModes(new TraverseModeSet(TraverseMode.WALK));
+        options.walkSpeed = 1.0;
+        // Renting keeps on-street searches going after the first itinerary
+        options.setRentingAllowed(true);
+        options.setNumItineraries(3);
+        options.maxWeightSlackOverBest = maxWeightSlackOverBest;
+        options.setRoutingContext(graph, from, to);
+        try {
+            return new GraphPathFinder(new Router("test", graph)).getPaths(options);
+        } finally {
+            options.cleanup();
+        }
+    }
+
+    private static void edges(Vertex v1, Vertex v2) {
+        new SimpleConcreteEdge(v1, v2);
+        new SimpleConcreteEdge(v2, v1);
+    }
+}
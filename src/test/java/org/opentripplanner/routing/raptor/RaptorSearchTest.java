@@ -0,0 +1,142 @@
+package org.opentripplanner.routing.raptor;
+
+import org.junit.Test;
+
+import java.util.BitSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RaptorSearchTest {
+
+    /** Requested departure time, in seconds since midnight */
+    private static final int START = time(7, 58);
+
+    private static final int RUNNING = 0;
+
+    private static final int NOT_RUNNING = 1;
+
+    @Test
+    public void shouldFindFasterJourneyWithMoreRides() {
+        // given
+        RaptorSearch search = newSearch(data(RUNNING));
+
+        // when
+        List<RaptorJourney> journeys = search.route(0);
+
+        // then
+        assertEquals(2, journeys.size());
+
+        RaptorJourney direct = journeys.get(0);
+        assertEquals(1, direct.countRides());
+        assertEquals(0, direct.accessStop);
+        assertEquals(2, direct.egressStop);
+        assertEquals(time(7, 59) - START, direct.departureTime);
+        assertEquals(time(8, 45) - START, direct.arrivalTime);
+
+        RaptorJourney withTransfer = journeys.get(1);
+        assertEquals(2, withTransfer.countRides());
+        assertEquals(4, withTransfer.egressStop);
+        assertEquals(time(8, 32) - START, withTransfer.arrivalTime);
+        assertEquals(3, withTransfer.legs.size());
+        RaptorJourney.Leg firstRide = withTransfer.legs.get(0);
+        assertEquals(0, firstRide.pattern);
+        assertEquals(0, firstRide.trip);
+        assertEquals(0, firstRide.from);
+        assertEquals(2, firstRide.to);
+        RaptorJourney.Leg transfer = withTransfer.legs.get(1);
+        assertFalse(transfer.isRide());
+        assertEquals(2, transfer.from);
+        assertEquals(3, transfer.to);
+        RaptorJourney.Leg secondRide = withTransfer.legs.get(2);
+        assertEquals(1, secondRide.pattern);
+        assertEquals(0, secondRide.trip);
+    }
+
+    @Test
+    public void shouldSkipTripsWhoseServiceDoesNotRun() {
+        // given
+        RaptorSearch search = newSearch(data(NOT_RUNNING));
+
+        // when
+        List<RaptorJourney> journeys = search.route(0);
+
+        // then
+        assertEquals(2, journeys.size());
+        assertEquals(time(8, 29) - START, journeys.get(0).departureTime);
+        assertEquals(time(9, 15) - START, journeys.get(0).arrivalTime);
+        assertEquals(time(9, 2) - START, journeys.get(1).arrivalTime);
+        assertEquals(1, journeys.get(1).legs.get(0).trip);
+        assertEquals(1, journeys.get(1).legs.get(2).trip);
+    }
+
+    @Test
+    public void shouldNotTransferFartherThanAllowed() {
+        // given
+        RaptorSearch search = newSearch(data(RUNNING));
+        search.maxTransferWalkDistance = 50;
+
+        // when
+        List<RaptorJourney> journeys = search.route(0);
+
+        // then
+        assertEquals(1, journeys.size());
+        assertEquals(1, journeys.get(0).countRides());
+    }
+
+    @Test
+    public void shouldNotBoardWithoutEnoughSlack() {
+        // given
+        RaptorSearch search = newSearch(data(RUNNING));
+        search.boardSlack = 120;
+
+        // when
+        List<RaptorJourney> journeys = search.route(0);
+
+        // then
+        assertTrue(journeys.stream().allMatch(journey -> journey.legs.get(0).trip == 1));
+    }
+
+    private static RaptorSearch newSearch(RaptorTransitData data) {
+        RaptorSearch search = new RaptorSearch(data);
+        search.accessStops = new int[]{0};
+        search.accessDurations = new int[]{60};
+        search.egressStops = new int[]{2, 4};
+        search.egressDurations = new int[]{30 * 60, 2 * 60};
+        search.serviceDayOffsets = new int[]{-START};
+        BitSet running = new BitSet();
+        running.set(RUNNING);
+        search.servicesRunning = new BitSet[]{running};
+        search.walkSpeed = 1;
+        return search;
+    }
+
+    /**
+     * Pattern 0 goes from stop 0 to stop 2 through stop 1, pattern 1 from stop 3 to stop 4. Stop 3 can be reached
+     * from stop 2 by walking 100 meters.
+     *
+     * @param firstTripService service code of the first trip of pattern 0
+     */
+    private static RaptorTransitData data(int firstTripService) {
+        int[][] stopsForPattern = {{0, 1, 2}, {3, 4}};
+        boolean[][] canBoard = {{true, true, false}, {true, false}};
+        boolean[][] canAlight = {{false, true, true}, {false, true}};
+        int[][] times = {
+                {time(8, 0), time(8, 10), time(8, 15), time(8, 30), time(8, 40), time(8, 45)},
+                {time(8, 20), time(8, 30), time(8, 50), time(9, 0)}
+        };
+        int[][] serviceCodes = {{firstTripService, RUNNING}, {RUNNING, RUNNING}};
+        boolean[][] wheelchairAccessible = {{true, true}, {true, true}};
+        int[][] transferTargets = {{}, {}, {3}, {}, {}};
+        double[][] transferDistances = {{}, {}, {100}, {}, {}};
+        boolean[][] transferWheelchairAccessible = {{}, {}, {true}, {}, {}};
+        return new RaptorTransitData(null, null, stopsForPattern, canBoard, canAlight, times, times, serviceCodes,
+                wheelchairAccessible, null, transferTargets, transferDistances, transferWheelchairAccessible, null);
+    }
+
+    private static int time(int hours, int minutes) {
+        return hours * 3600 + minutes * 60;
+    }
+}
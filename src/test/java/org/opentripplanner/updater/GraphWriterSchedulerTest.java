@@ -0,0 +1,167 @@
+package org.opentripplanner.updater;
+
+import org.junit.After;
+import org.junit.Test;
+import org.opentripplanner.routing.graph.Graph;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class GraphWriterSchedulerTest {
+
+    private final List<String> executed = new CopyOnWriteArrayList<>();
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private GraphWriterScheduler scheduler;
+
+    @After
+    public void tearDown() throws InterruptedException {
+        release.countDown();
+        scheduler.shutdown(1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void shouldRunOnlyLatestOfCoalescedWriters() throws InterruptedException {
+        // given
+        scheduler = newScheduler(1);
+        scheduler.submit(new TestWriter("blocking", null, GraphWriterRunnable.PRIORITY_NORMAL, null, release));
+
+        // when
+        scheduler.submit(new TestWriter("first", "key", GraphWriterRunnable.PRIORITY_NORMAL, null, null));
+        scheduler.submit(new TestWriter("second", "key", GraphWriterRunnable.PRIORITY_NORMAL, null, null));
+        release.countDown();
+
+        // then
+        assertTrue(scheduler.awaitSubmitted(1000));
+        assertEquals(asList("blocking", "second"), executed);
+    }
+
+    @Test
+    public void shouldRunWritersWithHigherPriorityFirst() throws InterruptedException {
+        // given
+        scheduler = newScheduler(1);
+        scheduler.submit(new TestWriter("blocking", null, GraphWriterRunnable.PRIORITY_NORMAL, null, release));
+
+        // when
+        scheduler.submit(new TestWriter("low", null, GraphWriterRunnable.PRIORITY_LOW, null, null));
+        scheduler.submit(new TestWriter("normal", null, GraphWriterRunnable.PRIORITY_NORMAL, null, null));
+        scheduler.submit(new TestWriter("high", null, GraphWriterRunnable.PRIORITY_HIGH, null, null));
+        release.countDown();
+
+        // then
+        assertTrue(scheduler.awaitSubmitted(1000));
+        assertEquals(asList("blocking", "high", "normal", "low"), executed);
+    }
+
+    @Test
+    public void shouldRunWritersOfDifferentRegionsConcurrently() throws InterruptedException {
+        // given
+        scheduler = newScheduler(2);
+        scheduler.submit(new TestWriter("blocking", null, GraphWriterRunnable.PRIORITY_NORMAL, "a", release));
+
+        // when
+        scheduler.submit(new TestWriter("same region", null, GraphWriterRunnable.PRIORITY_NORMAL, "a", null));
+        scheduler.submit(new TestWriter("other region", null, GraphWriterRunnable.PRIORITY_NORMAL, "b", null));
+
+        // then
+        awaitExecuted(1);
+        assertEquals(asList("other region"), executed);
+
+        // when
+        release.countDown();
+
+        // then
+        assertTrue(scheduler.awaitSubmitted(1000));
+        assertEquals(asList("other region", "blocking", "same region"), executed);
+    }
+
+    @Test
+    public void shouldNotRunWriterWithoutRegionConcurrentlyWithOthers() throws InterruptedException {
+        // given
+        scheduler = newScheduler(2);
+        scheduler.submit(new TestWriter("blocking", null, GraphWriterRunnable.PRIORITY_NORMAL, "a", release));
+
+        // when
+        scheduler.submit(new TestWriter("whole graph", null, GraphWriterRunnable.PRIORITY_NORMAL, null, null));
+        scheduler.submit(new TestWriter("other region", null, GraphWriterRunnable.PRIORITY_NORMAL, "b", null));
+
+        // then
+        assertFalse(scheduler.awaitSubmitted(200));
+        assertTrue(executed.isEmpty());
+
+        // when
+        release.countDown();
+
+        // then
+        assertTrue(scheduler.awaitSubmitted(1000));
+        assertEquals(asList("blocking", "whole graph", "other region"), executed);
+    }
+
+    private void awaitExecuted(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 1000;
+        while (executed.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private GraphWriterScheduler newScheduler(int threads) {
+        return new GraphWriterScheduler(new Graph(), threads, Executors.defaultThreadFactory(), "router=\"test\"");
+    }
+
+    private class TestWriter implements GraphWriterRunnable {
+
+        private final String name;
+
+        private final Object key;
+
+        private final int priority;
+
+        private final String region;
+
+        private final CountDownLatch waitFor;
+
+        TestWriter(String name, Object key, int priority, String region, CountDownLatch waitFor) {
+            this.name = name;
+            this.key = key;
+            this.priority = priority;
+            this.region = region;
+            this.waitFor = waitFor;
+        }
+
+        @Override
+        public void run(Graph graph) {
+            try {
+                if (waitFor != null) {
+                    waitFor.await();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            executed.add(name);
+        }
+
+        @Override
+        public Object getCoalescingKey() {
+            return key;
+        }
+
+        @Override
+        public int getPriority() {
+            return priority;
+        }
+
+        @Override
+        public String getGraphRegion() {
+            return region;
+        }
+    }
+}
@@ -147,4 +147,37 @@ public class ParkingZonesCalculatorTest {
         // then
         assertTrue(parkingZones.canDropoffVehicleHere(CAR_1));
     }
+
+    @Test
+    public void shouldShareParkingZonesBetweenLocationsWithTheSameZones() {
+        // given
+        when(geometryAllowed.contains(any())).thenReturn(true);
+        when(geometryDisallowed.contains(any())).thenReturn(false);
+        Vertex otherVertex = new StreetLocation("id2", new Coordinate(3.3, 4.4), "name2");
+
+        // when
+        ParkingZoneInfo parkingZones = calculator.getParkingZonesForLocation(vertex);
+        ParkingZoneInfo otherParkingZones = calculator.getParkingZonesForLocation(otherVertex);
+
+        // then
+        assertSame(parkingZones, otherParkingZones);
+        assertEquals(1, calculator.getDistinctParkingZonesCount());
+    }
+
+    @Test
+    public void shouldNotShareDifferentParkingZones() {
+        // given
+        when(geometryAllowed.contains(any())).thenReturn(true, false);
+        when(geometryDisallowed.contains(any())).thenReturn(false);
+        Vertex otherVertex = new StreetLocation("id2", new Coordinate(3.3, 4.4), "name2");
+
+        // when
+        ParkingZoneInfo parkingZones = calculator.getParkingZonesForLocation(vertex);
+        ParkingZoneInfo otherParkingZones = calculator.getParkingZonesForLocation(otherVertex);
+
+        // then
+        assertNotSame(parkingZones, otherParkingZones);
+        assertTrue(parkingZones.canDropoffVehicleHere(CAR_1));
+        assertFalse(otherParkingZones.canDropoffVehicleHere(CAR_1));
+    }
 }
@@ -0,0 +1,73 @@
+package org.opentripplanner.updater.vehicle_sharing.parking_zones;
+
+import org.junit.Test;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.opentripplanner.common.geometry.GeometryUtils;
+import org.opentripplanner.routing.core.vehicle_sharing.VehicleType;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ParkingZonesDiffTest {
+
+    private static Geometry square(double minX, double minY, double maxX, double maxY) {
+        return GeometryUtils.getGeometryFactory().toGeometry(new Envelope(minX, maxX, minY, maxY));
+    }
+
+    private static GeometryParkingZone zone(int providerId, VehicleType vehicleType, Geometry allowed) {
+        return new GeometryParkingZone(providerId, vehicleType, singletonList(allowed), emptyList());
+    }
+
+    @Test
+    public void shouldFindNoChangesForSameParkingZones() {
+        // when
+        ParkingZonesDiff diff = ParkingZonesDiff.between(
+                singletonList(zone(1, VehicleType.CAR, square(0, 0, 10, 10))),
+                singletonList(zone(1, VehicleType.CAR, square(0, 0, 10, 10))));
+
+        // then
+        assertTrue(diff.isEmpty());
+    }
+
+    @Test
+    public void shouldFindOnlyChangedArea() {
+        // when
+        ParkingZonesDiff diff = ParkingZonesDiff.between(
+                singletonList(zone(1, VehicleType.CAR, square(0, 0, 10, 10))),
+                singletonList(zone(1, VehicleType.CAR, square(0, 0, 10, 12))));
+
+        // then
+        assertFalse(diff.isEverythingChanged());
+        assertEquals(1, diff.getChangedAreas().size());
+        assertEquals(new Envelope(0, 10, 10, 12), diff.getChangedAreas().get(0));
+    }
+
+    @Test
+    public void shouldChangeEverythingWhenProvidersWithParkingZonesChange() {
+        // when
+        ParkingZonesDiff diff = ParkingZonesDiff.between(
+                singletonList(zone(1, VehicleType.CAR, square(0, 0, 10, 10))),
+                singletonList(zone(2, VehicleType.CAR, square(0, 0, 10, 10))));
+
+        // then
+        assertTrue(diff.isEverythingChanged());
+    }
+
+    @Test
+    public void shouldTakeDisallowedGeometriesIntoAccount() {
+        // given
+        GeometryParkingZone withHole = new GeometryParkingZone(1, VehicleType.CAR,
+                singletonList(square(0, 0, 10, 10)), singletonList(square(2, 2, 4, 4)));
+
+        // when
+        ParkingZonesDiff diff = ParkingZonesDiff.between(
+                singletonList(zone(1, VehicleType.CAR, square(0, 0, 10, 10))), singletonList(withHole));
+
+        // then
+        assertEquals(singletonList(new Envelope(2, 4, 2, 4)), diff.getChangedAreas());
+    }
+}
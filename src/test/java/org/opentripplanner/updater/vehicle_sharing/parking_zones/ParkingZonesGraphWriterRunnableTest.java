@@ -0,0 +1,105 @@
+package org.opentripplanner.updater.vehicle_sharing.parking_zones;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.opentripplanner.common.geometry.GeometryUtils;
+import org.opentripplanner.routing.core.vehicle_sharing.CarDescription;
+import org.opentripplanner.routing.core.vehicle_sharing.FuelType;
+import org.opentripplanner.routing.core.vehicle_sharing.Gearbox;
+import org.opentripplanner.routing.core.vehicle_sharing.Provider;
+import org.opentripplanner.routing.core.vehicle_sharing.VehicleType;
+import org.opentripplanner.routing.edgetype.rentedgetype.ParkingZoneInfo;
+import org.opentripplanner.routing.edgetype.rentedgetype.VehicleDropoffIndex;
+import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.routing.graph.Vertex;
+import org.opentripplanner.routing.services.StreetVertexIndexService;
+import org.opentripplanner.routing.vertextype.IntersectionVertex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singleton;
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ParkingZonesGraphWriterRunnableTest {
+
+    private static final CarDescription CAR = new CarDescription("1", 0, 0, FuelType.ELECTRIC, Gearbox.AUTOMATIC, new Provider(1, "PANEK"));
+
+    private static final ParkingZoneInfo NO_PARKING_ZONES = new ParkingZoneInfo(emptyList(), emptyList(), emptyList());
+
+    private Graph graph;
+
+    private Vertex inside, outside;
+
+    private final List<Collection<Vertex>> changes = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        graph = new Graph();
+        inside = new IntersectionVertex(graph, "inside", 0.5, 0.5);
+        outside = new IntersectionVertex(graph, "outside", 5, 5);
+        graph.vehicleDropoffIndex = new VehicleDropoffIndex();
+        graph.vehicleDropoffIndex.allowDropoff(inside, NO_PARKING_ZONES);
+        graph.vehicleDropoffIndex.allowDropoff(outside, NO_PARKING_ZONES);
+        graph.addRealtimeStreetDataListener(changes::add);
+    }
+
+    @Test
+    public void shouldInstallParkingZonesOnGraph() {
+        // given
+        ParkingZonesCalculator calculator = calculator(square(0, 1));
+
+        // when
+        new ParkingZonesGraphWriterRunnable(calculator, ParkingZonesDiff.everything()).run(graph);
+
+        // then
+        assertSame(calculator, graph.parkingZonesCalculator);
+        assertTrue(graph.vehicleDropoffIndex.getParkingZones(inside).canDropoffVehicleHere(CAR));
+        assertFalse(graph.vehicleDropoffIndex.getParkingZones(outside).canDropoffVehicleHere(CAR));
+        assertEquals(1, changes.size());
+        assertEquals(new HashSet<>(Arrays.asList(inside, outside)), new HashSet<>(changes.get(0)));
+    }
+
+    @Test
+    public void shouldRecomputeOnlyVerticesInChangedAreas() {
+        // given
+        graph.streetIndex = mock(StreetVertexIndexService.class);
+        when(graph.streetIndex.getVerticesForEnvelope(any(Envelope.class))).thenReturn(singletonList(inside));
+        ParkingZonesCalculator calculator = calculator(square(0, 1));
+        ParkingZonesDiff diff = ParkingZonesDiff.between(calculator(square(2, 3)).getGeometryParkingZones(),
+                calculator.getGeometryParkingZones());
+
+        // when
+        new ParkingZonesGraphWriterRunnable(calculator, diff).run(graph);
+
+        // then
+        assertSame(calculator, graph.parkingZonesCalculator);
+        assertTrue(graph.vehicleDropoffIndex.getParkingZones(inside).canDropoffVehicleHere(CAR));
+        assertEquals(NO_PARKING_ZONES, graph.vehicleDropoffIndex.getParkingZones(outside));
+        assertEquals(1, changes.size());
+        assertEquals(singleton(inside), new HashSet<>(changes.get(0)));
+    }
+
+    private static ParkingZonesCalculator calculator(Geometry geometryAllowed) {
+        GeometryParkingZone parkingZone = new GeometryParkingZone(1, VehicleType.CAR, singletonList(geometryAllowed),
+                emptyList());
+        return new ParkingZonesCalculator(singletonList(parkingZone), emptyList());
+    }
+
+    private static Geometry square(double min, double max) {
+        return GeometryUtils.getGeometryFactory().toGeometry(new Envelope(min, max, min, max));
+    }
+}
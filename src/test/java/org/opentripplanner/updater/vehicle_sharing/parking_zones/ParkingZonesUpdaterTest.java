@@ -0,0 +1,85 @@
+package org.opentripplanner.updater.vehicle_sharing.parking_zones;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.jts.geom.Envelope;
+import org.opentripplanner.common.geometry.GeometryUtils;
+import org.opentripplanner.hasura_client.ParkingZonesGetter;
+import org.opentripplanner.routing.core.vehicle_sharing.VehicleType;
+import org.opentripplanner.routing.graph.Graph;
+import org.opentripplanner.updater.GraphUpdaterManager;
+import org.opentripplanner.updater.GraphWriterRunnable;
+
+import java.util.List;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+public class ParkingZonesUpdaterTest {
+
+    private static final List<GeometryParkingZone> PARKING_ZONES = singletonList(new GeometryParkingZone(1,
+            VehicleType.CAR, singletonList(GeometryUtils.getGeometryFactory().toGeometry(new Envelope(0, 1, 0, 1))),
+            emptyList()));
+
+    private Graph graph;
+
+    private ParkingZonesGetter parkingZonesGetter;
+
+    private GraphUpdaterManager graphUpdaterManager;
+
+    private ParkingZonesUpdater updater;
+
+    @Before
+    public void setUp() throws Exception {
+        graph = new Graph();
+        parkingZonesGetter = mock(ParkingZonesGetter.class);
+        graphUpdaterManager = mock(GraphUpdaterManager.class);
+        updater = new ParkingZonesUpdater(parkingZonesGetter);
+        updater.setGraphUpdaterManager(graphUpdaterManager);
+        updater.setup(graph);
+    }
+
+    @Test
+    public void shouldApplyFetchedParkingZones() throws Exception {
+        // given
+        when(parkingZonesGetter.postFromHasura(eq(graph), any())).thenReturn(PARKING_ZONES);
+
+        // when
+        updater.runPolling();
+
+        // then
+        verify(graphUpdaterManager, times(1)).execute(any(ParkingZonesGraphWriterRunnable.class));
+    }
+
+    @Test
+    public void shouldNotApplyUnchangedParkingZones() throws Exception {
+        // given
+        when(parkingZonesGetter.postFromHasura(eq(graph), any())).thenReturn(PARKING_ZONES);
+
+        // when
+        updater.runPolling();
+        updater.runPolling();
+
+        // then
+        verify(graphUpdaterManager, times(1)).execute(any(GraphWriterRunnable.class));
+    }
+
+    @Test
+    public void shouldKeepParkingZonesWhenFetchingFails() throws Exception {
+        // given
+        when(parkingZonesGetter.postFromHasura(eq(graph), any())).thenReturn(null);
+
+        // when
+        updater.runPolling();
+
+        // then
+        verifyZeroInteractions(graphUpdaterManager);
+    }
+}
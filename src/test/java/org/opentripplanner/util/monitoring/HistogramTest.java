@@ -0,0 +1,60 @@
+package org.opentripplanner.util.monitoring;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HistogramTest {
+
+    @Test
+    public void shouldPutEachValueInBucketWithBoundsAroundIt() {
+        for (long value : new long[]{0, 1, 3, 4, 5, 7, 8, 100, 1023, 1024, 123456789, Long.MAX_VALUE}) {
+            // when
+            int bucket = Histogram.bucketOf(value);
+
+            // then
+            assertTrue(value <= Histogram.upperBoundOf(bucket));
+            if (bucket > 0) {
+                assertTrue(value > Histogram.upperBoundOf(bucket - 1));
+            }
+        }
+    }
+
+    @Test
+    public void shouldKeepRelativeErrorWithinSubBucketPrecision() {
+        // given
+        Histogram histogram = new Histogram("test", "test", null, 1);
+
+        // when
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+
+        // then
+        assertEquals(1000, histogram.getCount());
+        assertEquals(500500, histogram.getSum());
+        assertEquals(500, histogram.valueAtQuantile(0.5), 500.0 / Histogram.SUB_BUCKETS);
+        assertEquals(990, histogram.valueAtQuantile(0.99), 990.0 / Histogram.SUB_BUCKETS);
+    }
+
+    @Test
+    public void shouldWriteCumulativeBucketsInPrometheusFormat() {
+        // given
+        Histogram histogram = new Histogram("test", "test", "a=\"b\"", 1);
+        histogram.record(1);
+        histogram.record(3);
+        StringBuilder out = new StringBuilder();
+
+        // when
+        histogram.write(out);
+
+        // then
+        assertEquals("test_bucket{a=\"b\",le=\"1.0\"} 1\n" +
+                "test_bucket{a=\"b\",le=\"2.0\"} 1\n" +
+                "test_bucket{a=\"b\",le=\"3.0\"} 2\n" +
+                "test_bucket{a=\"b\",le=\"+Inf\"} 2\n" +
+                "test_sum{a=\"b\"} 4.0\n" +
+                "test_count{a=\"b\"} 2\n", out.toString());
+    }
+}
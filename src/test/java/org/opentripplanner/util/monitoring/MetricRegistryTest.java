@@ -0,0 +1,85 @@
+package org.opentripplanner.util.monitoring;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class MetricRegistryTest {
+
+    private final MetricRegistry registry = new MetricRegistry();
+
+    @Test
+    public void shouldReturnSameMetricForSameNameAndLabels() {
+        // when
+        Counter counter = registry.counter("requests_total", "Requests", "router=\"a\"");
+
+        // then
+        assertSame(counter, registry.counter("requests_total", "Requests", "router=\"a\""));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldNotRegisterSameNameWithDifferentType() {
+        // given
+        registry.counter("requests", "Requests");
+
+        // when
+        registry.histogram("requests", "Requests");
+    }
+
+    @Test
+    public void shouldWriteAllSamplesOfMetricUnderOneHeader() {
+        // given
+        registry.counter("requests_total", "Requests", "router=\"b\"").add(2);
+        registry.gauge("queue", "Queue size", null, () -> 5);
+        registry.counter("requests_total", "Requests", "router=\"a\"").increment();
+        registry.counter("requests_total_other", "Other requests");
+
+        // when
+        String text = registry.toPrometheusText();
+
+        // then
+        assertEquals("# HELP queue Queue size\n" +
+                "# TYPE queue gauge\n" +
+                "queue 5\n" +
+                "# HELP requests_total Requests\n" +
+                "# TYPE requests_total counter\n" +
+                "requests_total{router=\"a\"} 1\n" +
+                "requests_total{router=\"b\"} 2\n" +
+                "# HELP requests_total_other Other requests\n" +
+                "# TYPE requests_total_other counter\n" +
+                "requests_total_other 0\n", text);
+    }
+
+    @Test
+    public void shouldNotRemoveGaugeWhichReplacedRemovedOne() {
+        // given
+        Gauge oldGauge = registry.gauge("queue", "Queue size", "router=\"a\"", () -> 1);
+        registry.gauge("queue", "Queue size", "router=\"a\"", () -> 2);
+
+        // when
+        registry.remove(oldGauge);
+
+        // then
+        assertEquals("# HELP queue Queue size\n" +
+                "# TYPE queue gauge\n" +
+                "queue{router=\"a\"} 2\n", registry.toPrometheusText());
+    }
+
+    @Test
+    public void shouldRemoveGauge() {
+        // given
+        Gauge gauge = registry.gauge("queue", "Queue size", "router=\"a\"", () -> 1);
+
+        // when
+        registry.remove(gauge);
+
+        // then
+        assertEquals("", registry.toPrometheusText());
+    }
+
+    @Test
+    public void shouldEscapeLabelValues() {
+        assertEquals("writer=\"a\\\"b\\\\c\"", Metrics.label("writer", "a\"b\\c"));
+    }
+}